@@ -0,0 +1,27 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * runs the benchmarks with the GC profiler, so that the allocation rate is reported together with the throughput.
+ * Usage: java -cp target/benchmarks.jar de.bright_side.brightmarkdown.benchmark.BMBenchmarkRunner [regular expression of the benchmark names]
+ * The benchmarks may also be run by "java -jar target/benchmarks.jar -prof gc" with all options of JMH.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMBenchmarkRunner {
+
+	public static void main(String[] args) throws Exception {
+		String include = (args.length > 0) ? args[0] : BMBenchmarkRunner.class.getPackage().getName() + ".*";
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.build();
+		new Runner(options).run();
+	}
+
+}
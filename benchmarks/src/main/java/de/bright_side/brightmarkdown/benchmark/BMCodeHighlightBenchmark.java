@@ -0,0 +1,59 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.logic.BMCodeParser;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMSection;
+
+/**
+ * benchmark of the syntax highlighting of a code block for each language
+ *
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BMCodeHighlightBenchmark {
+	@Param({"java", "xml", "javascript", "kotlin", "typescript", "scala", "sql"})
+	public String language;
+
+	/** the escaped code as the code parser receives it */
+	private String code;
+	private BMCodeFormat format;
+	private BMCodeParser codeParser;
+	private BMSection parent;
+
+	@Setup
+	public void setUp() throws Exception {
+		code = BMUtil.escape(BMCorpus.readCode(language));
+		format = BMConstants.CODE_FORMATS.get(language);
+		codeParser = new BMCodeParser();
+		parent = new BMSection();
+	}
+
+	@Benchmark
+	public List<BMSection> createSections() {
+		return codeParser.createSections(parent, code, format, BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK);
+	}
+
+}
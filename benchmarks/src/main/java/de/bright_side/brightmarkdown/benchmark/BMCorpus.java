@@ -0,0 +1,57 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * reads the checked-in documents and code samples which the benchmarks process. The corpus contains realistic documents (the readme and the 
+ * documentation of BrightMarkdown) and synthetic documents of several sizes which contain all kinds of markdown elements.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMCorpus {
+	public static final String README = "readme.md";
+	public static final String DOCUMENTATION = "documentation.md";
+	public static final String SYNTHETIC_4K = "synthetic-4k.md";
+	public static final String SYNTHETIC_64K = "synthetic-64k.md";
+	public static final String SYNTHETIC_256K = "synthetic-256k.md";
+
+	private static final String CORPUS_DIR = "corpus/";
+	private static final String CODE_DIR = "code/";
+	private static final String CODE_FILE_ENDING = ".txt";
+
+	/**
+	 * @param name name of the document, e.g. BMCorpus.README
+	 */
+	public static String readDocument(String name) throws IOException {
+		return readResource(CORPUS_DIR + name);
+	}
+
+	/**
+	 * @param language name of the code format, e.g. "java"
+	 * @return code sample in the given language
+	 */
+	public static String readCode(String language) throws IOException {
+		return readResource(CODE_DIR + language + CODE_FILE_ENDING);
+	}
+
+	private static String readResource(String path) throws IOException {
+		try (InputStream in = BMCorpus.class.getResourceAsStream(path)) {
+			if (in == null) {
+				throw new IOException("Resource not found: " + path);
+			}
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int length = in.read(buffer);
+			while (length >= 0) {
+				result.write(buffer, 0, length);
+				length = in.read(buffer);
+			}
+			return new String(result.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
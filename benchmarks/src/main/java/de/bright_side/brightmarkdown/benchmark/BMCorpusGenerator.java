@@ -0,0 +1,430 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.bright_side.brightmarkdown.logic.BMDefaultCodeFormatCreator;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+
+/**
+ * creates synthetic markdown documents of a controlled shape for tests and benchmarks, e.g. to measure how the render time grows with the number of
+ * paragraphs, the depth of lists or the size of tables. The documents only use the syntax described by BMDocumentationCreator. The same configuration
+ * always creates the same document, while a different seed creates different words, formatting and order of the elements.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMCorpusGenerator {
+	private static final String[] WORDS = {"markdown", "text", "list", "table", "code", "block", "heading", "paragraph", "link", "image", "format"
+			, "order", "item", "customer", "price", "shop", "preview", "editor", "render", "cache", "thread", "value", "result", "section", "level"};
+	private static final String[] COLORS = {"red", "blue", "green", "gold", "teal", "#ffaa00"};
+	private static final String[] FORMATTING_INDICATORS = {"*", "_", "+", "~"};
+	private static final String LIST_INDENT = "   ";
+	private static final String CODE_BLOCK_MARK = "```";
+
+	private enum ElementType {PARAGRAPH, BULLET_POINT_LIST, NUMBERED_LIST, TABLE, CODE_BLOCK}
+
+	private final long seed;
+	private final int paragraphCount;
+	private final int paragraphLineCount;
+	private final int wordsPerLine;
+	private final int listCount;
+	private final int listDepth;
+	private final int listItemsPerLevel;
+	private final int tableCount;
+	private final int tableRowCount;
+	private final int tableColumnCount;
+	private final int codeBlocksPerLanguage;
+	private final int codeLineCount;
+	private final double linkDensity;
+	private final double imageDensity;
+	private final double colorDensity;
+	private final double formattingDensity;
+	private final int elementsPerChapter;
+	private final boolean tableOfContents;
+
+	/**
+	 * configuration of a generator. The default creates a small document which contains every kind of element
+	 */
+	public static class Builder {
+		private long seed = 0;
+		private int paragraphCount = 10;
+		private int paragraphLineCount = 3;
+		private int wordsPerLine = 10;
+		private int listCount = 2;
+		private int listDepth = 3;
+		private int listItemsPerLevel = 3;
+		private int tableCount = 1;
+		private int tableRowCount = 4;
+		private int tableColumnCount = 3;
+		private int codeBlocksPerLanguage = 1;
+		private int codeLineCount = 8;
+		private double linkDensity = 0.02;
+		private double imageDensity = 0.01;
+		private double colorDensity = 0.02;
+		private double formattingDensity = 0.05;
+		private int elementsPerChapter = 5;
+		private boolean tableOfContents = true;
+
+		private Builder() {
+		}
+
+		public Builder setSeed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public Builder setParagraphCount(int paragraphCount) {
+			this.paragraphCount = paragraphCount;
+			return this;
+		}
+
+		public Builder setParagraphLineCount(int paragraphLineCount) {
+			this.paragraphLineCount = paragraphLineCount;
+			return this;
+		}
+
+		public Builder setWordsPerLine(int wordsPerLine) {
+			this.wordsPerLine = wordsPerLine;
+			return this;
+		}
+
+		/**
+		 * @param listCount number of lists. Bullet point lists and numbered lists alternate
+		 * @return this builder
+		 */
+		public Builder setListCount(int listCount) {
+			this.listCount = listCount;
+			return this;
+		}
+
+		/**
+		 * @param listDepth number of levels of each list. The last item of each level except the deepest one has the items of the next level
+		 * @return this builder
+		 */
+		public Builder setListDepth(int listDepth) {
+			this.listDepth = listDepth;
+			return this;
+		}
+
+		public Builder setListItemsPerLevel(int listItemsPerLevel) {
+			this.listItemsPerLevel = listItemsPerLevel;
+			return this;
+		}
+
+		public Builder setTableCount(int tableCount) {
+			this.tableCount = tableCount;
+			return this;
+		}
+
+		/**
+		 * @param tableRowCount number of rows of each table below the header row
+		 * @return this builder
+		 */
+		public Builder setTableRowCount(int tableRowCount) {
+			this.tableRowCount = tableRowCount;
+			return this;
+		}
+
+		public Builder setTableColumnCount(int tableColumnCount) {
+			this.tableColumnCount = tableColumnCount;
+			return this;
+		}
+
+		/**
+		 * @param codeBlocksPerLanguage number of code blocks for each format name of BMDefaultCodeFormatCreator
+		 * @return this builder
+		 */
+		public Builder setCodeBlocksPerLanguage(int codeBlocksPerLanguage) {
+			this.codeBlocksPerLanguage = codeBlocksPerLanguage;
+			return this;
+		}
+
+		public Builder setCodeLineCount(int codeLineCount) {
+			this.codeLineCount = codeLineCount;
+			return this;
+		}
+
+		/**
+		 * @param linkDensity probability between 0 and 1 that a word of a text is a link
+		 * @return this builder
+		 */
+		public Builder setLinkDensity(double linkDensity) {
+			this.linkDensity = linkDensity;
+			return this;
+		}
+
+		/**
+		 * @param imageDensity probability between 0 and 1 that a word of a text is an image
+		 * @return this builder
+		 */
+		public Builder setImageDensity(double imageDensity) {
+			this.imageDensity = imageDensity;
+			return this;
+		}
+
+		/**
+		 * @param colorDensity probability between 0 and 1 that a word of a text, a table row or a table cell has a color tag
+		 * @return this builder
+		 */
+		public Builder setColorDensity(double colorDensity) {
+			this.colorDensity = colorDensity;
+			return this;
+		}
+
+		/**
+		 * @param formattingDensity probability between 0 and 1 that a word of a text is bold, italic, underlined or strike through
+		 * @return this builder
+		 */
+		public Builder setFormattingDensity(double formattingDensity) {
+			this.formattingDensity = formattingDensity;
+			return this;
+		}
+
+		/**
+		 * @param elementsPerChapter number of paragraphs, lists, tables and code blocks after which a new heading and a horizontal rule start
+		 * @return this builder
+		 */
+		public Builder setElementsPerChapter(int elementsPerChapter) {
+			this.elementsPerChapter = elementsPerChapter;
+			return this;
+		}
+
+		public Builder setTableOfContents(boolean tableOfContents) {
+			this.tableOfContents = tableOfContents;
+			return this;
+		}
+
+		public BMCorpusGenerator build() {
+			return new BMCorpusGenerator(this);
+		}
+	}
+
+	private BMCorpusGenerator(Builder builder) {
+		seed = builder.seed;
+		paragraphCount = builder.paragraphCount;
+		paragraphLineCount = builder.paragraphLineCount;
+		wordsPerLine = builder.wordsPerLine;
+		listCount = builder.listCount;
+		listDepth = builder.listDepth;
+		listItemsPerLevel = builder.listItemsPerLevel;
+		tableCount = builder.tableCount;
+		tableRowCount = builder.tableRowCount;
+		tableColumnCount = builder.tableColumnCount;
+		codeBlocksPerLanguage = builder.codeBlocksPerLanguage;
+		codeLineCount = builder.codeLineCount;
+		linkDensity = builder.linkDensity;
+		imageDensity = builder.imageDensity;
+		colorDensity = builder.colorDensity;
+		formattingDensity = builder.formattingDensity;
+		elementsPerChapter = builder.elementsPerChapter;
+		tableOfContents = builder.tableOfContents;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public String generate() {
+		StringBuilder result = new StringBuilder();
+		try {
+			generate(result);
+		} catch (IOException e) {
+			//: a StringBuilder does not throw IOExceptions
+			throw new IllegalStateException(e);
+		}
+		return result.toString();
+	}
+
+	public void generate(Appendable out) throws IOException {
+		Random random = new Random(seed);
+		Map<String, BMCodeFormat> codeFormats = new BMDefaultCodeFormatCreator().createCodeFormats();
+		List<ElementType> elementTypes = createElementTypes(codeFormats.size() - 1);
+		Collections.shuffle(elementTypes, random);
+		//: the code blocks use the languages in alphabetical order, so that each language occurs codeBlocksPerLanguage times
+		List<String> languages = new ArrayList<String>();
+		for (String i: codeFormats.keySet()) {
+			if (!i.isEmpty()) {
+				languages.add(i);
+			}
+		}
+
+		if (tableOfContents) {
+			out.append("{TOC}\n\n");
+		}
+		int listIndex = 0;
+		int codeBlockIndex = 0;
+		for (int i = 0; i < elementTypes.size(); i++) {
+			if ((elementsPerChapter > 0) && (i % elementsPerChapter == 0)) {
+				if (i > 0) {
+					out.append("***\n\n");
+				}
+				appendHeading(out, random, i / elementsPerChapter);
+			}
+			switch (elementTypes.get(i)) {
+			case PARAGRAPH:
+				appendParagraph(out, random);
+				break;
+			case BULLET_POINT_LIST:
+			case NUMBERED_LIST:
+				appendList(out, random, elementTypes.get(i) == ElementType.NUMBERED_LIST, listIndex ++);
+				break;
+			case TABLE:
+				appendTable(out, random);
+				break;
+			case CODE_BLOCK:
+				String language = languages.get(codeBlockIndex % languages.size());
+				appendCodeBlock(out, random, language, codeFormats.get(language));
+				codeBlockIndex ++;
+				break;
+			}
+			out.append("\n");
+		}
+	}
+
+	private List<ElementType> createElementTypes(int languageCount) {
+		List<ElementType> result = new ArrayList<ElementType>();
+		for (int i = 0; i < paragraphCount; i++) {
+			result.add(ElementType.PARAGRAPH);
+		}
+		for (int i = 0; i < listCount; i++) {
+			result.add((i % 2 == 0) ? ElementType.BULLET_POINT_LIST : ElementType.NUMBERED_LIST);
+		}
+		for (int i = 0; i < tableCount; i++) {
+			result.add(ElementType.TABLE);
+		}
+		for (int i = 0; i < codeBlocksPerLanguage * languageCount; i++) {
+			result.add(ElementType.CODE_BLOCK);
+		}
+		return result;
+	}
+
+	private void appendHeading(Appendable out, Random random, int chapterIndex) throws IOException {
+		//: the first chapter is level 1, the others are level 1 to 3
+		int level = (chapterIndex == 0) ? 1 : 1 + random.nextInt(3);
+		for (int i = 0; i < level; i++) {
+			out.append("#");
+		}
+		out.append(" Chapter " + (chapterIndex + 1) + " " + nextWord(random) + "\n");
+	}
+
+	private void appendParagraph(Appendable out, Random random) throws IOException {
+		for (int i = 0; i < paragraphLineCount; i++) {
+			appendText(out, random, wordsPerLine);
+			out.append("\n");
+		}
+	}
+
+	/**
+	 * bullet point items have as many markers as their level ("**" for level 2) and numbered items are indented by their level
+	 */
+	private void appendList(Appendable out, Random random, boolean numbered, int listIndex) throws IOException {
+		for (int level = 1; level <= listDepth; level++) {
+			for (int i = 0; i < listItemsPerLevel; i++) {
+				if (numbered) {
+					for (int j = 1; j < level; j++) {
+						out.append(LIST_INDENT);
+					}
+					out.append(". ");
+				} else {
+					for (int j = 0; j < level; j++) {
+						out.append("*");
+					}
+					out.append(" ");
+				}
+				out.append("list " + (listIndex + 1) + " level " + level + " ");
+				appendText(out, random, Math.max(1, wordsPerLine / 2));
+				out.append("\n");
+			}
+		}
+	}
+
+	/**
+	 * the cells are separated by "|" and the header row is followed by a line of "-" chars
+	 */
+	private void appendTable(Appendable out, Random random) throws IOException {
+		appendTableRow(out, random, false);
+		out.append("------\n");
+		for (int i = 0; i < tableRowCount; i++) {
+			appendTableRow(out, random, true);
+		}
+	}
+
+	private void appendTableRow(Appendable out, Random random, boolean withColors) throws IOException {
+		if ((withColors) && (random.nextDouble() < colorDensity)) {
+			out.append("{bc:" + COLORS[random.nextInt(COLORS.length)] + "}");
+		}
+		for (int i = 0; i < tableColumnCount; i++) {
+			if (i > 0) {
+				out.append("|");
+			}
+			if ((withColors) && (random.nextDouble() < colorDensity)) {
+				out.append("{bc:" + COLORS[random.nextInt(COLORS.length)] + "}");
+			}
+			appendText(out, random, 2);
+		}
+		out.append("\n");
+	}
+
+	/**
+	 * creates lines of keywords, strings, comments and tags of the given format and sometimes a special section, so that all kinds of
+	 * syntax highlighting occur
+	 */
+	private void appendCodeBlock(Appendable out, Random random, String language, BMCodeFormat format) throws IOException {
+		List<String> keywords = (format.getKeywords() == null) ? new ArrayList<String>() : new ArrayList<String>(format.getKeywords());
+		String stringIndicator = ((format.getStringIndicators() == null) || (format.getStringIndicators().isEmpty())) ? "\""
+				: format.getStringIndicators().iterator().next();
+		out.append(CODE_BLOCK_MARK + language + "\n");
+		for (int i = 0; i < codeLineCount; i++) {
+			int kind = random.nextInt(5);
+			if ((kind == 0) && (format.getLineCommentStart() != null)) {
+				out.append(format.getLineCommentStart() + " " + nextWord(random) + " " + nextWord(random));
+			} else if ((kind == 1) && (format.getTagStarts() != null) && (!format.getTagStarts().isEmpty())) {
+				String word = nextWord(random);
+				out.append("<" + word + " name=\"" + nextWord(random) + "\">" + nextWord(random) + "</" + word + ">");
+			} else if (kind == 2) {
+				out.append(nextWord(random) + " = " + stringIndicator + nextWord(random) + " " + nextWord(random) + stringIndicator + ";");
+			} else if ((kind == 3) && (random.nextDouble() < 0.5)) {
+				out.append(nextWord(random) + "(!!!hl!" + nextWord(random) + "!!!);");
+			} else {
+				String keyword = keywords.isEmpty() ? nextWord(random) : keywords.get(random.nextInt(keywords.size()));
+				out.append(keyword + " " + nextWord(random) + "(" + nextWord(random) + ", " + random.nextInt(1000) + ");");
+			}
+			out.append("\n");
+		}
+		out.append(CODE_BLOCK_MARK + "\n");
+	}
+
+	/**
+	 * the first word is never formatted, so that a line of text does not start with the mark of a list item or a table row background
+	 */
+	private void appendText(Appendable out, Random random, int wordCount) throws IOException {
+		out.append(nextWord(random));
+		for (int i = 1; i < wordCount; i++) {
+			out.append(" ");
+			String word = nextWord(random);
+			if (random.nextDouble() < linkDensity) {
+				out.append("[" + word + "](http://example.com/" + word + ")");
+			} else if (random.nextDouble() < imageDensity) {
+				out.append("![" + word + "](http://example.com/" + word + ".png width=" + (10 + random.nextInt(90)) + "%)");
+			} else if (random.nextDouble() < colorDensity) {
+				String tag = random.nextBoolean() ? "c" : "bc";
+				out.append("{" + tag + ":" + COLORS[random.nextInt(COLORS.length)] + "}" + word + "{" + tag + "}");
+			} else if (random.nextDouble() < formattingDensity) {
+				String indicator = FORMATTING_INDICATORS[random.nextInt(FORMATTING_INDICATORS.length)];
+				out.append(indicator + word + indicator);
+			} else {
+				out.append(word);
+			}
+		}
+	}
+
+	private String nextWord(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+}
@@ -0,0 +1,61 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.logic.BMFormattingParser;
+
+/**
+ * benchmark of the inline formatting (bold, italic, colors, ...) of all text lines of a document
+ *
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BMFormattingBenchmark {
+	@Param({BMCorpus.README, BMCorpus.DOCUMENTATION, BMCorpus.SYNTHETIC_4K, BMCorpus.SYNTHETIC_64K})
+	public String document;
+
+	/** the escaped lines of the document as the formatting parser receives them */
+	private List<String> lines;
+	private BMFormattingParser formattingParser;
+
+	@Setup
+	public void setUp() throws Exception {
+		lines = new ArrayList<String>();
+		for (String i: BMUtil.escape(BMCorpus.readDocument(document)).split("\n")) {
+			if (!i.trim().isEmpty()) {
+				lines.add(i);
+			}
+		}
+		formattingParser = new BMFormattingParser();
+	}
+
+	@Benchmark
+	public void createFormattedSections(Blackhole blackhole) {
+		for (String i: lines) {
+			blackhole.consume(formattingParser.createFormattedSections(i));
+		}
+	}
+
+}
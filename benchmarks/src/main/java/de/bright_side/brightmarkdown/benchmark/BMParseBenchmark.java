@@ -0,0 +1,86 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.bright_side.brightmarkdown.BrightMarkdown;
+import de.bright_side.brightmarkdown.BrightMarkdown.FormattingItem;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.logic.BMHtmlCreator;
+import de.bright_side.brightmarkdown.logic.BMSectionParserLogic;
+import de.bright_side.brightmarkdown.model.BMSection;
+
+/**
+ * benchmarks of the phases of creating HTML from a whole document: escaping, parsing, serializing the parsed sections and all of them together
+ *
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BMParseBenchmark {
+	@Param({BMCorpus.README, BMCorpus.DOCUMENTATION, BMCorpus.SYNTHETIC_4K, BMCorpus.SYNTHETIC_64K, BMCorpus.SYNTHETIC_256K})
+	public String document;
+
+	private String text;
+	private String escapedText;
+	private BMSection parsedSection;
+	private BMHtmlCreator htmlCreator;
+	private BrightMarkdown brightMarkdown;
+
+	@Setup
+	public void setUp() throws Exception {
+		text = BMCorpus.readDocument(document);
+		escapedText = BMUtil.escape(text);
+		parsedSection = new BMSectionParserLogic().parseAll(text);
+		htmlCreator = new BMHtmlCreator(new EnumMap<FormattingItem, Integer>(FormattingItem.class));
+		brightMarkdown = new BrightMarkdown();
+	}
+
+	@Benchmark
+	public String escape() {
+		return BMUtil.escape(text);
+	}
+
+	@Benchmark
+	public String unescape() {
+		return BMUtil.unescape(escapedText);
+	}
+
+	@Benchmark
+	public BMSection parseAll() {
+		//: a parser keeps the warnings of a call and is therefore created for each call
+		return new BMSectionParserLogic().parseAll(text);
+	}
+
+	/**
+	 * creates the HTML from sections which have been parsed once in the setup, since toHTML does not change the sections
+	 */
+	@Benchmark
+	public String toHTML() throws Exception {
+		return htmlCreator.toHTML(parsedSection, OutputType.FULL_HTML_DOCUMENT);
+	}
+
+	@Benchmark
+	public String createHTML() throws Exception {
+		return brightMarkdown.createHTML(text, OutputType.FULL_HTML_DOCUMENT);
+	}
+
+}
@@ -0,0 +1,93 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.bright_side.brightmarkdown.BrightMarkdown;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+
+/**
+ * measures the time to create HTML from generated documents (see BMCorpusGenerator) where a single dimension of the document grows with the scale
+ * while all other dimensions stay small. If the time per document of a dimension grows much faster than the scale, e.g. by a factor of 100 from 
+ * scale 10 to 100, the processing of that dimension is quadratic. Note that the text of a list grows quadratically with its depth, because the
+ * items of deeper levels have more markers or more indentation.
+ *
+ * @author Philip Heyse
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BMScalingBenchmark {
+	public static final String PARAGRAPHS = "paragraphs";
+	public static final String PARAGRAPH_LINES = "paragraphLines";
+	public static final String LIST_DEPTH = "listDepth";
+	public static final String TABLE_CELLS = "tableCells";
+	public static final String CODE_BLOCKS = "codeBlocks";
+	public static final String LINKS_AND_IMAGES = "linksAndImages";
+	public static final String COLORS = "colors";
+	private static final long SEED = 1;
+	private static final int TABLE_COLUMN_COUNT = 10;
+
+	@Param({PARAGRAPHS, PARAGRAPH_LINES, LIST_DEPTH, TABLE_CELLS, CODE_BLOCKS, LINKS_AND_IMAGES, COLORS})
+	public String dimension;
+
+	@Param({"1", "10", "100", "1000"})
+	public int scale;
+
+	private String text;
+	private BrightMarkdown brightMarkdown;
+
+	@Setup
+	public void setUp() throws Exception {
+		text = createGenerator(dimension, scale).generate();
+		brightMarkdown = new BrightMarkdown();
+	}
+
+	/**
+	 * @return generator for a small document in which the given dimension grows with the scale. The densities are scaled by making the text longer
+	 * in which a fixed share of the words is a link, an image or a color tag
+	 */
+	public static BMCorpusGenerator createGenerator(String dimension, int scale) {
+		BMCorpusGenerator.Builder builder = BMCorpusGenerator.builder().setSeed(SEED).setParagraphCount(1).setListCount(1).setListDepth(1)
+				.setTableCount(1).setTableRowCount(1).setCodeBlocksPerLanguage(0).setLinkDensity(0).setImageDensity(0).setColorDensity(0);
+		if (PARAGRAPHS.equals(dimension)) {
+			builder.setParagraphCount(scale);
+		} else if (PARAGRAPH_LINES.equals(dimension)) {
+			builder.setParagraphLineCount(scale);
+		} else if (LIST_DEPTH.equals(dimension)) {
+			builder.setListDepth(scale);
+		} else if (TABLE_CELLS.equals(dimension)) {
+			builder.setTableRowCount(scale).setTableColumnCount(TABLE_COLUMN_COUNT);
+		} else if (CODE_BLOCKS.equals(dimension)) {
+			builder.setCodeBlocksPerLanguage(scale);
+		} else if (LINKS_AND_IMAGES.equals(dimension)) {
+			builder.setParagraphLineCount(scale).setLinkDensity(0.2).setImageDensity(0.1);
+		} else if (COLORS.equals(dimension)) {
+			builder.setParagraphLineCount(scale).setColorDensity(0.3);
+		} else {
+			throw new IllegalArgumentException("Unknown dimension: " + dimension);
+		}
+		return builder.build();
+	}
+
+	@Benchmark
+	public String createHTML() throws Exception {
+		return brightMarkdown.createHTML(text, OutputType.FULL_HTML_DOCUMENT);
+	}
+
+}
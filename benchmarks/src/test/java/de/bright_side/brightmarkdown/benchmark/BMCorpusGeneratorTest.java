@@ -0,0 +1,63 @@
+package de.bright_side.brightmarkdown.benchmark;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.logic.BMDefaultCodeFormatCreator;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
+
+public class BMCorpusGeneratorTest {
+
+	private int countOccurrences(String text, String searchText) {
+		int result = 0;
+		int pos = text.indexOf(searchText);
+		while (pos >= 0) {
+			result ++;
+			pos = text.indexOf(searchText, pos + searchText.length());
+		}
+		return result;
+	}
+
+	@Test
+	public void generate_sameSeedSameDocument() throws Exception {
+		assertEquals(BMCorpusGenerator.builder().setSeed(42).build().generate(), BMCorpusGenerator.builder().setSeed(42).build().generate());
+		assertNotEquals(BMCorpusGenerator.builder().setSeed(42).build().generate(), BMCorpusGenerator.builder().setSeed(43).build().generate());
+	}
+
+	@Test
+	public void generate_shapeOfDocument() throws Exception {
+		int languageCount = new BMDefaultCodeFormatCreator().createCodeFormats().size() - 1;
+		String text = BMCorpusGenerator.builder().setParagraphCount(7).setListCount(2).setListDepth(4).setListItemsPerLevel(2).setTableCount(3)
+				.setTableRowCount(5).setTableColumnCount(4).setCodeBlocksPerLanguage(2).setLinkDensity(0).setImageDensity(0).setColorDensity(0)
+				.setFormattingDensity(0).setTableOfContents(false).build().generate();
+		BMHtmlResult result = new BrightMarkdown().createHTMLResult(text, OutputType.EMBEDDABLE_HTML_CODE);
+		String html = result.getHtml();
+
+		assertEquals(0, result.getDiagnostics().getWarningCount());
+		assertEquals(3, countOccurrences(html, "<table"));
+		assertEquals(3 * 6, countOccurrences(html, "<tr"));
+		assertEquals(3 * 6 * 4, countOccurrences(html, "<td") + countOccurrences(html, "<th"));
+		assertEquals(2 * 4 * 2, countOccurrences(html, "<li"));
+		//: a bullet point list and a numbered list, each with a nested list for all levels below the first one
+		assertEquals(4, countOccurrences(html, "<ul"));
+		assertEquals(4, countOccurrences(html, "<ol"));
+		assertEquals(2 * languageCount, countOccurrences(text, "```") / 2);
+		assertEquals(0, countOccurrences(html, "<a "));
+	}
+
+	@Test
+	public void generate_densities() throws Exception {
+		String text = BMCorpusGenerator.builder().setParagraphCount(50).setLinkDensity(0.5).setImageDensity(0).setColorDensity(0).setFormattingDensity(0)
+				.setCodeBlocksPerLanguage(0).setTableCount(0).setListCount(0).setTableOfContents(false).build().generate();
+		String html = new BrightMarkdown().createHTML(text, OutputType.EMBEDDABLE_HTML_CODE);
+		//: about half of the words after the first one of each line are links
+		int links = countOccurrences(html, "<a ");
+		int words = 50 * 3 * 9;
+		assertEquals(words / 2.0, links, words / 10.0);
+	}
+
+}
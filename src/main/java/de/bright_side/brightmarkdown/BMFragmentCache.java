@@ -0,0 +1,96 @@
+package de.bright_side.brightmarkdown;
+
+import de.bright_side.brightmarkdown.base.BMLruCache;
+import de.bright_side.brightmarkdown.logic.BMHtmlFragment;
+import de.bright_side.brightmarkdown.model.BMWarning;
+
+/**
+ * cache for the HTML of single top level blocks (paragraph, list, table, code block, heading, ...) which may be passed to 
+ * BrightMarkdown.Builder.setFragmentCache. In contrast to the BMRenderCache, a document that has been changed is not created completely again: 
+ * only the blocks which have been changed are parsed and turned into HTML while the HTML of all other blocks is taken from the cache.
+ * A block is found by a hash of its text, the output type, the configuration of the BrightMarkdown instance and the indentation state
+ * at which its HTML starts, so the same cache may be used by instances with different configurations. Like the BMRenderCache the cache is split 
+ * into segments and the entries that have not been used for the longest time are removed if a segment is full.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMFragmentCache {
+	private static final int DEFAULT_SEGMENT_COUNT = 16;
+	/** estimated number of bytes for the key, the map entry, the fragment and the serializer state of an entry in addition to the text */
+	private static final long ENTRY_OVERHEAD_IN_BYTES = 250;
+
+	private final BMLruCache<BMHtmlFragment> cache;
+
+	/**
+	 * @param maxBytes maximum estimated number of bytes of all cached entries
+	 */
+	public BMFragmentCache(long maxBytes) {
+		this(maxBytes, DEFAULT_SEGMENT_COUNT);
+	}
+
+	/**
+	 * @param maxBytes maximum estimated number of bytes of all cached entries
+	 * @param segmentCount number of segments that may be accessed at the same time
+	 */
+	public BMFragmentCache(long maxBytes, int segmentCount) {
+		cache = new BMLruCache<BMHtmlFragment>(maxBytes, segmentCount, new BMLruCache.SizeEstimator<BMHtmlFragment>() {
+			@Override
+			public long estimateSizeInBytes(BMHtmlFragment value) {
+				long chars = value.getHtml().length();
+				for (BMWarning i: value.getDiagnostics().getWarnings()) {
+					chars += i.getMessage().length();
+				}
+				return ENTRY_OVERHEAD_IN_BYTES + 2 * chars;
+			}
+		});
+	}
+
+	BMLruCache<BMHtmlFragment> getStore() {
+		return cache;
+	}
+
+	/**
+	 * @return number of blocks whose HTML has been taken from the cache
+	 */
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	/**
+	 * @return number of blocks which have been parsed and turned into HTML because they were not found in the cache
+	 */
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * @return number of entries that have been removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	public int getEntryCount() {
+		return cache.getEntryCount();
+	}
+
+	/**
+	 * @return estimated number of bytes of all cached entries
+	 */
+	public long getRetainedBytes() {
+		return cache.getRetainedBytes();
+	}
+
+	public long getMaxBytes() {
+		return cache.getMaxBytes();
+	}
+
+	/**
+	 * removes all entries. The counters are kept
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.bright_side.brightmarkdown;
+
+import de.bright_side.brightmarkdown.logic.BMParsedText;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+import de.bright_side.brightmarkdown.model.BMSection;
+
+/**
+ * parsed markdown text which is created by BrightMarkdown.parse and may be passed to BrightMarkdown.parse together with an edit of the text, 
+ * so that only the blocks around the edit are parsed again (see BrightMarkdown.parse(BMParseResult, BMEdit)). The sections of a result are shared 
+ * with the results of later edits and must therefore not be changed.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMParseResult {
+	private final BrightMarkdown brightMarkdown;
+	private final String text;
+	private final BMParsedText parsedText;
+	/** false if the blocks of the result must not be taken for the next edit, because the text starts with BMConstants.NO_MARKDOWN_MARK */
+	private final boolean reusable;
+
+	BMParseResult(BrightMarkdown brightMarkdown, String text, BMParsedText parsedText, boolean reusable) {
+		this.brightMarkdown = brightMarkdown;
+		this.text = text;
+		this.parsedText = parsedText;
+		this.reusable = reusable;
+	}
+
+	/**
+	 * @return the markdown text
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return root section whose children are the parsed top level sections of the text
+	 */
+	public BMSection getSection() {
+		return parsedText.getTopSection();
+	}
+
+	/**
+	 * @return the warnings that occurred while parsing the text including the ones of the blocks which have been taken from the previous result
+	 */
+	public BMDiagnostics getDiagnostics() {
+		return parsedText.getDiagnostics();
+	}
+
+	public int getBlockCount() {
+		return parsedText.getBlockCount();
+	}
+
+	/**
+	 * @return number of blocks which have been parsed when this result was created. The other blocks have been taken from the previous result
+	 */
+	public int getParsedBlockCount() {
+		return parsedText.getParsedBlockCount();
+	}
+
+	BrightMarkdown getBrightMarkdown() {
+		return brightMarkdown;
+	}
+
+	BMParsedText getParsedText() {
+		return parsedText;
+	}
+
+	boolean isReusable() {
+		return reusable;
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.bright_side.brightmarkdown;
+
+import de.bright_side.brightmarkdown.base.BMContentHash;
+import de.bright_side.brightmarkdown.base.BMLruCache;
+import de.bright_side.brightmarkdown.base.BMSingleFlight;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
+import de.bright_side.brightmarkdown.model.BMWarning;
+
+/**
+ * cache for created HTML which may be passed to BrightMarkdown.Builder.setRenderCache. The HTML is found by a hash of the markdown text, the output type
+ * and the configuration of the BrightMarkdown instance, so the same cache may be used by instances with different configurations.
+ * The cache is split into segments which each have their own lock and an equal share of the maximum size. If a segment is full, the entries that have
+ * not been used for the longest time are removed. An entry which is larger than the share of a segment is not cached.
+ * Calls that miss the same entry at the same time are coalesced: only one of them creates the HTML and the others wait for its result.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMRenderCache {
+	private static final int DEFAULT_SEGMENT_COUNT = 16;
+	/** estimated number of bytes for the key, the map entry and the result object of an entry in addition to the text */
+	private static final long ENTRY_OVERHEAD_IN_BYTES = 200;
+
+	private final BMLruCache<BMHtmlResult> cache;
+	private final BMSingleFlight<BMContentHash, BMHtmlResult> singleFlight = new BMSingleFlight<BMContentHash, BMHtmlResult>();
+
+	/**
+	 * @param maxBytes maximum estimated number of bytes of all cached entries
+	 */
+	public BMRenderCache(long maxBytes) {
+		this(maxBytes, DEFAULT_SEGMENT_COUNT);
+	}
+
+	/**
+	 * @param maxBytes maximum estimated number of bytes of all cached entries
+	 * @param segmentCount number of segments that may be accessed at the same time
+	 */
+	public BMRenderCache(long maxBytes, int segmentCount) {
+		cache = new BMLruCache<BMHtmlResult>(maxBytes, segmentCount, new BMLruCache.SizeEstimator<BMHtmlResult>() {
+			@Override
+			public long estimateSizeInBytes(BMHtmlResult value) {
+				long chars = value.getHtml().length();
+				for (BMWarning i: value.getDiagnostics().getWarnings()) {
+					chars += i.getMessage().length();
+				}
+				return ENTRY_OVERHEAD_IN_BYTES + 2 * chars;
+			}
+		});
+	}
+
+	/**
+	 * @return the cached result or null if there is none. The hit or miss is counted
+	 */
+	BMHtmlResult get(BMContentHash key) {
+		return cache.get(key);
+	}
+
+	/**
+	 * @return the cached result or null if there is none without counting a hit or miss
+	 */
+	BMHtmlResult peek(BMContentHash key) {
+		return cache.peek(key);
+	}
+
+	void put(BMContentHash key, BMHtmlResult result) {
+		cache.put(key, result);
+	}
+
+	BMSingleFlight<BMContentHash, BMHtmlResult> getSingleFlight() {
+		return singleFlight;
+	}
+
+	public long getHitCount() {
+		return cache.getHitCount();
+	}
+
+	public long getMissCount() {
+		return cache.getMissCount();
+	}
+
+	/**
+	 * @return number of misses that did not create the HTML themselves but waited for a call with the same key that was creating it at the same time
+	 */
+	public long getCoalescedCount() {
+		return singleFlight.getCoalescedCount();
+	}
+
+	/**
+	 * @return number of entries that have been removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return cache.getEvictionCount();
+	}
+
+	public int getEntryCount() {
+		return cache.getEntryCount();
+	}
+
+	/**
+	 * @return estimated number of bytes of all cached entries
+	 */
+	public long getRetainedBytes() {
+		return cache.getRetainedBytes();
+	}
+
+	public long getMaxBytes() {
+		return cache.getMaxBytes();
+	}
+
+	/**
+	 * removes all entries. The counters are kept
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+}
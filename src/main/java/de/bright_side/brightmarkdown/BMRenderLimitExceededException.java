@@ -0,0 +1,37 @@
+package de.bright_side.brightmarkdown;
+
+/**
+ * thrown if a call of BrightMarkdown exceeds one of its BMRenderLimits. The call stops as soon as the limit is found to be exceeded.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMRenderLimitExceededException extends RuntimeException {
+	private static final long serialVersionUID = 4172390958135624817L;
+
+	public static enum Limit {INPUT_CHARS, NODES, DEPTH, OUTPUT_CHARS, DURATION_IN_MILLIS}
+
+	private final Limit limit;
+	private final long maxValue;
+
+	public BMRenderLimitExceededException(Limit limit, long maxValue) {
+		super("The limit " + limit + " = " + maxValue + " has been exceeded");
+		this.limit = limit;
+		this.maxValue = maxValue;
+	}
+
+	/**
+	 * @return the limit which has been exceeded
+	 */
+	public Limit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * @return the value of the limit which has been exceeded
+	 */
+	public long getMaxValue() {
+		return maxValue;
+	}
+
+}
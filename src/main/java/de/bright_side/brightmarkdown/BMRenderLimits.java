@@ -0,0 +1,122 @@
+package de.bright_side.brightmarkdown;
+
+/**
+ * limits for each call of a BrightMarkdown instance which may be passed to BrightMarkdown.Builder.setRenderLimits, e.g. when text from users is
+ * rendered, so that a single document cannot use up a thread. If a limit is exceeded, the call stops with a BMRenderLimitExceededException.
+ * The limits are checked at points where the work is already done anyway (the length of the input and output, the parsed sections of each block
+ * and the steps between the phases and blocks), so that checking them costs little. All limits are unlimited by default.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMRenderLimits {
+	/** limits which are all unlimited */
+	public static final BMRenderLimits NONE = builder().build();
+
+	private final long maxInputChars;
+	private final long maxNodes;
+	private final int maxDepth;
+	private final long maxOutputChars;
+	private final long maxDurationInMillis;
+
+	public static class Builder {
+		private long maxInputChars = Long.MAX_VALUE;
+		private long maxNodes = Long.MAX_VALUE;
+		private int maxDepth = Integer.MAX_VALUE;
+		private long maxOutputChars = Long.MAX_VALUE;
+		private long maxDurationInMillis = Long.MAX_VALUE;
+
+		private Builder() {
+		}
+
+		/**
+		 * @param maxInputChars maximum length of the markdown text. Streamed text is counted while it is read
+		 * @return this builder
+		 */
+		public Builder setMaxInputChars(long maxInputChars) {
+			this.maxInputChars = maxInputChars;
+			return this;
+		}
+
+		/**
+		 * @param maxNodes maximum number of sections (lines, paragraphs, list items, links, formatted texts, tokens of code blocks, ...) of the parsed text.
+		 * The sections are already counted after the lines have been classified, so that the paragraphs, links and formatting of a text with too many lines
+		 * are not parsed
+		 * @return this builder
+		 */
+		public Builder setMaxNodes(long maxNodes) {
+			this.maxNodes = maxNodes;
+			return this;
+		}
+
+		/**
+		 * @param maxDepth maximum nesting depth of the parsed sections. A list item is nested as deep as its level, because each level is a nested list in the HTML
+		 * @return this builder
+		 */
+		public Builder setMaxDepth(int maxDepth) {
+			this.maxDepth = maxDepth;
+			return this;
+		}
+
+		/**
+		 * @param maxOutputChars maximum length of the created HTML. The HTML is counted while it is written
+		 * @return this builder
+		 */
+		public Builder setMaxOutputChars(long maxOutputChars) {
+			this.maxOutputChars = maxOutputChars;
+			return this;
+		}
+
+		/**
+		 * @param maxDurationInMillis maximum time of a call from its start. It is checked between the steps of parsing, the parsed sections and the top level blocks
+		 * @return this builder
+		 */
+		public Builder setMaxDurationInMillis(long maxDurationInMillis) {
+			this.maxDurationInMillis = maxDurationInMillis;
+			return this;
+		}
+
+		public BMRenderLimits build() {
+			return new BMRenderLimits(this);
+		}
+	}
+
+	private BMRenderLimits(Builder builder) {
+		maxInputChars = builder.maxInputChars;
+		maxNodes = builder.maxNodes;
+		maxDepth = builder.maxDepth;
+		maxOutputChars = builder.maxOutputChars;
+		maxDurationInMillis = builder.maxDurationInMillis;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public long getMaxInputChars() {
+		return maxInputChars;
+	}
+
+	public long getMaxNodes() {
+		return maxNodes;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public long getMaxOutputChars() {
+		return maxOutputChars;
+	}
+
+	public long getMaxDurationInMillis() {
+		return maxDurationInMillis;
+	}
+
+	@Override
+	public String toString() {
+		return "BMRenderLimits [maxInputChars=" + maxInputChars + ", maxNodes=" + maxNodes + ", maxDepth=" + maxDepth + ", maxOutputChars=" + maxOutputChars
+				+ ", maxDurationInMillis=" + maxDurationInMillis + "]";
+	}
+
+}
@@ -1,18 +1,65 @@
 package de.bright_side.brightmarkdown;
 
+import java.io.BufferedWriter;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException.Limit;
 import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMContentHash;
+import de.bright_side.brightmarkdown.base.BMParallelTasks;
+import de.bright_side.brightmarkdown.base.BMSingleFlight;
+import de.bright_side.brightmarkdown.base.BMTextReader;
 import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.logic.BMBlockStreamParser;
 import de.bright_side.brightmarkdown.logic.BMDocumentationCreator;
 import de.bright_side.brightmarkdown.logic.BMHtmlCreator;
+import de.bright_side.brightmarkdown.logic.BMIncrementalParser;
+import de.bright_side.brightmarkdown.logic.BMParallelSectionParser;
+import de.bright_side.brightmarkdown.logic.BMRenderContext;
 import de.bright_side.brightmarkdown.logic.BMSectionParserLogic;
+import de.bright_side.brightmarkdown.model.BMBatchCallback;
+import de.bright_side.brightmarkdown.model.BMBatchItem;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+import de.bright_side.brightmarkdown.model.BMEdit;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
+import de.bright_side.brightmarkdown.model.BMPhaseListener;
 import de.bright_side.brightmarkdown.model.BMSection;
 import de.bright_side.brightmarkdown.model.BMSection.MDType;
 
 /**
+ * converts markdown text to HTML.
+ * <p>
+ * The time to create the HTML grows linearly with the length of the text and of the HTML, also for input that is not well-formed such as many
+ * unclosed brackets, parentheses or color tags, long runs of formatting markers, unterminated code blocks or many headings
+ * or tables of contents: no step of the parsing searches the rest of the text again for each marker it finds.
+ * The HTML grows linearly with the text as well except for a text with many tables of contents and many headings: each table of contents 
+ * lists all headings, so a table of contents for each heading creates HTML which grows quadratically with the length of the text.
+ * Texts from users may therefore be rendered without limiting the markup they contain as long as the length of the HTML is limited 
+ * (see BMRenderLimits.Builder.setMaxOutputChars), which is checked before the nodes of each table of contents are created.
  * 
  * @author Philip Heyse
  * @version 1.6.0
@@ -21,12 +68,196 @@ import de.bright_side.brightmarkdown.model.BMSection.MDType;
 public class BrightMarkdown {
 	public static enum FormattingItem {H1, H2, H3, H4, H5, H6}
 	public static enum OutputType {FULL_HTML_DOCUMENT, EMBEDDABLE_HTML_CODE}
-	private Map<FormattingItem, Integer> fontSizesInMM = new EnumMap<>(FormattingItem.class);
-	private Map<String, String> imageNameToPathMap = new TreeMap<String, String>();
-
-	private BMSectionParserLogic sectionParser = new BMSectionParserLogic();
+	/** capacity up to which the output buffer of a batch thread is kept for the next item */
+	private static final int MAX_KEPT_BATCH_BUFFER_CAPACITY = 1024 * 1024;
+	/** only replaced by the deprecated setters */
+	private volatile Map<FormattingItem, Integer> fontSizesInMM;
+	/** only replaced by the deprecated setters */
+	private volatile Map<String, String> imageNameToPathMap;
+	private final Map<String, BMCodeFormat> codeFormats;
+	private final int maxWarnings;
+	private final BMRenderCache renderCache;
+	private final BMFragmentCache fragmentCache;
+	/** executor on which the regions of large texts are parsed in parallel or null if texts are parsed on the calling thread only */
+	private final Executor parseExecutor;
+	/** limits of each call which do not change the created HTML but whether it is created */
+	private final BMRenderLimits renderLimits;
+	/** receives the phases of each call or null if they are not reported */
+	private final BMPhaseListener phaseListener;
+	/** coalesces calls with the same text and configuration that run at the same time or null if calls are not coalesced */
+	private final BMSingleFlight<BMContentHash, BMHtmlResult> singleFlight;
+	/** hash of the render limits which is part of the key of the single flight */
+	private final byte[] renderLimitsHash;
+	/** hash of the configuration which is part of the cache key, so that instances with different configurations may share a cache */
+	private volatile byte[] configurationHash;
+	
+	/**
+	 * configuration of a BrightMarkdown instance. The builder may be used to build several instances, which do not change when the 
+	 * builder is changed afterwards.
+	 */
+	public static class Builder {
+		private Map<FormattingItem, Integer> fontSizesInMM = new EnumMap<>(FormattingItem.class);
+		private Map<String, String> imageNameToPathMap = new TreeMap<String, String>();
+		private Map<String, BMCodeFormat> codeFormats = new TreeMap<String, BMCodeFormat>(BMConstants.CODE_FORMATS);
+		private int maxWarnings = BMConstants.DEFAULT_MAX_WARNINGS;
+		private BMRenderCache renderCache = null;
+		private BMFragmentCache fragmentCache = null;
+		private boolean coalesceRenders = false;
+		private Executor parseExecutor = null;
+		private BMRenderLimits renderLimits = BMRenderLimits.NONE;
+		private BMPhaseListener phaseListener = null;
+		
+		private Builder() {
+		}
+		
+		public Builder setFontSizeInMM(FormattingItem formattingItem, int sizeInMM){
+			fontSizesInMM.put(formattingItem, sizeInMM);
+			return this;
+		}
+		
+		/**
+		 * via mappings the location text is mapped from given parameter 'name' to given parameter 'path'.
+		 * E.g. a mapping "img1" to "/image/image_1234_large.jpg" could be added and then the image tag
+		 * "...!(My Image One)[img1]..." in the markdown text would be mapped to "...!(My Image One)[/image/image_1234_large.jpg]..."
+		 * @param name name of the image
+		 * @param path path with which the image name should be replaced
+		 * @return this builder
+		 */
+		public Builder addImageNameToPathMapping(String name, String path) {
+			imageNameToPathMap.put(name, path);
+			return this;
+		}
+		
+		/**
+		 * adds a format for code blocks or replaces the default format with the same name
+		 * @param name name of the format as written after the code block mark, e.g. "java" in "```java". The name is not case sensitive. 
+		 * The format with the name "" is used for code blocks without a (known) format name
+		 * @param format the format which must not be changed after the BrightMarkdown instance has been built
+		 * @return this builder
+		 */
+		public Builder addCodeFormat(String name, BMCodeFormat format) {
+			codeFormats.put(name.toLowerCase(), format);
+			return this;
+		}
+		
+		/**
+		 * @param maxWarnings maximum number of warnings that are kept in the diagnostics of a call. Further warnings are only counted
+		 * @return this builder
+		 */
+		public Builder setMaxWarnings(int maxWarnings) {
+			this.maxWarnings = maxWarnings;
+			return this;
+		}
+		
+		/**
+		 * @param renderCache cache for the HTML that is created from text (not for streamHTML) or null for no cache. The cache may be shared by several instances.
+		 * Calls that miss the same entry at the same time are always coalesced if they have the same render limits (see setCoalesceRenders)
+		 * @return this builder
+		 */
+		public Builder setRenderCache(BMRenderCache renderCache) {
+			this.renderCache = renderCache;
+			return this;
+		}
+		
+		/**
+		 * @param fragmentCache cache for the HTML of the single top level blocks of the text (not for streamHTML) or null for no cache, 
+		 * so that a changed text is created by only parsing the blocks which have been changed. The cache may be shared by several instances.
+		 * @return this builder
+		 */
+		public Builder setFragmentCache(BMFragmentCache fragmentCache) {
+			this.fragmentCache = fragmentCache;
+			return this;
+		}
+		
+		/**
+		 * @param coalesceRenders true if calls that create HTML from the same text (not via streamHTML) at the same time should wait for the first of 
+		 * them and share its result instead of doing the same work again. Only calls with the same render limits are coalesced and a call waits at most
+		 * for its own maximum duration
+		 * @return this builder
+		 */
+		public Builder setCoalesceRenders(boolean coalesceRenders) {
+			this.coalesceRenders = coalesceRenders;
+			return this;
+		}
+		
+		/**
+		 * @param parseExecutor executor, e.g. ForkJoinPool.commonPool(), on which large texts are parsed in parallel or null to parse texts on the calling 
+		 * thread only. The text is split into regions at the boundaries of paragraphs, lists, tables and code blocks, which are parsed at the same time.
+		 * The calling thread parses regions as well, so the executor may be busy or be the pool of the calling thread. The HTML is the same as without executor
+		 * @return this builder
+		 */
+		public Builder setParseExecutor(Executor parseExecutor) {
+			this.parseExecutor = parseExecutor;
+			return this;
+		}
+		
+		/**
+		 * @param renderLimits limits of each call, e.g. for text from users, or null for no limits. If a limit is exceeded, the call stops with a 
+		 * BMRenderLimitExceededException. The limits are not part of the key of the render and fragment cache, because they do not change the HTML
+		 * @return this builder
+		 */
+		public Builder setRenderLimits(BMRenderLimits renderLimits) {
+			this.renderLimits = (renderLimits == null) ? BMRenderLimits.NONE : renderLimits;
+			return this;
+		}
+		
+		/**
+		 * @param phaseListener receives the start and end of each phase of parsing and creating the HTML together with its duration and sizes, 
+		 * or null if the phases should not be measured. The listener is not called for results that are taken from the render or fragment cache
+		 * @return this builder
+		 */
+		public Builder setPhaseListener(BMPhaseListener phaseListener) {
+			this.phaseListener = phaseListener;
+			return this;
+		}
+		
+		public BrightMarkdown build() {
+			return new BrightMarkdown(this);
+		}
+	}
 	
+	/**
+	 * creates an instance with the default configuration. See builder() for other configurations
+	 */
 	public BrightMarkdown() {
+		this(new Builder());
+	}
+	
+	private BrightMarkdown(Builder builder) {
+		fontSizesInMM = Collections.unmodifiableMap(new EnumMap<>(builder.fontSizesInMM));
+		imageNameToPathMap = Collections.unmodifiableMap(new TreeMap<String, String>(builder.imageNameToPathMap));
+		codeFormats = Collections.unmodifiableMap(new TreeMap<String, BMCodeFormat>(builder.codeFormats));
+		maxWarnings = builder.maxWarnings;
+		renderCache = builder.renderCache;
+		fragmentCache = builder.fragmentCache;
+		parseExecutor = builder.parseExecutor;
+		renderLimits = builder.renderLimits;
+		phaseListener = builder.phaseListener;
+		if (renderCache != null) {
+			singleFlight = renderCache.getSingleFlight();
+		} else if (builder.coalesceRenders) {
+			singleFlight = new BMSingleFlight<BMContentHash, BMHtmlResult>();
+		} else {
+			singleFlight = null;
+		}
+		configurationHash = createConfigurationHash();
+		renderLimitsHash = BMContentHash.create(renderLimits.toString()).toByteArray();
+	}
+	
+	private byte[] createConfigurationHash() {
+		if ((singleFlight == null) && (fragmentCache == null)) {
+			return null;
+		}
+		return BMContentHash.create(describeConfiguration()).toByteArray();
+	}
+	
+	/**
+	 * a BrightMarkdown instance is not changed after it has been built (unless the deprecated setters are called) and keeps the state of each call 
+	 * separately, so a single instance may be used by any number of threads at the same time
+	 * @return builder for the configuration of a new instance
+	 */
+	public static Builder builder() {
+		return new Builder();
 	}
 
 	public String createHTML(String markdownText) throws Exception{
@@ -42,9 +273,454 @@ public class BrightMarkdown {
 	 * @throws Exception thrown if an error occurs
 	 */
 	public String createHTML(String markdownText, OutputType outputType) throws Exception{
-		BMSection section = sectionParser.parseAll(getUseMarkdownText(markdownText));
+		return createHTMLResult(markdownText, outputType).getHtml();
+	}
+
+	/**
+	 * @param markdownText markdown text for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @return generated HTML code together with the warnings that occurred while creating it
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMHtmlResult createHTMLResult(CharSequence markdownText, final OutputType outputType) throws Exception{
+		if (singleFlight == null) {
+			return renderHTMLResult(markdownText, outputType);
+		}
+		final CharSequence useMarkdownText = (markdownText == null) ? "" : markdownText;
+		//: the duration of the call includes hashing the text and waiting for a coalesced call
+		final BMRenderContext context = createContext();
+		//: checked before the text is hashed
+		context.checkInputLength(useMarkdownText.length());
+		final BMContentHash key = BMContentHash.create(useMarkdownText, configurationHash, new byte[] {(byte)outputType.ordinal()});
+		if (renderCache != null) {
+			BMHtmlResult result = renderCache.get(key);
+			if (result != null) {
+				return checkOutputLength(result);
+			}
+		}
+		//: the limits are checked while the HTML is created, so only calls with the same limits are coalesced and a call never gets the
+		//: exception of a call with stricter limits (the single flight may be shared via the render cache by instances with other limits)
+		BMContentHash flightKey = BMContentHash.create("", key.toByteArray(), renderLimitsHash);
+		try {
+			return checkOutputLength(singleFlight.execute(flightKey, new Callable<BMHtmlResult>() {
+				@Override
+				public BMHtmlResult call() throws Exception {
+					return renderAndCacheHTMLResult(key, useMarkdownText, outputType, context);
+				}
+			}, context.getRemainingNanos()));
+		} catch (TimeoutException e) {
+			//: the coalesced call takes longer than the remaining duration of this call
+			throw new BMRenderLimitExceededException(Limit.DURATION_IN_MILLIS, renderLimits.getMaxDurationInMillis());
+		}
+	}
+	
+	/**
+	 * @return the given result which may have been created by another instance with other limits that share the same cache
+	 */
+	private BMHtmlResult checkOutputLength(BMHtmlResult result) {
+		createContext().checkOutputLength(result.getHtml().length());
+		return result;
+	}
+	
+	private BMHtmlResult renderAndCacheHTMLResult(BMContentHash key, CharSequence markdownText, OutputType outputType, BMRenderContext context) throws Exception{
+		if (renderCache == null) {
+			return renderHTMLResult(markdownText, outputType, new StringBuilder(), context);
+		}
+		//: a call with the same key may have put its result into the cache after the lookup of this call
+		BMHtmlResult result = renderCache.peek(key);
+		if (result == null) {
+			result = renderHTMLResult(markdownText, outputType, new StringBuilder(), context);
+			renderCache.put(key, result);
+		}
+		return result;
+	}
+	
+	private BMHtmlResult renderHTMLResult(CharSequence markdownText, OutputType outputType) throws Exception{
+		return renderHTMLResult(markdownText, outputType, new StringBuilder(), createContext());
+	}
+	
+	/**
+	 * @param buffer empty buffer for the HTML which is filled by this call
+	 */
+	private BMHtmlResult renderHTMLResult(CharSequence markdownText, OutputType outputType, StringBuilder buffer, BMRenderContext context) throws Exception{
+		BMDiagnostics diagnostics = writeHTML(markdownText, outputType, buffer, context);
+		return new BMHtmlResult(buffer.toString(), diagnostics);
+	}
+	
+	/**
+	 * see createHTMLAsync(CharSequence, OutputType, Executor). The HTML is created on ForkJoinPool.commonPool()
+	 * @param markdownText markdown text for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @return future for the generated HTML code
+	 */
+	public CompletableFuture<String> createHTMLAsync(CharSequence markdownText, OutputType outputType) {
+		return createHTMLAsync(markdownText, outputType, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * creates the HTML on the given executor, e.g. Executors.newVirtualThreadPerTaskExecutor(). The call does not block a carrier thread by 
+	 * synchronized code while it waits and keeps no state per thread. If the future is cancelled (or completed otherwise) before the HTML is complete, 
+	 * the creation stops at the next check between the steps of parsing or between the top level blocks, e.g. when the preview of a text which has 
+	 * been changed again is no longer needed. If calls are cached or coalesced, a call that has started is not stopped because other calls may wait for its result.
+	 * @param markdownText markdown text for which to create HTML. It must not be changed until the future is complete
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param executor executor on which the HTML is created
+	 * @return future for the generated HTML code which is completed exceptionally if an error occurs or the executor rejects the call
+	 */
+	public CompletableFuture<String> createHTMLAsync(final CharSequence markdownText, final OutputType outputType, Executor executor) {
+		final CompletableFuture<String> result = new CompletableFuture<String>();
+		final BooleanSupplier cancelled = new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return result.isDone();
+			}
+		};
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					if (result.isDone()) {
+						return;
+					}
+					try {
+						if (singleFlight != null) {
+							result.complete(createHTMLResult(markdownText, outputType).getHtml());
+						} else {
+							result.complete(renderHTMLResult(markdownText, outputType, new StringBuilder(), createContext(cancelled)).getHtml());
+						}
+					} catch (CancellationException e) {
+						//: the future has already been completed
+						result.cancel(false);
+					} catch (Throwable e) {
+						result.completeExceptionally(e);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+	
+	/**
+	 * creates the HTML of many texts on a pool with the given number of threads which is shut down at the end. 
+	 * See createHTMLBatch(Iterable, OutputType, Executor, int, BMBatchCallback)
+	 * @param items the texts for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param parallelism number of threads including the calling thread which create HTML at the same time
+	 * @param callback receives the result or the failure of each item
+	 * @throws Exception thrown if the callback or the iterator of the items throws an exception
+	 */
+	public void createHTMLBatch(Iterable<BMBatchItem> items, OutputType outputType, int parallelism, BMBatchCallback callback) throws Exception{
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism - 1));
+		try {
+			createHTMLBatch(items, outputType, pool, parallelism, callback);
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * creates the HTML of many texts at the same time with this instance and returns when all items are complete. The items are read one by one from the iterator 
+	 * whenever a thread is free, so the iterable may e.g. read the files lazily and a thread that works on a large text does not hold up the other items.
+	 * Each thread keeps its output buffer from item to item. If an item fails, its exception is passed to the callback and the other items are processed 
+	 * nevertheless. A large text is parsed in parallel as well if a parse executor is configured (see Builder.setParseExecutor)
+	 * @param items the texts for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param executor executor for the threads which create HTML in addition to the calling thread, e.g. ForkJoinPool.commonPool()
+	 * @param parallelism maximum number of threads including the calling thread which create HTML at the same time
+	 * @param callback receives the result or the failure of each item
+	 * @throws Exception thrown if the callback or the iterator of the items throws an exception. The items that have not been started are skipped then
+	 */
+	public void createHTMLBatch(Iterable<BMBatchItem> items, OutputType outputType, Executor executor, int parallelism, BMBatchCallback callback) throws Exception{
+		BatchQueue queue = new BatchQueue(items.iterator());
+		List<BatchWorker> workers = new ArrayList<BatchWorker>();
+		for (int i = 0; i < Math.max(1, parallelism); i++) {
+			workers.add(new BatchWorker(queue, outputType, callback));
+		}
+		BMParallelTasks.runAll(workers, executor, parallelism);
+	}
+	
+	/**
+	 * hands out the items of a batch to the threads one by one
+	 */
+	private static class BatchQueue {
+		private final Iterator<BMBatchItem> items;
+		private final ReentrantLock lock = new ReentrantLock();
+		private volatile boolean stopped = false;
+		
+		BatchQueue(Iterator<BMBatchItem> items) {
+			this.items = items;
+		}
+		
+		/**
+		 * @return the next item or null if all items have been handed out or the batch has been stopped
+		 */
+		BMBatchItem next() {
+			lock.lock();
+			try {
+				if ((stopped) || (!items.hasNext())) {
+					return null;
+				}
+				return items.next();
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		void stop() {
+			stopped = true;
+		}
+	}
+	
+	/**
+	 * creates the HTML of the items of a batch on one thread until there are no more items
+	 */
+	private class BatchWorker implements Callable<Void> {
+		private final BatchQueue queue;
+		private final OutputType outputType;
+		private final BMBatchCallback callback;
+		
+		BatchWorker(BatchQueue queue, OutputType outputType, BMBatchCallback callback) {
+			this.queue = queue;
+			this.outputType = outputType;
+			this.callback = callback;
+		}
+		
+		@Override
+		public Void call() throws Exception {
+			boolean completed = false;
+			try {
+				processItems();
+				completed = true;
+			} finally {
+				//: an exception of the callback stops the other threads as well
+				if (!completed) {
+					queue.stop();
+				}
+			}
+			return null;
+		}
+		
+		private void processItems() throws Exception {
+			StringBuilder buffer = new StringBuilder();
+			BMBatchItem item = queue.next();
+			while (item != null) {
+				BMHtmlResult result = null;
+				Exception failure = null;
+				try {
+					result = createBatchItemResult(item.getMarkdownText(), buffer);
+				} catch (Exception e) {
+					failure = e;
+				}
+				if (failure == null) {
+					callback.onResult(item, result);
+				} else {
+					callback.onFailure(item, failure);
+				}
+				//: a buffer which has grown for a very large text is not kept, so that the thread does not hold the memory until the end of the batch
+				buffer.setLength(0);
+				if (buffer.capacity() > MAX_KEPT_BATCH_BUFFER_CAPACITY) {
+					buffer = new StringBuilder();
+				}
+				item = queue.next();
+			}
+		}
+		
+		private BMHtmlResult createBatchItemResult(CharSequence markdownText, StringBuilder buffer) throws Exception{
+			if (singleFlight != null) {
+				return createHTMLResult(markdownText, outputType);
+			}
+			return renderHTMLResult(markdownText, outputType, buffer, createContext());
+		}
+	}
+
+	/**
+	 * writes the HTML directly to the given output instead of returning it as a string, so that e.g. a servlet response does not need to hold 
+	 * a copy of the whole page. If calls are cached or coalesced, the HTML is created as a string to be shared. The output is not flushed or closed.
+	 * @param markdownText markdown text for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code, e.g. a Writer or a StringBuilder
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics createHTML(CharSequence markdownText, OutputType outputType, Appendable out) throws Exception{
+		if (singleFlight != null) {
+			BMHtmlResult result = createHTMLResult(markdownText, outputType);
+			out.append(result.getHtml());
+			return result.getDiagnostics();
+		}
+		return writeHTML(markdownText, outputType, out);
+	}
+	
+	private BMDiagnostics writeHTML(CharSequence markdownText, OutputType outputType, Appendable out) throws Exception{
+		return writeHTML(markdownText, outputType, out, createContext());
+	}
+	
+	private BMDiagnostics writeHTML(CharSequence markdownText, OutputType outputType, Appendable out, BMRenderContext context) throws Exception{
+		Appendable limitedOut = context.limitOutput(out);
+		BMSectionParserLogic sectionParser = new BMSectionParserLogic(context);
+		if (fragmentCache != null) {
+			context.checkInputLength(getLength(markdownText));
+			BMSection classifiedSection = sectionParser.toClassifiedSections(getUseMarkdownText(markdownText), false);
+			new BMHtmlCreator(fontSizesInMM, context).writeHTMLByBlocks(classifiedSection, context, imageNameToPathMap, fragmentCache.getStore(), configurationHash
+					, outputType, limitedOut);
+			return context.getDiagnostics();
+		}
+		BMSection section = parseAll(getUseMarkdownText(markdownText), context);
 		sectionParser.applyImageNameToPathMapping(section, imageNameToPathMap);
-		return new BMHtmlCreator(fontSizesInMM).toHTML(section, outputType);
+		new BMHtmlCreator(fontSizesInMM, context).writeHTML(section, outputType, limitedOut);
+		return context.getDiagnostics();
+	}
+
+	/**
+	 * @param markdownReader provides the markdown text for which to create HTML. The reader is read completely but not closed
+	 * @param outputType see createHTML(String, OutputType)
+	 * @return generated HTML code
+	 * @throws Exception thrown if an error occurs
+	 */
+	public String createHTML(Reader markdownReader, OutputType outputType) throws Exception{
+		StringBuilder result = new StringBuilder();
+		createHTML(BMTextReader.read(createContext().limitInput(markdownReader)), outputType, result);
+		return result.toString();
+	}
+
+	/**
+	 * @param markdownReader provides the markdown text for which to create HTML. The reader is read completely but not closed
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code. The output is not flushed or closed.
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics createHTML(Reader markdownReader, OutputType outputType, Appendable out) throws Exception{
+		return createHTML(BMTextReader.read(createContext().limitInput(markdownReader)), outputType, out);
+	}
+
+	/**
+	 * @param markdownFile UTF-8 encoded file with the markdown text for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @return generated HTML code
+	 * @throws Exception thrown if an error occurs
+	 */
+	public String createHTML(Path markdownFile, OutputType outputType) throws Exception{
+		StringBuilder result = new StringBuilder();
+		createHTML(markdownFile, StandardCharsets.UTF_8, outputType, result);
+		return result.toString();
+	}
+
+	/**
+	 * reads the file via a memory-mapped channel and decodes it piece by piece instead of reading it into a string first.
+	 * If the length of the text is limited, the file is decoded only until it is longer than allowed
+	 * @param markdownFile file with the markdown text for which to create HTML
+	 * @param charset encoding of the file
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code. The output is not flushed or closed.
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics createHTML(Path markdownFile, Charset charset, OutputType outputType, Appendable out) throws Exception{
+		return createHTML(BMTextReader.read(markdownFile, charset, renderLimits.getMaxInputChars()), outputType, out);
+	}
+
+	/**
+	 * creates the HTML block by block while the markdown text is read and writes each block to the output as soon as it is complete.
+	 * The memory that is needed therefore only depends on the size of the largest block (paragraph, list, table, code block, ...) and on the titles 
+	 * of the headings which are kept for a table of contents, but not on the size of the document. The HTML is the same as the one of createHTML with two exceptions: the head of a full HTML document always 
+	 * contains the table styles and the HTML after a table of contents is kept in a temporary file until the end of the text has been read, because 
+	 * the table of contents can only be created when all headings are known.
+	 * @param markdownReader provides the markdown text for which to create HTML. The reader is read completely but not closed
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code. The output is not flushed or closed.
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics streamHTML(Reader markdownReader, OutputType outputType, Appendable out) throws Exception{
+		BMRenderContext context = createContext();
+		BMBlockStreamParser parser = new BMBlockStreamParser(context.limitInput(markdownReader), new BMSectionParserLogic(context), imageNameToPathMap);
+		new BMHtmlCreator(fontSizesInMM, context).writeHTML(parser, outputType, out);
+		return context.getDiagnostics();
+	}
+
+	/**
+	 * see streamHTML(Reader, OutputType, Appendable)
+	 * @param markdownFile file with the markdown text for which to create HTML
+	 * @param charset encoding of the file
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code. The output is not flushed or closed.
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics streamHTML(Path markdownFile, Charset charset, OutputType outputType, Appendable out) throws Exception{
+		try (Reader reader = new InputStreamReader(Files.newInputStream(markdownFile), charset)) {
+			return streamHTML(reader, outputType, out);
+		}
+	}
+
+	/**
+	 * writes the HTML in UTF-8 encoding directly to the given stream. The stream is flushed but not closed.
+	 * @param markdownText markdown text for which to create HTML
+	 * @param outputType see createHTML(String, OutputType)
+	 * @param out destination of the generated HTML code
+	 * @return the warnings that occurred while creating the HTML
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMDiagnostics createHTML(CharSequence markdownText, OutputType outputType, OutputStream out) throws Exception{
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		BMDiagnostics result = createHTML(markdownText, outputType, writer);
+		writer.flush();
+		return result;
+	}
+
+	/**
+	 * parses the text block by block and keeps the parsed blocks, so that the result may be passed to parse(BMParseResult, BMEdit) when the text
+	 * is changed, e.g. for the live preview of an editor
+	 * @param markdownText markdown text to be parsed
+	 * @return the parsed text which may be turned into HTML by createHTML(BMParseResult, OutputType)
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMParseResult parse(String markdownText) throws Exception{
+		String text = (markdownText == null) ? "" : markdownText;
+		BMRenderContext context = createContext();
+		context.checkInputLength(text.length());
+		BMIncrementalParser parser = new BMIncrementalParser(context, imageNameToPathMap);
+		if (startsWithNoMarkdownMark(text)) {
+			//: all special characters of the text are escaped, so an edit may change the escaping of the whole text
+			return new BMParseResult(this, text, parser.parse(getUseMarkdownText(text).toString()), false);
+		}
+		return new BMParseResult(this, text, parser.parse(text), true);
+	}
+	
+	/**
+	 * parses the changed text by only parsing the blocks around the edit again and taking all other blocks from the previous result.
+	 * The result is the same as the one of parse(String) with the changed text.
+	 * @param previous result of parse for the text before the edit. It is not changed
+	 * @param edit change of the text of the previous result
+	 * @return the parsed changed text
+	 * @throws Exception thrown if an error occurs
+	 */
+	public BMParseResult parse(BMParseResult previous, BMEdit edit) throws Exception{
+		String previousText = previous.getText();
+		if (edit.getOffset() + edit.getRemovedLength() > previousText.length()) {
+			throw new IllegalArgumentException("The edit " + edit + " is outside of the text with length " + previousText.length());
+		}
+		String text = previousText.substring(0, edit.getOffset()) + edit.getInsertedText() + previousText.substring(edit.getOffset() + edit.getRemovedLength());
+		if ((previous.getBrightMarkdown() != this) || (!previous.isReusable()) || (startsWithNoMarkdownMark(text))) {
+			return parse(text);
+		}
+		BMRenderContext context = createContext();
+		context.checkInputLength(text.length());
+		BMIncrementalParser parser = new BMIncrementalParser(context, imageNameToPathMap);
+		return new BMParseResult(this, text, parser.reparse(previous.getParsedText(), edit.getOffset(), edit.getRemovedLength(), edit.getInsertedText()), true);
+	}
+	
+	/**
+	 * @param parseResult result of parse
+	 * @param outputType see createHTML(String, OutputType)
+	 * @return generated HTML code which is the same as the one that createHTML creates from the text of the parse result
+	 * @throws Exception thrown if an error occurs
+	 */
+	public String createHTML(BMParseResult parseResult, OutputType outputType) throws Exception{
+		return new BMHtmlCreator(fontSizesInMM, createContext()).toHTML(parseResult.getSection(), outputType);
 	}
 
 	/**
@@ -54,30 +730,60 @@ public class BrightMarkdown {
 	 * @throws Exception thrown if an error occurs
 	 */
 	public String createStyleCode(String markdownText) throws Exception{
-		BMSection section = sectionParser.parseAll(getUseMarkdownText(markdownText));
+		BMSection section = parseAll(getUseMarkdownText(markdownText), createContext());
 		return new BMHtmlCreator(fontSizesInMM).createStyleCode(section);
 	}
 	
+	/**
+	 * 
+	 * @param markdownText markdown text to be processed
+	 * @return the deepest heading which is 0 if there are no headings, and e.g. 3 if there is h1, h2 and h3
+	 * @throws Exception thrown if an error occurs
+	 */
+	public int getDeepestHeading(String markdownText) throws Exception{
+		BMSection section = parseAll(getUseMarkdownText(markdownText), createContext());
+		return getDeepestHeading(section);
+	}
+	
 	/**
 	 * via mappings the location text is mapped from given parameter 'name' to given parameter 'path'.
 	 * E.g. a mapping "img1" to "/image/image_1234_large.jpg" could be added and then the image tag
 	 * "...!(My Image One)[img1]..." in the markdown text would be mapped to "...!(My Image One)[/image/image_1234_large.jpg]..."
 	 * @param name name of the image
 	 * @param path path with which the image name should be replaced
+	 * @deprecated use Builder.addImageNameToPathMapping. The instance must not be used by other threads while it is changed. 
+	 * This method will be removed in the next major version
 	 */
+	@Deprecated
 	public void addImageNameToPathMapping(String name, String path) {
-		imageNameToPathMap.put(name, path);
+		Map<String, String> changedMap = new TreeMap<String, String>(imageNameToPathMap);
+		changedMap.put(name, path);
+		imageNameToPathMap = Collections.unmodifiableMap(changedMap);
+		configurationHash = createConfigurationHash();
 	}
 	
 	/**
-	 * 
-	 * @param markdownText markdown text to be processed
-	 * @return the deepest heading which is 0 if there are no headings, and e.g. 3 if there is h1, h2 and h3
-	 * @throws Exception thrown if an error occurs
+	 * @deprecated use Builder.setFontSizeInMM. The instance must not be used by other threads while it is changed. 
+	 * This method will be removed in the next major version
 	 */
-	public int getDeepestHeading(String markdownText) throws Exception{
-		BMSection section = sectionParser.parseAll(getUseMarkdownText(markdownText));
-		return getDeepestHeading(section);
+	@Deprecated
+	public void setFontSizeInMM(FormattingItem formattingItem, int sizeInMM){
+		Map<FormattingItem, Integer> changedMap = new EnumMap<>(FormattingItem.class);
+		changedMap.putAll(fontSizesInMM);
+		changedMap.put(formattingItem, sizeInMM);
+		fontSizesInMM = Collections.unmodifiableMap(changedMap);
+		configurationHash = createConfigurationHash();
+	}
+	
+	/**
+	 * @return number of calls that did not create the HTML themselves but waited for a call with the same text that was creating it at the same time.
+	 * If a render cache is configured, the count of the cache is returned, which includes the calls of other instances that use the same cache
+	 */
+	public long getCoalescedRenderCount() {
+		if (singleFlight == null) {
+			return 0;
+		}
+		return singleFlight.getCoalescedCount();
 	}
 	
 	public String getDocumentationAsHTML() throws Exception{
@@ -88,8 +794,34 @@ public class BrightMarkdown {
 		return new BMDocumentationCreator().getDocumentationAsMarkdown();
 	}
 	
-	public void setFontSizeInMM(FormattingItem formattingItem, int sizeInMM){
-		fontSizesInMM.put(formattingItem, sizeInMM);		
+	/**
+	 * @return the parsed text which is parsed in parallel if a parse executor is configured
+	 */
+	private BMSection parseAll(CharSequence markdownText, BMRenderContext context) throws Exception{
+		context.checkInputLength(markdownText.length());
+		if (parseExecutor != null) {
+			return new BMParallelSectionParser(context, parseExecutor).parseAll(markdownText);
+		}
+		return new BMSectionParserLogic(context).parseAll(markdownText);
+	}
+	
+	/**
+	 * @return text that contains all settings which influence the created HTML
+	 */
+	private String describeConfiguration() {
+		return "fontSizesInMM = " + fontSizesInMM + "\nimageNameToPathMap = " + imageNameToPathMap + "\ncodeFormats = " + codeFormats 
+				+ "\nmaxWarnings = " + maxWarnings;
+	}
+	
+	private BMRenderContext createContext() {
+		return createContext(null);
+	}
+	
+	/**
+	 * @param cancelled tells whether the call has been cancelled or null if the call cannot be cancelled
+	 */
+	private BMRenderContext createContext(BooleanSupplier cancelled) {
+		return new BMRenderContext(codeFormats, maxWarnings, cancelled, renderLimits, phaseListener);
 	}
 	
 	private int getDeepestHeading(BMSection section) {
@@ -105,17 +837,39 @@ public class BrightMarkdown {
 		return max;
 	}
 	
-	private String getUseMarkdownText(String markdownText) {
-		String useMarkdownText = "";
-		if (markdownText != null) {
-			if (markdownText.trim().startsWith(BMConstants.NO_MARKDOWN_MARK)) {
-				useMarkdownText = BMUtil.escapeSpecialCharacters(markdownText.trim().substring(BMConstants.NO_MARKDOWN_MARK.length()).trim());
-			} else {
-				useMarkdownText = markdownText;
+	private int getLength(CharSequence markdownText) {
+		return (markdownText == null) ? 0 : markdownText.length();
+	}
+	
+	private CharSequence getUseMarkdownText(CharSequence markdownText) {
+		if (markdownText == null) {
+			return "";
+		}
+		if (startsWithNoMarkdownMark(markdownText)) {
+			return BMUtil.escapeSpecialCharacters(markdownText.toString().trim().substring(BMConstants.NO_MARKDOWN_MARK.length()).trim());
+		}
+		return markdownText;
+	}
+	
+	private boolean startsWithNoMarkdownMark(CharSequence markdownText) {
+		//: only check the start of the text instead of trimming it, because trimming would copy the whole text
+		int start = 0;
+		while ((start < markdownText.length()) && (markdownText.charAt(start) <= ' ')) {
+			start ++;
+		}
+		return startsWith(markdownText, start, BMConstants.NO_MARKDOWN_MARK);
+	}
+	
+	private boolean startsWith(CharSequence text, int pos, String prefix) {
+		if (pos + prefix.length() > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text.charAt(pos + i) != prefix.charAt(i)) {
+				return false;
 			}
 		}
-		
-		return useMarkdownText;
+		return true;
 	}
 	
 }
@@ -14,7 +14,9 @@ public class BMConstants {
 	public static final String[] ESCAPE_CHARACTERS = {"\\", "b", "*", "a", "_", "u", "{", "1", "}", "2", "[", "3", "]", "4", "(", "5", ")", "6"
             , "#", "h", "+", "p", "-", "m", ".", "d", "~", "t", "`", "c", "´", "7", "{", "o", "|", "s", "=", "e", "o", "r"};
 
-	public static final String ESCAPE_MARK = "%%";
+	/** an escaped character is replaced by this noncharacter plus the index of its pair in ESCAPE_CHARACTERS, so escaping does not make the text longer.
+	 * Noncharacters are reserved for internal use and rarely occur in regular text. If they do, they are kept unchanged (see BMEscapeCodec) */
+	public static final char ESCAPED_CHARACTER_BASE = '\uFDD0';
 
 	public static final String[] HEADINGS_INDICATOR = {"#", "##", "###", "####", "#####", "######"};
 	public static final String[] BULLET_POINT_INDICATORS_A = {"*", "**", "***", "****", "*****"};
@@ -80,6 +82,8 @@ public class BMConstants {
 	public static final String CODE_BLOCK_INFO_BACKGROUND_COLOR = "#efefef";
 	
 	public static final Map<String, BMCodeFormat> CODE_FORMATS = new BMDefaultCodeFormatCreator().createCodeFormats();
+	/** maximum number of warnings that are kept per call. Further warnings are only counted */
+	public static final int DEFAULT_MAX_WARNINGS = 100;
 
 	
 	private static String[] createNumberedItemIndicatorList(int end) {
@@ -0,0 +1,89 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * SHA-256 hash of a text which is used as key instead of the text itself, so that e.g. a cache does not need to keep the text.
+ * The characters are passed to the digest piece by piece as two bytes each, so the text is neither copied nor encoded first.
+ *
+ * @author Philip Heyse
+ *
+ */
+public final class BMContentHash {
+	private static final String ALGORITHM = "SHA-256";
+	private static final int BUFFER_SIZE = 8192;
+
+	private final byte[] hash;
+	private final int hashCode;
+
+	private BMContentHash(byte[] hash) {
+		this.hash = hash;
+		this.hashCode = Arrays.hashCode(hash);
+	}
+
+	/**
+	 * @param prefixes byte arrays that are hashed before the text, e.g. the hash of a configuration
+	 * @param text text to be hashed
+	 */
+	public static BMContentHash create(CharSequence text, byte[]... prefixes) {
+		MessageDigest digest = createDigest();
+		for (byte[] i: prefixes) {
+			digest.update(i);
+		}
+		byte[] buffer = new byte[BUFFER_SIZE];
+		int length = text.length();
+		int pos = 0;
+		while (pos < length) {
+			int amount = Math.min(length - pos, BUFFER_SIZE / 2);
+			for (int i = 0; i < amount; i++) {
+				char c = text.charAt(pos + i);
+				buffer[2 * i] = (byte)(c >> 8);
+				buffer[2 * i + 1] = (byte)c;
+			}
+			digest.update(buffer, 0, 2 * amount);
+			pos += amount;
+		}
+		return new BMContentHash(digest.digest());
+	}
+
+	public byte[] toByteArray() {
+		return hash.clone();
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof BMContentHash)) {
+			return false;
+		}
+		return Arrays.equals(hash, ((BMContentHash)obj).hash);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("BMContentHash(");
+		for (byte i: hash) {
+			result.append(Character.forDigit((i >> 4) & 0xf, 16)).append(Character.forDigit(i & 0xf, 16));
+		}
+		return result.append(")").toString();
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			//: every Java platform is required to support SHA-256
+			throw new IllegalStateException(ALGORITHM + " is not available", e);
+		}
+	}
+
+}
@@ -0,0 +1,170 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * output for text with placeholders whose content is only known at the end, e.g. a table of contents which needs all headings of the document.
+ * The text is passed on to the output directly until the first placeholder. Afterwards it is kept in a temporary file instead of memory until
+ * writeDeferred writes the content of the placeholders and the kept text to the output. The text that is appended between startPlaceholder and
+ * endPlaceholder is discarded.
+ * The temporary file stores each character as two bytes, so that any text (even a single surrogate) is written back unchanged.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMDeferredOutput implements Appendable, Closeable {
+	private static final String TEMP_FILE_PREFIX = "BrightMarkdown";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Appendable DISCARDING_OUTPUT = new Appendable() {
+		@Override
+		public Appendable append(CharSequence csq) {
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) {
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) {
+			return this;
+		}
+	};
+
+	/**
+	 * writes the content of a placeholder. It is called by writeDeferred in the order of the placeholders and writes to the BMDeferredOutput,
+	 * which then passes the text on to the output directly.
+	 */
+	public interface PlaceholderWriter {
+		void writePlaceholder(int index) throws IOException;
+	}
+
+	private final Appendable out;
+	/** output for the appended text if it is not kept in the deferred file */
+	private Appendable target;
+	private boolean deferring = false;
+	private Path deferredFile;
+	private DataOutputStream deferredStream;
+	/** number of characters in the deferred file */
+	private long deferredLength;
+	/** position of each placeholder in the deferred file */
+	private List<Long> placeholderPositions = new ArrayList<Long>();
+
+	public BMDeferredOutput(Appendable out) {
+		this.out = out;
+		this.target = out;
+	}
+
+	@Override
+	public Appendable append(CharSequence csq) throws IOException {
+		if (deferring) {
+			String text = String.valueOf(csq);
+			deferredStream.writeChars(text);
+			deferredLength += text.length();
+		} else {
+			target.append(csq);
+		}
+		return this;
+	}
+
+	@Override
+	public Appendable append(CharSequence csq, int start, int end) throws IOException {
+		return append(String.valueOf(csq).subSequence(start, end));
+	}
+
+	@Override
+	public Appendable append(char c) throws IOException {
+		if (deferring) {
+			deferredStream.writeChar(c);
+			deferredLength ++;
+		} else {
+			target.append(c);
+		}
+		return this;
+	}
+
+	/**
+	 * the text appended from now on until endPlaceholder is discarded and replaced by the text which the PlaceholderWriter writes in writeDeferred
+	 */
+	public void startPlaceholder() throws IOException {
+		if (deferredStream == null) {
+			deferredFile = Files.createTempFile(TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+			deferredStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(deferredFile)));
+		}
+		placeholderPositions.add(deferredLength);
+		target = DISCARDING_OUTPUT;
+		deferring = false;
+	}
+
+	public void endPlaceholder() {
+		deferring = true;
+	}
+
+	/**
+	 * writes the content of the placeholders and the text in between to the output. Text that is appended afterwards is passed on to the output directly.
+	 */
+	public void writeDeferred(PlaceholderWriter placeholderWriter) throws IOException {
+		if (deferredStream == null) {
+			return;
+		}
+		deferredStream.close();
+		deferredStream = null;
+		deferring = false;
+		target = out;
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(deferredFile)))) {
+			long position = 0;
+			for (int i = 0; i < placeholderPositions.size(); i++) {
+				long placeholderPosition = placeholderPositions.get(i);
+				copy(input, placeholderPosition - position);
+				position = placeholderPosition;
+				placeholderWriter.writePlaceholder(i);
+			}
+			copy(input, deferredLength - position);
+		}
+	}
+
+	private void copy(DataInputStream input, long length) throws IOException {
+		char[] buffer = new char[BUFFER_SIZE];
+		long rest = length;
+		while (rest > 0) {
+			int amount = (int)Math.min(rest, buffer.length);
+			for (int i = 0; i < amount; i++) {
+				buffer[i] = input.readChar();
+			}
+			out.append(CharBuffer.wrap(buffer, 0, amount));
+			rest -= amount;
+		}
+	}
+
+	/**
+	 * deletes the temporary file
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			if (deferredStream != null) {
+				deferredStream.close();
+				deferredStream = null;
+			}
+		} finally {
+			if (deferredFile != null) {
+				Files.deleteIfExists(deferredFile);
+				deferredFile = null;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.util.Arrays;
+
+/**
+ * encodes and decodes the escaped characters defined by BMConstants.ESCAPE_CHARACTERS in one forward scan over the text.
+ * An escaped character is kept as a single noncharacter (see BMConstants.ESCAPED_CHARACTER_BASE) while the text is parsed,
+ * so the parsers treat it as normal text and the text does not grow.
+ * A noncharacter of the reserved range which already occurs in the text is kept behind RAW_CHARACTER_PREFIX, so that it is written unchanged
+ * instead of being taken for an escaped character.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMEscapeCodec {
+	private static final String ESCAPE_PREFIX = "\\";
+	private static final char ESCAPE_PREFIX_CHAR = '\\';
+	private static final int TABLE_SIZE = 256;
+	private static final int NO_ENTRY = -1;
+	private static final int NUMBER_OF_PAIRS = BMConstants.ESCAPE_CHARACTERS.length / 2;
+	/** the first noncharacter after the escaped characters. It is followed by a reserved noncharacter of the text (including itself) which is kept unchanged */
+	private static final char RAW_CHARACTER_PREFIX = (char)(BMConstants.ESCAPED_CHARACTER_BASE + NUMBER_OF_PAIRS);
+
+	/** text that replaces a special character in escapeSpecialCharacters or null if the character is kept */
+	private static final String[] SPECIAL_CHARACTER_REPLACEMENTS = createSpecialCharacterReplacements();
+	/** index of the first ESCAPE_CHARACTERS pair for a character that may follow the escape prefix */
+	private static final int[] ESCAPED_CHARACTER_TO_PAIR = createEscapedCharacterToPairIndex();
+
+	/**
+	 * @return text where each special character is escaped with a backslash
+	 */
+	public static String escapeSpecialCharacters(String text) {
+		int length = text.length();
+		int resultLength = length;
+		for (int i = 0; i < length; i++) {
+			String replacement = getSpecialCharacterReplacement(text.charAt(i));
+			if (replacement != null) {
+				resultLength += replacement.length() - 1;
+			}
+		}
+		if (resultLength == length) {
+			return text;
+		}
+
+		StringBuilder result = new StringBuilder(resultLength);
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			String replacement = getSpecialCharacterReplacement(c);
+			if (replacement != null) {
+				result.append(replacement);
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @return text where each backslash followed by an escape character is replaced by a single escaped character (see BMConstants.ESCAPED_CHARACTER_BASE)
+	 * and each reserved noncharacter is preceded by RAW_CHARACTER_PREFIX
+	 */
+	public static String escape(CharSequence text) {
+		return escapeWithoutCopy(text).toString();
+	}
+
+	/**
+	 * same as escape, but returns the given text itself if there is nothing to escape, so that e.g. a text that has been read from a file is not copied
+	 */
+	public static CharSequence escapeWithoutCopy(CharSequence text) {
+		int pos = indexOfCharacterToEscape(text, 0);
+		if (pos < 0) {
+			return text;
+		}
+		int length = text.length();
+		StringBuilder result = null;
+		int copiedUntil = 0;
+		while (pos >= 0) {
+			char c = text.charAt(pos);
+			if (isReservedCharacter(c)) {
+				if (result == null) {
+					result = new StringBuilder(length + 1);
+				}
+				result.append(text, copiedUntil, pos);
+				result.append(RAW_CHARACTER_PREFIX).append(c);
+				copiedUntil = pos + 1;
+				pos = indexOfCharacterToEscape(text, copiedUntil);
+				continue;
+			}
+			if (pos + 1 >= length) {
+				break;
+			}
+			int pairIndex = getPairIndex(text.charAt(pos + 1));
+			if (pairIndex == NO_ENTRY) {
+				pos = indexOfCharacterToEscape(text, pos + 1);
+				continue;
+			}
+			if (result == null) {
+				result = new StringBuilder(length);
+			}
+			result.append(text, copiedUntil, pos);
+			result.append(toEscapedCharacter(pairIndex));
+			copiedUntil = pos + 2;
+			pos = indexOfCharacterToEscape(text, copiedUntil);
+		}
+		if (result == null) {
+			return text;
+		}
+		result.append(text, copiedUntil, length);
+		return result;
+	}
+
+	/**
+	 * @return text where each escaped character is replaced by the character it stands for and each reserved noncharacter of the text is
+	 * written without its RAW_CHARACTER_PREFIX
+	 */
+	public static String unescape(String text) {
+		int length = text.length();
+		int pos = 0;
+		while ((pos < length) && (!isReservedCharacter(text.charAt(pos)))) {
+			pos ++;
+		}
+		if (pos == length) {
+			return text;
+		}
+		StringBuilder result = new StringBuilder(length);
+		result.append(text, 0, pos);
+		for (; pos < length; pos++) {
+			char c = text.charAt(pos);
+			if (c == RAW_CHARACTER_PREFIX) {
+				pos ++;
+				if (pos < length) {
+					result.append(text.charAt(pos));
+				}
+			} else if (isEscapedCharacter(c)) {
+				result.append(BMConstants.ESCAPE_CHARACTERS[2 * (c - BMConstants.ESCAPED_CHARACTER_BASE)]);
+			} else {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	public static boolean isEscapedCharacter(char c) {
+		return (c >= BMConstants.ESCAPED_CHARACTER_BASE) && (c < BMConstants.ESCAPED_CHARACTER_BASE + NUMBER_OF_PAIRS);
+	}
+
+	/**
+	 * @return true if the character is an escaped character or RAW_CHARACTER_PREFIX
+	 */
+	private static boolean isReservedCharacter(char c) {
+		return (c >= BMConstants.ESCAPED_CHARACTER_BASE) && (c <= RAW_CHARACTER_PREFIX);
+	}
+
+	/**
+	 * @return position of the next backslash or reserved noncharacter or -1 if there is none
+	 */
+	private static int indexOfCharacterToEscape(CharSequence text, int startPos) {
+		int length = text.length();
+		for (int i = startPos; i < length; i++) {
+			char c = text.charAt(i);
+			if ((c == ESCAPE_PREFIX_CHAR) || (isReservedCharacter(c))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static char toEscapedCharacter(int pairIndex) {
+		return (char)(BMConstants.ESCAPED_CHARACTER_BASE + pairIndex / 2);
+	}
+
+	private static String getSpecialCharacterReplacement(char c) {
+		if (c >= TABLE_SIZE) {
+			return null;
+		}
+		return SPECIAL_CHARACTER_REPLACEMENTS[c];
+	}
+
+	private static int getPairIndex(char c) {
+		if (c >= TABLE_SIZE) {
+			return NO_ENTRY;
+		}
+		return ESCAPED_CHARACTER_TO_PAIR[c];
+	}
+
+	/**
+	 * the special characters are single characters, so applying all replace calls to the whole text is the same as applying them to each character
+	 */
+	private static String[] createSpecialCharacterReplacements() {
+		String[] result = new String[TABLE_SIZE];
+		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i += 2) {
+			char c = BMConstants.ESCAPE_CHARACTERS[i].charAt(0);
+			String replacement = String.valueOf(c);
+			for (int j = 0; j < BMConstants.ESCAPE_CHARACTERS.length; j += 2) {
+				String input = BMConstants.ESCAPE_CHARACTERS[j];
+				replacement = replacement.replace(input, ESCAPE_PREFIX + input);
+			}
+			result[c] = replacement;
+		}
+		return result;
+	}
+
+	private static int[] createEscapedCharacterToPairIndex() {
+		int[] result = new int[TABLE_SIZE];
+		Arrays.fill(result, NO_ENTRY);
+		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i += 2) {
+			char c = BMConstants.ESCAPE_CHARACTERS[i].charAt(0);
+			if (result[c] == NO_ENTRY) {
+				result[c] = i;
+			}
+		}
+		return result;
+	}
+
+}
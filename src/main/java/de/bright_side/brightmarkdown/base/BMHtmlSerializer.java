@@ -0,0 +1,722 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * writes a BrightXmlNode tree directly to an Appendable without creating a W3C document and without a JAXP transformer.
+ * The output is the same as the one of the default transformer of the JDK: if the root node is named "html" the HTML output method is used
+ * (indented, HTML entities, empty elements like "br" without end tag, meta tag in the head element), otherwise the XML output method
+ * without the XML declaration. Attributes are written in alphabetical order like the DOM stores them.
+ * In addition the serializer does what was done on the created string before: escaped characters (see BMEscapeCodec) are
+ * written as the characters they stand for, BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK is written as "&lt;br/&gt;" and
+ * empty "p" and "span" nodes are left out if skipEmptySpanAndParagraphNodes is set.
+ * Instead of passing the whole tree at once, the content of a document may also be passed node by node (see writeStart).
+ * A serializer instance keeps state while writing and must therefore not be used by several threads at the same time.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMHtmlSerializer {
+	private static final String HTML_ROOT_NODE_NAME = "html";
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	private static final int INDENT_AMOUNT = 4;
+	private static final String NEW_LINE_IN_CODE_BLOCK_OUTPUT = "<br/>";
+	private static final String META_TAG = "<META http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">";
+	private static final Set<String> SKIPPABLE_EMPTY_NODE_NAMES = new HashSet<String>(Arrays.asList("p", "span"));
+
+	private static final int FLAG_BLOCK = 1;
+	private static final int FLAG_EMPTY = 2;
+	private static final int FLAG_RAW = 4;
+	private static final int FLAG_HEAD = 8;
+
+	//: element flags of the HTML output method. Elements that are not listed are treated as block elements
+	private static final String[] INLINE_ELEMENTS = {"A", "ABBR", "ACRONYM", "APPLET", "B", "BDO", "BIG", "BUTTON", "CITE", "CODE", "DEL", "DFN", "EM", "FONT", "I", "INS", "KBD"
+			, "LABEL", "LEGEND", "NOBR", "OBJECT", "OPTGROUP", "OPTION", "Q", "S", "SAMP", "SCRIPT", "SELECT", "SMALL", "SPAN", "STRIKE", "STRONG", "SUB", "SUP", "TD", "TEXTAREA", "TH"
+			, "TT", "U", "VAR", "BASEFONT", "IMG", "INPUT", "PARAM"};
+	private static final String[] EMPTY_ELEMENTS = {"AREA", "BASE", "BASEFONT", "BR", "COL", "FRAME", "HR", "IMG", "INPUT", "ISINDEX", "LINK", "META", "PARAM"};
+	private static final String[] RAW_ELEMENTS = {"SCRIPT", "STYLE"};
+	private static final String[] URL_ATTRIBUTES = {"A.HREF", "A.NAME", "AREA.HREF", "BASE.HREF", "BLOCKQUOTE.CITE", "DEL.CITE", "DIV.SRC", "FORM.ACTION", "FRAME.SRC", "FRAME.LONGDESC"
+			, "HEAD.PROFILE", "IFRAME.SRC", "IFRAME.LONGDESC", "ILAYER.SRC", "IMG.SRC", "IMG.LONGDESC", "IMG.USEMAP", "INPUT.SRC", "INPUT.USEMAP", "INS.CITE", "LAYER.SRC", "LINK.HREF"
+			, "OBJECT.CLASSID", "OBJECT.CODEBASE", "OBJECT.DATA", "OBJECT.ARCHIVE", "OBJECT.USEMAP", "Q.CITE", "SCRIPT.SRC", "SCRIPT.FOR"};
+	private static final String[] EMPTY_VALUE_ATTRIBUTES = {"AREA.NOHREF", "BUTTON.DISABLED", "DIR.COMPACT", "DIV.NOWRAP", "DL.COMPACT", "HR.NOSHADE", "IMG.ISMAP", "INPUT.CHECKED"
+			, "INPUT.DISABLED", "INPUT.ISMAP", "INPUT.READONLY", "MENU.COMPACT", "OBJECT.DECLARE", "OL.COMPACT", "OPTGROUP.DISABLED", "OPTION.SELECTED", "OPTION.DISABLED", "SCRIPT.DEFER"
+			, "SELECT.DISABLED", "SELECT.MULTIPLE", "TABLE.NOWRAP", "TD.NOWRAP", "TEXTAREA.DISABLED", "TEXTAREA.READONLY", "TH.NOWRAP", "TR.NOWRAP", "UL.COMPACT"};
+	private static final String[] HTML_ENTITIES = {"quot=34", "amp=38", "lt=60", "gt=62", "nbsp=160", "iexcl=161", "cent=162", "pound=163"
+			, "curren=164", "yen=165", "brvbar=166", "sect=167", "uml=168", "copy=169", "ordf=170", "laquo=171"
+			, "not=172", "shy=173", "reg=174", "macr=175", "deg=176", "plusmn=177", "sup2=178", "sup3=179"
+			, "acute=180", "micro=181", "para=182", "middot=183", "cedil=184", "sup1=185", "ordm=186", "raquo=187"
+			, "frac14=188", "frac12=189", "frac34=190", "iquest=191", "Agrave=192", "Aacute=193", "Acirc=194", "Atilde=195"
+			, "Auml=196", "Aring=197", "AElig=198", "Ccedil=199", "Egrave=200", "Eacute=201", "Ecirc=202", "Euml=203"
+			, "Igrave=204", "Iacute=205", "Icirc=206", "Iuml=207", "ETH=208", "Ntilde=209", "Ograve=210", "Oacute=211"
+			, "Ocirc=212", "Otilde=213", "Ouml=214", "times=215", "Oslash=216", "Ugrave=217", "Uacute=218", "Ucirc=219"
+			, "Uuml=220", "Yacute=221", "THORN=222", "szlig=223", "agrave=224", "aacute=225", "acirc=226", "atilde=227"
+			, "auml=228", "aring=229", "aelig=230", "ccedil=231", "egrave=232", "eacute=233", "ecirc=234", "euml=235"
+			, "igrave=236", "iacute=237", "icirc=238", "iuml=239", "eth=240", "ntilde=241", "ograve=242", "oacute=243"
+			, "ocirc=244", "otilde=245", "ouml=246", "divide=247", "oslash=248", "ugrave=249", "uacute=250", "ucirc=251"
+			, "uuml=252", "yacute=253", "thorn=254", "yuml=255", "ensp=8194", "emsp=8195", "thinsp=8201", "zwnj=8204"
+			, "zwj=8205", "lrm=8206", "rlm=8207", "ndash=8211", "mdash=8212", "lsquo=8216", "rsquo=8217", "sbquo=8218"
+			, "ldquo=8220", "rdquo=8221", "bdquo=8222", "dagger=8224", "Dagger=8225", "bull=8226", "hellip=8230", "permil=8240"
+			, "prime=8242", "Prime=8243", "lsaquo=8249", "rsaquo=8250", "oline=8254", "frasl=8260", "euro=8364", "image=8465"
+			, "weierp=8472", "real=8476", "trade=8482", "alefsym=8501", "larr=8592", "uarr=8593", "rarr=8594", "darr=8595"
+			, "harr=8596", "crarr=8629", "lArr=8656", "uArr=8657", "rArr=8658", "dArr=8659", "hArr=8660", "forall=8704"
+			, "part=8706", "exist=8707", "empty=8709", "nabla=8711", "isin=8712", "notin=8713", "ni=8715", "prod=8719"
+			, "sum=8721", "minus=8722", "lowast=8727", "radic=8730", "prop=8733", "infin=8734", "ang=8736", "and=8743"
+			, "or=8744", "cap=8745", "cup=8746", "int=8747", "there4=8756", "sim=8764", "cong=8773", "asymp=8776"
+			, "ne=8800", "equiv=8801", "le=8804", "ge=8805", "sub=8834", "sup=8835", "nsub=8836", "sube=8838"
+			, "supe=8839", "oplus=8853", "otimes=8855", "perp=8869", "sdot=8901", "lceil=8968", "rceil=8969", "lfloor=8970"
+			, "rfloor=8971", "lang=9001", "rang=9002", "loz=9674", "spades=9824", "clubs=9827", "hearts=9829", "diams=9830"};
+
+	private static final Map<String, Integer> ELEMENT_FLAGS = createElementFlags();
+	private static final Set<String> URL_ATTRIBUTE_SET = new HashSet<String>(Arrays.asList(URL_ATTRIBUTES));
+	private static final Set<String> EMPTY_VALUE_ATTRIBUTE_SET = new HashSet<String>(Arrays.asList(EMPTY_VALUE_ATTRIBUTES));
+	private static final Map<Character, String> HTML_ENTITY_NAMES = createEntityNames();
+
+	private final boolean skipEmptySpanAndParagraphNodes;
+	private Appendable out;
+	private boolean htmlMethod;
+	/** the content node (see writeStart) and its ancestors */
+	private List<OpenElement> openElements;
+	//: indentation state of the HTML output method
+	private boolean previousIsText;
+	private boolean previousIsBlock;
+	private boolean startNewLine;
+	private int childNodeNumber;
+	private List<Integer> childNodeNumberStack;
+	private String bufferedText;
+
+	/**
+	 * element whose start tag has been started but whose end tag has not been written yet
+	 */
+	private static class OpenElement {
+		private String name;
+		private Map<String, String> attributes;
+		private int flags;
+		/** number of ancestors of the node */
+		private int depth;
+		/** true if the start tag is not completed by "&gt;" yet */
+		private boolean startTagOpen;
+		private boolean startTagWritten;
+	}
+
+	/**
+	 * state of the serializer after a node has been written with writeContentNode. A node that is inserted later (e.g. a table of contents
+	 * which is only complete at the end of the document) is written with the same indentation as if it had been written at that point
+	 * by restoring the state that was saved at that point.
+	 */
+	public static final class State {
+		private final boolean previousIsText;
+		private final boolean previousIsBlock;
+		private final boolean startNewLine;
+		private final int childNodeNumber;
+		private final boolean contentStartTagOpen;
+		private final boolean contentStartTagWritten;
+
+		private State(BMHtmlSerializer serializer) {
+			OpenElement contentElement = serializer.getContentElement();
+			previousIsText = serializer.previousIsText;
+			previousIsBlock = serializer.previousIsBlock;
+			startNewLine = serializer.startNewLine;
+			childNodeNumber = serializer.childNodeNumber;
+			contentStartTagOpen = contentElement.startTagOpen;
+			contentStartTagWritten = contentElement.startTagWritten;
+		}
+
+		/**
+		 * @return text which is the same for two states exactly if they are equal, so that it may be used as part of a cache key
+		 */
+		@Override
+		public String toString() {
+			return "State(previousIsText=" + previousIsText + ", previousIsBlock=" + previousIsBlock + ", startNewLine=" + startNewLine
+					+ ", childNodeNumber=" + childNodeNumber + ", contentStartTagOpen=" + contentStartTagOpen
+					+ ", contentStartTagWritten=" + contentStartTagWritten + ")";
+		}
+	}
+
+	public BMHtmlSerializer(boolean skipEmptySpanAndParagraphNodes) {
+		this.skipEmptySpanAndParagraphNodes = skipEmptySpanAndParagraphNodes;
+	}
+
+	public String toString(BrightXmlNode rootNode) {
+		StringBuilder result = new StringBuilder();
+		try {
+			write(rootNode, result);
+		} catch (IOException e) {
+			//: a StringBuilder does not throw IOExceptions
+			throw new IllegalStateException(e);
+		}
+		return result.toString();
+	}
+
+	public void write(BrightXmlNode rootNode, Appendable out) throws IOException {
+		try {
+			writeStart(rootNode, rootNode, out);
+		} catch (IOException | RuntimeException e) {
+			this.out = null;
+			openElements = null;
+			throw e;
+		}
+		writeEnd();
+	}
+
+	/**
+	 * starts a document whose content nodes are passed one after the other by writeContentNode, so that the nodes of the whole document
+	 * don't need to exist at the same time. The root node is written up to the content node including the existing children of the content node.
+	 * The document is completed by writeEnd.
+	 * @param contentNode the root node or a descendant of it that is the last child of its parent and whose ancestors are last children as well, 
+	 * e.g. the body node of a HTML document
+	 */
+	public void writeStart(BrightXmlNode rootNode, BrightXmlNode contentNode, Appendable out) throws IOException {
+		this.out = out;
+		htmlMethod = HTML_ROOT_NODE_NAME.equalsIgnoreCase(rootNode.getNodeName());
+		previousIsText = false;
+		previousIsBlock = false;
+		startNewLine = false;
+		childNodeNumber = 0;
+		childNodeNumberStack = new ArrayList<Integer>();
+		bufferedText = null;
+		openElements = new ArrayList<OpenElement>();
+		openElements.add(startNode(null, rootNode));
+		BrightXmlNode node = rootNode;
+		while (node != contentNode) {
+			if (!node.hasChildNodes()) {
+				throw new IllegalArgumentException("The content node is not the last descendant of the root node");
+			}
+			List<BrightXmlNode> children = node.getChildNodes();
+			for (int i = 0; i < children.size() - 1; i++) {
+				writeNode(getContentElement(), children.get(i));
+			}
+			node = children.get(children.size() - 1);
+			openElements.add(startNode(getContentElement(), node));
+		}
+		writeChildNodes(getContentElement(), contentNode);
+	}
+
+	/**
+	 * writes the node as the next child of the content node which was passed to writeStart
+	 */
+	public void writeContentNode(BrightXmlNode node) throws IOException {
+		writeNode(getContentElement(), node);
+	}
+
+	/**
+	 * writes the end tags of the content node and its ancestors
+	 */
+	public void writeEnd() throws IOException {
+		try {
+			for (int i = openElements.size() - 1; i >= 0; i--) {
+				endNode(openElements.get(i));
+			}
+			if ((htmlMethod) && (!previousIsText)) {
+				out.append(LINE_SEPARATOR);
+			}
+		} finally {
+			out = null;
+			openElements = null;
+		}
+	}
+
+	/**
+	 * completes the start tag of the content node if no child has been written yet. This is needed if a node that replaces another one later
+	 * (see saveState) writes nothing, while the text after the replaced node has been written with the start tag completed. As long as the start tag
+	 * is open, writeEnd closes an empty content node as empty element.
+	 */
+	public void completeContentStartTag() throws IOException {
+		OpenElement contentElement = getContentElement();
+		if (!contentElement.startTagOpen) {
+			return;
+		}
+		if (!contentElement.startTagWritten) {
+			writeHtmlStartTag(contentElement.name, contentElement.attributes);
+			contentElement.startTagWritten = true;
+		}
+		out.append('>');
+		contentElement.startTagOpen = false;
+	}
+
+	public State saveState() {
+		return new State(this);
+	}
+
+	public void restoreState(State state) {
+		OpenElement contentElement = getContentElement();
+		previousIsText = state.previousIsText;
+		previousIsBlock = state.previousIsBlock;
+		startNewLine = state.startNewLine;
+		childNodeNumber = state.childNodeNumber;
+		contentElement.startTagOpen = state.contentStartTagOpen;
+		contentElement.startTagWritten = state.contentStartTagWritten;
+	}
+
+	private OpenElement getContentElement() {
+		return openElements.get(openElements.size() - 1);
+	}
+
+	private void writeNode(OpenElement parent, BrightXmlNode node) throws IOException {
+		OpenElement element = startNode(parent, node);
+		writeChildNodes(element, node);
+		endNode(element);
+	}
+
+	private void writeChildNodes(OpenElement element, BrightXmlNode node) throws IOException {
+		if (node.hasChildNodes()) {
+			for (BrightXmlNode i: node.getChildNodes()) {
+				writeNode(element, i);
+			}
+		}
+	}
+
+	/**
+	 * @param parent the parent element or null for the root node
+	 */
+	private OpenElement startNode(OpenElement parent, BrightXmlNode node) throws IOException {
+		if (htmlMethod) {
+			return startHtmlNode(parent, node);
+		}
+		return startXmlNode(parent, node);
+	}
+
+	private void endNode(OpenElement element) throws IOException {
+		if (htmlMethod) {
+			endHtmlNode(element);
+		} else {
+			endXmlNode(element);
+		}
+	}
+
+	private OpenElement startXmlNode(OpenElement parent, BrightXmlNode node) throws IOException {
+		if ((parent != null) && (parent.startTagOpen)) {
+			out.append('>');
+			parent.startTagOpen = false;
+		}
+		OpenElement result = new OpenElement();
+		result.name = node.getNodeName();
+		out.append('<').append(result.name);
+		for (Entry<String, String> i: getSortedAttributes(node).entrySet()) {
+			out.append(' ').append(i.getKey()).append("=\"");
+			writeXmlAttributeValue(BMEscapeCodec.unescape(i.getValue()));
+			out.append('"');
+		}
+		result.startTagOpen = true;
+		result.startTagWritten = true;
+		String text = node.getTextContent();
+		if (!text.isEmpty()) {
+			out.append('>');
+			result.startTagOpen = false;
+			writeText(BMEscapeCodec.unescape(text), false);
+		}
+		return result;
+	}
+
+	private void endXmlNode(OpenElement element) throws IOException {
+		if (element.startTagOpen) {
+			out.append("/>");
+		} else {
+			out.append("</").append(element.name).append('>');
+		}
+	}
+
+	/**
+	 * starts the node with the same indentation the JDK HTML serializer creates. The start tag is only completed when the next text, node or
+	 * end tag is written which is also when empty "p" and "span" nodes are left out.
+	 */
+	private OpenElement startHtmlNode(OpenElement parent, BrightXmlNode node) throws IOException {
+		OpenElement result = new OpenElement();
+		boolean parentStartTagOpen = false;
+		if (parent != null) {
+			if (!parent.startTagWritten) {
+				writeHtmlStartTag(parent.name, parent.attributes);
+				parent.startTagWritten = true;
+			}
+			parentStartTagOpen = parent.startTagOpen;
+			parent.startTagOpen = false;
+			result.depth = parent.depth + 1;
+		}
+		int depth = result.depth;
+		String name = node.getNodeName();
+		childNodeNumber ++;
+		flushBufferedText(depth);
+		if (parentStartTagOpen) {
+			out.append('>');
+		}
+		int flags = getElementFlags(name);
+		boolean block = (flags & FLAG_BLOCK) != 0;
+		if ((depth > 0) && (block || ((!previousIsText) && (previousIsBlock)))) {
+			startNewLine = true;
+			indent(depth);
+		}
+		previousIsBlock = block;
+		previousIsText = false;
+		Map<String, String> attributes = getSortedAttributes(node);
+		boolean startTagOpen = true;
+		boolean startTagWritten = false;
+		childNodeNumberStack.add(childNodeNumber);
+		childNodeNumber = 0;
+		if ((flags & FLAG_EMPTY) == 0) {
+			if (block) {
+				startNewLine = true;
+			}
+			if ((flags & FLAG_HEAD) != 0) {
+				writeHtmlStartTag(name, attributes);
+				out.append('>');
+				startTagWritten = true;
+				startTagOpen = false;
+				indent(depth + 1);
+				out.append(META_TAG);
+			}
+		}
+
+		String text = node.getTextContent();
+		if (!text.isEmpty()) {
+			if (!startTagWritten) {
+				writeHtmlStartTag(name, attributes);
+				startTagWritten = true;
+			}
+			if (startTagOpen) {
+				out.append('>');
+				startTagOpen = false;
+			}
+			if ((flags & FLAG_RAW) != 0) {
+				writeRawText(BMEscapeCodec.unescape(text));
+				previousIsText = true;
+			} else {
+				bufferedText = BMEscapeCodec.unescape(text);
+			}
+		}
+		result.name = name;
+		result.attributes = attributes;
+		result.flags = flags;
+		result.startTagOpen = startTagOpen;
+		result.startTagWritten = startTagWritten;
+		return result;
+	}
+
+	private void endHtmlNode(OpenElement element) throws IOException {
+		String name = element.name;
+		int depth = element.depth;
+		int flags = element.flags;
+		boolean block = (flags & FLAG_BLOCK) != 0;
+		flushBufferedText(depth + 1);
+		boolean indentEnd = block || ((!previousIsText) && (previousIsBlock));
+		if (indentEnd) {
+			startNewLine = true;
+		}
+		if ((!element.startTagOpen) && (indentEnd) && ((childNodeNumber > 1) || (!previousIsText))) {
+			indent(depth);
+		}
+		previousIsBlock = block;
+		if (!element.startTagOpen) {
+			out.append("</").append(name).append('>');
+		} else if ((flags & FLAG_EMPTY) != 0) {
+			writeHtmlStartTag(name, element.attributes);
+			out.append('>');
+		} else if ((!skipEmptySpanAndParagraphNodes) || (!element.attributes.isEmpty()) || (!SKIPPABLE_EMPTY_NODE_NAMES.contains(name))) {
+			writeHtmlStartTag(name, element.attributes);
+			out.append("></").append(name).append('>');
+		}
+		childNodeNumber = childNodeNumberStack.remove(childNodeNumberStack.size() - 1);
+		previousIsText = false;
+	}
+
+	private void writeHtmlStartTag(String name, Map<String, String> attributes) throws IOException {
+		out.append('<').append(name);
+		String upperCaseName = name.toUpperCase();
+		for (Entry<String, String> i: attributes.entrySet()) {
+			String attributeName = i.getKey();
+			String value = BMEscapeCodec.unescape(i.getValue());
+			String key = upperCaseName + "." + attributeName.toUpperCase();
+			out.append(' ');
+			if (((value.isEmpty()) || (value.equalsIgnoreCase(attributeName))) && (EMPTY_VALUE_ATTRIBUTE_SET.contains(key))) {
+				out.append(attributeName);
+			} else {
+				out.append(attributeName).append("=\"");
+				if (URL_ATTRIBUTE_SET.contains(key)) {
+					writeHtmlUrlAttributeValue(value);
+				} else {
+					writeHtmlAttributeValue(value);
+				}
+				out.append('"');
+			}
+		}
+	}
+
+	/**
+	 * writes the text of the current node. With the HTML output method the text is only written when the next node starts or the current node ends
+	 * because the indentation depends on what comes next.
+	 * @param depth the depth of the node which contains the text
+	 */
+	private void flushBufferedText(int depth) throws IOException {
+		if (bufferedText == null) {
+			return;
+		}
+		String text = bufferedText;
+		bufferedText = null;
+		childNodeNumber ++;
+		if ((depth > 0) && (childNodeNumber > 1) && (previousIsBlock)) {
+			indent(depth);
+			startNewLine = true;
+			int start = 0;
+			while ((start < text.length()) && (text.charAt(start) == '\n')) {
+				start ++;
+			}
+			if (start == text.length()) {
+				return;
+			}
+			text = text.substring(start);
+		}
+		writeText(text, true);
+		previousIsText = true;
+	}
+
+	private void indent(int depth) throws IOException {
+		if (startNewLine) {
+			out.append(LINE_SEPARATOR);
+		}
+		for (int i = 0; i < depth * INDENT_AMOUNT; i++) {
+			out.append(' ');
+		}
+	}
+
+	private void writeText(String text, boolean useHtmlEntities) throws IOException {
+		int length = text.length();
+		int pos = 0;
+		while (pos < length) {
+			if (text.startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, pos)) {
+				out.append(NEW_LINE_IN_CODE_BLOCK_OUTPUT);
+				pos += BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length();
+				continue;
+			}
+			char c = text.charAt(pos);
+			if ((c >= ' ') && (c < 127) && (c != '<') && (c != '>') && (c != '&')) {
+				out.append(c);
+			} else if (c == '\n') {
+				out.append(LINE_SEPARATOR);
+			} else if (c == '\t') {
+				out.append(c);
+			} else if ((Character.isHighSurrogate(c)) && (pos + 1 < length) && (Character.isLowSurrogate(text.charAt(pos + 1)))) {
+				writeCharacterReference(Character.toCodePoint(c, text.charAt(pos + 1)));
+				pos ++;
+			} else if (Character.isSurrogate(c)) {
+				writeCharacterReference(c);
+			} else {
+				String entityName = getEntityName(c, useHtmlEntities);
+				if (entityName != null) {
+					out.append('&').append(entityName).append(';');
+				} else if ((c == '\r') || (isControlCharacter(c))) {
+					writeCharacterReference(c);
+				} else {
+					out.append(c);
+				}
+			}
+			pos ++;
+		}
+	}
+
+	private void writeRawText(String text) throws IOException {
+		int length = text.length();
+		int pos = 0;
+		while (pos < length) {
+			if (text.startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, pos)) {
+				out.append(NEW_LINE_IN_CODE_BLOCK_OUTPUT);
+				pos += BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length();
+				continue;
+			}
+			char c = text.charAt(pos);
+			if (c == '\n') {
+				out.append(LINE_SEPARATOR);
+			} else {
+				out.append(c);
+			}
+			pos ++;
+		}
+	}
+
+	private void writeHtmlAttributeValue(String value) throws IOException {
+		int length = value.length();
+		int pos = 0;
+		while (pos < length) {
+			if (value.startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, pos)) {
+				out.append(NEW_LINE_IN_CODE_BLOCK_OUTPUT);
+				pos += BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length();
+				continue;
+			}
+			char c = value.charAt(pos);
+			if ((c == '&') && (pos + 1 < length) && (value.charAt(pos + 1) == '{')) {
+				//: "&{" is kept as it is in HTML attributes
+				out.append(c);
+			} else if ((c == '<') || (c == '>')) {
+				out.append(c);
+			} else if ((Character.isHighSurrogate(c)) && (pos + 1 < length) && (Character.isLowSurrogate(value.charAt(pos + 1)))) {
+				out.append(c).append(value.charAt(pos + 1));
+				pos ++;
+			} else if (Character.isSurrogate(c)) {
+				writeCharacterReference(c);
+			} else {
+				String entityName = getEntityName(c, true);
+				if (c == '"') {
+					out.append("&quot;");
+				} else if (entityName != null) {
+					out.append('&').append(entityName).append(';');
+				} else if ((c < ' ') && (c != '\t') && (c != '\n') && (c != '\r')) {
+					writeCharacterReference(c);
+				} else {
+					out.append(c);
+				}
+			}
+			pos ++;
+		}
+	}
+
+	/**
+	 * writes a URL attribute value like the HTML output method: characters that are not printable ASCII characters are written as UTF-8 bytes in
+	 * percent encoding, quotes as "%22" and ampersands as "&amp;amp;"
+	 */
+	private void writeHtmlUrlAttributeValue(String value) throws IOException {
+		String text = value.replace(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, NEW_LINE_IN_CODE_BLOCK_OUTPUT);
+		int length = text.length();
+		for (int pos = 0; pos < length; pos++) {
+			char c = text.charAt(pos);
+			if ((c < 32) || (c > 126)) {
+				int codePoint = c;
+				if ((Character.isHighSurrogate(c)) && (pos + 1 < length) && (Character.isLowSurrogate(text.charAt(pos + 1)))) {
+					codePoint = Character.toCodePoint(c, text.charAt(pos + 1));
+					pos ++;
+				}
+				for (byte i: new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+					out.append('%').append(toHexString(i & 0xFF));
+				}
+			} else if (c == '"') {
+				out.append("%22");
+			} else if (c == '&') {
+				out.append("&amp;");
+			} else {
+				out.append(c);
+			}
+		}
+	}
+
+	private void writeXmlAttributeValue(String value) throws IOException {
+		int length = value.length();
+		int pos = 0;
+		while (pos < length) {
+			if (value.startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, pos)) {
+				out.append(NEW_LINE_IN_CODE_BLOCK_OUTPUT);
+				pos += BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length();
+				continue;
+			}
+			char c = value.charAt(pos);
+			if ((Character.isHighSurrogate(c)) && (pos + 1 < length) && (Character.isLowSurrogate(value.charAt(pos + 1)))) {
+				writeCharacterReference(Character.toCodePoint(c, value.charAt(pos + 1)));
+				pos ++;
+			} else if (Character.isSurrogate(c)) {
+				writeCharacterReference(c);
+			} else {
+				String entityName = getEntityName(c, false);
+				if (c == '"') {
+					out.append("&quot;");
+				} else if (entityName != null) {
+					out.append('&').append(entityName).append(';');
+				} else if (c < ' ') {
+					writeCharacterReference(c);
+				} else {
+					out.append(c);
+				}
+			}
+			pos ++;
+		}
+	}
+
+	private void writeCharacterReference(int codePoint) throws IOException {
+		out.append("&#").append(Integer.toString(codePoint)).append(';');
+	}
+
+	private static String toHexString(int value) {
+		String result = Integer.toHexString(value).toUpperCase();
+		if (result.length() == 1) {
+			return "0" + result;
+		}
+		return result;
+	}
+
+	private static boolean isControlCharacter(char c) {
+		if ((c == '\t') || (c == '\n') || (c == '\r')) {
+			return false;
+		}
+		return ((c >= 0x01) && (c <= 0x1F)) || ((c >= 0x7F) && (c <= 0x9F));
+	}
+
+	/**
+	 * @param useHtmlEntities true for all HTML entities, false for the XML entities only
+	 * @return the entity name for the character or null if the character is not written as entity
+	 */
+	private static String getEntityName(char c, boolean useHtmlEntities) {
+		switch (c) {
+		case '<':
+			return "lt";
+		case '>':
+			return "gt";
+		case '&':
+			return "amp";
+		default:
+			break;
+		}
+		if ((!useHtmlEntities) || (c < 127)) {
+			return null;
+		}
+		return HTML_ENTITY_NAMES.get(c);
+	}
+
+	private static Map<String, String> getSortedAttributes(BrightXmlNode node) {
+		return new TreeMap<String, String>(node.getAttributes());
+	}
+
+	private static int getElementFlags(String name) {
+		Integer result = ELEMENT_FLAGS.get(name.toUpperCase());
+		if (result == null) {
+			return FLAG_BLOCK;
+		}
+		return result;
+	}
+
+	private static Map<String, Integer> createElementFlags() {
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		for (String i: INLINE_ELEMENTS) {
+			result.put(i, 0);
+		}
+		for (String i: EMPTY_ELEMENTS) {
+			result.put(i, getElementFlags(result, i) | FLAG_EMPTY);
+		}
+		for (String i: RAW_ELEMENTS) {
+			result.put(i, getElementFlags(result, i) | FLAG_RAW);
+		}
+		result.put("HEAD", FLAG_BLOCK | FLAG_HEAD);
+		return result;
+	}
+
+	private static int getElementFlags(Map<String, Integer> flags, String name) {
+		Integer result = flags.get(name);
+		if (result == null) {
+			return FLAG_BLOCK;
+		}
+		return result;
+	}
+
+	private static Map<Character, String> createEntityNames() {
+		Map<Character, String> result = new HashMap<Character, String>();
+		for (String i: HTML_ENTITIES) {
+			int pos = i.indexOf('=');
+			result.put((char)Integer.parseInt(i.substring(pos + 1)), i.substring(0, pos));
+		}
+		return result;
+	}
+
+}
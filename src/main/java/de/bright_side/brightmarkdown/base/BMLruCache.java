@@ -0,0 +1,223 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * cache whose size is limited by the estimated number of bytes of the values. The cache is split into segments which each have their own lock
+ * and an equal share of the maximum size, so that threads which access different segments don't wait for each other. If a segment is full,
+ * the entries that have not been used for the longest time are removed. A value which is larger than the share of a segment is not cached
+ * and removes the value which has been cached for the same key before.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMLruCache<V> {
+	/**
+	 * estimates how many bytes a value and its entry in the cache take
+	 */
+	public interface SizeEstimator<V> {
+		long estimateSizeInBytes(V value);
+	}
+
+	private final long maxBytes;
+	private final SizeEstimator<V> sizeEstimator;
+	private final List<Segment> segments;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	private static class Entry<V> {
+		private final V value;
+		private final long sizeInBytes;
+
+		private Entry(V value, long sizeInBytes) {
+			this.value = value;
+			this.sizeInBytes = sizeInBytes;
+		}
+	}
+
+	private class Segment {
+		private final long maxBytes;
+		/** entries in the order of access, so the first entry has not been used for the longest time */
+		private final LinkedHashMap<BMContentHash, Entry<V>> entries = new LinkedHashMap<BMContentHash, Entry<V>>(16, 0.75f, true);
+		private long bytes = 0;
+		/** a lock instead of synchronized methods, so that a virtual thread which waits for the segment does not pin its carrier thread */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private Segment(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		private V get(BMContentHash key) {
+			lock.lock();
+			try {
+				Entry<V> entry = entries.get(key);
+				if (entry == null) {
+					return null;
+				}
+				return entry.value;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void put(BMContentHash key, Entry<V> entry) {
+			lock.lock();
+			try {
+				if (entry.sizeInBytes > maxBytes) {
+					//: the value is not kept, but an older value of the same key must not be returned instead
+					Entry<V> previous = entries.remove(key);
+					if (previous != null) {
+						bytes -= previous.sizeInBytes;
+					}
+					return;
+				}
+				Entry<V> previous = entries.put(key, entry);
+				bytes += entry.sizeInBytes;
+				if (previous != null) {
+					bytes -= previous.sizeInBytes;
+				}
+				Iterator<Map.Entry<BMContentHash, Entry<V>>> iterator = entries.entrySet().iterator();
+				while (bytes > maxBytes) {
+					bytes -= iterator.next().getValue().sizeInBytes;
+					iterator.remove();
+					evictionCount.incrementAndGet();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private int size() {
+			lock.lock();
+			try {
+				return entries.size();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private long getBytes() {
+			lock.lock();
+			try {
+				return bytes;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void clear() {
+			lock.lock();
+			try {
+				entries.clear();
+				bytes = 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @param maxBytes maximum estimated number of bytes of all cached entries
+	 * @param segmentCount number of segments that may be accessed at the same time
+	 */
+	public BMLruCache(long maxBytes, int segmentCount, SizeEstimator<V> sizeEstimator) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+		}
+		if (segmentCount < 1) {
+			throw new IllegalArgumentException("segmentCount must be at least 1: " + segmentCount);
+		}
+		this.maxBytes = maxBytes;
+		this.sizeEstimator = sizeEstimator;
+		segments = new ArrayList<Segment>(segmentCount);
+		for (int i = 0; i < segmentCount; i++) {
+			segments.add(new Segment(maxBytes / segmentCount));
+		}
+	}
+
+	/**
+	 * @return the cached value or null if there is none. The hit or miss is counted
+	 */
+	public V get(BMContentHash key) {
+		V result = getSegment(key).get(key);
+		if (result == null) {
+			missCount.incrementAndGet();
+		} else {
+			hitCount.incrementAndGet();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the cached value or null if there is none without counting a hit or miss
+	 */
+	public V peek(BMContentHash key) {
+		return getSegment(key).get(key);
+	}
+
+	public void put(BMContentHash key, V value) {
+		getSegment(key).put(key, new Entry<V>(value, sizeEstimator.estimateSizeInBytes(value)));
+	}
+
+	private Segment getSegment(BMContentHash key) {
+		//: spread the bits so that also the higher bits of the hash code decide about the segment
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return segments.get((hash & Integer.MAX_VALUE) % segments.size());
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * @return number of entries that have been removed because the cache was full
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public int getEntryCount() {
+		int result = 0;
+		for (Segment i: segments) {
+			result += i.size();
+		}
+		return result;
+	}
+
+	/**
+	 * @return estimated number of bytes of all cached entries
+	 */
+	public long getRetainedBytes() {
+		long result = 0;
+		for (Segment i: segments) {
+			result += i.getBytes();
+		}
+		return result;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * removes all entries. The counters are kept
+	 */
+	public void clear() {
+		for (Segment i: segments) {
+			i.clear();
+		}
+	}
+
+}
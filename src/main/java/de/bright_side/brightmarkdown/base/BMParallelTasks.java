@@ -0,0 +1,92 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * runs a list of independent tasks on an executor. The calling thread takes part in the work: each thread takes the next task that has not been
+ * taken yet, so the tasks are spread over the threads that are free and the call never waits for a task which has not been started. It therefore
+ * completes even if the executor is busy, rejects the helpers or is the pool of the calling thread itself, e.g. ForkJoinPool.commonPool().
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMParallelTasks {
+	private final List<? extends Callable<?>> tasks;
+	private final AtomicInteger nextTaskIndex = new AtomicInteger();
+	private final CountDownLatch doneLatch;
+	private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+	private BMParallelTasks(List<? extends Callable<?>> tasks) {
+		this.tasks = tasks;
+		this.doneLatch = new CountDownLatch(tasks.size());
+	}
+
+	/**
+	 * runs all tasks and returns when they are complete. If a task fails, the tasks which have not been started yet are skipped and the exception
+	 * of the first failed task is thrown after the running tasks are complete
+	 * @param tasks tasks which may run at the same time
+	 * @param executor executor for the helper threads
+	 * @param parallelism maximum number of threads including the calling thread which work on the tasks
+	 * @throws Exception the exception of the first failed task
+	 */
+	public static void runAll(List<? extends Callable<?>> tasks, Executor executor, int parallelism) throws Exception {
+		new BMParallelTasks(tasks).run(executor, parallelism);
+	}
+
+	private void run(Executor executor, int parallelism) throws Exception {
+		int helperCount = Math.min(parallelism, tasks.size()) - 1;
+		for (int i = 0; i < helperCount; i++) {
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						runTasks();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				//: the calling thread and the helpers which have been accepted run the remaining tasks
+				break;
+			}
+		}
+		runTasks();
+		doneLatch.await();
+		rethrowFailure();
+	}
+
+	private void runTasks() {
+		int index = nextTaskIndex.getAndIncrement();
+		while (index < tasks.size()) {
+			try {
+				if (failure.get() == null) {
+					tasks.get(index).call();
+				}
+			} catch (Throwable e) {
+				failure.compareAndSet(null, e);
+			} finally {
+				doneLatch.countDown();
+			}
+			index = nextTaskIndex.getAndIncrement();
+		}
+	}
+
+	private void rethrowFailure() throws Exception {
+		Throwable e = failure.get();
+		if (e == null) {
+			return;
+		}
+		if (e instanceof Exception) {
+			throw (Exception)e;
+		}
+		if (e instanceof Error) {
+			throw (Error)e;
+		}
+		throw new RuntimeException(e);
+	}
+
+}
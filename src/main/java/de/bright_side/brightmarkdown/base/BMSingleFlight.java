@@ -0,0 +1,71 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * coalesces calls with the same key that run at the same time: the first call executes the computation and all other calls wait for it and
+ * share its result (or its exception) instead of doing the same work again. Calls after the computation has finished start a new computation.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMSingleFlight<K, V> {
+	private final ConcurrentHashMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	public V execute(K key, Callable<V> computation) throws Exception {
+		return execute(key, computation, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxWaitNanos maximum time to wait for the result of another call with the same key or Long.MAX_VALUE to wait until it is complete.
+	 * A call that executes the computation itself is not limited by it
+	 * @throws TimeoutException thrown if the result of the other call has not been available in time. The other call continues for the calls that still wait
+	 */
+	public V execute(K key, Callable<V> computation, long maxWaitNanos) throws Exception {
+		FutureTask<V> task = new FutureTask<V>(computation);
+		FutureTask<V> runningTask = inFlight.putIfAbsent(key, task);
+		if (runningTask != null) {
+			coalescedCount.incrementAndGet();
+			return getResult(runningTask, maxWaitNanos);
+		}
+		try {
+			task.run();
+		} finally {
+			inFlight.remove(key, task);
+		}
+		return getResult(task, Long.MAX_VALUE);
+	}
+
+	private V getResult(FutureTask<V> task, long maxWaitNanos) throws Exception {
+		try {
+			if (maxWaitNanos == Long.MAX_VALUE) {
+				return task.get();
+			}
+			return task.get(maxWaitNanos, TimeUnit.NANOSECONDS);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return number of calls that did not execute the computation but waited for the result of a call with the same key
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+}
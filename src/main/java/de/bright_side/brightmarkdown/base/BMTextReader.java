@@ -0,0 +1,110 @@
+package de.bright_side.brightmarkdown.base;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException;
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException.Limit;
+
+/**
+ * reads markdown text from a Reader or a file into one character sequence without creating further copies.
+ * Files are memory-mapped and decoded piece by piece directly into a character buffer of the maximum decoded size, so the file content is neither
+ * read into a byte array first nor copied into a string afterwards.
+ * Malformed input is replaced like in new String(byte[], Charset).
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMTextReader {
+	private static final int CHAR_BUFFER_SIZE = 8192;
+	/** maximum number of bytes that are mapped at once */
+	private static final long MAX_MAPPED_SIZE = 64L * 1024 * 1024;
+	/** maximum length of an array */
+	private static final int MAX_CHARS = Integer.MAX_VALUE - 8;
+
+	public static CharSequence read(Reader reader) throws IOException {
+		StringBuilder result = new StringBuilder();
+		char[] buffer = new char[CHAR_BUFFER_SIZE];
+		int length = reader.read(buffer);
+		while (length >= 0) {
+			result.append(buffer, 0, length);
+			length = reader.read(buffer);
+		}
+		return result;
+	}
+
+	public static CharSequence read(Path path, Charset charset) throws IOException {
+		return read(path, charset, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param maxChars maximum length of the text. The buffer never holds more than one character beyond it, so a longer file is not decoded completely
+	 * @throws BMRenderLimitExceededException thrown if the text is longer than maxChars
+	 */
+	public static CharSequence read(Path path, Charset charset, long maxChars) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			//: one more character than allowed, so that a text which is too long fills the buffer and is found without decoding the rest of the file
+			long maxCapacity = (maxChars >= MAX_CHARS) ? MAX_CHARS : maxChars + 1;
+			CharBuffer result = CharBuffer.allocate((int)Math.min((long)Math.ceil(size * (double)decoder.maxCharsPerByte()), maxCapacity));
+			long position = 0;
+			do {
+				long mappedSize = Math.min(MAX_MAPPED_SIZE, size - position);
+				MappedByteBuffer bytes = channel.map(MapMode.READ_ONLY, position, mappedSize);
+				boolean endOfInput = position + mappedSize >= size;
+				CoderResult coderResult = decoder.decode(bytes, result, endOfInput);
+				while (coderResult.isOverflow()) {
+					result = grow(result, maxChars, maxCapacity);
+					coderResult = decoder.decode(bytes, result, endOfInput);
+				}
+				checkLength(result, maxChars);
+				//: bytes of a character that is split between two mapped pieces are left in the buffer and mapped again with the next piece
+				position += bytes.position();
+			} while (position < size);
+			CoderResult coderResult = decoder.flush(result);
+			while (coderResult.isOverflow()) {
+				result = grow(result, maxChars, maxCapacity);
+				coderResult = decoder.flush(result);
+			}
+			checkLength(result, maxChars);
+			result.flip();
+			return result;
+		}
+	}
+
+	private static void checkLength(CharBuffer buffer, long maxChars) {
+		if (buffer.position() > maxChars) {
+			throw new BMRenderLimitExceededException(Limit.INPUT_CHARS, maxChars);
+		}
+	}
+
+	/**
+	 * @return buffer with the content of the given buffer and more space, which is needed if the decoder creates more characters than it stated as maximum
+	 * or if the buffer has been allocated smaller because of the maximum length
+	 * @throws BMRenderLimitExceededException thrown if the buffer already has room for more than maxChars characters, so that the text is longer than allowed
+	 */
+	private static CharBuffer grow(CharBuffer buffer, long maxChars, long maxCapacity) {
+		if (buffer.capacity() > maxChars) {
+			throw new BMRenderLimitExceededException(Limit.INPUT_CHARS, maxChars);
+		}
+		CharBuffer result = CharBuffer.allocate((int)Math.min(buffer.capacity() + (long)Math.max(buffer.capacity() / 2, CHAR_BUFFER_SIZE), maxCapacity));
+		if (result.capacity() == buffer.capacity()) {
+			throw new OutOfMemoryError("The text is too long to be held in one character sequence");
+		}
+		buffer.flip();
+		result.put(buffer);
+		return result;
+	}
+
+}
@@ -1,6 +1,8 @@
 package de.bright_side.brightmarkdown.base;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 
@@ -55,15 +57,26 @@ public class BMUtil {
 		return getAllSectionsAndSubSections(section, false);
 	}
 	
+	/**
+	 * @return the section and all of its sub sections, each section before its children. The sections are collected without recursion, so
+	 * that deeply nested sections do not need a deep stack
+	 */
 	public static List<BMSection> getAllSectionsAndSubSections(BMSection section, boolean excludeCodeBlocks){
 		List<BMSection> result = new ArrayList<>();
-		if ((excludeCodeBlocks) && (section.getType() == MDType.CODE_BLOCK)){
-			return result;
-		}
-		result.add(section);
-		if (section.getChildren() != null){
-			for (BMSection i: section.getChildren()){
-				result.addAll(getAllSectionsAndSubSections(i, excludeCodeBlocks));
+		Deque<BMSection> sectionsToAdd = new ArrayDeque<>();
+		sectionsToAdd.push(section);
+		while (!sectionsToAdd.isEmpty()) {
+			BMSection current = sectionsToAdd.pop();
+			if ((excludeCodeBlocks) && (current.getType() == MDType.CODE_BLOCK)){
+				continue;
+			}
+			result.add(current);
+			List<BMSection> children = current.getChildren();
+			if (children != null){
+				//: pushed in reverse order so that the first child is added first
+				for (int i = children.size() - 1; i >= 0; i--) {
+					sectionsToAdd.push(children.get(i));
+				}
 			}
 		}
 		return result;
@@ -81,39 +94,37 @@ public class BMUtil {
 	}
 
 	public static String escapeSpecialCharacters(String text) {
-		String result = text;
-		log("text before escape: >>" + text.replace("\n", "\\n") + "<<");
-		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i+= 2){
-			String input = BMConstants.ESCAPE_CHARACTERS[i];
-			String output = "\\" + BMConstants.ESCAPE_CHARACTERS[i];
-			result = result.replace(input, output);
-		}
-		log("text after escape: >>" + result.replace("\n", "\\n") + "<<");
+		logEscape("text before escape", text);
+		String result = BMEscapeCodec.escapeSpecialCharacters(text);
+		logEscape("text after escape", result);
+		return result;
+	}
+
+	public static String escape(CharSequence text) {
+		logEscape("text before escape", text);
+		String result = BMEscapeCodec.escape(text);
+		logEscape("text after escape", result);
 		return result;
 	}
 
-	public static String escape(String text) {
-		String result = text;
-		log("text before escape: >>" + text.replace("\n", "\\n") + "<<");
-		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i+= 2){
-			String input = "\\" + BMConstants.ESCAPE_CHARACTERS[i];
-			String output = BMConstants.ESCAPE_MARK + BMConstants.ESCAPE_CHARACTERS[i + 1] + BMConstants.ESCAPE_MARK;
-			result = result.replace(input, output);
-		}
-		log("text after escape: >>" + result.replace("\n", "\\n") + "<<");
+	public static CharSequence escapeWithoutCopy(CharSequence text) {
+		logEscape("text before escape", text);
+		CharSequence result = BMEscapeCodec.escapeWithoutCopy(text);
+		logEscape("text after escape", result);
 		return result;
 	}
+
+	/**
+	 * only creates the log message if logging is active, because the message contains a copy of the whole text
+	 */
+	private static void logEscape(String message, CharSequence text) {
+		if (BMConstants.LOGGING_ACTIVE) {
+			log(message + ": >>" + text.toString().replace("\n", "\\n") + "<<");
+		}
+	}
 	
 	public static String unescape(String text) {
-//		log("text before unescape: >>" + text.replace("\n", "\\n") + "<<");
-		String result = text;
-		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i+= 2){
-			String input = BMConstants.ESCAPE_MARK + BMConstants.ESCAPE_CHARACTERS[i + 1] + BMConstants.ESCAPE_MARK;
-			String output = BMConstants.ESCAPE_CHARACTERS[i];
-			result = result.replace(input, output);
-		}
-//		log("text after unescape: >>" + result.replace("\n", "\\n") + "<<");
-		return result;
+		return BMEscapeCodec.unescape(text);
 	}
 	
 	public static void removeDeeperLevels(Map<Integer, ?> levelToListNodeMap, int level) {
@@ -53,7 +53,7 @@ public class BrightXmlNode {
 
 	private void setTextContent(Element element, String textContent) {
 		if (textContent != null) {
-			element.setTextContent(textContent);
+			element.setTextContent(BMEscapeCodec.unescape(textContent));
 		}
 	}
 
@@ -62,7 +62,7 @@ public class BrightXmlNode {
 			return;
 		}
 		for (Entry<String, String> i: attributes.entrySet()) {
-			element.setAttribute(i.getKey(), i.getValue());
+			element.setAttribute(i.getKey(), BMEscapeCodec.unescape(i.getValue()));
 		}
 	}
 	
@@ -131,6 +131,13 @@ public class BrightXmlNode {
 		return (attributes != null) && (!attributes.isEmpty());
 	}
 
+	public Map<String, String> getAttributes() {
+		if (attributes == null) {
+			return new LinkedHashMap<String, String>();
+		}
+		return attributes;
+	}
+
 	public String getTextContent() {
 		if (textContent == null) {
 			return "";
@@ -0,0 +1,488 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.StringTokenizer;
+import java.util.TreeMap;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+/**
+ * classifies the raw lines of a document as horizontal rules, table of contents markers, headings, checkbox items,
+ * bullet points, numbered items or table rows. Each raw line is only looked at once and the indicator at the beginning
+ * of the line is looked up in a map instead of testing each indicator one after the other.
+ *
+ * The rules are applied in a fixed order (see the RULE_... constants). If a line has sub sections (e.g. because it contains
+ * a code block) the text of the line is moved into a new raw line child section which may then only be classified by the rules
+ * that come after the rule which matched the parent line.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMBlockClassifier {
+	private static final int RULE_HORIZONTAL_RULE = 0;
+	private static final int RULE_TABLE_OF_CONTENTS = 1;
+	private static final int RULE_HEADING = 2;
+	private static final int RULE_UNCHECKED_ITEM = RULE_HEADING + BMConstants.HEADINGS_INDICATOR.length;
+	private static final int RULE_CHECKED_ITEM = RULE_UNCHECKED_ITEM + BMConstants.UNCHECKED_ITEM_INDICATORS.length;
+	private static final int RULE_LIST_ENTRY_BY_INDENT = RULE_CHECKED_ITEM + BMConstants.CHECKED_ITEM_INDICATORS.length;
+	private static final int RULE_BULLET_POINT = RULE_LIST_ENTRY_BY_INDENT + 1;
+	private static final int RULE_NUMBERED_ITEM = RULE_BULLET_POINT + BMConstants.BULLET_POINT_INDICATORS_A.length + BMConstants.BULLET_POINT_INDICATORS_B.length
+			+ BMConstants.BULLET_POINT_INDICATORS_C.length + BMConstants.BULLET_POINT_INDICATORS_D.length;
+	private static final int RULE_TABLE_ROW = RULE_NUMBERED_ITEM + BMConstants.NUMBERED_ITEM_INDICATORS.length;
+
+	private static final List<IndicatorRule> INDICATOR_RULES = createIndicatorRules();
+	private static final Map<String, IndicatorRule> INDICATOR_TO_RULE_MAP = createIndicatorToRuleMap(INDICATOR_RULES);
+	private static final int MAX_SPACES_IN_INDICATOR = countMaxSpacesInIndicator(INDICATOR_RULES);
+
+	private BMTextParserLogic textParser = new BMTextParserLogic();
+	private Integer previousListItemIndent = null;
+	private Integer previousListItemLevel = null;
+	private Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
+	/** rule index from which the raw line child that was created by the last call of classifyRawLine is to be classified */
+	private int createdChildFirstRule;
+	/** list items whose level is assigned later (see classifyBlocksWithoutListItemLevels) or null if the levels are assigned while classifying */
+	private DeferredListItems deferredListItems = null;
+
+	private static class IndicatorRule {
+		private int ruleIndex;
+		private String indicator;
+		private MDType type;
+		private int level;
+
+		public IndicatorRule(int ruleIndex, String indicator, MDType type, int level) {
+			this.ruleIndex = ruleIndex;
+			this.indicator = indicator;
+			this.type = type;
+			this.level = level;
+		}
+	}
+
+	/**
+	 * indent and levels of the previous list items which decide about the level of the following list items. Classifying the same sections 
+	 * with equal states before has the same result and leads to equal states afterwards.
+	 */
+	public static final class State {
+		private final Integer previousListItemIndent;
+		private final Integer previousListItemLevel;
+		private final Map<Integer, Integer> levelToIndentMap;
+
+		private State(BMBlockClassifier classifier) {
+			previousListItemIndent = classifier.previousListItemIndent;
+			previousListItemLevel = classifier.previousListItemLevel;
+			levelToIndentMap = new TreeMap<Integer, Integer>(classifier.levelToIndentMap);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof State)) {
+				return false;
+			}
+			State otherState = (State)other;
+			return Objects.equals(previousListItemIndent, otherState.previousListItemIndent) && Objects.equals(previousListItemLevel, otherState.previousListItemLevel)
+					&& levelToIndentMap.equals(otherState.levelToIndentMap);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(previousListItemIndent, previousListItemLevel, levelToIndentMap);
+		}
+	}
+
+	/**
+	 * sections which have been checked for being list items with a single indicator char in the order of the text. Their level depends on the
+	 * list items before, so it is assigned after the parts of a text have been classified independently of each other (see assignListItemLevels)
+	 */
+	public static final class DeferredListItems {
+		private final List<BMSection> sections = new ArrayList<BMSection>();
+		/** indent of the list item or null if the section is no list item and therefore resets the level */
+		private final List<Integer> indents = new ArrayList<Integer>();
+
+		private void add(BMSection section, Integer indent) {
+			sections.add(section);
+			indents.add(indent);
+		}
+	}
+
+	public State saveState() {
+		return new State(this);
+	}
+
+	public void restoreState(State state) {
+		previousListItemIndent = state.previousListItemIndent;
+		previousListItemLevel = state.previousListItemLevel;
+		levelToIndentMap = new TreeMap<Integer, Integer>(state.levelToIndentMap);
+	}
+
+	public void classifyBlocks(BMSection topSection) {
+		classifyBlocks(topSection, RULE_HORIZONTAL_RULE);
+	}
+
+	/**
+	 * classifies the sections like classifyBlocks but does not set the levels of the list items which depend on the list items before,
+	 * so that the parts of a text can be classified in parallel. The state of the classifier is not changed.
+	 * @return the list items which are to be passed to assignListItemLevels in the order of the text
+	 */
+	public DeferredListItems classifyBlocksWithoutListItemLevels(BMSection topSection) {
+		deferredListItems = new DeferredListItems();
+		classifyBlocks(topSection);
+		DeferredListItems result = deferredListItems;
+		deferredListItems = null;
+		return result;
+	}
+
+	/**
+	 * sets the levels of the list items of a part of the text which has been classified by classifyBlocksWithoutListItemLevels.
+	 * If the parts are passed in the order of the text, the levels are the same as the ones set by classifyBlocks for the whole text
+	 */
+	public void assignListItemLevels(DeferredListItems listItems) {
+		for (int i = 0; i < listItems.sections.size(); i++) {
+			Integer indent = listItems.indents.get(i);
+			if (indent == null) {
+				resetListItemLevel();
+			} else {
+				listItems.sections.get(i).setLevel(readListItemLevel(indent));
+			}
+		}
+	}
+
+	private void classifyBlocks(BMSection section, int firstRule) {
+		BMSection createdChild = null;
+		int useCreatedChildFirstRule = 0;
+		if ((section.getType() == MDType.RAW_LINE) && (section.getRawText() != null)) {
+			createdChild = classifyRawLine(section, firstRule);
+			useCreatedChildFirstRule = createdChildFirstRule;
+		}
+		if (section.getChildren() == null) {
+			return;
+		}
+
+		for (BMSection i: section.getChildren()) {
+			if ((createdChild != null) && (i == createdChild)) {
+				classifyBlocks(i, useCreatedChildFirstRule);
+			} else {
+				classifyBlocks(i, RULE_HORIZONTAL_RULE);
+			}
+		}
+	}
+
+	/**
+	 * @return the raw line child section that has been created because the section has sub sections or null if no section was created
+	 */
+	private BMSection classifyRawLine(BMSection section, int firstRule) {
+		String rawText = section.getRawText();
+		String trimmedText = rawText.trim();
+
+		if ((firstRule <= RULE_HORIZONTAL_RULE) && (isHorizontalRule(trimmedText))) {
+			//: indicator occurs 3 times or more and there is nothing else on the line (except leading/trailing white space)
+			section.setType(MDType.HORIZONTAL_RULE);
+			section.setRawText("");
+			return null;
+		}
+		if ((firstRule <= RULE_TABLE_OF_CONTENTS) && (trimmedText.equals(BMConstants.TABLE_OF_CONTENT_MARKER))) {
+			section.setType(MDType.TABLE_OF_CONTENTS);
+			section.setRawText("");
+			return null;
+		}
+
+		if (!section.isNested()) {
+			IndicatorRule rule = findIndicatorRule(trimmedText, firstRule, RULE_LIST_ENTRY_BY_INDENT);
+			if (rule != null) {
+				return applyIndicatorRule(section, trimmedText, rule);
+			}
+			if (firstRule <= RULE_LIST_ENTRY_BY_INDENT) {
+				BMSection result = parseListEntryByIndent(section);
+				if (section.getType() != MDType.RAW_LINE) {
+					createdChildFirstRule = RULE_LIST_ENTRY_BY_INDENT + 1;
+					return result;
+				}
+			}
+			rule = findIndicatorRule(trimmedText, firstRule, RULE_TABLE_ROW);
+			if (rule != null) {
+				return applyIndicatorRule(section, trimmedText, rule);
+			}
+		}
+
+		if ((firstRule <= RULE_TABLE_ROW) && (rawText.contains(BMConstants.TABLE_CELL_SEPARATOR))) {
+			parseTableRow(section);
+		}
+		return null;
+	}
+
+	private boolean isHorizontalRule(String trimmedText) {
+		int length = trimmedText.length();
+		if (length < 3) {
+			return false;
+		}
+		char indicator = trimmedText.charAt(0);
+		boolean validIndicator = false;
+		for (String i: BMConstants.HORIZONTAL_RULE_INDICATORS) {
+			if (i.charAt(0) == indicator) {
+				validIndicator = true;
+			}
+		}
+		if (!validIndicator) {
+			return false;
+		}
+		for (int i = 1; i < length; i++) {
+			if (trimmedText.charAt(i) != indicator) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * an indicator is always followed by a space. So the text before each of the first spaces is a candidate which is looked up in the map.
+	 * @return the matching rule with the lowest index that is in the range from firstRule (inclusive) to endRule (exclusive) or null if no rule matches
+	 */
+	private IndicatorRule findIndicatorRule(String trimmedText, int firstRule, int endRule) {
+		IndicatorRule result = null;
+		int spacePos = trimmedText.indexOf(' ');
+		int spacesChecked = 0;
+		while ((spacePos >= 0) && (spacesChecked <= MAX_SPACES_IN_INDICATOR)) {
+			IndicatorRule rule = INDICATOR_TO_RULE_MAP.get(trimmedText.substring(0, spacePos));
+			if ((rule != null) && (rule.ruleIndex >= firstRule) && (rule.ruleIndex < endRule)) {
+				if ((result == null) || (rule.ruleIndex < result.ruleIndex)) {
+					result = rule;
+				}
+			}
+			spacePos = trimmedText.indexOf(' ', spacePos + 1);
+			spacesChecked ++;
+		}
+		return result;
+	}
+
+	private BMSection applyIndicatorRule(BMSection section, String trimmedText, IndicatorRule rule) {
+		section.setRawText(trimmedText.substring(rule.indicator.length() + 1));
+		section.setOriginalPlainText(removeFormatting(section.getRawText()));
+		section.setType(rule.type);
+		section.setLevel(rule.level);
+
+		if (BMUtil.hasChildren(section)) {
+			BMSection result = BMUtil.createSection(section, MDType.RAW_LINE, section.getRawText());
+			section.getChildren().add(0, result);
+			section.setRawText(null);
+			createdChildFirstRule = rule.ruleIndex + 1;
+			return result;
+		}
+		return null;
+	}
+
+	/**
+	 * lists items with a single indicator char get their level from the indent compared to the previous list items
+	 * @return the raw line child section that has been created because the section has sub sections or null if no section was created
+	 */
+	private BMSection parseListEntryByIndent(BMSection section) {
+		String rawText = section.getRawText();
+		MDType type = MDType.BULLET_POINT;
+		Integer listItemLevelIndent = readListItemIndet(rawText, BMConstants.BULLET_POINT_INDICATORS_CHARS_LIST);
+		if (listItemLevelIndent == null) { //: could not find bullet point, try numbered item indicator
+			listItemLevelIndent = readListItemIndet(rawText, BMConstants.NUMBERED_ITEM__INDICATORS_CHARS_LIST);
+			type = MDType.NUMBERED_ITEM;
+		}
+
+		if (deferredListItems != null) {
+			deferredListItems.add(section, listItemLevelIndent);
+		}
+		if (listItemLevelIndent == null){ //: neither bullet point nor numbered item
+			if (deferredListItems == null) {
+				resetListItemLevel();
+			}
+			return null;
+		}
+
+		Integer listItemLevel = null;
+		if (deferredListItems == null) {
+			listItemLevel = readListItemLevel(listItemLevelIndent);
+		}
+		section.setType(type);
+		section.setLevel(listItemLevel);
+		String newRawText = rawText.substring(textParser.findPosAfterLeadindSpaces(rawText, listItemLevelIndent));
+		if (BMUtil.hasChildren(section)) {
+			BMSection result = BMUtil.createSection(section, MDType.RAW_LINE, newRawText);
+			section.getChildren().add(0, result);
+			section.setRawText(null);
+			return result;
+		}
+		section.setRawText(newRawText);
+		return null;
+	}
+
+	private void resetListItemLevel() {
+		previousListItemIndent = null;
+		previousListItemLevel = null;
+	}
+
+	/**
+	 * @return the level of a list item with the given indent which depends on the indent of the previous list items
+	 */
+	private int readListItemLevel(int listItemLevelIndent) {
+		Integer listItemLevel = null;
+		int indentDifference = 0;
+		if (previousListItemIndent != null){
+			indentDifference = listItemLevelIndent - previousListItemIndent;
+		} else {
+			previousListItemLevel = 1;
+			listItemLevel = 1;
+			levelToIndentMap.put(listItemLevel, listItemLevelIndent);
+		}
+
+		if (Math.abs(indentDifference) < BMConstants.LIST_INDENT_LEVEL_THRESHOLD){
+			//: only few spaces, assume same level
+			listItemLevel = previousListItemLevel;
+		} else if (indentDifference > 0){
+			//: one more level
+			listItemLevel = previousListItemLevel + 1;
+			levelToIndentMap.put(listItemLevel, listItemLevelIndent);
+		} else {
+			//: one or more(!) levels up
+			listItemLevel = findMatchingLevel(levelToIndentMap, listItemLevelIndent);
+			BMUtil.removeDeeperLevels(levelToIndentMap, listItemLevel);
+		}
+		previousListItemIndent = listItemLevelIndent;
+		previousListItemLevel = listItemLevel;
+		return listItemLevel;
+	}
+
+	protected Integer readListItemIndet(String rawText, List<String> indicatorsList) {
+		int indent = 0;
+		boolean indicatorFound = false;
+		for (char i: rawText.toCharArray()){
+			if (!indicatorFound){
+				if (i == ' '){
+					indent ++;
+				} else if (indicatorsList.contains(new String("" + i))){
+					indicatorFound = true;
+				} else {
+					//: after optional spaces there is no bullet point indicator but something else
+					return null;
+				}
+			} else {
+				if (i == ' '){
+					//: found space after indicator
+					return indent;
+				} else {
+					//: found a different character after the indicator, so either it is another indicator like '**' or it is not the syntax for list items
+					return null;
+				}
+			}
+		}
+		if (!indicatorFound){
+			return null;
+		}
+		return indent;
+	}
+
+	protected Integer findMatchingLevel(Map<Integer, Integer> levelToIndentMap, int indent) {
+		int bestMatchDifference = Integer.MAX_VALUE;
+		int bestMatchLevel = 1;
+
+		for (Entry<Integer, Integer> i: levelToIndentMap.entrySet()){
+			int difference = Math.abs(indent - i.getValue());
+			if (difference < bestMatchDifference){
+				bestMatchDifference = difference;
+				bestMatchLevel = i.getKey();
+			}
+		}
+
+		return bestMatchLevel;
+	}
+
+	private void parseTableRow(BMSection section) {
+		List<String> cellTexts = readCellTexts(section.getRawText().trim());
+		section.setOriginalPlainText(removeFormatting(section.getRawText()));
+		section.setRawText(null);
+		section.setType(MDType.TABLE_ROW);
+		List<BMSection> children = new ArrayList<BMSection>();
+		for (String i: cellTexts) {
+			children.add(BMUtil.createSection(section, MDType.TABLE_CELL, i));
+		}
+		section.setChildren(children);
+	}
+
+	private List<String> readCellTexts(String fullText) {
+		List<String> result = new ArrayList<String>();
+		StringTokenizer tokenizer = new StringTokenizer(fullText, BMConstants.TABLE_CELL_SEPARATOR, true);
+		boolean lastWasSeparator = false;
+		boolean firstItem = true;
+		while (tokenizer.hasMoreTokens()) {
+			String token = tokenizer.nextToken();
+			if (BMConstants.TABLE_CELL_SEPARATOR.equals(token)) {
+				if ((lastWasSeparator) || (firstItem)) {
+					result.add("");
+				}
+				lastWasSeparator = true;
+			} else {
+				lastWasSeparator = false;
+				result.add(token);
+			}
+			firstItem = false;
+		}
+		if (lastWasSeparator) {
+			result.add("");
+		}
+		return result;
+	}
+
+	private String removeFormatting(String rawText) {
+		return rawText.replace("\\", "").replace("*", "").replace("_", "").replace("~", "");
+	}
+
+	private static List<IndicatorRule> createIndicatorRules() {
+		List<IndicatorRule> result = new ArrayList<IndicatorRule>();
+		addIndicatorRules(result, RULE_HEADING, BMConstants.HEADINGS_INDICATOR, MDType.HEADING, true);
+		addIndicatorRules(result, RULE_UNCHECKED_ITEM, BMConstants.UNCHECKED_ITEM_INDICATORS, MDType.UNCHECKED_ITEM, false);
+		addIndicatorRules(result, RULE_CHECKED_ITEM, BMConstants.CHECKED_ITEM_INDICATORS, MDType.CHECKED_ITEM, false);
+		int ruleIndex = RULE_BULLET_POINT;
+		for (String[] i: new String[][] {BMConstants.BULLET_POINT_INDICATORS_A, BMConstants.BULLET_POINT_INDICATORS_B
+				, BMConstants.BULLET_POINT_INDICATORS_C, BMConstants.BULLET_POINT_INDICATORS_D}) {
+			addIndicatorRules(result, ruleIndex, i, MDType.BULLET_POINT, true);
+			ruleIndex += i.length;
+		}
+		addIndicatorRules(result, RULE_NUMBERED_ITEM, BMConstants.NUMBERED_ITEM_INDICATORS, MDType.NUMBERED_ITEM, false);
+		return result;
+	}
+
+	private static void addIndicatorRules(List<IndicatorRule> rules, int firstRuleIndex, String[] indicators, MDType type, boolean setLevelDepth) {
+		for (int i = 0; i < indicators.length; i++) {
+			int level = 1;
+			if (setLevelDepth) {
+				level = i + 1;
+			}
+			rules.add(new IndicatorRule(firstRuleIndex + i, indicators[i], type, level));
+		}
+	}
+
+	private static Map<String, IndicatorRule> createIndicatorToRuleMap(List<IndicatorRule> rules) {
+		Map<String, IndicatorRule> result = new HashMap<String, IndicatorRule>();
+		for (IndicatorRule i: rules) {
+			if (!result.containsKey(i.indicator)) {
+				result.put(i.indicator, i);
+			}
+		}
+		return result;
+	}
+
+	private static int countMaxSpacesInIndicator(List<IndicatorRule> rules) {
+		int result = 0;
+		for (IndicatorRule i: rules) {
+			int spaces = 0;
+			for (char c: i.indicator.toCharArray()) {
+				if (c == ' ') {
+					spaces ++;
+				}
+			}
+			result = Math.max(result, spaces);
+		}
+		return result;
+	}
+
+}
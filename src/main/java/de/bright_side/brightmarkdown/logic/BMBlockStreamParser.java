@@ -0,0 +1,273 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+/**
+ * reads markdown text from a Reader and parses it block by block, so that only the text of the current block and not the whole document
+ * needs to be held in memory. A block is a sequence of top level sections that is turned into HTML together: a paragraph (all subsequent raw lines),
+ * a list (all subsequent list items), a table (the rows and the header separator) or any other single top level section.
+ * Each block is parsed the same way as it would be as part of the whole document: the text is only split at the end of a line that is not part
+ * of a code block and the state of the BMBlockClassifier (indent of the previous list items) is kept from block to block.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMBlockStreamParser {
+	private static final int READ_SIZE = 64 * 1024;
+
+	private final Reader reader;
+	private final int readSize;
+	private final BMSectionParserLogic sectionParser;
+	private final Map<String, String> imageNameToPathMap;
+	private final BMBlockClassifier blockClassifier = new BMBlockClassifier();
+	/** classified top level sections which have not been returned as part of a block yet */
+	private final ArrayDeque<BMSection> sections = new ArrayDeque<BMSection>();
+	/** text that has been read but not escaped yet because the last line is not complete */
+	private final StringBuilder unescapedText = new StringBuilder();
+	/** escaped text that has not been converted into sections yet */
+	private String escapedText = "";
+	private boolean startRead = false;
+	private boolean endOfInput = false;
+	private boolean allSectionsRead = false;
+	/** true if the text starts with BMConstants.NO_MARKDOWN_MARK and all special characters are therefore to be escaped */
+	private boolean noMarkdown = false;
+	/** true while the white space after the BMConstants.NO_MARKDOWN_MARK is to be removed */
+	private boolean skipLeadingWhiteSpace = false;
+
+	/**
+	 * @param reader provides the markdown text. The reader is read completely but not closed
+	 * @param imageNameToPathMap mapping which is applied to each block (see BMSectionParserLogic.applyImageNameToPathMapping)
+	 */
+	public BMBlockStreamParser(Reader reader, BMSectionParserLogic sectionParser, Map<String, String> imageNameToPathMap) {
+		this(reader, sectionParser, imageNameToPathMap, READ_SIZE);
+	}
+
+	/**
+	 * @param readSize minimum number of characters that are read at once
+	 */
+	protected BMBlockStreamParser(Reader reader, BMSectionParserLogic sectionParser, Map<String, String> imageNameToPathMap, int readSize) {
+		this.reader = reader;
+		this.readSize = readSize;
+		this.sectionParser = sectionParser;
+		this.imageNameToPathMap = imageNameToPathMap;
+	}
+
+	/**
+	 * splits text that has already been read and classified completely into blocks
+	 * @param classifiedTopSection result of BMSectionParserLogic.toClassifiedSections. If the code blocks have not been parsed yet, they are to be parsed 
+	 * before parseBlock (see BMSectionParserLogic.parseClassifiedCodeSections)
+	 */
+	public BMBlockStreamParser(BMSection classifiedTopSection, BMSectionParserLogic sectionParser, Map<String, String> imageNameToPathMap) {
+		this(null, sectionParser, imageNameToPathMap, READ_SIZE);
+		sections.addAll(classifiedTopSection.getChildren());
+		startRead = true;
+		endOfInput = true;
+		allSectionsRead = true;
+	}
+
+	/**
+	 * @return the next block as root section whose children are the top level sections of the block or null if the end of the text has been reached
+	 */
+	public BMSection nextBlock() throws IOException {
+		List<BMSection> block = nextClassifiedBlock();
+		if (block == null) {
+			return null;
+		}
+		return parseBlock(block, sectionParser);
+	}
+
+	/**
+	 * @return the classified top level sections of the next block which have not been parsed yet (see parseBlock) or null if the end of the text has been reached
+	 */
+	public List<BMSection> nextClassifiedBlock() throws IOException {
+		List<BMSection> block = new ArrayList<BMSection>();
+		BMSection section = peekSection();
+		while ((section != null) && ((block.isEmpty()) || (belongsToBlock(block, section)))) {
+			block.add(sections.poll());
+			section = peekSection();
+		}
+		if (block.isEmpty()) {
+			return null;
+		}
+		return block;
+	}
+
+	/**
+	 * @param block result of nextClassifiedBlock
+	 * @param blockSectionParser parser for the block, e.g. with a context of its own to collect the warnings of the block
+	 * @return the block as root section whose children are the parsed top level sections of the block
+	 */
+	public BMSection parseBlock(List<BMSection> block, BMSectionParserLogic blockSectionParser) {
+		return parseBlock(createBlockSection(block), blockSectionParser);
+	}
+
+	/**
+	 * @param blockSection result of createBlockSection
+	 * @return the block section with the parsed top level sections of the block
+	 */
+	public BMSection parseBlock(BMSection blockSection, BMSectionParserLogic blockSectionParser) {
+		blockSectionParser.parseClassifiedSections(blockSection);
+		blockSectionParser.applyImageNameToPathMapping(blockSection, imageNameToPathMap);
+		return blockSection;
+	}
+
+	/**
+	 * @param block result of nextClassifiedBlock
+	 * @return root section whose children are the top level sections of the block
+	 */
+	public BMSection createBlockSection(List<BMSection> block) {
+		BMSection result = new BMSection();
+		result.setType(MDType.ROOT);
+		result.setChildren(block);
+		return result;
+	}
+
+	/**
+	 * the sections of a block are the same that BMHtmlCreator turns into HTML together: the raw lines that BMSectionParserLogic turns into one paragraph,
+	 * subsequent list items and the rows of a table including the separator between header and the other rows
+	 */
+	static boolean belongsToBlock(List<BMSection> block, BMSection section) {
+		MDType blockType = block.get(0).getType();
+		MDType type = section.getType();
+		if (blockType == MDType.RAW_LINE) {
+			return type == MDType.RAW_LINE;
+		}
+		if (isListItem(blockType)) {
+			return isListItem(type);
+		}
+		if (blockType == MDType.TABLE_ROW) {
+			if (type == MDType.TABLE_ROW) {
+				return true;
+			}
+			return (type == MDType.HORIZONTAL_RULE) && (!containsType(block, MDType.HORIZONTAL_RULE));
+		}
+		return false;
+	}
+
+	private static boolean isListItem(MDType type) {
+		return (type == MDType.BULLET_POINT) || (type == MDType.NUMBERED_ITEM);
+	}
+
+	private static boolean containsType(List<BMSection> sections, MDType type) {
+		for (BMSection i: sections) {
+			if (i.getType() == type) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the next top level section without removing it or null if there are no more sections
+	 */
+	private BMSection peekSection() throws IOException {
+		while ((sections.isEmpty()) && (!allSectionsRead)) {
+			readSections();
+		}
+		return sections.peek();
+	}
+
+	private void readSections() throws IOException {
+		if (!startRead) {
+			readStart();
+		}
+		//: read at least as much as is left from the last time, so that a long incomplete rest (e.g. an open code block) is not scanned too often
+		readText(Math.max(readSize, escapedText.length() + unescapedText.length()));
+		escapeCompleteLines();
+
+		BMSection topSection = new BMSection();
+		topSection.setType(MDType.ROOT);
+		topSection.setChildren(new ArrayList<BMSection>());
+		BMLineScanner lineScanner = new BMLineScanner(escapedText);
+		int pos = sectionParser.readTopLevelSections(lineScanner, endOfInput, topSection);
+		escapedText = lineScanner.getText(pos, lineScanner.getLength());
+		allSectionsRead = endOfInput;
+
+		sectionParser.parseCodeSections(topSection);
+		blockClassifier.classifyBlocks(topSection);
+		sections.addAll(topSection.getChildren());
+	}
+
+	/**
+	 * reads the beginning of the text to find out if it starts with BMConstants.NO_MARKDOWN_MARK (see BrightMarkdown.getUseMarkdownText)
+	 */
+	private void readStart() throws IOException {
+		startRead = true;
+		int start = skipWhiteSpace(0);
+		while ((!endOfInput) && (unescapedText.length() < start + BMConstants.NO_MARKDOWN_MARK.length())) {
+			readText(readSize);
+			start = skipWhiteSpace(start);
+		}
+		int markEnd = start + BMConstants.NO_MARKDOWN_MARK.length();
+		if ((markEnd <= unescapedText.length()) && (unescapedText.substring(start, markEnd).equals(BMConstants.NO_MARKDOWN_MARK))) {
+			noMarkdown = true;
+			skipLeadingWhiteSpace = true;
+			unescapedText.delete(0, markEnd);
+		}
+	}
+
+	private int skipWhiteSpace(int startPos) {
+		int pos = startPos;
+		while ((pos < unescapedText.length()) && (unescapedText.charAt(pos) <= ' ')) {
+			pos ++;
+		}
+		return pos;
+	}
+
+	/**
+	 * moves the complete lines from the unescaped text to the escaped text. A backslash never escapes a line break, so escaping the text line by line
+	 * has the same result as escaping the whole text at once.
+	 */
+	private void escapeCompleteLines() {
+		int end = unescapedText.lastIndexOf(BMConstants.LINE_BREAK) + 1;
+		if (endOfInput) {
+			end = unescapedText.length();
+		}
+		if (noMarkdown) {
+			//: the text is trimmed, so white space is only known to belong to the text when more text follows
+			if (skipLeadingWhiteSpace) {
+				unescapedText.delete(0, skipWhiteSpace(0));
+				skipLeadingWhiteSpace = unescapedText.length() == 0;
+			}
+			int lastCharPos = unescapedText.length() - 1;
+			while ((lastCharPos >= 0) && (unescapedText.charAt(lastCharPos) <= ' ')) {
+				lastCharPos --;
+			}
+			end = lastCharPos + 1;
+		}
+		String text = unescapedText.substring(0, end);
+		unescapedText.delete(0, end);
+		if (endOfInput) {
+			unescapedText.setLength(0);
+		}
+		if (noMarkdown) {
+			text = BMUtil.escapeSpecialCharacters(text);
+		}
+		escapedText = escapedText + BMUtil.escape(text);
+	}
+
+	private void readText(int amount) throws IOException {
+		char[] buffer = new char[Math.min(amount, READ_SIZE)];
+		int readAmount = 0;
+		while ((!endOfInput) && (readAmount < amount)) {
+			int length = reader.read(buffer, 0, Math.min(buffer.length, amount - readAmount));
+			if (length < 0) {
+				endOfInput = true;
+			} else {
+				unescapedText.append(buffer, 0, length);
+				readAmount += length;
+			}
+		}
+	}
+
+}
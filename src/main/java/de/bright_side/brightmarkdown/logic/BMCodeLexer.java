@@ -0,0 +1,306 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMPosAndTag;
+
+/**
+ * lexer for code blocks that is compiled once from a BMCodeFormat. It contains the symbols (strings, comments, tags and the special
+ * format mark) sorted by length, a character class table, the keyword set and the end tags used while reading strings, comments and tags.
+ * The lexer is immutable and may be shared between threads. Lexers are cached per format instance, so changes to a format after
+ * its lexer has been created are not picked up. The lexer keeps no reference to its format so that the cache does not keep formats alive.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMCodeLexer {
+	private static final String LINE_END = "\n";
+	private static final String TAG_NAME_END = " ";
+	private static final int CHAR_CLASS_TABLE_SIZE = 128;
+	private static final byte CHAR_CLASS_WORD = 1;
+	private static final byte CHAR_CLASS_SYMBOL_START = 2;
+	private static final Map<BMCodeFormat, BMCodeLexer> CACHE = new WeakHashMap<BMCodeFormat, BMCodeLexer>();
+	/** a lock instead of a synchronized map, so that a virtual thread which waits for the cache does not pin its carrier thread */
+	private static final ReentrantLock CACHE_LOCK = new ReentrantLock();
+
+	private final boolean ignoreCase;
+	private final String escapeCharacter;
+	/** all tags that are not plain words, longest first so that the first match at a position is the longest one */
+	private final String[] symbols;
+	/** symbols that are keywords and must therefore not be part of a longer word */
+	private final Set<String> symbolKeywords;
+	/** keywords that are plain words. In upper case if ignoreCase is set */
+	private final Set<String> wordKeywords;
+	private final int maxWordKeywordLength;
+	private final byte[] charClasses;
+	/** start characters of symbols that are not covered by the char class table, sorted */
+	private final char[] otherSymbolStartChars;
+	private final boolean symbolsInWords;
+	private final Map<String, List<String>> stringOrCommentEndTags;
+	private final List<String> tagStartEndTags;
+
+	private BMCodeLexer(BMCodeFormat format) {
+		this.ignoreCase = format.isKeywordsIgnoreCase();
+		this.escapeCharacter = format.getEscapeCharacter();
+
+		List<String> symbolList = new ArrayList<String>();
+		addIfNotEmpty(symbolList, BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK);
+		addIfNotEmpty(symbolList, format.getStringIndicators());
+		addIfNotEmpty(symbolList, format.getBlockCommentStart());
+		addIfNotEmpty(symbolList, format.getLineCommentStart());
+		addIfNotEmpty(symbolList, format.getTagStarts());
+		addIfNotEmpty(symbolList, format.getTagEnds());
+		Set<String> symbolKeywordSet = new HashSet<String>();
+		Set<String> wordKeywordSet = new HashSet<String>();
+		int maxLength = 0;
+		if (format.getKeywords() != null) {
+			for (String i: format.getKeywords()) {
+				if (isWord(i)) {
+					wordKeywordSet.add(toComparableKeyword(i));
+					maxLength = Math.max(maxLength, i.length());
+				} else if (!i.isEmpty()) {
+					symbolList.add(i);
+					symbolKeywordSet.add(i);
+				}
+			}
+		}
+		//: stable sort: of several equal symbols the first one is used like before
+		Collections.sort(symbolList, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		symbols = symbolList.toArray(new String[symbolList.size()]);
+		symbolKeywords = Collections.unmodifiableSet(symbolKeywordSet);
+		wordKeywords = Collections.unmodifiableSet(wordKeywordSet);
+		maxWordKeywordLength = maxLength;
+
+		charClasses = new byte[CHAR_CLASS_TABLE_SIZE];
+		for (char c = 0; c < CHAR_CLASS_TABLE_SIZE; c++) {
+			if (Character.isLetterOrDigit(c)) {
+				charClasses[c] |= CHAR_CLASS_WORD;
+			}
+		}
+		Set<Character> otherStartChars = new TreeSet<Character>();
+		boolean startsInWords = false;
+		for (String i: symbols) {
+			char first = i.charAt(0);
+			startsInWords |= Character.isLetterOrDigit(first);
+			List<Character> startChars = Arrays.asList(first, Character.toUpperCase(first), Character.toLowerCase(first));
+			for (char c: ignoreCase ? startChars : startChars.subList(0, 1)) {
+				if (c < CHAR_CLASS_TABLE_SIZE) {
+					charClasses[c] |= CHAR_CLASS_SYMBOL_START;
+				} else {
+					otherStartChars.add(c);
+				}
+			}
+		}
+		otherSymbolStartChars = new char[otherStartChars.size()];
+		int index = 0;
+		for (Character i: otherStartChars) {
+			otherSymbolStartChars[index ++] = i;
+		}
+		symbolsInWords = startsInWords;
+
+		Map<String, List<String>> endTags = new HashMap<String, List<String>>();
+		if (format.getStringIndicators() != null) {
+			for (String i: format.getStringIndicators()) {
+				endTags.put(i, createStringOrCommentEndTags(i));
+			}
+		}
+		if (format.getBlockCommentEnd() != null) {
+			endTags.put(format.getBlockCommentEnd(), createStringOrCommentEndTags(format.getBlockCommentEnd()));
+		}
+		endTags.put(LINE_END, createStringOrCommentEndTags(LINE_END));
+		stringOrCommentEndTags = Collections.unmodifiableMap(endTags);
+
+		List<String> tagEnds = new ArrayList<String>();
+		if (format.getTagEnds() != null) {
+			tagEnds.addAll(format.getTagEnds());
+		}
+		tagEnds.add(TAG_NAME_END);
+		tagStartEndTags = Collections.unmodifiableList(tagEnds);
+	}
+
+	/**
+	 * @return the lexer for the given format which is only compiled if there is no lexer for the same format instance in the cache yet
+	 */
+	public static BMCodeLexer getLexer(BMCodeFormat format) {
+		BMCodeLexer result = getCachedLexer(format);
+		if (result == null) {
+			result = new BMCodeLexer(format);
+			CACHE_LOCK.lock();
+			try {
+				CACHE.put(format, result);
+			} finally {
+				CACHE_LOCK.unlock();
+			}
+		}
+		return result;
+	}
+
+	private static BMCodeLexer getCachedLexer(BMCodeFormat format) {
+		CACHE_LOCK.lock();
+		try {
+			return CACHE.get(format);
+		} finally {
+			CACHE_LOCK.unlock();
+		}
+	}
+
+	/**
+	 * @return the next symbol or keyword at or after the given position or null if there is none. If several symbols start at the same
+	 * position the longest one is returned. Keywords only match if they are not part of a longer word. Example: finding "int" in "print" is not a match
+	 */
+	public BMPosAndTag findNextTag(String text, int startPos) {
+		int pos = startPos;
+		int length = text.length();
+		while (pos < length) {
+			char c = text.charAt(pos);
+			if (isSymbolStart(c)) {
+				String symbol = readSymbol(text, pos);
+				if (symbol != null) {
+					return new BMPosAndTag(pos, symbol);
+				}
+			}
+			if ((isWordChar(c)) && ((pos == 0) || (!isWordChar(text.charAt(pos - 1))))) {
+				int wordEnd = readWordEnd(text, pos);
+				if ((wordEnd - pos <= maxWordKeywordLength) && (wordKeywords.contains(toComparableKeyword(text.substring(pos, wordEnd))))) {
+					return new BMPosAndTag(pos, text.substring(pos, wordEnd));
+				}
+				//: no keyword: skip the rest of the word unless a symbol may start within it
+				pos = symbolsInWords ? pos + 1 : wordEnd;
+			} else {
+				pos ++;
+			}
+		}
+		return null;
+	}
+
+	public String getEscapeCharacter() {
+		return escapeCharacter;
+	}
+
+	/**
+	 * @return the tags to look for while reading a string or comment that ends with the given end tag: the escape character (if any),
+	 * the end tag and the special format mark
+	 */
+	public List<String> getStringOrCommentEndTags(String endTag) {
+		List<String> result = stringOrCommentEndTags.get(endTag);
+		if (result == null) {
+			result = createStringOrCommentEndTags(endTag);
+		}
+		return result;
+	}
+
+	/**
+	 * @return the tags that end the tag start (e.g. the name of an XML tag): the tag ends and the space
+	 */
+	public List<String> getTagStartEndTags() {
+		return tagStartEndTags;
+	}
+
+	private List<String> createStringOrCommentEndTags(String endTag) {
+		List<String> result = new ArrayList<String>();
+		if (escapeCharacter != null) {
+			result.add(escapeCharacter);
+		}
+		result.add(endTag);
+		result.add(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK);
+		return Collections.unmodifiableList(result);
+	}
+
+	private String readSymbol(String text, int pos) {
+		for (String i: symbols) {
+			if (!text.regionMatches(ignoreCase, pos, i, 0, i.length())) {
+				continue;
+			}
+			if ((symbolKeywords.contains(i)) && (!isSeparatedWord(text, pos, i.length()))) {
+				continue;
+			}
+			return i;
+		}
+		return null;
+	}
+
+	private boolean isSeparatedWord(String text, int pos, int length) {
+		if ((pos > 0) && (Character.isLetterOrDigit(text.charAt(pos - 1)))) {
+			return false;
+		}
+		if ((pos + length < text.length()) && (Character.isLetterOrDigit(text.charAt(pos + length)))) {
+			return false;
+		}
+		return true;
+	}
+
+	private boolean isSymbolStart(char c) {
+		if (c < CHAR_CLASS_TABLE_SIZE) {
+			return (charClasses[c] & CHAR_CLASS_SYMBOL_START) != 0;
+		}
+		return Arrays.binarySearch(otherSymbolStartChars, c) >= 0;
+	}
+
+	private boolean isWordChar(char c) {
+		if (c < CHAR_CLASS_TABLE_SIZE) {
+			return (charClasses[c] & CHAR_CLASS_WORD) != 0;
+		}
+		return Character.isLetterOrDigit(c);
+	}
+
+	private int readWordEnd(String text, int pos) {
+		int result = pos;
+		while ((result < text.length()) && (isWordChar(text.charAt(result)))) {
+			result ++;
+		}
+		return result;
+	}
+
+	private static boolean isWord(String string) {
+		if (string.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < string.length(); i++) {
+			if (!Character.isLetterOrDigit(string.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String toComparableKeyword(String keyword) {
+		if (ignoreCase) {
+			return keyword.toUpperCase();
+		}
+		return keyword;
+	}
+
+	private static void addIfNotEmpty(List<String> tags, String string) {
+		if ((string != null) && (!string.isEmpty())) {
+			tags.add(string);
+		}
+	}
+
+	private static void addIfNotEmpty(List<String> tags, Collection<String> strings) {
+		if (strings != null) {
+			for (String i: strings) {
+				addIfNotEmpty(tags, i);
+			}
+		}
+	}
+
+}
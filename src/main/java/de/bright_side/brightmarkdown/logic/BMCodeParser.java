@@ -1,12 +1,10 @@
 package de.bright_side.brightmarkdown.logic;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 
 import de.bright_side.brightmarkdown.base.BMConstants;
 import de.bright_side.brightmarkdown.base.BMUtil;
-import de.bright_side.brightmarkdown.logic.BMTextParserLogic.MatchConfirmer;
 import de.bright_side.brightmarkdown.model.BMCodeFormat;
 import de.bright_side.brightmarkdown.model.BMPosAndTag;
 import de.bright_side.brightmarkdown.model.BMSection;
@@ -31,6 +29,19 @@ public class BMCodeParser {
 	public static final String SPECIAL_FORMAT_ITALIC = "i";
 	public static final String SPECIAL_FORMAT_UNDERLINE = "u";
 	
+	private final BMCodeFormat defaultFormat;
+	
+	public BMCodeParser() {
+		this(BMConstants.CODE_FORMATS.get(""));
+	}
+	
+	/**
+	 * @param defaultFormat format which is used for the special format sections of a code block without a format
+	 */
+	public BMCodeParser(BMCodeFormat defaultFormat) {
+		this.defaultFormat = defaultFormat;
+	}
+	
 	public List<BMSection> createSections(BMSection parent, String text, BMCodeFormat format, String escapeNewLine){
 		List<BMSection> result = new ArrayList<BMSection>();
 		
@@ -39,91 +50,50 @@ public class BMCodeParser {
 			return result;
 		}
 
-		final BMCodeFormat useFormat = (format != null) ? format : BMConstants.CODE_FORMATS.get("");
+		final BMCodeFormat useFormat = (format != null) ? format : defaultFormat;
+		BMCodeLexer lexer = BMCodeLexer.getLexer(useFormat);
 		
 		int pos = 0;
+		int textStart = 0;
 		int length = text.length();
 		
-		List<String> tags = new ArrayList<>();
-		addIfNotNull(tags, BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK);
-		addIfNotNull(tags, useFormat.getStringIndicators());
-		addIfNotNull(tags, useFormat.getBlockCommentStart());
-		addIfNotNull(tags, useFormat.getLineCommentStart());
-		addIfNotNull(tags, useFormat.getKeywords());
-		addIfNotNull(tags, useFormat.getTagStarts());
-		addIfNotNull(tags, useFormat.getTagEnds());
-		
-		MatchConfirmer matchConfirmer = createKeywordMatchConfirmer(useFormat); 
-		
 		while (pos < length) {
-			BMPosAndTag next = parserLogic.findNext(text, pos, useFormat.isKeywordsIgnoreCase(), tags, matchConfirmer);
-			log("createSections. pos = " + pos + ", next = " + next);
+			BMPosAndTag next = lexer.findNextTag(text, pos);
 			if (next == null) {
-				result.add(createSection(parent, MDType.CODE_BLOCK_COMMAND, text.substring(pos), escapeNewLine));
-				return result;
+				break;
 			}
+			pos = next.getPos();
+			String tag = next.getTag();
+			log("createSections. pos = " + pos + ", tag = '" + tag + "'");
 
-			if (next.getPos() > pos) { //: more text before the next tag?
-				result.add(createSection(parent, MDType.CODE_BLOCK_COMMAND, text.substring(pos, next.getPos()), escapeNewLine));
+			if (pos > textStart) { //: more text before the tag?
+				result.add(createSection(parent, MDType.CODE_BLOCK_COMMAND, text.substring(textStart, pos), escapeNewLine));
 			}
 			
-			if (useFormat.getStringIndicators().contains(next.getTag())) {
-				pos = processString(parent, text, next.getTag(), next.getTag(), next.getPos(), useFormat, result, escapeNewLine);
-			} else if (next.getTag().equals(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK)) {
-				pos = processSpecialFormatSection(parent, text, next.getPos(), result, escapeNewLine);
-			} else if (next.getTag().equals(useFormat.getBlockCommentStart())) {
-				pos = processComment(parent, text, next.getTag(), next.getPos(), useFormat, result, useFormat.getBlockCommentEnd(), true, MDType.CODE_BLOCK_COMMENT, escapeNewLine);
-			} else if (next.getTag().equals(useFormat.getLineCommentStart())) {
-				pos = processComment(parent, text, next.getTag(), next.getPos(), useFormat, result, LINE_END, false, MDType.CODE_BLOCK_COMMENT, escapeNewLine);
-			} else if (useFormat.getTagStarts().contains(next.getTag())) {
-				pos = processTagStart(parent, text, next.getTag(), next.getPos(), useFormat, result, escapeNewLine);
-			} else if (useFormat.getTagEnds().contains(next.getTag())) {
-				pos = processTagEnd(parent, text, next.getTag(), next.getPos(), useFormat, result, escapeNewLine);
+			if (useFormat.getStringIndicators().contains(tag)) {
+				pos = processString(parent, text, tag, tag, pos, lexer, result, escapeNewLine);
+			} else if (tag.equals(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK)) {
+				pos = processSpecialFormatSection(parent, text, pos, result, escapeNewLine);
+			} else if (tag.equals(useFormat.getBlockCommentStart())) {
+				pos = processComment(parent, text, tag, pos, lexer, result, useFormat.getBlockCommentEnd(), true, MDType.CODE_BLOCK_COMMENT, escapeNewLine);
+			} else if (tag.equals(useFormat.getLineCommentStart())) {
+				pos = processComment(parent, text, tag, pos, lexer, result, LINE_END, false, MDType.CODE_BLOCK_COMMENT, escapeNewLine);
+			} else if (useFormat.getTagStarts().contains(tag)) {
+				pos = processTagStart(parent, text, tag, pos, lexer, result, escapeNewLine);
+			} else if (useFormat.getTagEnds().contains(tag)) {
+				pos = processTagEnd(parent, text, tag, pos, result, escapeNewLine);
 			} else {
-				pos = processKeyword(parent, text, next.getTag(), next.getPos(), useFormat, result, escapeNewLine);
+				pos = processKeyword(parent, text, tag, pos, result, escapeNewLine);
 			}
+			textStart = pos;
 		}
 		
-		return result;
-	}
-
-
-	private MatchConfirmer createKeywordMatchConfirmer(final BMCodeFormat useFormat) {
-		return new MatchConfirmer() {
-			@Override
-			public boolean confirmMatch(String text, int pos, String tag) {
-				//: match unless a keyword was found but there is more text before/after the keyword. Example: finding "int" in "print" is not a match
-				if (!useFormat.getKeywords().contains(tag)) {
-					//: not a keyword, then it is ok
-					return true;
-				}
-				
-				if (Character.isLetterOrDigit(parserLogic.getCharBeforeOrDefault(text, pos, '*'))){
-					return false;
-				}
-				if (Character.isLetterOrDigit(parserLogic.getCharAfterOrDefault(text, pos + tag.length() - 1, '*'))){
-					return false;
-				}
-				
-				return true;
-			}
-		};
-	}
-
-	
-	private void addIfNotNull(List<String> tags, String string) {
-		if (string != null) {
-			tags.add(string);
-		}
-	}
-
-	private void addIfNotNull(List<String> tags, Collection<String> strings) {
-		if (strings != null) {
-			tags.addAll(strings);
+		if (length > textStart) {
+			result.add(createSection(parent, MDType.CODE_BLOCK_COMMAND, text.substring(textStart), escapeNewLine));
 		}
+		return result;
 	}
 
-
 	private BMSection createSection(BMSection parent, MDType type, String rawText, String escapeNewLineInCodeBlock){
 		String text = rawText;
 		if (text != null) {
@@ -133,23 +103,18 @@ public class BMCodeParser {
 	}
 	
 	
-	private int processTagEnd(BMSection parent, String text, String tag, int pos, BMCodeFormat format, List<BMSection> sections, String escapeNewLine) {
+	private int processTagEnd(BMSection parent, String text, String tag, int pos, List<BMSection> sections, String escapeNewLine) {
 		sections.add(createSection(parent, MDType.CODE_BLOCK_TAG, text.substring(pos, pos + tag.length()), escapeNewLine));
 		return pos + tag.length();
 	}
 
-	private int processKeyword(BMSection parent, String text, String tag, int pos, BMCodeFormat format, List<BMSection> sections, String escapeNewLine) {
+	private int processKeyword(BMSection parent, String text, String tag, int pos, List<BMSection> sections, String escapeNewLine) {
 		sections.add(createSection(parent, MDType.CODE_BLOCK_KEYWORD, text.substring(pos, pos + tag.length()), escapeNewLine));
 		return pos + tag.length();
 	}
 
-	private int processTagStart(BMSection parent, String text, String tag, int startPos, BMCodeFormat format, List<BMSection> sections, String escapeNewLine) {
-		List<String> tags = new ArrayList<>();
-		if (format.getTagEnds() != null) {
-			tags.addAll(format.getTagEnds());
-		}
-		tags.add(" ");
-		BMPosAndTag next = parserLogic.findNext(text, startPos, tags);
+	private int processTagStart(BMSection parent, String text, String tag, int startPos, BMCodeLexer lexer, List<BMSection> sections, String escapeNewLine) {
+		BMPosAndTag next = parserLogic.findNext(text, startPos, lexer.getTagStartEndTags());
 
 		int endPos = 0;
 		if (next == null) {
@@ -166,10 +131,10 @@ public class BMCodeParser {
 		return endPos;
 	}
 
-	private int processComment(BMSection parent, String text, String tag, int startPos, BMCodeFormat format, List<BMSection> sections, String endTag
+	private int processComment(BMSection parent, String text, String tag, int startPos, BMCodeLexer lexer, List<BMSection> sections, String endTag
 			, boolean includeEndTag, MDType type, String escapeNewLine) {
 		
-		return processStringOrComment(parent, text, tag, endTag, startPos, format, sections, includeEndTag, type, escapeNewLine);
+		return processStringOrComment(parent, text, tag, endTag, startPos, lexer, sections, includeEndTag, type, escapeNewLine);
 		
 		
 //		int endPos = text.indexOf(endTag, startPos);
@@ -185,46 +150,45 @@ public class BMCodeParser {
 	}
 	
 	private int processString(BMSection parent, String text, String startTag, String endTag, int startPos
-			, BMCodeFormat format, List<BMSection> sections, String escapeNewLine) {
+			, BMCodeLexer lexer, List<BMSection> sections, String escapeNewLine) {
 		return processStringOrComment(parent, text, startTag, endTag, startPos
-				, format, sections, true, MDType.CODE_BLOCK_STRING, escapeNewLine);
+				, lexer, sections, true, MDType.CODE_BLOCK_STRING, escapeNewLine);
 	}
 	
 	private int processStringOrComment(BMSection parent, String text, String startTag, String endTag, int startPos
-			, BMCodeFormat format, List<BMSection> sections, boolean includeEndTag, MDType type, String escapeNewLine) {
-		List<String> tags = new ArrayList<>();
-		if (format.getEscapeCharacter() != null) {
-			tags.add(format.getEscapeCharacter());
-		}
-		tags.add(endTag);
-		tags.add(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK);
-		int pos = startPos;
+			, BMCodeLexer lexer, List<BMSection> sections, boolean includeEndTag, MDType type, String escapeNewLine) {
+		List<String> tags = lexer.getStringOrCommentEndTags(endTag);
+		int sectionStart = startPos;
 		
-		BMPosAndTag next = parserLogic.findNext(text, pos + 1, tags);
+		BMPosAndTag next = parserLogic.findNext(text, startPos + startTag.length(), tags);
 		
 		while (next != null) {
-			if (next.getTag().equals(format.getEscapeCharacter())) {
-				pos ++;
-			} else{
-				if (next.getTag().equals(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK)) {
-					int length = next.getPos() - startPos;
-					if (length > 0) {
-						sections.add(createSection(parent, type, text.substring(startPos, next.getPos()), escapeNewLine));
-					}
-					pos = processSpecialFormatSection(parent, text, next.getPos(), sections, escapeNewLine);
-				} else {
-					int endPos = next.getPos();
-					if (includeEndTag) {
-						endPos += next.getTag().length();
-					}
-					sections.add(createSection(parent, type, text.substring(pos, endPos), escapeNewLine));
-					return endPos;
+			int pos = next.getPos();
+			if (next.getTag().equals(lexer.getEscapeCharacter())) {
+				//: skip the escape character and the escaped character
+				pos += next.getTag().length() + 1;
+			} else if (next.getTag().equals(BMConstants.CODE_BLOCK_SPECIAL_FORMAT_SECTION_MARK)) {
+				if (pos > sectionStart) {
+					sections.add(createSection(parent, type, text.substring(sectionStart, pos), escapeNewLine));
 				}
+				pos = processSpecialFormatSection(parent, text, pos, sections, escapeNewLine);
+				sectionStart = pos;
+			} else {
+				int endPos = pos;
+				if (includeEndTag) {
+					endPos += next.getTag().length();
+				}
+				if (endPos > sectionStart) {
+					sections.add(createSection(parent, type, text.substring(sectionStart, endPos), escapeNewLine));
+				}
+				return endPos;
 			}
-			next = parserLogic.findNext(text, pos + 1, tags);
+			next = parserLogic.findNext(text, pos, tags);
 		}
 		
-		sections.add(createSection(parent, type, text.substring(pos), escapeNewLine));
+		if (text.length() > sectionStart) {
+			sections.add(createSection(parent, type, text.substring(sectionStart), escapeNewLine));
+		}
 		return text.length();
 	}
 
@@ -64,23 +64,38 @@ public class BMFormattingParser {
 		}
 		int pos = 0;
 		BMTextParserLogic textParser = new BMTextParserLogic();
+		//: if there is no color tag ending after a color tag start, there is none after any later color tag start either
+		boolean colorTagEndingAvailable = true;
+		//: all indicators of a run of indicators (e.g. "**_") are part of a word or not, so this is only checked once per run
+		int indicatorRunEnd = 0;
+		boolean indicatorRunPartOfWord = false;
 		while (pos < length) {
 			BMPosAndTag next = textParser.findNext(text, pos, TAG_STARTS);
 			if (next == null) {
 				return result;
 			}
 			
-//			if ((next.tag.equals(COLOR_TAG_START)) || (next.tag.equals(BACKGROUND_COLOR_TAG_START))) { //: special case color tag: read until end
 			if (COLOR_TAG_STARTS.contains(next.getTag())) { //: special case color tag: read until end
-				int end = text.indexOf(COLOR_TAG_ENDING, next.getPos() + 1);
+				int end = -1;
+				if (colorTagEndingAvailable) {
+					end = text.indexOf(COLOR_TAG_ENDING, next.getPos() + 1);
+					colorTagEndingAvailable = end >= 0;
+				}
 				if (end > 0) {
 					result.put(next.getPos(), text.substring(next.getPos(), end + 1));
 					pos = end + COLOR_TAG_ENDING.length();
 				} else {
-					pos++;
+					pos = next.getPos() + 1;
 				}
 			} else {
-				if (!isCharPartOfWord(text, next.getPos())) {
+				if (next.getPos() >= indicatorRunEnd) {
+					indicatorRunEnd = next.getPos();
+					while ((indicatorRunEnd < length) && (isFormattingIndicator(text.charAt(indicatorRunEnd)))) {
+						indicatorRunEnd ++;
+					}
+					indicatorRunPartOfWord = isCharPartOfWord(text, next.getPos());
+				}
+				if (!indicatorRunPartOfWord) {
 					result.put(next.getPos(), next.getTag());
 				}
 				pos = next.getPos() + next.getTag().length();
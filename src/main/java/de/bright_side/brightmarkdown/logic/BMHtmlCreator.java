@@ -1,6 +1,6 @@
 package de.bright_side.brightmarkdown.logic;
 
-import java.io.StringWriter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -10,19 +10,17 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-
 import de.bright_side.brightmarkdown.BrightMarkdown.FormattingItem;
 import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
 import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMContentHash;
+import de.bright_side.brightmarkdown.base.BMDeferredOutput;
+import de.bright_side.brightmarkdown.base.BMHtmlSerializer;
+import de.bright_side.brightmarkdown.base.BMLruCache;
 import de.bright_side.brightmarkdown.base.BMUtil;
 import de.bright_side.brightmarkdown.base.BrightXmlNode;
 import de.bright_side.brightmarkdown.model.BMLevelAndTitle;
+import de.bright_side.brightmarkdown.model.BMPhase;
 import de.bright_side.brightmarkdown.model.BMSection;
 import de.bright_side.brightmarkdown.model.BMSection.MDType;
 
@@ -31,43 +29,398 @@ public class BMHtmlCreator {
 	public static final Set<String> PARENT_NODES_THAT_DONT_NEED_SPAN = new HashSet<String>(Arrays.asList("span", "p", "td", "th", "div", "b", "i", "u", "h1", "h2", "h3", "h4", "h5"));
 	private static final String SPAN_TAG = "span";
 	private Map<FormattingItem, Integer> fontSizesInMM;
+	private final BMRenderContext context;
 	private static final String CSS_CLASS_NAME = "brightmarkdown";
 	private static final String DEFAULT_IMAGE_WIDTH = "75%";
 	private static final String DEFAULT_IMAGE_BORDER = "1mm";
-	private static final String XML_INFO_TAG_START = "<?xml";
+	/** see getVisitedSectionCount */
+	private long visitedSectionCount = 0;
+	/** length of the titles of all tables of contents that have been created */
+	private long tableOfContentsLength = 0;
 
 	public BMHtmlCreator(Map<FormattingItem, Integer> fontSizesInMM) {
+		this(fontSizesInMM, null);
+	}
+
+	/**
+	 * @param context context of the call which is checked for cancellation and its maximum duration before each top level section or null if the call 
+	 * cannot be cancelled and has no limits
+	 */
+	public BMHtmlCreator(Map<FormattingItem, Integer> fontSizesInMM, BMRenderContext context) {
 		this.fontSizesInMM = fontSizesInMM;
+		this.context = context;
 	}
 
 	public String toHTML(BMSection section, OutputType outputType) throws Exception {
-		log("toHTML. Processing section: \n" + BMUtil.toString(section));
+		StringBuilder result = new StringBuilder();
+		writeHTML(section, outputType, result);
+		return result.toString();
+	}
+
+	/**
+	 * writes the HTML directly to the given output without creating the whole HTML text as a string first
+	 */
+	public void writeHTML(BMSection section, OutputType outputType, Appendable out) throws Exception {
+		log("writeHTML. Processing section: \n" + BMUtil.toString(section));
 		
-		BrightXmlNode topElement;
-		BrightXmlNode contentElement;
-		
-		if (outputType == OutputType.FULL_HTML_DOCUMENT) {
-			BrightXmlNode rootElement = new BrightXmlNode("html");
-			boolean containsTables = checkContainsTables(section);
-			BrightXmlNode headElement = null;
-			if ((isCSSStyleSet()) || (containsTables)){
-				headElement = rootElement.appendNode("head");
-				String styleCode = createStyleCode(containsTables);
-				headElement.appendNode("style", styleCode.toString());
-			}
-			contentElement = rootElement.appendNode("body");
-			topElement = rootElement;
-		} else {
-			contentElement = new BrightXmlNode("span");
-			topElement = contentElement;
-		}
+		BrightXmlNode contentElement = createContentElement(outputType, checkContainsTables(section));
+		BrightXmlNode topElement = getTopElement(contentElement);
 		
+		long phaseStart = startPhase(BMPhase.CREATE_NODES, section);
 		createHTMLNodes(contentElement, section);
+		endPhase(BMPhase.CREATE_NODES, phaseStart, topElement);
 		logHTMLString("after HTML nodes creation", topElement);
 		
+		phaseStart = startPhase(BMPhase.REMOVE_UNNEEDED_NODES, topElement);
 		removeUnneededNodes(contentElement);
+		endPhase(BMPhase.REMOVE_UNNEEDED_NODES, phaseStart, topElement);
 		logHTMLString("after removing unneded nodes", topElement);
-		return createHTMLString(topElement, true, outputType);
+		phaseStart = startPhase(BMPhase.SERIALIZE, topElement);
+		new BMHtmlSerializer(true).write(topElement, out);
+		endPhase(BMPhase.SERIALIZE, phaseStart, topElement);
+	}
+	
+	/**
+	 * writes the HTML of each block as soon as it has been parsed, so that the nodes of only one block exist at the same time.
+	 * The result is the same as the one of writeHTML except that the head of a full HTML document always contains the table styles, because
+	 * the head is written before it is known if there are tables. A table of contents is written at the end when all headings are known. 
+	 * Until then the HTML that follows the table of contents is kept in a temporary file (see BMDeferredOutput).
+	 */
+	public void writeHTML(BMBlockStreamParser parser, OutputType outputType, Appendable out) throws Exception {
+		BrightXmlNode contentElement = createContentElement(outputType, true);
+		final String contentNodeName = contentElement.getNodeName();
+		final BMHtmlSerializer serializer = new BMHtmlSerializer(true);
+		final StringBuilder headingItemsText = new StringBuilder();
+		final List<BMHtmlSerializer.State> tableOfContentsStates = new ArrayList<BMHtmlSerializer.State>();
+		boolean contentWritten = false;
+		
+		try (BMDeferredOutput deferredOutput = new BMDeferredOutput(out)) {
+			//: the HTML is counted before it is deferred, so that the text after a table of contents cannot fill the temporary file beyond the maximum length
+			PlaceholderOutput placeholderOutput = new PlaceholderOutput(deferredOutput, (context == null) ? deferredOutput : context.limitOutput(deferredOutput));
+			serializer.writeStart(getTopElement(contentElement), contentElement, placeholderOutput);
+			BMSection block = parser.nextBlock();
+			while (block != null) {
+				appendHeadingItems(headingItemsText, block);
+				if (block.getChildren().get(0).getType() == MDType.TABLE_OF_CONTENTS) {
+					//: the start tag of the content node is left open, because it is only known at the end whether the content node stays empty
+					tableOfContentsStates.add(serializer.saveState());
+					//: an empty span has the same effect on the indentation of the following nodes as the table of contents
+					placeholderOutput.startPlaceholder();
+					serializer.writeContentNode(new BrightXmlNode(SPAN_TAG));
+					placeholderOutput.endPlaceholder();
+				} else {
+					BrightXmlNode blockElement = new BrightXmlNode(contentNodeName);
+					createHTMLNodesOfBlock(blockElement, block);
+					contentWritten |= writeContentNodes(serializer, blockElement);
+				}
+				block = parser.nextBlock();
+			}
+			
+			if (!tableOfContentsStates.isEmpty()) {
+				BMHtmlSerializer.State endState = serializer.saveState();
+				final List<BMLevelAndTitle> headingItems = readHeadingItems(headingItemsText);
+				final boolean restoreStates = contentWritten;
+				deferredOutput.writeDeferred(new BMDeferredOutput.PlaceholderWriter() {
+					@Override
+					public void writePlaceholder(int index) throws IOException {
+						//: if there is no other content, the tables of contents are the only nodes and are written one after the other
+						if ((restoreStates) || (index == 0)) {
+							serializer.restoreState(tableOfContentsStates.get(index));
+						}
+						BrightXmlNode blockElement = new BrightXmlNode(contentNodeName);
+						createHTMLNodesForTableOfContents(blockElement, headingItems);
+						writeContentNodes(serializer, blockElement);
+						if (restoreStates) {
+							//: the text that follows has been written after the start tag had been completed
+							serializer.completeContentStartTag();
+						}
+					}
+				});
+				if (restoreStates) {
+					serializer.restoreState(endState);
+				}
+			}
+			serializer.writeEnd();
+		}
+	}
+
+	/**
+	 * writes the HTML block by block (see BMBlockStreamParser) and takes the HTML of a block from the fragment cache if the same block has already 
+	 * been turned into HTML at the same indentation state, so that only the blocks which have changed since the last call are parsed.
+	 * The key of a block is created from its classified sections before the code blocks are parsed, so a block from the cache costs neither
+	 * the highlighting of its code nor the parsing of paragraphs, links and formatting. Only escaping, splitting and classifying the lines is done
+	 * for the whole text, because the block boundaries depend on the classified lines.
+	 * The result is the same as the one of writeHTML(BMSection, ...) with the whole parsed text: the table styles and the table of contents are 
+	 * created from the classified sections of the whole text, which already contain all tables and headings. The table of contents is therefore never cached.
+	 * @param classifiedSection result of BMSectionParserLogic.toClassifiedSections without parsing the code
+	 * @param context receives the warnings of all blocks including the cached ones
+	 * @param configurationHash hash of all settings which influence the HTML of a block
+	 */
+	public void writeHTMLByBlocks(BMSection classifiedSection, BMRenderContext context, Map<String, String> imageNameToPathMap
+			, BMLruCache<BMHtmlFragment> fragmentCache, byte[] configurationHash, OutputType outputType, Appendable out) throws Exception {
+		BrightXmlNode contentElement = createContentElement(outputType, checkContainsTables(classifiedSection));
+		String contentNodeName = contentElement.getNodeName();
+		List<BMLevelAndTitle> headingItems = getHeadingItems(classifiedSection);
+		byte[] outputTypeBytes = new byte[] {(byte)outputType.ordinal()};
+		BMBlockStreamParser parser = new BMBlockStreamParser(classifiedSection, new BMSectionParserLogic(context), imageNameToPathMap);
+		RecordingOutput recordingOutput = new RecordingOutput(out);
+		BMHtmlSerializer serializer = new BMHtmlSerializer(true);
+		
+		serializer.writeStart(getTopElement(contentElement), contentElement, recordingOutput);
+		List<BMSection> block = parser.nextClassifiedBlock();
+		while (block != null) {
+			context.checkCanContinue();
+			BrightXmlNode blockElement = new BrightXmlNode(contentNodeName);
+			if (block.get(0).getType() == MDType.TABLE_OF_CONTENTS) {
+				createHTMLNodesForTableOfContents(blockElement, headingItems);
+				writeContentNodes(serializer, blockElement);
+			} else {
+				BMContentHash key = BMContentHash.create(createBlockKeyText(serializer.saveState(), block), configurationHash, outputTypeBytes);
+				BMHtmlFragment fragment = fragmentCache.get(key);
+				if (fragment == null) {
+					BMRenderContext blockContext = context.createBlockContext();
+					BMSectionParserLogic blockSectionParser = new BMSectionParserLogic(blockContext);
+					BMSection blockSection = parser.createBlockSection(block);
+					blockSectionParser.parseClassifiedCodeSections(blockSection);
+					createHTMLNodesOfBlock(blockElement, parser.parseBlock(blockSection, blockSectionParser));
+					recordingOutput.startRecording();
+					writeContentNodes(serializer, blockElement);
+					fragment = new BMHtmlFragment(recordingOutput.endRecording(), serializer.saveState(), blockContext.getDiagnostics());
+					fragmentCache.put(key, fragment);
+				} else {
+					recordingOutput.append(fragment.getHtml());
+					serializer.restoreState(fragment.getStateAfter());
+				}
+				context.addWarnings(fragment.getDiagnostics());
+			}
+			block = parser.nextClassifiedBlock();
+		}
+		serializer.writeEnd();
+	}
+
+	/**
+	 * @return text that contains everything which influences the HTML of the block: the state of the serializer before the block and all properties
+	 * of the classified sections of the block
+	 */
+	private String createBlockKeyText(BMHtmlSerializer.State state, List<BMSection> block) {
+		StringBuilder result = new StringBuilder(state.toString());
+		for (BMSection i: block) {
+			appendKeyText(result, i);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * appends the properties of the section and its children. Each text is preceded by its length, so that different sections never result in the same text
+	 */
+	private void appendKeyText(StringBuilder result, BMSection section) {
+		result.append('(').append(section.getType()).append(',').append(section.getLevel());
+		appendKeyText(result, section.getRawText());
+		appendKeyText(result, section.getOriginalPlainText());
+		appendKeyText(result, section.getLocation());
+		appendKeyText(result, section.getColor());
+		appendKeyText(result, section.getBackgroundColor());
+		appendKeyText(result, section.getImageWidth());
+		appendKeyText(result, section.getImageHeight());
+		appendKeyText(result, section.getImageAltText());
+		appendKeyText(result, section.getImageBorder());
+		result.append(',').append(section.isBold()).append(',').append(section.isItalic()).append(',').append(section.isUnderline())
+				.append(',').append(section.isStrikeThrough()).append(',').append(section.isBackgroundColorEndTag())
+				.append(',').append(section.isMultiLine()).append(',').append(section.isNested());
+		if (section.getChildren() != null) {
+			result.append(",[");
+			for (BMSection i: section.getChildren()) {
+				appendKeyText(result, i);
+			}
+			result.append(']');
+		}
+		result.append(')');
+	}
+
+	private void appendKeyText(StringBuilder result, String text) {
+		if (text == null) {
+			result.append(",-");
+		} else {
+			result.append(',').append(text.length()).append(':').append(text);
+		}
+	}
+
+	/**
+	 * passes the text on to the deferred output via the limited output except for the text of a placeholder, which the deferred output discards,
+	 * so that only the HTML which is actually written is counted
+	 */
+	private static class PlaceholderOutput implements Appendable {
+		private final BMDeferredOutput deferredOutput;
+		private final Appendable limitedOutput;
+		private boolean placeholder = false;
+
+		private PlaceholderOutput(BMDeferredOutput deferredOutput, Appendable limitedOutput) {
+			this.deferredOutput = deferredOutput;
+			this.limitedOutput = limitedOutput;
+		}
+
+		private void startPlaceholder() throws IOException {
+			deferredOutput.startPlaceholder();
+			placeholder = true;
+		}
+
+		private void endPlaceholder() {
+			deferredOutput.endPlaceholder();
+			placeholder = false;
+		}
+
+		private Appendable getTarget() {
+			return placeholder ? deferredOutput : limitedOutput;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			getTarget().append(csq);
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			getTarget().append(csq, start, end);
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			getTarget().append(c);
+			return this;
+		}
+	}
+
+	/**
+	 * passes the text on to the output and additionally keeps the text between startRecording and endRecording
+	 */
+	private static class RecordingOutput implements Appendable {
+		private final Appendable out;
+		private StringBuilder recordedText = null;
+
+		private RecordingOutput(Appendable out) {
+			this.out = out;
+		}
+
+		private void startRecording() {
+			recordedText = new StringBuilder();
+		}
+
+		private String endRecording() {
+			String result = recordedText.toString();
+			recordedText = null;
+			return result;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			out.append(csq);
+			if (recordedText != null) {
+				recordedText.append(csq);
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			out.append(csq, start, end);
+			if (recordedText != null) {
+				recordedText.append(csq, start, end);
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			out.append(c);
+			if (recordedText != null) {
+				recordedText.append(c);
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * adds level and title of each heading as one line to the text. This takes much less memory than a list of BMLevelAndTitle objects
+	 * which matters for long documents with many headings.
+	 */
+	private void appendHeadingItems(StringBuilder headingItemsText, BMSection block) {
+		for (BMLevelAndTitle i: getHeadingItems(block)) {
+			headingItemsText.append((char)i.getLevel()).append(i.getTitle()).append(BMConstants.LINE_BREAK);
+		}
+	}
+
+	private List<BMLevelAndTitle> readHeadingItems(StringBuilder headingItemsText) {
+		List<BMLevelAndTitle> result = new ArrayList<BMLevelAndTitle>();
+		int pos = 0;
+		while (pos < headingItemsText.length()) {
+			int end = headingItemsText.indexOf(BMConstants.LINE_BREAK, pos);
+			BMLevelAndTitle levelAndTitle = new BMLevelAndTitle();
+			levelAndTitle.setLevel(headingItemsText.charAt(pos));
+			levelAndTitle.setTitle(headingItemsText.substring(pos + 1, end));
+			result.add(levelAndTitle);
+			pos = end + 1;
+		}
+		return result;
+	}
+
+	private void createHTMLNodesOfBlock(BrightXmlNode blockElement, BMSection block) throws Exception {
+		long phaseStart = startPhase(BMPhase.CREATE_NODES, block);
+		createHTMLNodes(blockElement, block);
+		endPhase(BMPhase.CREATE_NODES, phaseStart, blockElement);
+	}
+
+	/**
+	 * @return true if at least one node has been written
+	 */
+	private boolean writeContentNodes(BMHtmlSerializer serializer, BrightXmlNode blockElement) throws IOException {
+		long phaseStart = startPhase(BMPhase.REMOVE_UNNEEDED_NODES, blockElement);
+		removeUnneededNodes(blockElement);
+		endPhase(BMPhase.REMOVE_UNNEEDED_NODES, phaseStart, blockElement);
+		phaseStart = startPhase(BMPhase.SERIALIZE, blockElement);
+		for (BrightXmlNode i: blockElement.getChildNodes()) {
+			serializer.writeContentNode(i);
+		}
+		endPhase(BMPhase.SERIALIZE, phaseStart, blockElement);
+		return blockElement.hasChildNodes();
+	}
+
+	private long startPhase(BMPhase phase, BMSection input) {
+		return (context == null) ? 0 : context.startPhase(phase, input);
+	}
+
+	private long startPhase(BMPhase phase, BrightXmlNode input) {
+		return (context == null) ? 0 : context.startPhase(phase, input);
+	}
+
+	private void endPhase(BMPhase phase, long startNanos, BrightXmlNode result) {
+		if (context != null) {
+			context.endPhase(phase, startNanos, result);
+		}
+	}
+
+	/**
+	 * @return the node to which the nodes of the markdown sections are to be added
+	 */
+	private BrightXmlNode createContentElement(OutputType outputType, boolean containsTables) {
+		if (outputType != OutputType.FULL_HTML_DOCUMENT) {
+			return new BrightXmlNode("span");
+		}
+		BrightXmlNode rootElement = new BrightXmlNode("html");
+		if ((isCSSStyleSet()) || (containsTables)){
+			BrightXmlNode headElement = rootElement.appendNode("head");
+			String styleCode = createStyleCode(containsTables);
+			headElement.appendNode("style", styleCode.toString());
+		}
+		return rootElement.appendNode("body");
+	}
+	
+	private BrightXmlNode getTopElement(BrightXmlNode contentElement) {
+		if (contentElement.getParentNode() != null) {
+			return contentElement.getParentNode();
+		}
+		return contentElement;
 	}
 	
 	public String createStyleCode(BMSection section) {
@@ -90,86 +443,45 @@ public class BMHtmlCreator {
 		if (!BMConstants.LOGGING_ACTIVE) {
 			return;
 		}
-		log("===================================\n" + message + ":\n" + createHTMLString(node, false, OutputType.FULL_HTML_DOCUMENT) + "===================================");
-	}
-	
-	private String createHTMLString(BrightXmlNode node, boolean replaceEmptySpanAndParagraphNodes, OutputType outputType) throws Exception {
-		Document document = node.toW3CDocument();
-		TransformerFactory transformerFactory = TransformerFactory.newInstance();
-		Transformer transformer = transformerFactory.newTransformer();
-		StringWriter writer = new StringWriter();
-		transformer.transform(new DOMSource(document), new StreamResult(writer));
-		String result = writer.getBuffer().toString();
-		if (replaceEmptySpanAndParagraphNodes) {
-			result = result.replace("<p></p>", "");
-			result = result.replace("<span></span>", "");
-		}
-		result = BMUtil.unescape(result);
-        result = result.replace(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK, "<br/>");
-        if (outputType == OutputType.EMBEDDABLE_HTML_CODE) {
-        	result = removeXmlInfoTag(result);
-        }
-		return result;
-	}
-
-	private String removeXmlInfoTag(String result) {
-		if (result.startsWith(XML_INFO_TAG_START)) {
-			int pos = result.indexOf(">");
-			if (pos > 0) {
-				result = result.substring(pos + 1);
-			}
-		}
-		return result;
+		log("===================================\n" + message + ":\n" + new BMHtmlSerializer(false).toString(node) + "===================================");
 	}
 	
+	/**
+	 * removes spans without text and children and merges a single remaining span without attributes into its parent. Each node is
+	 * visited once and the removed children are dropped in one pass so that the time is linear in the number of nodes
+	 */
 	private void removeUnneededNodes(BrightXmlNode node) {
 		List<BrightXmlNode> childNodes = node.getChildNodes();
-		int index = 0;
-		while (index < childNodes.size()) {
-			removeUnneededNodes(childNodes.get(index));
-			index ++;
-		}
-//		for (BrightXMLNode i: childNodes) {
-//			removeUnneededNodes(i);
-//		}
-		
-		if (!node.getNodeName().equals(SPAN_TAG)) {
+		if (childNodes.isEmpty()) {
 			return;
 		}
-		
-		if (node.hasChildNodes()) {
-			return;
+		boolean spansNotNeeded = PARENT_NODES_THAT_DONT_NEED_SPAN.contains(node.getNodeName());
+		int keptCount = 0;
+		for (int index = 0; index < childNodes.size(); index ++) {
+			BrightXmlNode child = childNodes.get(index);
+			removeUnneededNodes(child);
+			if ((spansNotNeeded) && (isSpanWithoutChildren(child)) && (!child.hasNonEmptyTextContent())) {
+				log("removing node because it has no text content and no children: ", child);
+				continue;
+			}
+			childNodes.set(keptCount, child);
+			keptCount ++;
 		}
+		childNodes.subList(keptCount, childNodes.size()).clear();
 		
-		BrightXmlNode parent = node.getParentNode();
-		if (parent == null) {
-			return;
-		}
-		String parentName = parent.getNodeName();
-		if (!PARENT_NODES_THAT_DONT_NEED_SPAN.contains(parentName)) {
-			return;
-		}
-
-		boolean removed = false;
-		if ((!node.hasNonEmptyTextContent()) && (!node.hasChildNodes())){
-			log("removing node because it has no text content and no children: ", node);
-			parent.removeChild(node);
-			removed = true;
-		} else if ((!node.hasAttributes()) && (parent.getChildNodes().size() == 1)){
-			log("removing node because it has no attributes and parent only has this child", node);
-			String nodeText = node.getTextContent();
-			parent.removeChild(node);
+		if ((spansNotNeeded) && (childNodes.size() == 1) && (isSpanWithoutChildren(childNodes.get(0))) && (!childNodes.get(0).hasAttributes())) {
+			BrightXmlNode child = childNodes.get(0);
+			log("removing node because it has no attributes and parent only has this child", child);
+			String nodeText = child.getTextContent();
+			node.removeChild(child);
 			if (!BMUtil.isEmptyOrNull(nodeText)) {
-				parent.setTextContent(parent.getTextContent() + nodeText);
+				node.setTextContent(node.getTextContent() + nodeText);
 			}
-			removed = true;
 		}
-		
-		if (removed) {
-			//: process parent node again:
-			removeUnneededNodes(parent);
-		}
-		
+	}
+	
+	private boolean isSpanWithoutChildren(BrightXmlNode node) {
+		return (node.getNodeName().equals(SPAN_TAG)) && (!node.hasChildNodes());
 	}
 	
 	private boolean checkContainsTables(BMSection section) {
@@ -212,9 +524,16 @@ public class BMHtmlCreator {
 
 	private void createHTMLNodes(BrightXmlNode rootElement, BMSection topSection) throws Exception {
 		List<BMSection> items = topSection.getChildren();
+		//: the headings are only collected for the first table of contents, because a text may contain any number of tables of contents
+		List<BMLevelAndTitle> headingItems = null;
+		long headingTitlesLength = 0;
 		int pos = 0;
 		while (pos < items.size()){
+			if (context != null) {
+				context.checkCanContinue();
+			}
 			BMSection item = items.get(pos);
+			visitedSectionCount ++;
 			if (item.getType() == MDType.RAW_LINE){
 				createHTMLNodesForRawLine(rootElement, item);
 			} else if (item.getType() == MDType.PARAGRAPH){
@@ -236,7 +555,12 @@ public class BMHtmlCreator {
 			} else if (item.getType() == MDType.TABLE_ROW){
 				pos = createHTMLNodesForTable(rootElement, items, pos, item);
 			} else if (item.getType() == MDType.TABLE_OF_CONTENTS){
-				createHTMLNodesForTableOfContents(rootElement, topSection);
+				if (headingItems == null) {
+					headingItems = getHeadingItems(topSection);
+					headingTitlesLength = getTitlesLength(headingItems);
+				}
+				checkTableOfContentsLength(headingTitlesLength);
+				createHTMLNodesForTableOfContents(rootElement, headingItems);
 			} else {
 				throw new Exception("Unexpected item type: " + item.getType() + ". Raw text = >>" + item.getRawText() + "<<");
 			}
@@ -252,13 +576,17 @@ public class BMHtmlCreator {
 		log("createHTMLNodesForCodeBlock. standaloneBlock = " + standaloneBlock);
 		BrightXmlNode resultNode = null;
 		BrightXmlNode codeNode = null;
+		//: a code block without any code (e.g. only a long code block mark) has no children
+		List<BMSection> codeSections = new ArrayList<BMSection>();
+		if (codeBlockSection.getChildren() != null) {
+			codeSections.addAll(codeBlockSection.getChildren());
+		}
 		
 		if (standaloneBlock) {
 			BrightXmlNode node = parent.appendNode("pre", null);
 			resultNode = node;
 			codeNode = node.appendNode("code");
-			BMSection firstCodeSectionChild = codeBlockSection.getChildren().get(0);
-			if (!firstCodeSectionChild.getRawText().startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK)) {
+			if ((codeSections.isEmpty()) || (!startsWithLineBreak(codeSections.get(0)))) {
 				//: start with a line break because otherwise the HTML indent in the first line is treated as an indent in the code
 				codeNode.appendNode("span", BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK); 
 			}
@@ -268,10 +596,9 @@ public class BMHtmlCreator {
 		}
 		resultNode.setAttribute("style", CODE_BOX_STYLE);
 		
-		List<BMSection> relevantSections = new ArrayList<>(codeBlockSection.getChildren());
-		removeLastLineBreakIfFound(relevantSections);
+		removeLastLineBreakIfFound(codeSections);
 		
-		for (BMSection section: relevantSections) {
+		for (BMSection section: codeSections) {
 			log("createHTMLNodesForCodeBlock. Section = " + section + ", raw text = >>" + section.getRawText() + "<<");
 			BrightXmlNode itemNode = codeNode.appendNode("span", section.getRawText());
 			String style = getCodeBlockStyle(section);
@@ -283,15 +610,22 @@ public class BMHtmlCreator {
 		log("createHTMLNodesForCodeBlock. code block section: \n" + BMUtil.toString(codeBlockSection) + "\n Result: \n" + resultNode.toString(true));
 	}
 
+	private boolean startsWithLineBreak(BMSection codeSection) {
+		return (codeSection.getRawText() != null) && (codeSection.getRawText().startsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK));
+	}
+
 	private void removeLastLineBreakIfFound(List<BMSection> sections) {
 		if (sections.isEmpty()) {
 			return;
 		}
 		BMSection listItem = sections.get(sections.size() - 1);
 		if (((listItem.getType() == MDType.CODE_BLOCK_COMMAND) || (listItem.getType() == MDType.CODE_BLOCK_COMMENT)) && (listItem.getRawText().endsWith(BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK))){
-			listItem.setRawText(listItem.getRawText().substring(0, listItem.getRawText().length() - BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length()));
-			if (listItem.getRawText().isEmpty()) {
+			String rawText = listItem.getRawText().substring(0, listItem.getRawText().length() - BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK.length());
+			if (rawText.isEmpty()) {
 				sections.remove(sections.size() - 1);
+			} else {
+				//: replace the section instead of changing it, so that the same sections may be turned into HTML several times (see BMParsedText)
+				sections.set(sections.size() - 1, BMUtil.createSection(listItem.getParent(), listItem.getType(), rawText));
 			}
 		}
 		
@@ -339,8 +673,7 @@ public class BMHtmlCreator {
 		return result.toString();
 	}
 
-	private void createHTMLNodesForTableOfContents(BrightXmlNode rootElement, BMSection topSection) {
-		List<BMLevelAndTitle> headingItems = getHeadingItems(topSection);
+	private void createHTMLNodesForTableOfContents(BrightXmlNode rootElement, List<BMLevelAndTitle> headingItems) {
 		if (headingItems == null){
 			return;
 		}
@@ -653,8 +986,40 @@ public class BMHtmlCreator {
 	}
 
 
+	/**
+	 * each table of contents lists all headings, so the HTML of a text that contains a table of contents for each heading grows quadratically with 
+	 * the length of the text. The titles of all tables of contents created so far are therefore counted as HTML before the nodes of the next table 
+	 * of contents are created, so that the maximum length of the HTML is exceeded before the nodes which would exceed it exist
+	 * @param titlesLength length of the titles of the next table of contents
+	 */
+	private void checkTableOfContentsLength(long titlesLength) {
+		tableOfContentsLength += titlesLength;
+		if (context != null) {
+			context.checkOutputLength(tableOfContentsLength);
+		}
+	}
+
+	private long getTitlesLength(List<BMLevelAndTitle> headingItems) {
+		long result = 0;
+		for (BMLevelAndTitle i: headingItems) {
+			if (i.getTitle() != null) {
+				result += i.getTitle().length();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return number of sections which have been visited to create the HTML nodes and to collect the headings for tables of contents. The number 
+	 * does not depend on the machine and grows linearly with the number of sections, so it can be checked where measuring the time is not reliable
+	 */
+	public long getVisitedSectionCount() {
+		return visitedSectionCount;
+	}
+
 	public List<BMLevelAndTitle> getHeadingItems(BMSection section){
 		List<BMLevelAndTitle> result = new ArrayList<BMLevelAndTitle>();
+		visitedSectionCount ++;
 		
 		if (section.getType() == MDType.HEADING){
 			BMLevelAndTitle levelAndTitle = new BMLevelAndTitle();
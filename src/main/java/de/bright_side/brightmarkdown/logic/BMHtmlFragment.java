@@ -0,0 +1,35 @@
+package de.bright_side.brightmarkdown.logic;
+
+import de.bright_side.brightmarkdown.base.BMHtmlSerializer;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+
+/**
+ * HTML of a single top level block (see BMBlockStreamParser) together with the state of the serializer after the block, so that the following blocks
+ * are written the same way as if the block had just been written, and the warnings that occurred while parsing the block
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMHtmlFragment {
+	private final String html;
+	private final BMHtmlSerializer.State stateAfter;
+	private final BMDiagnostics diagnostics;
+
+	public BMHtmlFragment(String html, BMHtmlSerializer.State stateAfter, BMDiagnostics diagnostics) {
+		this.html = html;
+		this.stateAfter = stateAfter;
+		this.diagnostics = diagnostics;
+	}
+
+	public String getHtml() {
+		return html;
+	}
+
+	public BMHtmlSerializer.State getStateAfter() {
+		return stateAfter;
+	}
+
+	public BMDiagnostics getDiagnostics() {
+		return diagnostics;
+	}
+}
@@ -0,0 +1,240 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+/**
+ * parses a text block by block (see BMBlockStreamParser) and keeps the parsed blocks, so that after an edit of the text only the blocks
+ * around the edit need to be parsed again. Parsing starts again at the block before the edit, because the changed text may become part of
+ * that block. The text is read from there until a block begins after the edit at the same position of the unchanged text where a block
+ * of the previous result began and the BMBlockClassifier has the same state as before that block: from there on all sections are the same as before,
+ * so the remaining blocks are taken from the previous result. An edit that opens or closes a code block changes all sections up to the next
+ * code block mark and these are therefore parsed again.
+ * A block always begins at the beginning of a line that is not part of a code block, so the text can be read from there without knowing the text before.
+ * The text must not start with BMConstants.NO_MARKDOWN_MARK, because the escaping of such a text depends on the whole text.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMIncrementalParser {
+	/** minimum number of characters that are read at once */
+	private static final int READ_SIZE = 4096;
+
+	private final BMRenderContext context;
+	private final Map<String, String> imageNameToPathMap;
+	private final BMSectionParserLogic sectionParser;
+
+	/**
+	 * @param context provides the configuration. The warnings are not added to it but to a new context for each block (see createBlockContext)
+	 * @param imageNameToPathMap mapping which is applied to each block (see BMSectionParserLogic.applyImageNameToPathMapping)
+	 */
+	public BMIncrementalParser(BMRenderContext context, Map<String, String> imageNameToPathMap) {
+		this.context = context;
+		this.imageNameToPathMap = imageNameToPathMap;
+		this.sectionParser = new BMSectionParserLogic(context);
+	}
+
+	public BMParsedText parse(String text) {
+		return parse(text, new ArrayList<BMParsedText.Block>(), 0, new BMBlockClassifier().saveState(), null, 0, 0);
+	}
+
+	/**
+	 * @param previous result for the text before the edit
+	 * @param offset position in the previous text where the edit starts
+	 * @param removedLength number of characters of the previous text which are replaced by the inserted text
+	 * @param insertedText text which is inserted at the offset
+	 * @return result for the changed text
+	 */
+	public BMParsedText reparse(BMParsedText previous, int offset, int removedLength, String insertedText) {
+		String previousText = previous.getText();
+		if ((offset < 0) || (removedLength < 0) || (offset + removedLength > previousText.length())) {
+			throw new IllegalArgumentException("Edit at offset " + offset + " with removed length " + removedLength + " is outside of the text with length "
+					+ previousText.length());
+		}
+		String text = previousText.substring(0, offset) + insertedText + previousText.substring(offset + removedLength);
+		List<BMParsedText.Block> previousBlocks = previous.getBlocks();
+
+		//: start with the block before the block that contains the offset
+		int blockIndex = 0;
+		int blockStart = 0;
+		int previousBlockStart = 0;
+		while ((blockIndex < previousBlocks.size() - 1) && (blockStart + previousBlocks.get(blockIndex).getLength() <= offset)) {
+			previousBlockStart = blockStart;
+			blockStart += previousBlocks.get(blockIndex).getLength();
+			blockIndex ++;
+		}
+		if (blockIndex > 0) {
+			blockIndex --;
+			blockStart = previousBlockStart;
+		}
+		if (blockIndex >= previousBlocks.size()) {
+			return parse(text);
+		}
+		return parse(text, new ArrayList<BMParsedText.Block>(previousBlocks.subList(0, blockIndex)), blockStart, previousBlocks.get(blockIndex).getClassifierStateBefore()
+				, previous, offset + insertedText.length(), insertedText.length() - removedLength);
+	}
+
+	/**
+	 * @param blocks blocks of the text before the start position which are kept
+	 * @param classifierState state of the classifier at the start position
+	 * @param previous result whose blocks after the edit may be taken or null
+	 * @param resyncStart position in the text from which on blocks of the previous result may be taken
+	 * @param lengthDifference number of characters by which the text after the edit is longer than in the previous text
+	 */
+	private BMParsedText parse(String text, List<BMParsedText.Block> blocks, int start, BMBlockClassifier.State classifierState, BMParsedText previous
+			, int resyncStart, int lengthDifference) {
+		Map<Integer, Integer> previousBlockStartToIndex = createBlockStartToIndexMap(previous, resyncStart - lengthDifference);
+		BMBlockClassifier classifier = new BMBlockClassifier();
+		classifier.restoreState(classifierState);
+		ArrayDeque<BMSection> sections = new ArrayDeque<BMSection>();
+		ArrayDeque<Integer> sectionEnds = new ArrayDeque<Integer>();
+		int readPos = start;
+		int readSize = READ_SIZE;
+		int parsedBlockCount = 0;
+
+		List<BMSection> block = new ArrayList<BMSection>();
+		int blockStart = start;
+		BMBlockClassifier.State blockClassifierState = classifierState;
+		int sectionStart = start;
+		while ((!sections.isEmpty()) || (readPos < text.length())) {
+			if (sections.isEmpty()) {
+				int newReadPos = readSections(text, readPos, readSize, sections, sectionEnds);
+				//: if no section is complete yet (e.g. a long code block), read more text at once the next time
+				readSize = (sections.isEmpty()) ? readSize * 2 : READ_SIZE;
+				if (newReadPos > readPos) {
+					readPos = newReadPos;
+				}
+				continue;
+			}
+			BMSection section = sections.poll();
+			int sectionEnd = sectionEnds.poll();
+			BMBlockClassifier.State sectionClassifierState = classifier.saveState();
+			classifier.classifyBlocks(section);
+			if ((!block.isEmpty()) && (!BMBlockStreamParser.belongsToBlock(block, section))) {
+				blocks.add(parseBlock(block, sectionStart - blockStart, blockClassifierState));
+				parsedBlockCount ++;
+				//: the sections after a code block in the last line of the text all end at the end of the text, so a block that starts there
+				//: may contain changed text of the line and is never taken from the previous result
+				Integer previousIndex = previousBlockStartToIndex.get(sectionStart - lengthDifference);
+				if ((sectionStart >= resyncStart) && (sectionStart < text.length()) && (previousIndex != null)) {
+					BMParsedText.Block previousBlock = previous.getBlocks().get(previousIndex);
+					if (previousBlock.getClassifierStateBefore().equals(sectionClassifierState)) {
+						blocks.addAll(previous.getBlocks().subList(previousIndex, previous.getBlocks().size()));
+						return new BMParsedText(text, blocks, parsedBlockCount, context.createBlockContext());
+					}
+				}
+				block = new ArrayList<BMSection>();
+				blockStart = sectionStart;
+				blockClassifierState = sectionClassifierState;
+			}
+			block.add(section);
+			sectionStart = sectionEnd;
+		}
+		if (!block.isEmpty()) {
+			blocks.add(parseBlock(block, sectionStart - blockStart, blockClassifierState));
+			parsedBlockCount ++;
+		}
+		return new BMParsedText(text, blocks, parsedBlockCount, context.createBlockContext());
+	}
+
+	/**
+	 * @return start position to index of the blocks of the previous result which start at or after the given position
+	 */
+	private Map<Integer, Integer> createBlockStartToIndexMap(BMParsedText previous, int minStart) {
+		Map<Integer, Integer> result = new HashMap<Integer, Integer>();
+		if (previous == null) {
+			return result;
+		}
+		int blockStart = 0;
+		for (int i = 0; i < previous.getBlocks().size(); i++) {
+			if (blockStart >= minStart) {
+				result.put(blockStart, i);
+			}
+			blockStart += previous.getBlocks().get(i).getLength();
+		}
+		return result;
+	}
+
+	/**
+	 * reads the complete sections of the lines from the read position on which contain at least the given number of characters
+	 * and adds them together with the position in the text where each section ends
+	 * @return position in the text up to which the text has been turned into sections
+	 */
+	private int readSections(String text, int readPos, int readSize, ArrayDeque<BMSection> sections, ArrayDeque<Integer> sectionEnds) {
+		int end = text.length();
+		if (readPos + readSize < text.length()) {
+			int lineEnd = text.indexOf('\n', readPos + readSize);
+			if (lineEnd >= 0) {
+				end = lineEnd + 1;
+			}
+		}
+		boolean endOfInput = end == text.length();
+		//: a backslash never escapes a line break, so escaping the text line by line has the same result as escaping the whole text at once
+		BMLineScanner lineScanner = new BMLineScanner(BMUtil.escape(text.subSequence(readPos, end)));
+		BMSection topSection = new BMSection();
+		topSection.setType(MDType.ROOT);
+		topSection.setChildren(new ArrayList<BMSection>());
+		List<Integer> scannedSectionEnds = new ArrayList<Integer>();
+		int scannedPos = sectionParser.readTopLevelSections(lineScanner, endOfInput, topSection, scannedSectionEnds);
+		sectionParser.parseCodeSections(topSection);
+		sections.addAll(topSection.getChildren());
+
+		//: the escaped text has the same line breaks as the text, so a section end is found in the text by counting the line breaks
+		CharSequence scannedText = lineScanner.getText();
+		int countedScannedPos = 0;
+		int pos = readPos;
+		for (int i: scannedSectionEnds) {
+			if ((endOfInput) && (i == scannedText.length())) {
+				pos = end;
+			} else {
+				pos = skipLineBreaks(text, pos, countLineBreaks(scannedText, countedScannedPos, i));
+			}
+			countedScannedPos = i;
+			sectionEnds.add(pos);
+		}
+		if ((endOfInput) && (scannedPos == scannedText.length())) {
+			return end;
+		}
+		return skipLineBreaks(text, pos, countLineBreaks(scannedText, countedScannedPos, scannedPos));
+	}
+
+	private int countLineBreaks(CharSequence text, int start, int end) {
+		int result = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == '\n') {
+				result ++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return position after the given number of line breaks from the start position on
+	 */
+	private int skipLineBreaks(String text, int start, int lineBreaks) {
+		int pos = start;
+		for (int i = 0; i < lineBreaks; i++) {
+			pos = text.indexOf('\n', pos) + 1;
+		}
+		return pos;
+	}
+
+	private BMParsedText.Block parseBlock(List<BMSection> block, int length, BMBlockClassifier.State classifierStateBefore) {
+		BMRenderContext blockContext = context.createBlockContext();
+		BMSectionParserLogic blockSectionParser = new BMSectionParserLogic(blockContext);
+		BMSection topSection = new BMSection();
+		topSection.setType(MDType.ROOT);
+		topSection.setChildren(block);
+		blockSectionParser.parseClassifiedSections(topSection);
+		blockSectionParser.applyImageNameToPathMapping(topSection, imageNameToPathMap);
+		return new BMParsedText.Block(length, classifierStateBefore, topSection.getChildren(), blockContext.getDiagnostics());
+	}
+
+}
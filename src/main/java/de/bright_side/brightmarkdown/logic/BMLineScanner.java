@@ -0,0 +1,207 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.model.BMPosAndTag;
+
+/**
+ * scans a text once and records the positions of all line breaks and code block marks.
+ * Afterwards the next line break or code block mark can be read without searching the rest of the text again.
+ * The text is not copied: carriage returns are skipped while scanning and only removed from the parts that are read via getText(int, int).
+ * All positions refer to the scanned text. The positions passed to findNext and findNextCodeBlockMark must not decrease from call to call.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMLineScanner {
+	private static final List<String> TAGS = createTags();
+	private static final int LINE_BREAK_TAG_INDEX = TAGS.indexOf(BMConstants.LINE_BREAK);
+
+	private static final char CARRIAGE_RETURN = '\r';
+
+	private final CharSequence text;
+	/** true if the text contains carriage returns which are to be removed from the parts of the text */
+	private boolean containsCarriageReturns = false;
+	private int[] tagPositions;
+	private byte[] tagIndices;
+	private int numberOfTags = 0;
+	private int currentIndex = 0;
+
+	public BMLineScanner(CharSequence input) {
+		text = input;
+		int length = text.length();
+		tagPositions = new int[16];
+		tagIndices = new byte[16];
+		int pos = 0;
+		while (pos < length) {
+			char c = text.charAt(pos);
+			int tagIndex = -1;
+			if (c == '\n') {
+				tagIndex = LINE_BREAK_TAG_INDEX;
+			} else if (c == CARRIAGE_RETURN) {
+				containsCarriageReturns = true;
+			} else if (isCodeBlockMarkStart(c)) {
+				tagIndex = readCodeBlockMark(text, pos);
+			}
+			if (tagIndex >= 0) {
+				addTag(pos, tagIndex);
+				pos += TAGS.get(tagIndex).length();
+			} else {
+				pos ++;
+			}
+		}
+	}
+
+	/**
+	 * @return the scanned text which still contains the carriage returns
+	 */
+	public CharSequence getText() {
+		return text;
+	}
+
+	public int getLength() {
+		return text.length();
+	}
+
+	/**
+	 * @return the part of the scanned text from the start position to the end position (exclusive) without carriage returns
+	 */
+	public String getText(int startPos, int endPos) {
+		String result = text.subSequence(startPos, endPos).toString();
+		if (!containsCarriageReturns) {
+			return result;
+		}
+		return removeCarriageReturns(result);
+	}
+
+	/**
+	 * @return the next character at or after the given position which is neither a space nor a carriage return or null if there is none
+	 */
+	public BMPosAndTag findNextSkipSpaces(int startPos) {
+		int length = text.length();
+		for (int pos = startPos; pos < length; pos++) {
+			char c = text.charAt(pos);
+			if ((c != ' ') && (c != CARRIAGE_RETURN)) {
+				return new BMPosAndTag(pos, String.valueOf(c));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the next line break or code block mark at or after the given position or null if there is none
+	 */
+	public BMPosAndTag findNext(int startPos) {
+		skipTagsBefore(startPos);
+		if (currentIndex >= numberOfTags) {
+			return null;
+		}
+		return createPosAndTag(currentIndex);
+	}
+
+	/**
+	 * @return the next code block mark at or after the given position or null if there is none
+	 */
+	public BMPosAndTag findNextCodeBlockMark(int startPos) {
+		skipTagsBefore(startPos);
+		int index = currentIndex;
+		while (index < numberOfTags) {
+			if (tagIndices[index] != LINE_BREAK_TAG_INDEX) {
+				return createPosAndTag(index);
+			}
+			index ++;
+		}
+		return null;
+	}
+
+	private void skipTagsBefore(int startPos) {
+		while ((currentIndex < numberOfTags) && (tagPositions[currentIndex] < startPos)) {
+			currentIndex ++;
+		}
+	}
+
+	private BMPosAndTag createPosAndTag(int index) {
+		return new BMPosAndTag(tagPositions[index], TAGS.get(tagIndices[index]));
+	}
+
+	private void addTag(int pos, int tagIndex) {
+		if (numberOfTags == tagPositions.length) {
+			tagPositions = Arrays.copyOf(tagPositions, numberOfTags * 2);
+			tagIndices = Arrays.copyOf(tagIndices, numberOfTags * 2);
+		}
+		tagPositions[numberOfTags] = pos;
+		tagIndices[numberOfTags] = (byte)tagIndex;
+		numberOfTags ++;
+	}
+
+	/**
+	 * @return the given part of the text without carriage returns. The part is only copied again if it contains carriage returns
+	 */
+	private static String removeCarriageReturns(String part) {
+		if (part.indexOf(CARRIAGE_RETURN) < 0) {
+			return part;
+		}
+		StringBuilder result = new StringBuilder(part.length());
+		for (int i = 0; i < part.length(); i++) {
+			char c = part.charAt(i);
+			if (c != CARRIAGE_RETURN) {
+				result.append(c);
+			}
+		}
+		return result.toString();
+	}
+
+	private boolean isCodeBlockMarkStart(char c) {
+		for (String i: BMConstants.CODE_BLOCK_MARKS) {
+			if (i.charAt(0) == c) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return index of the longest code block mark at the given position or -1 if there is none
+	 */
+	private int readCodeBlockMark(CharSequence text, int pos) {
+		for (int i = 0; i < TAGS.size(); i++) {
+			if (startsWith(text, pos, TAGS.get(i))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean startsWith(CharSequence text, int pos, String prefix) {
+		if (pos + prefix.length() > text.length()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.length(); i++) {
+			if (text.charAt(pos + i) != prefix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return line break and all code block marks with the longest marks first so that the first match at a position is the longest one
+	 */
+	private static List<String> createTags() {
+		List<String> result = new ArrayList<String>(BMConstants.CODE_BLOCK_MARKS);
+		Collections.sort(result, new Comparator<String>() {
+			@Override
+			public int compare(String a, String b) {
+				return b.length() - a.length();
+			}
+		});
+		result.add(BMConstants.LINE_BREAK);
+		return Collections.unmodifiableList(result);
+	}
+
+}
@@ -0,0 +1,231 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.bright_side.brightmarkdown.logic.BMTextParserLogic.MatchConfirmer;
+import de.bright_side.brightmarkdown.model.BMPosAndTag;
+
+/**
+ * finds the first occurrence of any of a set of tags with an Aho-Corasick automaton in one left-to-right pass over the text.
+ * The automaton is immutable and may be shared between threads. Automatons are cached per tag list and ignore-case setting.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMMultiPatternMatcher {
+	private static final int MAX_CACHE_SIZE = 256;
+	private static final Map<CacheKey, BMMultiPatternMatcher> CACHE = new ConcurrentHashMap<CacheKey, BMMultiPatternMatcher>();
+
+	private final Node root = new Node();
+	private final boolean ignoreCase;
+	private int maxTagLength = 0;
+
+	private static class Node {
+		private char[] keys = new char[0];
+		private Node[] children = new Node[0];
+		private Node fail;
+		/** next node in the chain of fail links that ends a tag */
+		private Node outputLink;
+		/** tag which ends at this node or null if no tag ends here. If several tags end here (only possible if ignoreCase is set) it is the first one */
+		private String tag;
+
+		private Node getChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index < 0) {
+				return null;
+			}
+			return children[index];
+		}
+
+		/** keeps the keys sorted so that getChild can use a binary search */
+		private Node addChild(char c) {
+			Node result = new Node();
+			int index = -(Arrays.binarySearch(keys, c) + 1);
+			char[] newKeys = new char[keys.length + 1];
+			Node[] newChildren = new Node[children.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			newKeys[index] = c;
+			newChildren[index] = result;
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+			keys = newKeys;
+			children = newChildren;
+			return result;
+		}
+	}
+
+	private static class CacheKey {
+		private List<String> tags;
+		private boolean ignoreCase;
+
+		public CacheKey(List<String> tags, boolean ignoreCase) {
+			this.tags = tags;
+			this.ignoreCase = ignoreCase;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * tags.hashCode() + (ignoreCase ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey)obj;
+			return (ignoreCase == other.ignoreCase) && (tags.equals(other.tags));
+		}
+	}
+
+	/**
+	 * @param tags tags to find. The tags must not be null or empty. If the same tag occurs several times, the first occurrence is used
+	 * @param ignoreCase if true the tags and the text are compared in upper case
+	 */
+	public BMMultiPatternMatcher(Collection<String> tags, boolean ignoreCase) {
+		this.ignoreCase = ignoreCase;
+		for (String i: tags) {
+			addTag(i);
+		}
+		createFailLinks();
+	}
+
+	/**
+	 * @return a matcher for the given tags which is only created if there is no matcher in the cache for the same tags yet
+	 */
+	public static BMMultiPatternMatcher getMatcher(Collection<String> tags, boolean ignoreCase) {
+		CacheKey key = new CacheKey(new ArrayList<String>(tags), ignoreCase);
+		BMMultiPatternMatcher result = CACHE.get(key);
+		if (result == null) {
+			result = new BMMultiPatternMatcher(key.tags, ignoreCase);
+			if (CACHE.size() >= MAX_CACHE_SIZE) {
+				CACHE.clear();
+			}
+			CACHE.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if all tags can be handled by the matcher (which is the case if none of them is null or empty)
+	 */
+	public static boolean isSupported(Collection<String> tags) {
+		for (String i: tags) {
+			if ((i == null) || (i.isEmpty())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param matchConfirmer may be null. If set, it is only called for matches that would come before the best match found so far
+	 * @return BMPosAndTag containing the first matching tag (the longest one if several tags start at the same position) and its position
+	 * or null if there are no matching tags
+	 */
+	public BMPosAndTag findNext(String text, int startPos, MatchConfirmer matchConfirmer) {
+		int bestPos = -1;
+		String bestTag = null;
+		Node node = root;
+		int length = text.length();
+		for (int pos = Math.max(startPos, 0); pos < length; pos++) {
+			char c = toComparableChar(text.charAt(pos));
+			Node next = node.getChild(c);
+			while ((next == null) && (node != root)) {
+				node = node.fail;
+				next = node.getChild(c);
+			}
+			if (next != null) {
+				node = next;
+			}
+
+			Node output = node;
+			if (output.tag == null) {
+				output = output.outputLink;
+			}
+			while (output != null) {
+				int tagPos = pos - output.tag.length() + 1;
+				if ((bestTag == null) || (tagPos < bestPos) || ((tagPos == bestPos) && (output.tag.length() > bestTag.length()))) {
+					if ((matchConfirmer == null) || (matchConfirmer.confirmMatch(text, tagPos, output.tag))) {
+						bestPos = tagPos;
+						bestTag = output.tag;
+					}
+				}
+				output = output.outputLink;
+			}
+
+			//: a match that ends later than pos + 1 cannot start before the best match or at the same position with a longer tag
+			if ((bestTag != null) && (pos - maxTagLength + 1 >= bestPos)) {
+				break;
+			}
+		}
+
+		if (bestTag == null) {
+			return null;
+		}
+		return new BMPosAndTag(bestPos, bestTag);
+	}
+
+	private char toComparableChar(char c) {
+		if (ignoreCase) {
+			return Character.toUpperCase(c);
+		}
+		return c;
+	}
+
+	private void addTag(String tag) {
+		Node node = root;
+		for (int i = 0; i < tag.length(); i++) {
+			char c = toComparableChar(tag.charAt(i));
+			Node next = node.getChild(c);
+			if (next == null) {
+				next = node.addChild(c);
+			}
+			node = next;
+		}
+		if (node.tag == null) {
+			node.tag = tag;
+		}
+		maxTagLength = Math.max(maxTagLength, tag.length());
+	}
+
+	private void createFailLinks() {
+		LinkedList<Node> queue = new LinkedList<Node>();
+		root.fail = root;
+		for (Node i: root.children) {
+			i.fail = root;
+			queue.add(i);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.removeFirst();
+			if (node.fail.tag != null) {
+				node.outputLink = node.fail;
+			} else {
+				node.outputLink = node.fail.outputLink;
+			}
+			for (int i = 0; i < node.keys.length; i++) {
+				char c = node.keys[i];
+				Node child = node.children[i];
+				Node fail = node.fail;
+				Node failChild = fail.getChild(c);
+				while ((failChild == null) && (fail != root)) {
+					fail = fail.fail;
+					failChild = fail.getChild(c);
+				}
+				if (failChild == null) {
+					failChild = root;
+				}
+				child.fail = failChild;
+				queue.add(child);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,172 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import de.bright_side.brightmarkdown.base.BMParallelTasks;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+/**
+ * parses a large text on several threads. Escaping the text and splitting it into top level sections is done on the calling thread, because the
+ * code block marks depend on all lines before. The top level sections are then split into regions of lines, whose code blocks are parsed
+ * and whose sections are classified in parallel. Only the levels of the list items depend on the list items before, so they are assigned
+ * afterwards on the calling thread in the order of the text (see BMBlockClassifier.assignListItemLevels).
+ * The classified sections are split into regions again at the boundaries of blocks (see BMBlockStreamParser.belongsToBlock): paragraphs, lists
+ * and tables are never split, so each region can be parsed on its own with the same result. The paragraphs, links and formatting of the regions are parsed
+ * in parallel, each region with its own context, and the parsed sections and warnings are joined in the order of the text.
+ * Texts with less than twice the minimum number of sections per region are parsed completely on the calling thread.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMParallelSectionParser {
+	/** minimum number of top level sections of a region, so that small texts, for which starting threads takes longer than parsing, are parsed on the calling thread only */
+	public static final int DEFAULT_MIN_SECTIONS_PER_REGION = 64;
+
+	private final BMRenderContext context;
+	private final Executor executor;
+	private final int parallelism;
+	private final int minSectionsPerRegion;
+
+	/**
+	 * @param context receives the warnings of all regions
+	 * @param executor executor on which the regions are parsed in addition to the calling thread
+	 */
+	public BMParallelSectionParser(BMRenderContext context, Executor executor) {
+		this(context, executor, Runtime.getRuntime().availableProcessors(), DEFAULT_MIN_SECTIONS_PER_REGION);
+	}
+
+	/**
+	 * @param parallelism maximum number of threads including the calling thread which parse the regions of a text
+	 * @param minSectionsPerRegion minimum number of top level sections of a region
+	 */
+	public BMParallelSectionParser(BMRenderContext context, Executor executor, int parallelism, int minSectionsPerRegion) {
+		this.context = context;
+		this.executor = executor;
+		this.parallelism = parallelism;
+		this.minSectionsPerRegion = minSectionsPerRegion;
+	}
+
+	/**
+	 * same as BMSectionParserLogic.parseAll but parses the regions of the text in parallel
+	 */
+	public BMSection parseAll(CharSequence markdownText) throws Exception {
+		BMSectionParserLogic sectionParser = new BMSectionParserLogic(context);
+		BMSection section = sectionParser.toTopLevelSections(markdownText);
+		List<List<BMSection>> regions = splitIntoRegions(section.getChildren(), false);
+		if (regions.size() < 2) {
+			sectionParser.parseClassifiedCodeSections(section);
+			sectionParser.classifyBlocks(section);
+			sectionParser.parseClassifiedSections(section);
+			return section;
+		}
+		classifyRegions(regions);
+		parseClassifiedSections(section);
+		return section;
+	}
+
+	/**
+	 * parses the code blocks and classifies the sections of the regions in parallel and then assigns the levels of the list items in the order of the text
+	 */
+	private void classifyRegions(List<List<BMSection>> regions) throws Exception {
+		final List<BMRenderContext> regionContexts = new ArrayList<BMRenderContext>();
+		final BMBlockClassifier.DeferredListItems[] regionListItems = new BMBlockClassifier.DeferredListItems[regions.size()];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (List<BMSection> i: regions) {
+			final BMSection regionSection = createRegionSection(i);
+			final BMRenderContext regionContext = context.createBlockContext();
+			final int regionIndex = regionContexts.size();
+			regionContexts.add(regionContext);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					BMSectionParserLogic regionSectionParser = new BMSectionParserLogic(regionContext);
+					regionSectionParser.parseClassifiedCodeSections(regionSection);
+					regionListItems[regionIndex] = regionSectionParser.classifyBlocksWithoutListItemLevels(regionSection);
+					return null;
+				}
+			});
+		}
+		BMParallelTasks.runAll(tasks, executor, parallelism);
+
+		BMBlockClassifier classifier = new BMBlockClassifier();
+		for (int i = 0; i < regions.size(); i++) {
+			classifier.assignListItemLevels(regionListItems[i]);
+			context.addWarnings(regionContexts.get(i).getDiagnostics());
+		}
+	}
+
+	/**
+	 * same as BMSectionParserLogic.parseClassifiedSections but parses the regions of the text in parallel
+	 * @param topSection result of BMSectionParserLogic.toClassifiedSections
+	 */
+	public void parseClassifiedSections(BMSection topSection) throws Exception {
+		List<List<BMSection>> regions = splitIntoRegions(topSection.getChildren(), true);
+		if (regions.size() < 2) {
+			new BMSectionParserLogic(context).parseClassifiedSections(topSection);
+			return;
+		}
+		final List<BMSection> regionSections = new ArrayList<BMSection>();
+		final List<BMRenderContext> regionContexts = new ArrayList<BMRenderContext>();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (List<BMSection> i: regions) {
+			final BMSection regionSection = createRegionSection(i);
+			final BMRenderContext regionContext = context.createBlockContext();
+			regionSections.add(regionSection);
+			regionContexts.add(regionContext);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					new BMSectionParserLogic(regionContext).parseClassifiedSections(regionSection);
+					return null;
+				}
+			});
+		}
+		BMParallelTasks.runAll(tasks, executor, parallelism);
+
+		List<BMSection> children = new ArrayList<BMSection>();
+		for (int i = 0; i < regionSections.size(); i++) {
+			children.addAll(regionSections.get(i).getChildren());
+			context.addWarnings(regionContexts.get(i).getDiagnostics());
+		}
+		topSection.setChildren(children);
+	}
+
+	private BMSection createRegionSection(List<BMSection> sections) {
+		BMSection result = new BMSection();
+		result.setType(MDType.ROOT);
+		result.setChildren(sections);
+		return result;
+	}
+
+	/**
+	 * @param atBlockEnds true if the sections are classified and each region is to end at the end of a block, false if the regions may end after any section
+	 * @return the sections split into regions of at least minSectionsPerRegion sections (except for the last) or an empty list if there are less than twice as many sections
+	 */
+	private List<List<BMSection>> splitIntoRegions(List<BMSection> sections, boolean atBlockEnds) {
+		List<List<BMSection>> result = new ArrayList<List<BMSection>>();
+		if ((sections == null) || (sections.size() < 2 * minSectionsPerRegion)) {
+			return result;
+		}
+		List<BMSection> region = new ArrayList<BMSection>();
+		List<BMSection> block = new ArrayList<BMSection>();
+		for (BMSection i: sections) {
+			if ((!block.isEmpty()) && ((!atBlockEnds) || (!BMBlockStreamParser.belongsToBlock(block, i)))) {
+				region.addAll(block);
+				block = new ArrayList<BMSection>();
+				if (region.size() >= minSectionsPerRegion) {
+					result.add(region);
+					region = new ArrayList<BMSection>();
+				}
+			}
+			block.add(i);
+		}
+		region.addAll(block);
+		result.add(region);
+		return result;
+	}
+
+}
@@ -0,0 +1,102 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+/**
+ * result of the BMIncrementalParser: the parsed sections of a text kept block by block (see BMBlockStreamParser) together with the length of the text
+ * of each block and the state of the BMBlockClassifier before each block, so that after an edit of the text only the blocks around the edit
+ * need to be parsed again. The sections are shared with the results of later edits and must therefore not be changed.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMParsedText {
+	private final String text;
+	private final List<Block> blocks;
+	private final int parsedBlockCount;
+	private final BMSection topSection;
+	private final BMDiagnostics diagnostics;
+
+	static class Block {
+		/** number of characters of the text of the block */
+		private final int length;
+		private final BMBlockClassifier.State classifierStateBefore;
+		/** the parsed top level sections of the block */
+		private final List<BMSection> sections;
+		private final BMDiagnostics diagnostics;
+
+		Block(int length, BMBlockClassifier.State classifierStateBefore, List<BMSection> sections, BMDiagnostics diagnostics) {
+			this.length = length;
+			this.classifierStateBefore = classifierStateBefore;
+			this.sections = sections;
+			this.diagnostics = diagnostics;
+		}
+
+		int getLength() {
+			return length;
+		}
+
+		BMBlockClassifier.State getClassifierStateBefore() {
+			return classifierStateBefore;
+		}
+	}
+
+	/**
+	 * @param warningContext context without warnings that receives the warnings of all blocks
+	 * @param parsedBlockCount number of blocks which have been parsed instead of being taken from a previous result
+	 */
+	BMParsedText(String text, List<Block> blocks, int parsedBlockCount, BMRenderContext warningContext) {
+		this.text = text;
+		this.blocks = blocks;
+		this.parsedBlockCount = parsedBlockCount;
+		List<BMSection> sections = new ArrayList<BMSection>();
+		for (Block i: blocks) {
+			sections.addAll(i.sections);
+			warningContext.addWarnings(i.diagnostics);
+		}
+		topSection = new BMSection();
+		topSection.setType(MDType.ROOT);
+		topSection.setChildren(Collections.unmodifiableList(sections));
+		diagnostics = warningContext.getDiagnostics();
+	}
+
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return root section whose children are the parsed top level sections of the whole text like the result of BMSectionParserLogic.parseAll
+	 */
+	public BMSection getTopSection() {
+		return topSection;
+	}
+
+	/**
+	 * @return the warnings of all blocks
+	 */
+	public BMDiagnostics getDiagnostics() {
+		return diagnostics;
+	}
+
+	public int getBlockCount() {
+		return blocks.size();
+	}
+
+	/**
+	 * @return number of blocks which have been parsed when this result was created. The other blocks have been taken from the previous result
+	 */
+	public int getParsedBlockCount() {
+		return parsedBlockCount;
+	}
+
+	List<Block> getBlocks() {
+		return blocks;
+	}
+
+}
@@ -0,0 +1,402 @@
+package de.bright_side.brightmarkdown.logic;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException;
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException.Limit;
+import de.bright_side.brightmarkdown.BMRenderLimits;
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.base.BrightXmlNode;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+import de.bright_side.brightmarkdown.model.BMPhase;
+import de.bright_side.brightmarkdown.model.BMPhaseListener;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+import de.bright_side.brightmarkdown.model.BMWarning;
+
+/**
+ * state of a single call of BrightMarkdown. The BrightMarkdown instance only holds the configuration which is never changed after it has been built,
+ * so one instance may be used by any number of threads at the same time, while everything that is collected during a call is kept in its own context.
+ * The context also tells whether the call has been cancelled or has run longer than its BMRenderLimits allow, which is checked between the steps of parsing
+ * and between the top level blocks, and it checks the other limits of the call. The phases of the call are reported to the phase listener if there is one.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMRenderContext {
+	private final Map<String, BMCodeFormat> codeFormats;
+	private final int maxWarnings;
+	private final List<BMWarning> warnings = new ArrayList<BMWarning>();
+	private int warningCount = 0;
+	/** tells whether the call has been cancelled or null if the call cannot be cancelled */
+	private final BooleanSupplier cancelled;
+	private final BMRenderLimits limits;
+	/** System.nanoTime() at which the call has to stop */
+	private final long deadlineNanos;
+	/** number of parsed sections which is shared with the block contexts */
+	private final AtomicLong nodeCount;
+	/** receives the phases of the call or null if they are not reported */
+	private final BMPhaseListener phaseListener;
+
+	public BMRenderContext() {
+		this(BMConstants.CODE_FORMATS, BMConstants.DEFAULT_MAX_WARNINGS);
+	}
+
+	/**
+	 * @param codeFormats code format name (lower case) to format. The map is only read and may therefore be shared by several contexts
+	 * @param maxWarnings maximum number of warnings that are kept. Further warnings are only counted
+	 */
+	public BMRenderContext(Map<String, BMCodeFormat> codeFormats, int maxWarnings) {
+		this(codeFormats, maxWarnings, null);
+	}
+
+	/**
+	 * @param cancelled returns true when the call has been cancelled or null if the call cannot be cancelled. It may be called by several threads
+	 */
+	public BMRenderContext(Map<String, BMCodeFormat> codeFormats, int maxWarnings, BooleanSupplier cancelled) {
+		this(codeFormats, maxWarnings, cancelled, BMRenderLimits.NONE);
+	}
+
+	/**
+	 * @param limits limits of the call. The time of the call starts when the context is created
+	 */
+	public BMRenderContext(Map<String, BMCodeFormat> codeFormats, int maxWarnings, BooleanSupplier cancelled, BMRenderLimits limits) {
+		this(codeFormats, maxWarnings, cancelled, limits, null);
+	}
+
+	/**
+	 * @param phaseListener receives the phases of the call or null if they are not reported. It may be called by several threads
+	 */
+	public BMRenderContext(Map<String, BMCodeFormat> codeFormats, int maxWarnings, BooleanSupplier cancelled, BMRenderLimits limits, BMPhaseListener phaseListener) {
+		this(codeFormats, maxWarnings, cancelled, limits, computeDeadlineNanos(limits), new AtomicLong(), phaseListener);
+	}
+
+	private BMRenderContext(Map<String, BMCodeFormat> codeFormats, int maxWarnings, BooleanSupplier cancelled, BMRenderLimits limits, long deadlineNanos
+			, AtomicLong nodeCount, BMPhaseListener phaseListener) {
+		this.codeFormats = codeFormats;
+		this.maxWarnings = maxWarnings;
+		this.cancelled = cancelled;
+		this.limits = limits;
+		this.deadlineNanos = deadlineNanos;
+		this.nodeCount = nodeCount;
+		this.phaseListener = phaseListener;
+	}
+
+	private static long computeDeadlineNanos(BMRenderLimits limits) {
+		long maxDurationInNanos = TimeUnit.MILLISECONDS.toNanos(limits.getMaxDurationInMillis());
+		if (maxDurationInNanos == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		//: the sum may overflow, which is accepted by the comparison in checkCanContinue
+		return System.nanoTime() + maxDurationInNanos;
+	}
+
+	/**
+	 * @param name lower case name of the format as written after the code block mark, or "" for the format of code blocks without a (known) format name
+	 * @return the format or null if there is no format with the given name
+	 */
+	public BMCodeFormat getCodeFormat(String name) {
+		return codeFormats.get(name);
+	}
+
+	public void addWarning(String message) {
+		warningCount ++;
+		if (warnings.size() < maxWarnings) {
+			warnings.add(new BMWarning(message));
+		}
+	}
+
+	/**
+	 * adds the warnings of a part of the text which has been parsed with its own context (see createBlockContext)
+	 */
+	public void addWarnings(BMDiagnostics diagnostics) {
+		for (BMWarning i: diagnostics.getWarnings()) {
+			addWarning(i.getMessage());
+		}
+		//: the warnings which the other context has only counted are only counted here as well
+		warningCount += diagnostics.getWarningCount() - diagnostics.getWarnings().size();
+	}
+
+	/**
+	 * @return a new context with the same configuration, cancellation, limits and phase listener but without warnings, e.g. for a block whose warnings are cached 
+	 * together with its HTML. The time and the parsed sections are counted for the whole call
+	 */
+	public BMRenderContext createBlockContext() {
+		return new BMRenderContext(codeFormats, maxWarnings, cancelled, limits, deadlineNanos, nodeCount, phaseListener);
+	}
+
+	/**
+	 * @throws CancellationException thrown if the call has been cancelled
+	 * @throws BMRenderLimitExceededException thrown if the maximum duration of the call has passed
+	 */
+	public void checkCanContinue() {
+		if ((cancelled != null) && (cancelled.getAsBoolean())) {
+			throw new CancellationException("The creation of the HTML has been cancelled");
+		}
+		if ((deadlineNanos != Long.MAX_VALUE) && (System.nanoTime() - deadlineNanos > 0)) {
+			throw new BMRenderLimitExceededException(Limit.DURATION_IN_MILLIS, limits.getMaxDurationInMillis());
+		}
+	}
+
+	/**
+	 * @return time until the maximum duration of the call has passed, 0 if it has already passed or Long.MAX_VALUE if the duration is not limited
+	 */
+	public long getRemainingNanos() {
+		if (deadlineNanos == Long.MAX_VALUE) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, deadlineNanos - System.nanoTime());
+	}
+
+	/**
+	 * @throws BMRenderLimitExceededException thrown if the markdown text is longer than allowed
+	 */
+	public void checkInputLength(long length) {
+		if (length > limits.getMaxInputChars()) {
+			throw new BMRenderLimitExceededException(Limit.INPUT_CHARS, limits.getMaxInputChars());
+		}
+	}
+
+	/**
+	 * @throws BMRenderLimitExceededException thrown if the HTML is longer than allowed
+	 */
+	public void checkOutputLength(long length) {
+		if (length > limits.getMaxOutputChars()) {
+			throw new BMRenderLimitExceededException(Limit.OUTPUT_CHARS, limits.getMaxOutputChars());
+		}
+	}
+
+	/**
+	 * counts the sections of a parsed text or block and checks their nesting depth without recursion, so that a deeply nested text is found 
+	 * before the HTML is created. Nothing is done if neither the number of nodes nor the depth is limited
+	 * @throws BMRenderLimitExceededException thrown if the sections of all texts and blocks parsed in this call are more than allowed or nested too deep
+	 */
+	public void checkParsedSections(BMSection topSection) {
+		if ((limits.getMaxNodes() == Long.MAX_VALUE) && (limits.getMaxDepth() == Integer.MAX_VALUE)) {
+			return;
+		}
+		if (nodeCount.addAndGet(countSectionsAndCheckDepth(topSection)) > limits.getMaxNodes()) {
+			throw new BMRenderLimitExceededException(Limit.NODES, limits.getMaxNodes());
+		}
+	}
+
+	/**
+	 * same as checkParsedSections for sections which have only been classified (see BMSectionParserLogic.toClassifiedSections), so that a text with 
+	 * too many lines or too deeply nested list items is found before its paragraphs, links and formatting are parsed. The sections are not added 
+	 * to the sections of the call, because they are counted again by checkParsedSections when they have been parsed
+	 * @throws BMRenderLimitExceededException thrown if the classified sections together with the sections parsed before in this call are more than 
+	 * allowed or nested too deep
+	 */
+	public void checkClassifiedSections(BMSection topSection) {
+		if ((limits.getMaxNodes() == Long.MAX_VALUE) && (limits.getMaxDepth() == Integer.MAX_VALUE)) {
+			return;
+		}
+		if (nodeCount.get() + countSectionsAndCheckDepth(topSection) > limits.getMaxNodes()) {
+			throw new BMRenderLimitExceededException(Limit.NODES, limits.getMaxNodes());
+		}
+	}
+
+	/**
+	 * @return number of the sections including the top section
+	 * @throws BMRenderLimitExceededException thrown if the sections are nested too deep
+	 */
+	private long countSectionsAndCheckDepth(BMSection topSection) {
+		long result = 0;
+		Deque<BMSection> sections = new ArrayDeque<BMSection>();
+		Deque<Integer> depths = new ArrayDeque<Integer>();
+		sections.push(topSection);
+		depths.push(0);
+		while (!sections.isEmpty()) {
+			BMSection section = sections.pop();
+			int depth = depths.pop() + getNestingLevels(section);
+			result ++;
+			if (depth > limits.getMaxDepth()) {
+				throw new BMRenderLimitExceededException(Limit.DEPTH, limits.getMaxDepth());
+			}
+			if (section.getChildren() != null) {
+				for (BMSection i: section.getChildren()) {
+					sections.push(i);
+					depths.push(depth);
+				}
+			}
+		}
+		return result;
+	}
+
+	private int getNestingLevels(BMSection section) {
+		MDType type = section.getType();
+		boolean listItem = (type == MDType.BULLET_POINT) || (type == MDType.NUMBERED_ITEM) || (type == MDType.CHECKED_ITEM) || (type == MDType.UNCHECKED_ITEM);
+		if ((listItem) && (section.getLevel() != null)) {
+			return Math.max(1, section.getLevel());
+		}
+		return 1;
+	}
+
+	/**
+	 * @return the given output or, if the length of the HTML is limited, an output which counts the written characters and throws a
+	 * BMRenderLimitExceededException as soon as the HTML is longer than allowed
+	 */
+	public Appendable limitOutput(final Appendable out) {
+		if (limits.getMaxOutputChars() == Long.MAX_VALUE) {
+			return out;
+		}
+		return new Appendable() {
+			private long length = 0;
+
+			@Override
+			public Appendable append(CharSequence csq) throws IOException {
+				String text = String.valueOf(csq);
+				return append(text, 0, text.length());
+			}
+
+			@Override
+			public Appendable append(CharSequence csq, int start, int end) throws IOException {
+				length += end - start;
+				checkOutputLength(length);
+				out.append(csq, start, end);
+				return this;
+			}
+
+			@Override
+			public Appendable append(char c) throws IOException {
+				length ++;
+				checkOutputLength(length);
+				out.append(c);
+				return this;
+			}
+		};
+	}
+
+	/**
+	 * @return the given reader or, if the length of the text is limited, a reader which counts the read characters and throws a
+	 * BMRenderLimitExceededException as soon as the text is longer than allowed
+	 */
+	public Reader limitInput(Reader reader) {
+		if (limits.getMaxInputChars() == Long.MAX_VALUE) {
+			return reader;
+		}
+		return new FilterReader(reader) {
+			private long length = 0;
+
+			@Override
+			public int read() throws IOException {
+				int result = super.read();
+				if (result >= 0) {
+					length ++;
+					checkInputLength(length);
+				}
+				return result;
+			}
+
+			@Override
+			public int read(char[] buffer, int offset, int count) throws IOException {
+				int result = super.read(buffer, offset, count);
+				if (result > 0) {
+					length += result;
+					checkInputLength(length);
+				}
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * @param inputChars number of characters of the text which the phase reads
+	 * @return System.nanoTime() at the start of the phase or 0 if there is no phase listener
+	 */
+	public long startPhase(BMPhase phase, long inputChars) {
+		if (phaseListener == null) {
+			return 0;
+		}
+		phaseListener.phaseStarted(phase, inputChars);
+		return System.nanoTime();
+	}
+
+	/**
+	 * @param input sections which the phase reads
+	 * @return System.nanoTime() at the start of the phase or 0 if there is no phase listener
+	 */
+	public long startPhase(BMPhase phase, BMSection input) {
+		if (phaseListener == null) {
+			return 0;
+		}
+		return startPhase(phase, countSections(input));
+	}
+
+	/**
+	 * @param input HTML nodes which the phase reads
+	 * @return System.nanoTime() at the start of the phase or 0 if there is no phase listener
+	 */
+	public long startPhase(BMPhase phase, BrightXmlNode input) {
+		if (phaseListener == null) {
+			return 0;
+		}
+		return startPhase(phase, countNodes(input));
+	}
+
+	/**
+	 * @param startNanos result of startPhase
+	 * @param result sections after the phase or null if the phase has not created sections
+	 */
+	public void endPhase(BMPhase phase, long startNanos, BMSection result) {
+		if (phaseListener == null) {
+			return;
+		}
+		long durationInNanos = System.nanoTime() - startNanos;
+		phaseListener.phaseEnded(phase, durationInNanos, countSections(result));
+	}
+
+	/**
+	 * @param startNanos result of startPhase
+	 * @param result HTML nodes after the phase
+	 */
+	public void endPhase(BMPhase phase, long startNanos, BrightXmlNode result) {
+		if (phaseListener == null) {
+			return;
+		}
+		long durationInNanos = System.nanoTime() - startNanos;
+		phaseListener.phaseEnded(phase, durationInNanos, countNodes(result));
+	}
+
+	private long countSections(BMSection section) {
+		if (section == null) {
+			return 0;
+		}
+		return BMUtil.getAllSectionsAndSubSections(section).size();
+	}
+
+	private long countNodes(BrightXmlNode node) {
+		long result = 0;
+		Deque<BrightXmlNode> nodes = new ArrayDeque<BrightXmlNode>();
+		nodes.push(node);
+		while (!nodes.isEmpty()) {
+			BrightXmlNode current = nodes.pop();
+			result ++;
+			for (BrightXmlNode i: current.getChildNodes()) {
+				nodes.push(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the warnings that have been added so far
+	 */
+	public BMDiagnostics getDiagnostics() {
+		return new BMDiagnostics(new ArrayList<BMWarning>(warnings), warningCount);
+	}
+
+}
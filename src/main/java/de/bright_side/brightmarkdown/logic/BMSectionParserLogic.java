@@ -5,61 +5,137 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.StringTokenizer;
-import java.util.TreeMap;
 
 import de.bright_side.brightmarkdown.base.BMConstants;
 import de.bright_side.brightmarkdown.base.BMUtil;
 import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMPhase;
 import de.bright_side.brightmarkdown.model.BMPosAndTag;
 import de.bright_side.brightmarkdown.model.BMSection;
 import de.bright_side.brightmarkdown.model.BMSection.MDType;
 
 public class BMSectionParserLogic {
 	private BMTextParserLogic textParser = new BMTextParserLogic();
-	private List<Exception> warnings = new ArrayList<Exception>();
+	private final BMRenderContext context;
 	private static String SIZE_UNIT_MM = "mm";
 	private static String SIZE_UNIT_PIXELS = "px";
 	private static String SIZE_UNIT_INCH = "in";
 	private static String SIZE_UNIT_PERCENT = "%";
 	
-	public BMSection parseAll(String markdownText){
-		String escapedMarkedown = BMUtil.escape(markdownText);
+	public BMSectionParserLogic() {
+		this(new BMRenderContext());
+	}
+	
+	/**
+	 * @param context state of the current call which also provides the code formats. A new parser is to be created for each call
+	 */
+	public BMSectionParserLogic(BMRenderContext context) {
+		this.context = context;
+	}
+	
+	public BMSection parseAll(CharSequence markdownText){
+		BMSection section = toClassifiedSections(markdownText);
+		parseClassifiedSections(section);
+		BMUtil.logSection("parseAll result", section);
+		return section;
+	}
+	
+	/**
+	 * splits the text into top level sections and classifies them, but does not parse paragraphs, links and formatting yet (see parseClassifiedSections)
+	 */
+	public BMSection toClassifiedSections(CharSequence markdownText){
+		return toClassifiedSections(markdownText, true);
+	}
+	
+	/**
+	 * @param parseCode false if the code blocks are to be left unparsed, so that they are only parsed for the sections that need them (see parseClassifiedCodeSections).
+	 * The BMBlockClassifier does not look into code blocks, so the sections are classified the same way in both cases
+	 */
+	public BMSection toClassifiedSections(CharSequence markdownText, boolean parseCode){
+		BMSection section = toTopLevelSections(markdownText);
+		if (parseCode) {
+			parseClassifiedCodeSections(section);
+		}
+		classifyBlocks(section);
+		return section;
+	}
+	
+	/**
+	 * classifies the sections (see BMBlockClassifier.classifyBlocks) as a step of the call which may be cancelled and is reported to the phase listener
+	 */
+	public void classifyBlocks(BMSection topSection) {
+		context.checkCanContinue();
+		long phaseStart = context.startPhase(BMPhase.CLASSIFY_BLOCKS, topSection);
+		new BMBlockClassifier().classifyBlocks(topSection);
+		context.endPhase(BMPhase.CLASSIFY_BLOCKS, phaseStart, topSection);
+	}
+	
+	/**
+	 * escapes the text and splits it into top level sections which are neither classified nor have parsed code blocks yet
+	 */
+	public BMSection toTopLevelSections(CharSequence markdownText){
+		context.checkCanContinue();
+		long phaseStart = context.startPhase(BMPhase.ESCAPE, markdownText.length());
+		CharSequence escapedMarkedown = BMUtil.escapeWithoutCopy(markdownText);
+		context.endPhase(BMPhase.ESCAPE, phaseStart, (BMSection)null);
+		context.checkCanContinue();
+		phaseStart = context.startPhase(BMPhase.SPLIT_LINES, escapedMarkedown.length());
 		BMSection section = toMDSection(escapedMarkedown);
+		context.endPhase(BMPhase.SPLIT_LINES, phaseStart, section);
 //		log("parseAll: escapedMarkedown = >>\n" + escapedMarkedown + "<<");
-		BMUtil.logSection("parseAll: sections before parseCodeSections", section);
-		parseCodeSections(section);
-		BMUtil.logSection("parseAll: sections after parseCodeSections", section);
-		parseHorizontalRuleEntries(section);
-		parseTableOfContentEntries(section);
-
-		parseRawLineEntries(section, MDType.HEADING, BMConstants.HEADINGS_INDICATOR, true);
-		parseRawLineEntries(section, MDType.UNCHECKED_ITEM, BMConstants.UNCHECKED_ITEM_INDICATORS, false);
-		parseRawLineEntries(section, MDType.CHECKED_ITEM, BMConstants.CHECKED_ITEM_INDICATORS, false);
-		BMUtil.logSection("parseAll: sections before parseListEntriesByLevel", section);
-		parseListEntriesByLevel(section);
-		
-		BMUtil.logSection("parseAll: sections before bullet point processing", section);
-		parseRawLineEntries(section, MDType.BULLET_POINT, BMConstants.BULLET_POINT_INDICATORS_A, true);
-		parseRawLineEntries(section, MDType.BULLET_POINT, BMConstants.BULLET_POINT_INDICATORS_B, true);
-		parseRawLineEntries(section, MDType.BULLET_POINT, BMConstants.BULLET_POINT_INDICATORS_C, true);
-		parseRawLineEntries(section, MDType.BULLET_POINT, BMConstants.BULLET_POINT_INDICATORS_D, true);
-		BMUtil.logSection("parseAll: before numbered item processing", section);
-		parseRawLineEntries(section, MDType.NUMBERED_ITEM, BMConstants.NUMBERED_ITEM_INDICATORS, false);
-		BMUtil.logSection("parseAll: before parseTableRows", section);
-		parseTableRows(section);
-		BMUtil.logSection("before parseTextParagraphs", section);
-		parseTextParagraphs(section);
-		BMUtil.logSection("before parseLinks", section);
-		parseLinks(section);
-		BMUtil.logSection("before formatting", section);
-		parseFormatting(section);
-		BMUtil.logSection("after formatting", section);
-		BMUtil.logSection("parseAll result", section);
 		return section;
 	}
 	
+	/**
+	 * classifies the sections without the levels of the list items that depend on the list items before (see BMBlockClassifier.classifyBlocksWithoutListItemLevels)
+	 * as a step of the call which may be cancelled and is reported to the phase listener
+	 */
+	public BMBlockClassifier.DeferredListItems classifyBlocksWithoutListItemLevels(BMSection topSection) {
+		context.checkCanContinue();
+		long phaseStart = context.startPhase(BMPhase.CLASSIFY_BLOCKS, topSection);
+		BMBlockClassifier.DeferredListItems result = new BMBlockClassifier().classifyBlocksWithoutListItemLevels(topSection);
+		context.endPhase(BMPhase.CLASSIFY_BLOCKS, phaseStart, topSection);
+		return result;
+	}
+	
+	/**
+	 * parses the code blocks of the sections (see parseCodeSections) as a step of the call which may be cancelled and is reported to the phase listener
+	 */
+	public void parseClassifiedCodeSections(BMSection topSection) {
+		BMUtil.logSection("toClassifiedSections: sections before parseCodeSections", topSection);
+		context.checkCanContinue();
+		long phaseStart = context.startPhase(BMPhase.CODE_BLOCKS, topSection);
+		parseCodeSections(topSection);
+		context.endPhase(BMPhase.CODE_BLOCKS, phaseStart, topSection);
+		BMUtil.logSection("toClassifiedSections: sections after parseCodeSections", topSection);
+	}
+	
+	/**
+	 * parses paragraphs, links and formatting of the sections which have already been classified by the BMBlockClassifier.
+	 * Each step only looks at a single section or at a sequence of paragraph lines, so the top level sections may also be passed block by block.
+	 * If the call is cancelled (see BMRenderContext.checkCanContinue), a CancellationException is thrown between the steps and between the sections.
+	 * The limits of the call are checked between the steps and for the classified sections before the first step as well as for the parsed sections 
+	 * after the last step (see BMRenderContext.checkClassifiedSections and checkParsedSections)
+	 */
+	public void parseClassifiedSections(BMSection topSection) {
+		BMUtil.logSection("before parseTextParagraphs", topSection);
+		context.checkCanContinue();
+		context.checkClassifiedSections(topSection);
+		long phaseStart = context.startPhase(BMPhase.PARAGRAPHS, topSection);
+		parseTextParagraphs(topSection);
+		context.endPhase(BMPhase.PARAGRAPHS, phaseStart, topSection);
+		BMUtil.logSection("before parseLinks", topSection);
+		context.checkCanContinue();
+		phaseStart = context.startPhase(BMPhase.LINKS, topSection);
+		parseLinks(topSection);
+		context.endPhase(BMPhase.LINKS, phaseStart, topSection);
+		BMUtil.logSection("before formatting", topSection);
+		context.checkCanContinue();
+		parseFormatting(topSection);
+		BMUtil.logSection("after formatting", topSection);
+		context.checkParsedSections(topSection);
+	}
+	
 	public void applyImageNameToPathMapping(BMSection topSection, Map<String, String> nameToPathMap) {
 		for (BMSection i: BMUtil.getAllSectionsAndSubSections(topSection)){
 			if ((i.getType() == MDType.IMAGE) && (i.getLocation() != null)){
@@ -86,7 +162,7 @@ public class BMSectionParserLogic {
 				} else {
 					rawTextWithoutFormatInfo = section.getRawText();
 				}
-				List<BMSection> codeSections = new BMCodeParser().createSections(topSection, rawTextWithoutFormatInfo, format, BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK);
+				List<BMSection> codeSections = new BMCodeParser(context.getCodeFormat("")).createSections(topSection, rawTextWithoutFormatInfo, format, BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK);
 				section.setChildren(codeSections);
 				section.setRawText(null);
 			}
@@ -149,204 +225,128 @@ public class BMSectionParserLogic {
 		return false;
 	}
 
-	private void parseHorizontalRuleEntries(BMSection topSection) {
-		for (String indicator: BMConstants.HORIZONTAL_RULE_INDICATORS){
-			String indicatorWithLength3 = indicator + indicator + indicator;
-			for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection)){
-				if ((section.getType() == MDType.RAW_LINE) && (section.getRawText() != null)){
-					String rawText = section.getRawText().trim();
-					if ((rawText.startsWith(indicatorWithLength3)) && (rawText.replace(indicator, "").isEmpty())){
-						//: indicator occurs 3 times or more and there is nothing else on the line (except leading/trailing white space)
-						section.setType(MDType.HORIZONTAL_RULE);
-						section.setRawText("");
-					}
-				}
-			}
-		}
-	}
-	
-	private void parseTableOfContentEntries(BMSection topSection) {
-		for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection)){
-			if ((section.getType() == MDType.RAW_LINE) && (section.getRawText() != null)){
-				String rawText = section.getRawText().trim();
-				if ((rawText.equals(BMConstants.TABLE_OF_CONTENT_MARKER))){
-					section.setType(MDType.TABLE_OF_CONTENTS);
-					section.setRawText("");
-				}
-			}
-		}
-	}
-
-	private void parseRawLineEntries(BMSection topSection, MDType type, String[] indicators, boolean setLevelDepth) {
-		for (int level = 1; level <= indicators.length; level ++){
-			String indicator = indicators[level - 1] + " ";
-			for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection)){
-				if ((section.getType() == MDType.RAW_LINE) && (section.isNested() == false) && (section.getRawText() != null) && (section.getRawText().trim().startsWith(indicator))){
-					trimAndRemoveRawTextStart(section, indicator.length());
-					section.setOriginalPlainText(removeFormatting(section.getRawText()));
-					section.setType(type);
-					if (setLevelDepth){
-						section.setLevel(level);
-					} else {
-						section.setLevel(1);
-					}
-					
-					if (BMUtil.hasChildren(section)) {
-						section.getChildren().add(0, BMUtil.createSection(section, MDType.RAW_LINE, section.getRawText()));
-						section.setRawText(null);
-					}
-				}
-			}
-		}
-	}
-
-	private void parseTableRows(BMSection topSection) {
-		for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection)){
-			if ((section.getType() == MDType.RAW_LINE) && (section.getRawText() != null) && (section.getRawText().contains(BMConstants.TABLE_CELL_SEPARATOR))){
-				List<String> cellTexts = readCellTexts(section.getRawText().trim());
-				section.setOriginalPlainText(removeFormatting(section.getRawText()));
-				section.setRawText(null);
-				section.setType(MDType.TABLE_ROW);
-				List<BMSection> children = new ArrayList<BMSection>();
-				for (String i: cellTexts) {
-					children.add(BMUtil.createSection(section, MDType.TABLE_CELL, i));
-				}
-				section.setChildren(children);
-			}
-		}
-	}
-	
-	private List<String> readCellTexts(String fullText) {
-		List<String> result = new ArrayList<String>();
-		StringTokenizer tokenizer = new StringTokenizer(fullText, BMConstants.TABLE_CELL_SEPARATOR, true);
-		boolean lastWasSeparator = false;
-		boolean firstItem = true;
-		while (tokenizer.hasMoreTokens()) {
-			String token = tokenizer.nextToken();
-			if (BMConstants.TABLE_CELL_SEPARATOR.equals(token)) {
-				if ((lastWasSeparator) || (firstItem)) {
-					result.add("");
-				}
-				lastWasSeparator = true;
-			} else {
-				lastWasSeparator = false;
-				result.add(token);
-			}
-			firstItem = false;
-		}
-		if (lastWasSeparator) {
-			result.add("");
-		}
-		return result;
-	}
-	
 	private void parseLinks(BMSection topSection) {
 		for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection, true)){
+			context.checkCanContinue();
 			parseLinksAndImagesForSingleSection(section);
 		}
 	}
 	
+	/**
+	 * replaces the raw text of the section by plain text, link and image sections if it contains links or images. The text is read via
+	 * a position instead of cutting off the parsed part so that the time is linear in the length of the text
+	 */
 	private void parseLinksAndImagesForSingleSection(BMSection section) {
-		String rest = "";
+		String text = section.getRawText();
+		if (text == null){
+			return;
+		}
+		int pos = 0;
 		boolean linksDetected = false;
-		try{
-			if (section.getRawText() == null){
-				return;
-			}		
-			rest = section.getRawText();
-			
-			BMPosAndTag labelStart = textParser.findNext(rest, 0, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
-			
-			if (labelStart == null){
-				return;
-			}
-			List<BMSection> children = new ArrayList<>();
-			BMPosAndTag labelEnd = null;
-			while (labelStart != null){
-				labelEnd = textParser.findNext(rest, labelStart.getPos() + labelStart.getTag().length(), BMConstants.LINK_LABEL_END_TAGS);
-				if (labelEnd != null) {
-					String labelText = rest.substring(labelStart.getPos() + labelStart.getTag().length(), labelEnd.getPos());
-//					String nextChar = textParser.readUntilLengthOrEnd(rest, labelEnd.getPos(), 1);
-//					boolean nextParenthesisStartRightAfterwards = (BMConstants.LINK_LOCATION_START_A.equals(nextChar)) || (BMConstants.LINK_LOCATION_START_B.equals(nextChar));
-					boolean isImageTag = labelStart.getTag().startsWith(BMConstants.IMAGE_LINK_PREFIX);
-					
-					
-					BMPosAndTag locationStart = textParser.findNext(rest, labelEnd.getPos(), BMConstants.LINK_LOCATION_START_TAGS);
-					if ((locationStart != null) && (locationStart.getPos() == labelEnd.getPos() + 1)){
-						BMPosAndTag locationEnd = textParser.findNext(rest, locationStart.getPos(), BMConstants.LINK_LOCATION_END_TAGS);
-						if (locationEnd != null) {
-							String leadingPlainText = rest.substring(0, labelStart.getPos());
-							if (!leadingPlainText.isEmpty()) {
-								children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, leadingPlainText));
-							}
-							
-//							String labelText = rest.substring(labelStart.getPos() + labelStart.getTag().length(), labelEnd.getPos());
-							String locationText = rest.substring(locationStart.getPos() + 1, locationEnd.getPos());
-
-							if ((!labelText.isEmpty()) && (!locationText.isEmpty())){
-								BMSection linkSection = null;
-								if (isImageTag) {
-									linkSection = BMUtil.createSection(section, MDType.IMAGE, null);
-									readImageLocationAndSize(linkSection, locationText);
-									linkSection.setImageAltText(labelText);
-								} else {
-									linkSection = BMUtil.createSection(section, MDType.LINK, labelText);
-									linkSection.setLocation(locationText);
-								}
-								children.add(linkSection);
-								linksDetected = true;
-							}
+		BMPosAndTag labelStart = textParser.findNext(text, 0, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
 
-							rest = rest.substring(locationEnd.getPos() + locationEnd.getTag().length());
-							labelStart = textParser.findNext(rest, 0, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
-						} else {
-							labelStart = null; //: end loop
+		if (labelStart == null){
+			return;
+		}
+		List<BMSection> children = new ArrayList<>();
+		//: if there is no label end after a label start, there is none after any later label start either
+		boolean labelEndAvailable = true;
+		while (labelStart != null){
+			int labelTextStart = labelStart.getPos() + labelStart.getTag().length();
+			BMPosAndTag labelEnd = null;
+			if (labelEndAvailable) {
+				labelEnd = textParser.findNext(text, labelTextStart, BMConstants.LINK_LABEL_END_TAGS);
+				labelEndAvailable = labelEnd != null;
+			}
+			if (labelEnd != null) {
+				String labelText = text.substring(labelTextStart, labelEnd.getPos());
+				boolean isImageTag = labelStart.getTag().startsWith(BMConstants.IMAGE_LINK_PREFIX);
+				
+				//: the location must start right after the label
+				BMPosAndTag locationStart = findTagAt(text, labelEnd.getPos() + labelEnd.getTag().length(), BMConstants.LINK_LOCATION_START_TAGS);
+				if (locationStart != null){
+					BMPosAndTag locationEnd = textParser.findNext(text, locationStart.getPos(), BMConstants.LINK_LOCATION_END_TAGS);
+					if (locationEnd != null) {
+						String leadingPlainText = text.substring(pos, labelStart.getPos());
+						if (!leadingPlainText.isEmpty()) {
+							children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, leadingPlainText));
 						}
-					} else {
-						if (isImageTag) {
-							//: image tag with only one set of parenthesis: then the first set is not the alternative text but the location and the image tag can be used
-
-							String leadingPlainText = rest.substring(0, labelStart.getPos());
-							if (!leadingPlainText.isEmpty()) {
-								children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, leadingPlainText));
+						
+						String locationText = text.substring(locationStart.getPos() + 1, locationEnd.getPos());
+
+						if ((!labelText.isEmpty()) && (!locationText.isEmpty())){
+							BMSection linkSection = null;
+							if (isImageTag) {
+								linkSection = BMUtil.createSection(section, MDType.IMAGE, null);
+								readImageLocationAndSize(linkSection, locationText);
+								linkSection.setImageAltText(labelText);
+							} else {
+								linkSection = BMUtil.createSection(section, MDType.LINK, labelText);
+								linkSection.setLocation(locationText);
 							}
-
-							String locationText = labelText;
-							labelText = null;
-							BMSection linkSection = BMUtil.createSection(section, MDType.IMAGE, null);
-							readImageLocationAndSize(linkSection, locationText);
-							linkSection.setImageAltText(labelText);
 							children.add(linkSection);
 							linksDetected = true;
-							
-							rest = rest.substring(labelEnd.getPos() + labelEnd.getTag().length());
-							labelStart = textParser.findNext(rest, 0, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
-						} else {
-							labelStart = null; //: end loop
 						}
+
+						pos = locationEnd.getPos() + locationEnd.getTag().length();
+						labelStart = textParser.findNext(text, pos, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
+					} else {
+						labelStart = null; //: end loop
 					}
 				} else {
-					rest = rest.substring(labelStart.getPos() + labelStart.getTag().length());
-					labelStart = textParser.findNext(rest, 0, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
+					if (isImageTag) {
+						//: image tag with only one set of parenthesis: then the first set is not the alternative text but the location and the image tag can be used
+
+						String leadingPlainText = text.substring(pos, labelStart.getPos());
+						if (!leadingPlainText.isEmpty()) {
+							children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, leadingPlainText));
+						}
+
+						String locationText = labelText;
+						labelText = null;
+						BMSection linkSection = BMUtil.createSection(section, MDType.IMAGE, null);
+						readImageLocationAndSize(linkSection, locationText);
+						linkSection.setImageAltText(labelText);
+						children.add(linkSection);
+						linksDetected = true;
+						
+						pos = labelEnd.getPos() + labelEnd.getTag().length();
+						labelStart = textParser.findNext(text, pos, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
+					} else {
+						labelStart = null; //: end loop
+					}
 				}
+			} else {
+				pos = labelTextStart;
+				labelStart = textParser.findNext(text, pos, BMConstants.LINK_AND_IMAGE_LABEL_START_TAGS);
 			}
-			if (rest.length() > 0){
-				children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, rest));
-			}
+		}
+		if (pos < text.length()){
+			children.add(BMUtil.createSection(section, MDType.PLAIN_TEXT, text.substring(pos)));
+		}
 
-			//: the raw text of the section was converted into the text and links. If it had sub sections, then those should appear after the 
-			//: new child nodes of the section
-			if (section.getChildren() != null) {
-				children.addAll(section.getChildren());
-			}
-			
-			if ((linksDetected) && (!children.isEmpty())){
-				section.setChildren(children);
-				section.setRawText(null);
+		//: the raw text of the section was converted into the text and links. If it had sub sections, then those should appear after the 
+		//: new child nodes of the section
+		if (section.getChildren() != null) {
+			children.addAll(section.getChildren());
+		}
+		
+		if ((linksDetected) && (!children.isEmpty())){
+			section.setChildren(children);
+			section.setRawText(null);
+		}
+	}
+
+	/**
+	 * @return the first of the given tags that starts exactly at the given position or null if there is none
+	 */
+	private BMPosAndTag findTagAt(String text, int pos, List<String> tags) {
+		for (String i: tags) {
+			if (text.startsWith(i, pos)) {
+				return new BMPosAndTag(pos, i);
 			}
-		} catch (RuntimeException e){
-			throw e;
 		}
+		return null;
 	}
 
 	private void log(String message) {
@@ -411,12 +411,10 @@ public class BMSectionParserLogic {
 		return true;
 	}
 
-	private void trimAndRemoveRawTextStart(BMSection section, int length) {
-		section.setRawText(section.getRawText().trim().substring(length));
-	}
-
 	private void parseFormatting(BMSection topSection) {
+		long phaseStart = context.startPhase(BMPhase.FORMATTING, topSection);
 		for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection, true)){
+			context.checkCanContinue();
 			List<BMSection> formattedSections = new BMFormattingParser().createFormattedSections(section.getRawText());
 			if (!formattedSections.isEmpty()) {
 				//: if there is still only one section without formatting: just keep it and there is no need for children with formatting
@@ -431,103 +429,16 @@ public class BMSectionParserLogic {
 			}
 		}
 		
+		context.endPhase(BMPhase.FORMATTING, phaseStart, topSection);
 		BMUtil.logSection("after formatting parser", topSection);
 
+		phaseStart = context.startPhase(BMPhase.CASCADE_FORMATTING, topSection);
 		new BMFormatCascader().cascadeFormatting(topSection);
+		context.endPhase(BMPhase.CASCADE_FORMATTING, phaseStart, topSection);
 		BMUtil.logSection("after cascade formatting", topSection);
 	}
 	
 
-	protected void parseListEntriesByLevel(BMSection topSection) {
-		Integer previousListItemIndent = null;
-		Integer previousListItemLevel = null;
-		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
-		for (BMSection section: BMUtil.getAllSectionsAndSubSections(topSection)){
-			String rawText = section.getRawText();
-			if ((section.getType() == MDType.RAW_LINE) && (section.isNested() == false) && (rawText != null)){
-				MDType type = MDType.BULLET_POINT;
-				Integer listItemLevelIndent = readListItemIndet(rawText, BMConstants.BULLET_POINT_INDICATORS_CHARS_LIST);
-				if (listItemLevelIndent == null) { //: could not find bullet point, try numbered item indicator
-					listItemLevelIndent = readListItemIndet(rawText, BMConstants.NUMBERED_ITEM__INDICATORS_CHARS_LIST);
-					type = MDType.NUMBERED_ITEM;
-				}
-				
-				Integer listItemLevel = null;
-				
-				if (listItemLevelIndent == null){ //: neither bullet point nor numbered item
-					previousListItemIndent = null;
-					previousListItemLevel = null;
-				} else {
-					int indentDifference = 0;
-					if (previousListItemIndent != null){
-						indentDifference = listItemLevelIndent - previousListItemIndent;  
-					} else {
-						previousListItemLevel = 1;
-						listItemLevel = 1;
-						levelToIndentMap.put(listItemLevel, listItemLevelIndent);
-					}
-					
-					if (Math.abs(indentDifference) < BMConstants.LIST_INDENT_LEVEL_THRESHOLD){
-						//: only few spaces, assume same level
-						listItemLevel = previousListItemLevel;
-					} else if (indentDifference > 0){
-						//: one more level
-						listItemLevel = previousListItemLevel + 1;
-						levelToIndentMap.put(listItemLevel, listItemLevelIndent);
-					} else {
-						//: one or more(!) levels up
-						listItemLevel = findMatchingLevel(levelToIndentMap, listItemLevelIndent);
-						BMUtil.removeDeeperLevels(levelToIndentMap, listItemLevel);
-					}
-					previousListItemIndent = listItemLevelIndent;
-					previousListItemLevel = listItemLevel;
-
-				}
-				
-				if (listItemLevel != null){
-					section.setType(type);
-					section.setLevel(listItemLevel);
-					String newRawText = rawText.substring(textParser.findPosAfterLeadindSpaces(rawText, listItemLevelIndent));
-					if (BMUtil.hasChildren(section)) {
-						section.getChildren().add(0, BMUtil.createSection(section, MDType.RAW_LINE, newRawText));
-						section.setRawText(null);
-					} else {
-						section.setRawText(newRawText);
-					}
-				}
-			}
-		}
-	}
-
-	protected Integer readListItemIndet(String rawText, List<String> indicatorsList) {
-		int indent = 0;
-		boolean indicatorFound = false;
-		for (char i: rawText.toCharArray()){
-			if (!indicatorFound){
-				if (i == ' '){
-					indent ++;
-				} else if (indicatorsList.contains(new String("" + i))){
-					indicatorFound = true;
-				} else {
-					//: after optional spaces there is no bullet point indicator but something else
-					return null;
-				}
-			} else {
-				if (i == ' '){
-					//: found space after indicator
-					return indent;
-				} else {
-					//: found a different character after the indicator, so either it is another indicator like '**' or it is not the syntax for list items
-					return null;
-				}
-			}
-		}
-		if (!indicatorFound){
-			return null;
-		}
-		return indent;
-	}
-
 	private void parseTextParagraphs(BMSection topSection) {
 		BMSection paragraphSection = null;
 		List<Integer> sectionsToRemove = new ArrayList<Integer>();
@@ -578,7 +489,7 @@ public class BMSectionParserLogic {
 						} else {
 							String problem = "Unexpected section child type: " + sectionChild.getType(); 
 							log("!!! parseTextParagraphs. problem: " + problem);
-							warnings.add(new Exception(problem));
+							context.addWarning(problem);
 						}
 					}
 				}
@@ -603,7 +514,7 @@ public class BMSectionParserLogic {
 		if (formatName == null) {
 			return null;
 		}
-		return BMConstants.CODE_FORMATS.get(formatName.toLowerCase());
+		return context.getCodeFormat(formatName.toLowerCase());
 	}
 
 	private BMCodeFormat readFormat_old(String rawText) {
@@ -614,11 +525,6 @@ public class BMSectionParserLogic {
 		return BMConstants.CODE_FORMATS.get(formatName.toLowerCase());
 	}
 	
-	private String removeFormatting(String rawText) {
-		return rawText.replace("\\", "").replace("*", "").replace("_", "").replace("~", "");
-	}
-
-
 	private String toNonNullString(String rawText, boolean trim) {
 		if (rawText == null){
 			return "";
@@ -659,21 +565,6 @@ public class BMSectionParserLogic {
 				|| section.isBackgroundColorEndTag();
 	}
 	
-	protected Integer findMatchingLevel(Map<Integer, Integer> levelToIndentMap, int indent) {
-		int bestMatchDifference = Integer.MAX_VALUE;
-		int bestMatchLevel = 1;
-		
-		for (Entry<Integer, Integer> i: levelToIndentMap.entrySet()){
-			int difference = Math.abs(indent - i.getValue());
-			if (difference < bestMatchDifference){
-				bestMatchDifference = difference;
-				bestMatchLevel = i.getKey();
-			}
-		}
-		
-		return bestMatchLevel;
-	}
-
 	public BMSection toMDSection_old(String markdownText){
 		BMSection result = new BMSection();
 		result.setType(MDType.ROOT);
@@ -689,23 +580,46 @@ public class BMSectionParserLogic {
 		return result;
 	}
 	
-	public BMSection toMDSection(String markdownText){
+	public BMSection toMDSection(CharSequence markdownText){
 		BMSection result = new BMSection();
 		result.setType(MDType.ROOT);
 		result.setChildren(new ArrayList<BMSection>());
-		
-		String textWithoutCR = markdownText.replace("\r", "");
-		List<String> tags = new ArrayList<String>();
-		tags.add(BMConstants.LINE_BREAK);
-		tags.addAll(BMConstants.CODE_BLOCK_MARKS);
+		readTopLevelSections(new BMLineScanner(markdownText), true, result);
+		return result;
+	}
+	
+	/**
+	 * adds the sections of the scanned text as children to the given top section.
+	 * @param endOfInput false if more text may follow the scanned text. Then only complete sections are added: a line that is not terminated yet,
+	 * a code block which is not closed yet and a code block mark at the end of the text which may still become a longer mark are left for the
+	 * next call with the rest of the text.
+	 * @return position in the scanned text up to which the text has been converted into sections
+	 */
+	public int readTopLevelSections(BMLineScanner lineScanner, boolean endOfInput, BMSection topSection){
+		return readTopLevelSections(lineScanner, endOfInput, topSection, null);
+	}
+	
+	/**
+	 * see readTopLevelSections(BMLineScanner, boolean, BMSection)
+	 * @param sectionEnds receives for each section that is added to the top section the position in the scanned text where the section ends or null
+	 * if the positions are not needed. The text of each section except the last one at the end of the input ends with a line break.
+	 */
+	public int readTopLevelSections(BMLineScanner lineScanner, boolean endOfInput, BMSection topSection, List<Integer> sectionEnds){
+		int length = lineScanner.getLength();
 		
 		int startPos = 0;
+		/** position and number of top section children after the last section that is complete even if more text follows */
+		int completePos = 0;
+		int completeChildren = topSection.getChildren().size();
 		/** null means that the current row has ended and there is no open sub section*/
 		BMSection subSectionOfCurrentRow = null;
-		BMPosAndTag item = textParser.findNext(textWithoutCR, startPos, tags);
+		BMPosAndTag item = lineScanner.findNext(startPos);
 		while (item != null) {
 			log("toMDSection: item = " + item + ", startPos = " + startPos + ", subSectionOfCurrentRow = " + subSectionOfCurrentRow);
-			String data = textWithoutCR.substring(startPos, item.getPos());
+			if ((!endOfInput) && (isIncompleteMark(item, length))) {
+				break;
+			}
+			String data = lineScanner.getText(startPos, item.getPos());
 			BMSection subSection = null;
 			subSection = new BMSection();
 			subSection.setType(MDType.RAW_LINE);
@@ -715,18 +629,21 @@ public class BMSectionParserLogic {
 				subSection.setNested(true);
 				BMUtil.addChild(subSectionOfCurrentRow, subSection);
 			} else {
-				BMUtil.addChild(result, subSection);
+				BMUtil.addChild(topSection, subSection);
 			}
 			
 			if (BMConstants.CODE_BLOCK_MARKS.contains(item.getTag())) {
-				BMPosAndTag endItem = textParser.findNext(textWithoutCR, startPos, BMConstants.CODE_BLOCK_MARKS);
+				BMPosAndTag endItem = lineScanner.findNextCodeBlockMark(startPos);
+				if ((!endOfInput) && ((endItem == null) || (isIncompleteMark(endItem, length)))) {
+					break;
+				}
 				String codeBlockText = null; 
 				if (endItem == null) {
 					//: no end was found, so the end is the end of the raw text
-					codeBlockText = textWithoutCR.substring(startPos);
-					startPos = textWithoutCR.length();
+					codeBlockText = lineScanner.getText(startPos, length);
+					startPos = length;
 				} else {
-					codeBlockText = textWithoutCR.substring(startPos, endItem.getPos());
+					codeBlockText = lineScanner.getText(startPos, endItem.getPos());
 					startPos = endItem.getPos() + endItem.getTag().length();
 				}
 				BMSection codeSection = null;
@@ -752,7 +669,10 @@ public class BMSectionParserLogic {
 				//: special case: the section ends with code block end and then new line. In this case the new line doesn't mean that
 				//: another section with an empty line is given, so the new line character is skipped by changing the start pos to
 				//: after the new line
-				BMPosAndTag nextChar = textParser.findNextSkipSpaces(textWithoutCR, startPos);
+				BMPosAndTag nextChar = lineScanner.findNextSkipSpaces(startPos);
+				if ((!endOfInput) && (nextChar == null)) {
+					break;
+				}
 				if ((nextChar != null) && (BMConstants.LINE_BREAK.equals(nextChar.getTag()))) {
 					startPos = nextChar.getPos() + nextChar.getTag().length();
 					subSectionOfCurrentRow = null;
@@ -766,15 +686,42 @@ public class BMSectionParserLogic {
 				subSectionOfCurrentRow = null;
 			}
 			
-			item = textParser.findNext(textWithoutCR, startPos, tags);
+			if (subSectionOfCurrentRow == null) {
+				completePos = startPos;
+				if (sectionEnds != null) {
+					for (int i = completeChildren; i < topSection.getChildren().size(); i++) {
+						sectionEnds.add(completePos);
+					}
+				}
+				completeChildren = topSection.getChildren().size();
+			}
+			item = lineScanner.findNext(startPos);
 		}
-		if (startPos < textWithoutCR.length()) {
+		if (!endOfInput) {
+			//: remove the sections of the incomplete rest which is read again when more text is available
+			List<BMSection> children = topSection.getChildren();
+			children.subList(completeChildren, children.size()).clear();
+			return completePos;
+		}
+		if (startPos < length) {
 			BMSection subSection = new BMSection();
 			subSection.setType(MDType.RAW_LINE);
-			subSection.setRawText(textWithoutCR.substring(startPos));
-			result.getChildren().add(subSection);
+			subSection.setRawText(lineScanner.getText(startPos, length));
+			topSection.getChildren().add(subSection);
 		}
-		return result;
+		if (sectionEnds != null) {
+			for (int i = completeChildren; i < topSection.getChildren().size(); i++) {
+				sectionEnds.add(length);
+			}
+		}
+		return length;
+	}
+	
+	/**
+	 * @return true if the code block mark ends at the end of the text and may therefore be the beginning of a longer mark
+	 */
+	private boolean isIncompleteMark(BMPosAndTag item, int textLength) {
+		return (!BMConstants.LINE_BREAK.equals(item.getTag())) && (item.getPos() + item.getTag().length() >= textLength);
 	}
 
 }
@@ -24,6 +24,16 @@ public class BMTextParserLogic {
 	 * @return BMPosAndTag containing first matching tag and its position or null if there are no matching tags
 	 */
 	public BMPosAndTag findNext(String text, int startPos, boolean ignoreCase, Collection<String> tags, MatchConfirmer matchConfirmer) {
+		if (BMMultiPatternMatcher.isSupported(tags)) {
+			return BMMultiPatternMatcher.getMatcher(tags, ignoreCase).findNext(text, startPos, matchConfirmer);
+		}
+		return findNextByIndexOf(text, startPos, ignoreCase, tags, matchConfirmer);
+	}
+	
+	/**
+	 * searches each tag separately. Only used for tags that are not supported by BMMultiPatternMatcher (e.g. empty tags)
+	 */
+	private BMPosAndTag findNextByIndexOf(String text, int startPos, boolean ignoreCase, Collection<String> tags, MatchConfirmer matchConfirmer) {
 		BMPosAndTag result = null;
 		String useText = applyIgnoreCase(text, ignoreCase);
 		for (String i: tags) {
@@ -0,0 +1,24 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * receives the results of a batch (see BrightMarkdown.createHTMLBatch). The methods are called by the threads which create the HTML, possibly at the 
+ * same time, and in the order in which the items are completed, which may differ from the order of the items
+ *
+ * @author Philip Heyse
+ *
+ */
+public interface BMBatchCallback {
+	/**
+	 * @param item the item for which the HTML has been created
+	 * @param result the HTML together with the warnings that occurred while creating it
+	 * @throws Exception an exception stops the batch and is thrown by createHTMLBatch
+	 */
+	void onResult(BMBatchItem item, BMHtmlResult result) throws Exception;
+
+	/**
+	 * @param item the item for which no HTML could be created
+	 * @param exception the reason. The other items of the batch are processed nevertheless
+	 * @throws Exception an exception stops the batch and is thrown by createHTMLBatch
+	 */
+	void onFailure(BMBatchItem item, Exception exception) throws Exception;
+}
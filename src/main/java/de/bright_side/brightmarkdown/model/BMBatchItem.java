@@ -0,0 +1,33 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * markdown text of a batch (see BrightMarkdown.createHTMLBatch) together with an id by which the caller identifies its result
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMBatchItem {
+	private final String id;
+	private final CharSequence markdownText;
+
+	/**
+	 * @param id id which is passed to the callback together with the result, e.g. the path of the markdown file
+	 * @param markdownText markdown text for which to create HTML
+	 */
+	public BMBatchItem(String id, CharSequence markdownText) {
+		this.id = id;
+		this.markdownText = markdownText;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public CharSequence getMarkdownText() {
+		return markdownText;
+	}
+
+	public String toString() {
+		return "BMBatchItem(id = \"" + id + "\")";
+	}
+}
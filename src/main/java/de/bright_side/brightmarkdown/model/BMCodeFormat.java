@@ -1,6 +1,7 @@
 package de.bright_side.brightmarkdown.model;
 
 import java.util.Set;
+import java.util.TreeSet;
 
 public class BMCodeFormat {
 
@@ -14,6 +15,8 @@ public class BMCodeFormat {
 	private Set<String> tagStarts;
 	private Set<String> tagEnds;
 
+	public BMCodeFormat() {
+	}
 	
 	public Set<String> getStringIndicators() {
 		return stringIndicators;
@@ -68,5 +71,22 @@ public class BMCodeFormat {
 	}
 	public void setKeywordsIgnoreCase(boolean keywordsIgnoreCase) {
 		this.keywordsIgnoreCase = keywordsIgnoreCase;
-	} 
+	}
+	
+	/**
+	 * @return all properties of the format with sorted sets, so that formats with the same properties have the same text
+	 */
+	public String toString() {
+		return "BMCodeFormat(stringIndicators = " + toSortedSet(stringIndicators) + ", escapeCharacter = " + escapeCharacter 
+				+ ", keywords = " + toSortedSet(keywords) + ", keywordsIgnoreCase = " + keywordsIgnoreCase + ", blockCommentStart = " + blockCommentStart 
+				+ ", blockCommentEnd = " + blockCommentEnd + ", lineCommentStart = " + lineCommentStart + ", tagStarts = " + toSortedSet(tagStarts) 
+				+ ", tagEnds = " + toSortedSet(tagEnds) + ")";
+	}
+	
+	private Set<String> toSortedSet(Set<String> set) {
+		if (set == null) {
+			return null;
+		}
+		return new TreeSet<String>(set);
+	}
 }
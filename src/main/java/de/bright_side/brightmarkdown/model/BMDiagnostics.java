@@ -0,0 +1,49 @@
+package de.bright_side.brightmarkdown.model;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * warnings of a single call of BrightMarkdown. Only the first warnings up to the configured maximum are kept, but all warnings are counted.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMDiagnostics {
+	private final List<BMWarning> warnings;
+	private final int warningCount;
+
+	public BMDiagnostics(List<BMWarning> warnings, int warningCount) {
+		this.warnings = Collections.unmodifiableList(warnings);
+		this.warningCount = warningCount;
+	}
+
+	/**
+	 * @return the kept warnings in the order in which they occurred
+	 */
+	public List<BMWarning> getWarnings() {
+		return warnings;
+	}
+
+	/**
+	 * @return the number of all warnings including the ones that were not kept because the maximum had been reached
+	 */
+	public int getWarningCount() {
+		return warningCount;
+	}
+
+	public boolean hasWarnings() {
+		return warningCount > 0;
+	}
+
+	/**
+	 * @return true if there were more warnings than have been kept
+	 */
+	public boolean isWarningLimitReached() {
+		return warningCount > warnings.size();
+	}
+
+	public String toString() {
+		return "BMDiagnostics(warningCount = " + warningCount + ", warnings = " + warnings + ")";
+	}
+}
@@ -0,0 +1,46 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * change of a text: the given number of characters from the offset on are replaced by the inserted text
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMEdit {
+	private final int offset;
+	private final int removedLength;
+	private final String insertedText;
+
+	/**
+	 * @param offset position in the text before the edit where the edit starts
+	 * @param removedLength number of characters that are removed from the offset on
+	 * @param insertedText text which is inserted at the offset or null if nothing is inserted
+	 */
+	public BMEdit(int offset, int removedLength, String insertedText) {
+		if (offset < 0) {
+			throw new IllegalArgumentException("offset must not be negative: " + offset);
+		}
+		if (removedLength < 0) {
+			throw new IllegalArgumentException("removedLength must not be negative: " + removedLength);
+		}
+		this.offset = offset;
+		this.removedLength = removedLength;
+		this.insertedText = (insertedText == null) ? "" : insertedText;
+	}
+
+	public int getOffset() {
+		return offset;
+	}
+
+	public int getRemovedLength() {
+		return removedLength;
+	}
+
+	public String getInsertedText() {
+		return insertedText;
+	}
+
+	public String toString() {
+		return "BMEdit(offset = " + offset + ", removedLength = " + removedLength + ", insertedText = \"" + insertedText + "\")";
+	}
+}
@@ -0,0 +1,25 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * the generated HTML code together with the diagnostics of the call that created it
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMHtmlResult {
+	private final String html;
+	private final BMDiagnostics diagnostics;
+
+	public BMHtmlResult(String html, BMDiagnostics diagnostics) {
+		this.html = html;
+		this.diagnostics = diagnostics;
+	}
+
+	public String getHtml() {
+		return html;
+	}
+
+	public BMDiagnostics getDiagnostics() {
+		return diagnostics;
+	}
+}
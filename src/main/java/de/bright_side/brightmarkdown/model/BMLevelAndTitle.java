@@ -3,6 +3,10 @@ package de.bright_side.brightmarkdown.model;
 public class BMLevelAndTitle {
 	private String title;
 	private int level;
+	
+	public BMLevelAndTitle() {
+	}
+	
 	public String getTitle() {
 		return title;
 	}
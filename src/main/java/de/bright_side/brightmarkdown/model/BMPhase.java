@@ -0,0 +1,34 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * phases of parsing the markdown text and creating the HTML which are reported to a BMPhaseListener. The input size of the phases that
+ * read text is the number of characters, of the phases that read the parsed sections the number of sections and of the phases that read
+ * the HTML nodes the number of nodes.
+ *
+ * @author Philip Heyse
+ *
+ */
+public enum BMPhase {
+	/** escaping of the special characters which are preceded by a backslash. Input: characters of the text, nodes: 0 */
+	ESCAPE,
+	/** splitting of the escaped text into lines. Input: characters of the escaped text, nodes: sections */
+	SPLIT_LINES,
+	/** parsing of code blocks and their syntax highlighting. Input and nodes: sections */
+	CODE_BLOCKS,
+	/** classification of the lines as horizontal rules, table of contents, headings, list items and table rows. Input and nodes: sections */
+	CLASSIFY_BLOCKS,
+	/** joining of raw lines into paragraphs. Input and nodes: sections */
+	PARAGRAPHS,
+	/** parsing of links and images. Input and nodes: sections */
+	LINKS,
+	/** parsing of bold, italic, underline, strike through and colors. Input and nodes: sections */
+	FORMATTING,
+	/** passing of the formatting of sections on to their sub sections. Input and nodes: sections */
+	CASCADE_FORMATTING,
+	/** creation of the HTML nodes from the parsed sections. Input: sections, nodes: HTML nodes */
+	CREATE_NODES,
+	/** removal of empty and unneeded span nodes. Input and nodes: HTML nodes */
+	REMOVE_UNNEEDED_NODES,
+	/** writing of the HTML nodes as text. Input and nodes: HTML nodes */
+	SERIALIZE
+}
@@ -0,0 +1,25 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * receives the start and end of each phase of a call (see BrightMarkdown.Builder.setPhaseListener), e.g. to find out which phase is slow for a 
+ * document. Texts which are parsed block by block (fragment cache, streamHTML) or in regions (parse executor) report the phases of each block or region.
+ * The methods are called by the threads which do the work, possibly at the same time, and should return quickly. The sizes are only computed 
+ * if a listener is set, so without a listener the phases are not measured at all.
+ *
+ * @author Philip Heyse
+ *
+ */
+public interface BMPhaseListener {
+	/**
+	 * @param phase the phase which starts
+	 * @param inputSize size of the input of the phase, see BMPhase
+	 */
+	void phaseStarted(BMPhase phase, long inputSize);
+
+	/**
+	 * @param phase the phase which has ended
+	 * @param durationInNanos time from the start to the end of the phase without the time to compute the sizes
+	 * @param nodeCount number of sections or HTML nodes after the phase, see BMPhase
+	 */
+	void phaseEnded(BMPhase phase, long durationInNanos, long nodeCount);
+}
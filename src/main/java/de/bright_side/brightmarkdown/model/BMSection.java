@@ -32,6 +32,9 @@ public class BMSection {
 	private boolean multiLine = false;
 	private boolean nested = false;
 
+	public BMSection() {
+	}
+	
 	public MDType getType() {
 		return type;
 	}
@@ -0,0 +1,23 @@
+package de.bright_side.brightmarkdown.model;
+
+/**
+ * a problem that was found while processing the markdown text. In contrast to an exception it does not have a stack trace, so it is cheap to create and keep.
+ *
+ * @author Philip Heyse
+ *
+ */
+public class BMWarning {
+	private final String message;
+
+	public BMWarning(String message) {
+		this.message = message;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public String toString() {
+		return "BMWarning(message = \"" + message + "\")";
+	}
+}
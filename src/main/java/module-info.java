@@ -1,4 +1,5 @@
 module de.bright_side.brightmarkdown {
 	requires java.xml;
 	exports de.bright_side.brightmarkdown;
+	exports de.bright_side.brightmarkdown.model;
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.logic.BMRenderContext;
+import de.bright_side.brightmarkdown.logic.BMSectionParserLogic;
+
+public class BMAsyncTest {
+	private static final String INPUT = "{TOC}\n# Title\nfirst paragraph\n\n - item *bold*\n - item 2\n\n```java\nint x = 1;\n```\n\n|a|b|\n|-|-|\n|c|d|";
+
+	/**
+	 * executor which only runs the tasks when runAll is called
+	 */
+	private static class DelayingExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable command) {
+			tasks.add(command);
+		}
+
+		public void runAll() {
+			for (Runnable i: tasks) {
+				i.run();
+			}
+			tasks.clear();
+		}
+	}
+
+	@Test
+	public void createHTMLAsync_sameAsCreateHTML() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		assertEquals(brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE), brightMarkdown.createHTMLAsync(INPUT, OutputType.EMBEDDABLE_HTML_CODE).get());
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			BrightMarkdown cachingBrightMarkdown = BrightMarkdown.builder().setRenderCache(new BMRenderCache(1024 * 1024)).build();
+			assertEquals(brightMarkdown.createHTML(INPUT), cachingBrightMarkdown.createHTMLAsync(INPUT, OutputType.FULL_HTML_DOCUMENT, executor).get());
+			BrightMarkdown fragmentBrightMarkdown = BrightMarkdown.builder().setFragmentCache(new BMFragmentCache(1024 * 1024)).build();
+			assertEquals(brightMarkdown.createHTML(INPUT), fragmentBrightMarkdown.createHTMLAsync(INPUT, OutputType.FULL_HTML_DOCUMENT, executor).get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void createHTMLAsync_cancelledBeforeStart() throws Exception {
+		DelayingExecutor executor = new DelayingExecutor();
+		CompletableFuture<String> future = new BrightMarkdown().createHTMLAsync(INPUT, OutputType.EMBEDDABLE_HTML_CODE, executor);
+		future.cancel(false);
+		executor.runAll();
+		assertTrue(future.isCancelled());
+	}
+
+	@Test
+	public void createHTMLAsync_executorRejectsCall() throws Exception {
+		Executor rejectingExecutor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException("rejected");
+			}
+		};
+		final CompletableFuture<String> future = new BrightMarkdown().createHTMLAsync(INPUT, OutputType.EMBEDDABLE_HTML_CODE, rejectingExecutor);
+		ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				future.get();
+			}
+		});
+		assertTrue(e.getCause() instanceof RejectedExecutionException);
+	}
+
+	@Test
+	public void parseAll_cancelledContext() throws Exception {
+		final BMRenderContext context = new BMRenderContext(BMConstants.CODE_FORMATS, BMConstants.DEFAULT_MAX_WARNINGS, new BooleanSupplier() {
+			@Override
+			public boolean getAsBoolean() {
+				return true;
+			}
+		});
+		assertThrows(CancellationException.class, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				new BMSectionParserLogic(context).parseAll(INPUT);
+			}
+		});
+	}
+
+}
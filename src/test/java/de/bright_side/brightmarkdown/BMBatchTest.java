@@ -0,0 +1,126 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.model.BMBatchCallback;
+import de.bright_side.brightmarkdown.model.BMBatchItem;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
+
+public class BMBatchTest {
+
+	private static class CollectingCallback implements BMBatchCallback {
+		private final Map<String, String> htmlById = new ConcurrentHashMap<String, String>();
+		private final Map<String, Exception> failureById = new ConcurrentHashMap<String, Exception>();
+
+		@Override
+		public void onResult(BMBatchItem item, BMHtmlResult result) throws Exception {
+			htmlById.put(item.getId(), result.getHtml());
+		}
+
+		@Override
+		public void onFailure(BMBatchItem item, Exception exception) throws Exception {
+			failureById.put(item.getId(), exception);
+		}
+	}
+
+	/**
+	 * text which throws an exception when it is read
+	 */
+	private static class FailingText implements CharSequence {
+		@Override
+		public int length() {
+			return 10;
+		}
+
+		@Override
+		public char charAt(int index) {
+			throw new IllegalStateException("text cannot be read");
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			throw new IllegalStateException("text cannot be read");
+		}
+	}
+
+	private List<BMBatchItem> createItems(int count) {
+		List<BMBatchItem> result = new ArrayList<BMBatchItem>();
+		for (int i = 0; i < count; i++) {
+			StringBuilder sb = new StringBuilder("# Document " + i + "\n");
+			//: some documents are much larger than the others
+			int paragraphs = (i % 10 == 0) ? 500 : 3;
+			for (int j = 0; j < paragraphs; j++) {
+				sb.append("paragraph *" + j + "*\n - item\n - item 2\n\n");
+			}
+			result.add(new BMBatchItem("doc" + i, sb.toString()));
+		}
+		return result;
+	}
+
+	private void assertSameAsSingleCalls(List<BMBatchItem> items, CollectingCallback callback) throws Exception {
+		assertEquals(items.size(), callback.htmlById.size());
+		for (BMBatchItem i: items) {
+			assertEquals(new BrightMarkdown().createHTML(i.getMarkdownText().toString(), OutputType.EMBEDDABLE_HTML_CODE), callback.htmlById.get(i.getId()));
+		}
+	}
+
+	@Test
+	public void createHTMLBatch_sameAsSingleCalls() throws Exception {
+		List<BMBatchItem> items = createItems(60);
+		CollectingCallback callback = new CollectingCallback();
+		new BrightMarkdown().createHTMLBatch(items, OutputType.EMBEDDABLE_HTML_CODE, 4, callback);
+		assertSameAsSingleCalls(items, callback);
+
+		callback = new CollectingCallback();
+		new BrightMarkdown().createHTMLBatch(items, OutputType.EMBEDDABLE_HTML_CODE, ForkJoinPool.commonPool(), 8, callback);
+		assertSameAsSingleCalls(items, callback);
+
+		callback = new CollectingCallback();
+		BrightMarkdown.builder().setRenderCache(new BMRenderCache(1024 * 1024)).build().createHTMLBatch(items, OutputType.EMBEDDABLE_HTML_CODE, 1, callback);
+		assertSameAsSingleCalls(items, callback);
+	}
+
+	@Test
+	public void createHTMLBatch_failedItemReported() throws Exception {
+		List<BMBatchItem> items = createItems(20);
+		items.add(5, new BMBatchItem("failing", new FailingText()));
+		CollectingCallback callback = new CollectingCallback();
+		new BrightMarkdown().createHTMLBatch(items, OutputType.EMBEDDABLE_HTML_CODE, 3, callback);
+
+		assertEquals(1, callback.failureById.size());
+		assertTrue(callback.failureById.get("failing") instanceof IllegalStateException);
+		items.remove(5);
+		assertSameAsSingleCalls(items, callback);
+	}
+
+	@Test
+	public void createHTMLBatch_exceptionOfCallbackStopsBatch() throws Exception {
+		final List<BMBatchItem> items = createItems(20);
+		final BMBatchCallback callback = new CollectingCallback() {
+			@Override
+			public void onResult(BMBatchItem item, BMHtmlResult result) throws Exception {
+				throw new IllegalArgumentException("callback failed");
+			}
+		};
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				new BrightMarkdown().createHTMLBatch(items, OutputType.EMBEDDABLE_HTML_CODE, 2, callback);
+			}
+		});
+		assertEquals("callback failed", e.getMessage());
+	}
+
+}
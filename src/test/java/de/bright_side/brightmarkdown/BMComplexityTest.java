@@ -0,0 +1,194 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+
+/**
+ * renders adversarial inputs (unclosed brackets, long runs of markers, unterminated tags and code blocks, ...) at doubling sizes and
+ * fails if the time grows faster than linearly. The time is the best of several runs so that the check depends as little as
+ * possible on the load of the machine. From the smallest to the largest size a quadratic path grows by a factor of 256 and a linear
+ * one by 16, while a factor of up to 64 is accepted, so that outliers of single measurements do not make the test fail.
+ * The test takes long and depends on the machine, so it is not part of the default build but runs with the profile "complexity-tests".
+ * The number of sections visited to create the HTML is checked in the default build by BMHtmlCreatorTest, which does not depend on the machine.
+ */
+@Tag("complexity")
+public class BMComplexityTest {
+	private static final int MIN_SIZE = 4000;
+	private static final int DOUBLINGS = 4;
+	private static final int RUNS_PER_SIZE = 3;
+	/** factor by which the time may grow per doubling of the size: linear growth is 2, quadratic growth 4 */
+	private static final double MAX_GROWTH_PER_DOUBLING = 2 * Math.sqrt(2);
+	/** times below this are dominated by measuring inaccuracy and are raised to it */
+	private static final long MIN_MEASURED_NANOS = 2000000;
+	/** if a size takes longer than this, the larger sizes are not measured, so that a quadratic path fails fast */
+	private static final long MAX_MEASURED_NANOS = 1000000000;
+
+	private static abstract class InputCreator {
+		private final String name;
+
+		public InputCreator(String name) {
+			this.name = name;
+		}
+
+		public abstract String createInput(int size);
+	}
+
+	private static String repeat(String text, int times) {
+		StringBuilder result = new StringBuilder(text.length() * times);
+		for (int i = 0; i < times; i++) {
+			result.append(text);
+		}
+		return result.toString();
+	}
+
+	private static InputCreator repeating(String name, final String prefix, final String text, final String suffix) {
+		return new InputCreator(name) {
+			@Override
+			public String createInput(int size) {
+				return prefix + repeat(text, size / text.length()) + suffix;
+			}
+		};
+	}
+
+	private long measureBestNanos(BrightMarkdown brightMarkdown, String input) throws Exception {
+		long result = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS_PER_SIZE; i++) {
+			long start = System.nanoTime();
+			try {
+				brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+			} catch (BMRenderLimitExceededException e) {
+				//: the time until the limit is exceeded is measured
+			}
+			result = Math.min(result, System.nanoTime() - start);
+		}
+		return Math.max(result, MIN_MEASURED_NANOS);
+	}
+
+	private void assertLinear(InputCreator inputCreator) throws Exception {
+		assertLinear(inputCreator, new BrightMarkdown());
+	}
+
+	private void assertLinear(InputCreator inputCreator, BrightMarkdown brightMarkdown) throws Exception {
+		//: warm up so that the first size is not measured with interpreted code
+		measureBestNanos(brightMarkdown, inputCreator.createInput(MIN_SIZE * 2));
+
+		int size = MIN_SIZE;
+		long firstNanos = measureBestNanos(brightMarkdown, inputCreator.createInput(size));
+		StringBuilder timesText = new StringBuilder(size + ": " + firstNanos / 1000 + "us");
+		//: otherwise no larger size would be measured and the growth could not be checked
+		assertTrue(firstNanos < MAX_MEASURED_NANOS, "time for input '" + inputCreator.name + "' is too long already for the smallest size: " + timesText);
+		long lastNanos = firstNanos;
+		int doublings = 0;
+		while ((doublings < DOUBLINGS) && (lastNanos < MAX_MEASURED_NANOS)) {
+			size *= 2;
+			doublings ++;
+			lastNanos = measureBestNanos(brightMarkdown, inputCreator.createInput(size));
+			timesText.append(", " + size + ": " + lastNanos / 1000 + "us");
+		}
+		double growth = (double)lastNanos / firstNanos;
+		double maxGrowth = Math.pow(MAX_GROWTH_PER_DOUBLING, doublings);
+		assertTrue(growth <= maxGrowth, "time for input '" + inputCreator.name + "' grows faster than linearly: " + timesText);
+	}
+
+	@Test
+	public void createHTML_unclosedLinkLabels() throws Exception {
+		assertLinear(repeating("[", "x ", "[", ""));
+	}
+
+	@Test
+	public void createHTML_unclosedImageLabels() throws Exception {
+		assertLinear(repeating("![", "x ", "![", ""));
+	}
+
+	@Test
+	public void createHTML_unclosedParentheses() throws Exception {
+		assertLinear(repeating("(", "x ", "(", ""));
+	}
+
+	@Test
+	public void createHTML_unclosedLinkLocations() throws Exception {
+		assertLinear(repeating("[a](", "x ", "[a](", ""));
+	}
+
+	@Test
+	public void createHTML_boldMarkers() throws Exception {
+		assertLinear(repeating("*", "x ", "*", ""));
+	}
+
+	@Test
+	public void createHTML_formattingMarkersBeforeWords() throws Exception {
+		assertLinear(repeating("_a", "x ", "_a ", ""));
+	}
+
+	@Test
+	public void createHTML_unclosedColorTags() throws Exception {
+		assertLinear(repeating("{c:", "x ", "{c:", ""));
+	}
+
+	@Test
+	public void createHTML_unclosedBackgroundColorTags() throws Exception {
+		assertLinear(repeating("{bc:", "x ", "{bc:", ""));
+	}
+
+	@Test
+	public void createHTML_colorTags() throws Exception {
+		assertLinear(repeating("{c:red}a{c}", "x ", "{c:red}a{c}", ""));
+	}
+
+	@Test
+	public void createHTML_unterminatedCodeBlock() throws Exception {
+		assertLinear(repeating("```", "```\n", "x\n", ""));
+	}
+
+	@Test
+	public void createHTML_longCodeBlockLine() throws Exception {
+		assertLinear(repeating("```x", "```", "x", ""));
+	}
+
+	@Test
+	public void createHTML_unterminatedStringsInCode() throws Exception {
+		assertLinear(repeating("\"", "```java\n", "\"", "\n```"));
+	}
+
+	@Test
+	public void createHTML_emptyLines() throws Exception {
+		assertLinear(repeating("\\n", "", "\n", ""));
+	}
+
+	@Test
+	public void createHTML_horizontalRules() throws Exception {
+		assertLinear(repeating("***", "", "***\n", ""));
+	}
+
+	@Test
+	public void createHTML_backslashes() throws Exception {
+		assertLinear(repeating("\\", "x ", "\\", ""));
+	}
+
+	@Test
+	public void createHTML_tableSeparators() throws Exception {
+		assertLinear(repeating("|", "", "|", ""));
+	}
+
+	@Test
+	public void createHTML_headingsWithTableOfContents() throws Exception {
+		assertLinear(repeating("# a", "{TOC}\n", "# a\n", ""));
+	}
+
+	@Test
+	public void createHTML_tablesOfContents() throws Exception {
+		assertLinear(repeating("{TOC}", "", "{TOC}\n", ""));
+	}
+
+	@Test
+	public void createHTML_headingsEachWithTableOfContentsWithMaxOutputChars() throws Exception {
+		//: the HTML grows quadratically with the length of the text, so only the time until the limit is exceeded has to grow linearly
+		BMRenderLimits limits = BMRenderLimits.builder().setMaxOutputChars(100000).build();
+		assertLinear(repeating("# a\n{TOC}", "", "# a\n{TOC}\n", ""), BrightMarkdown.builder().setRenderLimits(limits).build());
+	}
+
+}
@@ -0,0 +1,80 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+
+public class BMFragmentCacheTest {
+	private static final String INPUT = "{TOC}\n# Title\nfirst paragraph\nwith two lines\n\n - item *bold*\n - item 2\n\n## Sub title\n```java\nint x = 1;\n```\n\nlast paragraph";
+
+	private void assertSameAsWithoutCache(BrightMarkdown brightMarkdown, String input) throws Exception {
+		for (OutputType i: OutputType.values()) {
+			assertEquals(new BrightMarkdown().createHTML(input, i), brightMarkdown.createHTML(input, i));
+		}
+	}
+
+	@Test
+	public void createHTML_sameAsWithoutCache() throws Exception {
+		BMFragmentCache cache = new BMFragmentCache(1024 * 1024);
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setFragmentCache(cache).build();
+		assertSameAsWithoutCache(brightMarkdown, INPUT);
+		assertEquals(0, cache.getHitCount());
+		long misses = cache.getMissCount();
+		
+		assertSameAsWithoutCache(brightMarkdown, INPUT);
+		assertEquals(misses, cache.getHitCount());
+		assertEquals(misses, cache.getMissCount());
+	}
+
+	@Test
+	public void createHTML_onlyChangedBlockParsed() throws Exception {
+		BMFragmentCache cache = new BMFragmentCache(1024 * 1024);
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setFragmentCache(cache).build();
+		brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE);
+		long misses = cache.getMissCount();
+		long hits = cache.getHitCount();
+		
+		String changedInput = INPUT.replace("first paragraph", "changed paragraph");
+		assertEquals(new BrightMarkdown().createHTML(changedInput, OutputType.EMBEDDABLE_HTML_CODE), brightMarkdown.createHTML(changedInput, OutputType.EMBEDDABLE_HTML_CODE));
+		assertEquals(misses + 1, cache.getMissCount());
+		assertEquals(hits + misses - 1, cache.getHitCount());
+	}
+
+	@Test
+	public void createHTML_tableOfContentsUpdatedWhenHeadingChanged() throws Exception {
+		BMFragmentCache cache = new BMFragmentCache(1024 * 1024);
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setFragmentCache(cache).build();
+		assertSameAsWithoutCache(brightMarkdown, INPUT);
+		long misses = cache.getMissCount();
+		
+		String changedInput = INPUT.replace("## Sub title", "## Other title");
+		assertSameAsWithoutCache(brightMarkdown, changedInput);
+		assertEquals(misses + OutputType.values().length, cache.getMissCount());
+		assertSameAsWithoutCache(brightMarkdown, "{TOC}\nno headings");
+	}
+
+	@Test
+	public void createHTML_tableStylesUpdatedWhenTableAddedOrRemoved() throws Exception {
+		BMFragmentCache cache = new BMFragmentCache(1024 * 1024);
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setFragmentCache(cache).build();
+		String inputWithTable = INPUT + "\n\n|a|b|\n|-|-|\n|c|d|";
+		assertSameAsWithoutCache(brightMarkdown, INPUT);
+		assertSameAsWithoutCache(brightMarkdown, inputWithTable);
+		assertSameAsWithoutCache(brightMarkdown, INPUT);
+	}
+
+	@Test
+	public void createHTML_sharedCacheWithDifferentConfigurations() throws Exception {
+		BMFragmentCache cache = new BMFragmentCache(1024 * 1024);
+		BrightMarkdown defaultMarkdown = BrightMarkdown.builder().setFragmentCache(cache).build();
+		BrightMarkdown mappedImages = BrightMarkdown.builder().setFragmentCache(cache).addImageNameToPathMapping("img1", "/images/image1.png").build();
+		String input = "text ![image](img1)";
+		
+		assertSameAsWithoutCache(defaultMarkdown, input);
+		String expected = BrightMarkdown.builder().addImageNameToPathMapping("img1", "/images/image1.png").build().createHTML(input);
+		assertEquals(expected, mappedImages.createHTML(input));
+	}
+
+}
@@ -0,0 +1,117 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.model.BMEdit;
+
+public class BMParseResultTest {
+	private static final String INPUT = "{TOC}\n# Title\nfirst paragraph\nwith two lines\n\n - item *bold*\n   - item 2\n\n## Sub title\n```java\nint x = 1;\n```\n\n|a|b|\n|c|d|\n\nlast paragraph";
+
+	private String createLongInput() {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			result.append("## Heading " + i + "\nparagraph *" + i + "*\n\n - item " + i + "\n\n");
+		}
+		return result.toString();
+	}
+
+	private BMParseResult assertEdit(BrightMarkdown brightMarkdown, BMParseResult previous, BMEdit edit) throws Exception {
+		BMParseResult result = brightMarkdown.parse(previous, edit);
+		String text = previous.getText();
+		String expectedText = text.substring(0, edit.getOffset()) + edit.getInsertedText() + text.substring(edit.getOffset() + edit.getRemovedLength());
+		assertEquals(expectedText, result.getText());
+		for (OutputType i: OutputType.values()) {
+			assertEquals(brightMarkdown.createHTML(expectedText, i), brightMarkdown.createHTML(result, i));
+		}
+		return result;
+	}
+
+	@Test
+	public void parse_sameAsCreateHTML() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BMParseResult result = brightMarkdown.parse(INPUT);
+		for (OutputType i: OutputType.values()) {
+			assertEquals(brightMarkdown.createHTML(INPUT, i), brightMarkdown.createHTML(result, i));
+		}
+		assertEquals(result.getBlockCount(), result.getParsedBlockCount());
+	}
+
+	@Test
+	public void parse_editParsesOnlyBlocksAroundEdit() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		String input = createLongInput();
+		BMParseResult result = brightMarkdown.parse(input);
+		int offset = input.indexOf("paragraph *50*");
+		
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, "paragraph".length(), "changed text"));
+		assertTrue(result.getParsedBlockCount() <= 3, "parsed blocks: " + result.getParsedBlockCount());
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, 0, " - "));
+		assertTrue(result.getParsedBlockCount() <= 3, "parsed blocks: " + result.getParsedBlockCount());
+		result = assertEdit(brightMarkdown, result, new BMEdit(result.getText().length(), 0, "end"));
+		assertTrue(result.getParsedBlockCount() <= 3, "parsed blocks: " + result.getParsedBlockCount());
+	}
+
+	@Test
+	public void parse_editOpensAndClosesCodeBlock() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		String input = createLongInput();
+		BMParseResult result = brightMarkdown.parse(input);
+		int blockCount = result.getBlockCount();
+		int offset = input.indexOf("## Heading 50");
+		
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, 0, "```\n"));
+		assertTrue(result.getBlockCount() < blockCount);
+		result = assertEdit(brightMarkdown, result, new BMEdit(input.indexOf("## Heading 60") + 4, 0, "```\n"));
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, 4, ""));
+		result = assertEdit(brightMarkdown, result, new BMEdit(result.getText().indexOf("```\n"), 4, ""));
+		assertEquals(input, result.getText());
+		assertEquals(blockCount, result.getBlockCount());
+	}
+
+	@Test
+	public void parse_listLevelsAfterEdit() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BMParseResult result = brightMarkdown.parse(INPUT);
+		int offset = INPUT.indexOf(" - item *bold*");
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, 0, "    "));
+		result = assertEdit(brightMarkdown, result, new BMEdit(offset, 5, ""));
+		assertEdit(brightMarkdown, result, new BMEdit(INPUT.indexOf("first paragraph"), 0, "- "));
+	}
+
+	@Test
+	public void parse_previousResultUnchanged() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BMParseResult previous = brightMarkdown.parse(INPUT);
+		String expected = brightMarkdown.createHTML(previous, OutputType.EMBEDDABLE_HTML_CODE);
+		brightMarkdown.parse(previous, new BMEdit(INPUT.indexOf("int x"), 0, "```\n"));
+		assertEquals(expected, brightMarkdown.createHTML(previous, OutputType.EMBEDDABLE_HTML_CODE));
+		assertEquals(expected, brightMarkdown.createHTML(previous, OutputType.EMBEDDABLE_HTML_CODE));
+	}
+
+	@Test
+	public void parse_noMarkdown() throws Exception {
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BMParseResult result = brightMarkdown.parse(INPUT);
+		result = assertEdit(brightMarkdown, result, new BMEdit(0, 0, "{NOMARKDOWN}"));
+		assertEdit(brightMarkdown, result, new BMEdit(0, "{NOMARKDOWN}".length(), ""));
+	}
+
+	@Test
+	public void parse_editOutsideOfText() throws Exception {
+		final BrightMarkdown brightMarkdown = new BrightMarkdown();
+		final BMParseResult result = brightMarkdown.parse("text");
+		assertThrows(IllegalArgumentException.class, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.parse(result, new BMEdit(3, 2, "x"));
+			}
+		});
+	}
+
+}
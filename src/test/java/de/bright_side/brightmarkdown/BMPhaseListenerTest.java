@@ -0,0 +1,82 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.model.BMPhase;
+import de.bright_side.brightmarkdown.model.BMPhaseListener;
+
+public class BMPhaseListenerTest {
+	private static final String INPUT = "# Title\nfirst *bold* paragraph with a [link](http://example.com)\n\n - item\n - item 2\n\n```java\nint x = 1;\n```";
+
+	private static class RecordingListener implements BMPhaseListener {
+		private final List<BMPhase> startedPhases = new ArrayList<BMPhase>();
+		private final List<BMPhase> endedPhases = new ArrayList<BMPhase>();
+		private final List<Long> inputSizes = new ArrayList<Long>();
+		private final List<Long> nodeCounts = new ArrayList<Long>();
+
+		@Override
+		public synchronized void phaseStarted(BMPhase phase, long inputSize) {
+			//: phases of one call on one thread are not nested
+			assertEquals(startedPhases.size(), endedPhases.size());
+			startedPhases.add(phase);
+			inputSizes.add(inputSize);
+		}
+
+		@Override
+		public synchronized void phaseEnded(BMPhase phase, long durationInNanos, long nodeCount) {
+			assertEquals(startedPhases.get(startedPhases.size() - 1), phase);
+			assertTrue(durationInNanos >= 0);
+			endedPhases.add(phase);
+			nodeCounts.add(nodeCount);
+		}
+	}
+
+	@Test
+	public void createHTML_allPhasesInOrder() throws Exception {
+		RecordingListener listener = new RecordingListener();
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setPhaseListener(listener).build();
+		assertEquals(new BrightMarkdown().createHTML(INPUT), brightMarkdown.createHTML(INPUT));
+
+		assertEquals(Arrays.asList(BMPhase.values()), listener.startedPhases);
+		assertEquals(listener.startedPhases, listener.endedPhases);
+		assertEquals(INPUT.length(), listener.inputSizes.get(BMPhase.ESCAPE.ordinal()).longValue());
+		assertEquals(0, listener.nodeCounts.get(BMPhase.ESCAPE.ordinal()).longValue());
+		assertTrue(listener.nodeCounts.get(BMPhase.SPLIT_LINES.ordinal()) > 1);
+		//: the input of each phase after splitting the lines is the result of the previous phase
+		for (int i = BMPhase.CODE_BLOCKS.ordinal(); i < BMPhase.values().length; i++) {
+			assertEquals(listener.nodeCounts.get(i - 1), listener.inputSizes.get(i), "input of phase " + BMPhase.values()[i]);
+		}
+	}
+
+	@Test
+	public void createHTML_phasesOfEachBlock() throws Exception {
+		RecordingListener listener = new RecordingListener();
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setPhaseListener(listener).setFragmentCache(new BMFragmentCache(1024 * 1024)).build();
+		String expected = new BrightMarkdown().createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE);
+		assertEquals(expected, brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE));
+		int blockCount = 0;
+		for (BMPhase i: listener.endedPhases) {
+			if (i == BMPhase.CREATE_NODES) {
+				blockCount ++;
+			}
+		}
+		//: at least heading, paragraph, list and code block
+		assertTrue(blockCount >= 4);
+
+		//: the blocks are taken from the cache the second time, before the code is highlighted
+		listener.endedPhases.clear();
+		listener.startedPhases.clear();
+		assertEquals(expected, brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE));
+		assertTrue(!listener.endedPhases.contains(BMPhase.CREATE_NODES));
+		assertTrue(!listener.endedPhases.contains(BMPhase.CODE_BLOCKS));
+	}
+
+}
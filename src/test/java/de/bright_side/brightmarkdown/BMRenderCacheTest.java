@@ -0,0 +1,158 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.FormattingItem;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.base.BMContentHash;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
+import de.bright_side.brightmarkdown.model.BMWarning;
+
+public class BMRenderCacheTest {
+	private static final String INPUT = "# Title\n - item *bold*\n\n|a|b|\n|c|d|";
+
+	private BMHtmlResult createResult(String html) {
+		return new BMHtmlResult(html, new BMDiagnostics(new ArrayList<BMWarning>(), 0));
+	}
+
+	@Test
+	public void createHTML_hitsAndMisses() throws Exception {
+		BMRenderCache cache = new BMRenderCache(1024 * 1024);
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderCache(cache).build();
+		String expected = new BrightMarkdown().createHTML(INPUT, OutputType.FULL_HTML_DOCUMENT);
+
+		assertEquals(expected, brightMarkdown.createHTML(INPUT, OutputType.FULL_HTML_DOCUMENT));
+		assertEquals(expected, brightMarkdown.createHTML(INPUT, OutputType.FULL_HTML_DOCUMENT));
+		StringBuilder result = new StringBuilder();
+		brightMarkdown.createHTML(new StringBuilder(INPUT), OutputType.FULL_HTML_DOCUMENT, result);
+		assertEquals(expected, result.toString());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getEntryCount());
+
+		assertEquals(new BrightMarkdown().createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE), brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(2, cache.getEntryCount());
+	}
+
+	@Test
+	public void createHTML_sharedCacheWithDifferentConfigurations() throws Exception {
+		BMRenderCache cache = new BMRenderCache(1024 * 1024);
+		BrightMarkdown defaultMarkdown = BrightMarkdown.builder().setRenderCache(cache).build();
+		BrightMarkdown largeHeadings = BrightMarkdown.builder().setRenderCache(cache).setFontSizeInMM(FormattingItem.H1, 20).build();
+		BrightMarkdown sameLargeHeadings = BrightMarkdown.builder().setRenderCache(cache).setFontSizeInMM(FormattingItem.H1, 20).build();
+
+		assertEquals(new BrightMarkdown().createHTML(INPUT), defaultMarkdown.createHTML(INPUT));
+		String expected = BrightMarkdown.builder().setFontSizeInMM(FormattingItem.H1, 20).build().createHTML(INPUT);
+		assertEquals(expected, largeHeadings.createHTML(INPUT));
+		assertEquals(expected, sameLargeHeadings.createHTML(INPUT));
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	@Test
+	public void put_leastRecentlyUsedEvicted() throws Exception {
+		BMHtmlResult result = createResult("0123456789");
+		BMRenderCache cache = new BMRenderCache(Long.MAX_VALUE, 1);
+		cache.put(BMContentHash.create("size"), result);
+		long entrySize = cache.getRetainedBytes();
+
+		cache = new BMRenderCache(3 * entrySize, 1);
+		BMContentHash a = BMContentHash.create("a");
+		BMContentHash b = BMContentHash.create("b");
+		BMContentHash c = BMContentHash.create("c");
+		BMContentHash d = BMContentHash.create("d");
+		cache.put(a, result);
+		cache.put(b, result);
+		cache.put(c, result);
+		assertEquals(result, cache.get(a));
+		cache.put(d, result);
+
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(3, cache.getEntryCount());
+		assertEquals(3 * entrySize, cache.getRetainedBytes());
+		assertEquals(null, cache.get(b));
+		assertEquals(result, cache.get(a));
+		assertEquals(result, cache.get(c));
+		assertEquals(result, cache.get(d));
+	}
+
+	@Test
+	public void put_entryLargerThanSegment() throws Exception {
+		BMRenderCache cache = new BMRenderCache(100, 1);
+		cache.put(BMContentHash.create("a"), createResult("text which is longer than the cache"));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	@Test
+	public void put_oversizedValueReplacesCachedValue() throws Exception {
+		BMRenderCache cache = new BMRenderCache(1000, 1);
+		BMContentHash key = BMContentHash.create("a");
+		cache.put(key, createResult("short text"));
+		assertEquals(1, cache.getEntryCount());
+		StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 1000; i++) {
+			longText.append("x");
+		}
+		cache.put(key, createResult(longText.toString()));
+		assertNull(cache.get(key));
+		assertEquals(0, cache.getEntryCount());
+		assertEquals(0, cache.getRetainedBytes());
+	}
+
+	@Test
+	public void createHTML_concurrentAccess() throws Exception {
+		final BMRenderCache cache = new BMRenderCache(20 * 1024);
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderCache(cache).build();
+		final List<String> inputs = new ArrayList<String>();
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 50; i++) {
+			String input = "# Title " + i + "\n - item *" + i + "*\n\ntext " + i;
+			inputs.add(input);
+			expected.add(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 2000; i++) {
+				final String input = inputs.get(i % inputs.size());
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(expected.get(i % inputs.size()), results.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(2000, cache.getHitCount() + cache.getMissCount());
+		assertEquals(true, cache.getRetainedBytes() <= cache.getMaxBytes());
+	}
+
+	@Test
+	public void createHTML_coalescedWithoutCache() throws Exception {
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().setCoalesceRenders(true).build();
+		StringBuilder result = new StringBuilder();
+		brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE, result);
+		assertEquals(new BrightMarkdown().createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE), result.toString());
+		assertEquals(new BrightMarkdown().createHTML(INPUT), brightMarkdown.createHTML(INPUT));
+		assertEquals(0, brightMarkdown.getCoalescedRenderCount());
+	}
+
+}
@@ -0,0 +1,351 @@
+package de.bright_side.brightmarkdown;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException.Limit;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.model.BMPhase;
+import de.bright_side.brightmarkdown.model.BMPhaseListener;
+
+public class BMRenderLimitsTest {
+	private static final String INPUT = "# Title\nfirst *bold* paragraph with a [link](http://example.com)\n\n - item\n - item 2\n\n```java\nint x = 1;\n```";
+
+	private String createNestedList(int levels) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < levels; i++) {
+			for (int j = 0; j < i * 3; j++) {
+				result.append(" ");
+			}
+			result.append("- item\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * blocks the first phase of the first call until it is released, so that other calls with the same text run at the same time
+	 */
+	private static class BlockingListener implements BMPhaseListener {
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public void phaseStarted(BMPhase phase, long inputSize) {
+			if (entered.getCount() == 0) {
+				return;
+			}
+			entered.countDown();
+			try {
+				release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void phaseEnded(BMPhase phase, long durationInNanos, long nodeCount) {
+		}
+	}
+
+	private static class RecordingListener implements BMPhaseListener {
+		private final List<BMPhase> startedPhases = new ArrayList<BMPhase>();
+
+		@Override
+		public void phaseStarted(BMPhase phase, long inputSize) {
+			startedPhases.add(phase);
+		}
+
+		@Override
+		public void phaseEnded(BMPhase phase, long durationInNanos, long nodeCount) {
+		}
+	}
+
+	private static class CountingReader extends StringReader {
+		private long readChars = 0;
+
+		public CountingReader(String text) {
+			super(text);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			int result = super.read(buffer, offset, length);
+			if (result > 0) {
+				readChars += result;
+			}
+			return result;
+		}
+	}
+
+	private Future<String> startCreateHTML(ExecutorService executor, final BrightMarkdown brightMarkdown, final String input) {
+		return executor.submit(new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return brightMarkdown.createHTML(input);
+			}
+		});
+	}
+
+	private void assertLimitExceeded(Limit limit, Executable executable) {
+		BMRenderLimitExceededException e = assertThrows(BMRenderLimitExceededException.class, executable);
+		assertEquals(limit, e.getLimit());
+	}
+
+	@Test
+	public void createHTML_withinLimitsSameHTML() throws Exception {
+		BMRenderLimits limits = BMRenderLimits.builder().setMaxInputChars(INPUT.length()).setMaxNodes(1000).setMaxDepth(10).setMaxOutputChars(100000)
+				.setMaxDurationInMillis(60000).build();
+		String expected = new BrightMarkdown().createHTML(INPUT);
+		assertEquals(expected, BrightMarkdown.builder().setRenderLimits(limits).build().createHTML(INPUT));
+		assertEquals(expected, BrightMarkdown.builder().setRenderLimits(limits).setFragmentCache(new BMFragmentCache(1024 * 1024)).build().createHTML(INPUT));
+	}
+
+	@Test
+	public void createHTML_maxInputChars() throws Exception {
+		BMRenderLimits limits = BMRenderLimits.builder().setMaxInputChars(INPUT.length() - 1).build();
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(limits).build();
+		final BrightMarkdown cachingBrightMarkdown = BrightMarkdown.builder().setRenderLimits(limits).setRenderCache(new BMRenderCache(1024 * 1024)).build();
+		assertLimitExceeded(Limit.INPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.createHTML(INPUT);
+			}
+		});
+		assertLimitExceeded(Limit.INPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				cachingBrightMarkdown.createHTML(INPUT);
+			}
+		});
+		assertLimitExceeded(Limit.INPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.streamHTML(new StringReader(INPUT), OutputType.EMBEDDABLE_HTML_CODE, new StringBuilder());
+			}
+		});
+		assertLimitExceeded(Limit.INPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.parse(INPUT);
+			}
+		});
+		final Path path = Files.createTempFile("BMRenderLimitsTest", ".md");
+		try {
+			Files.write(path, INPUT.getBytes(StandardCharsets.UTF_8));
+			assertLimitExceeded(Limit.INPUT_CHARS, new Executable() {
+				@Override
+				public void execute() throws Throwable {
+					brightMarkdown.createHTML(path, OutputType.EMBEDDABLE_HTML_CODE);
+				}
+			});
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void createHTML_maxNodes() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("*a* _b_\n\n");
+		}
+		final String input = text.toString();
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxNodes(500).build()).build();
+		assertLimitExceeded(Limit.NODES, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.createHTML(input);
+			}
+		});
+		//: the sections of all blocks of a call are counted together
+		final BrightMarkdown fragmentBrightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxNodes(500).build())
+				.setFragmentCache(new BMFragmentCache(1024 * 1024)).build();
+		assertLimitExceeded(Limit.NODES, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				fragmentBrightMarkdown.createHTML(input);
+			}
+		});
+	}
+
+	@Test
+	public void createHTML_limitsCheckedBeforeParagraphs() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("line ").append(i).append("\n");
+		}
+		final String input = text.toString();
+		RecordingListener nodesListener = new RecordingListener();
+		final BrightMarkdown nodesBrightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxNodes(50).build())
+				.setPhaseListener(nodesListener).build();
+		assertLimitExceeded(Limit.NODES, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				nodesBrightMarkdown.createHTML(input);
+			}
+		});
+		assertTrue(nodesListener.startedPhases.contains(BMPhase.CLASSIFY_BLOCKS));
+		assertTrue(!nodesListener.startedPhases.contains(BMPhase.PARAGRAPHS));
+
+		RecordingListener depthListener = new RecordingListener();
+		final BrightMarkdown depthBrightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxDepth(8).build())
+				.setPhaseListener(depthListener).build();
+		assertLimitExceeded(Limit.DEPTH, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				depthBrightMarkdown.createHTML(createNestedList(20));
+			}
+		});
+		assertTrue(!depthListener.startedPhases.contains(BMPhase.PARAGRAPHS));
+	}
+
+	@Test
+	public void createHTML_maxDepth() throws Exception {
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxDepth(8).build()).build();
+		assertTrue(brightMarkdown.createHTML(createNestedList(3)).contains("item"));
+		assertLimitExceeded(Limit.DEPTH, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.streamHTML(new StringReader(createNestedList(20)), OutputType.EMBEDDABLE_HTML_CODE, new StringBuilder());
+			}
+		});
+	}
+
+	@Test
+	public void createHTML_maxOutputChars() throws Exception {
+		int length = new BrightMarkdown().createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE).length();
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxOutputChars(length - 1).build()).build();
+		final StringBuilder out = new StringBuilder();
+		assertLimitExceeded(Limit.OUTPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE, out);
+			}
+		});
+		assertTrue(out.length() < length);
+		assertEquals(length, BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxOutputChars(length).build()).build()
+				.createHTML(INPUT, OutputType.EMBEDDABLE_HTML_CODE).length());
+	}
+
+	@Test
+	public void createHTML_tablesOfContentsLimitedBeforeSerializing() throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			text.append("# heading\n{TOC}\n");
+		}
+		final String input = text.toString();
+		RecordingListener listener = new RecordingListener();
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxOutputChars(100000).build())
+				.setPhaseListener(listener).build();
+		assertLimitExceeded(Limit.OUTPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.createHTML(input);
+			}
+		});
+		assertTrue(listener.startedPhases.contains(BMPhase.CREATE_NODES));
+		assertTrue(!listener.startedPhases.contains(BMPhase.SERIALIZE));
+	}
+
+	@Test
+	public void streamHTML_maxOutputCharsAfterTableOfContents() throws Exception {
+		StringBuilder text = new StringBuilder("{TOC}\n");
+		for (int i = 0; i < 100000; i++) {
+			text.append("# heading ").append(i).append("\n\n");
+		}
+		final CountingReader reader = new CountingReader(text.toString());
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxOutputChars(10000).build()).build();
+		assertLimitExceeded(Limit.OUTPUT_CHARS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.streamHTML(reader, OutputType.EMBEDDABLE_HTML_CODE, new StringBuilder());
+			}
+		});
+		//: the HTML after the table of contents is counted before it is kept in the temporary file, so the rest of the text is not read
+		assertTrue(reader.readChars < text.length(), "read " + reader.readChars + " of " + text.length() + " characters");
+	}
+
+	@Test
+	public void createHTML_maxDuration() throws Exception {
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().setRenderLimits(BMRenderLimits.builder().setMaxDurationInMillis(0).build()).build();
+		assertLimitExceeded(Limit.DURATION_IN_MILLIS, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				brightMarkdown.createHTML(INPUT);
+			}
+		});
+	}
+
+	@Test
+	public void createHTML_sharedCacheWithOtherLimits() throws Exception {
+		BMRenderCache renderCache = new BMRenderCache(1024 * 1024);
+		BlockingListener listener = new BlockingListener();
+		BrightMarkdown strictBrightMarkdown = BrightMarkdown.builder().setRenderCache(renderCache).setPhaseListener(listener)
+				.setRenderLimits(BMRenderLimits.builder().setMaxNodes(1).build()).build();
+		BrightMarkdown unlimitedBrightMarkdown = BrightMarkdown.builder().setRenderCache(renderCache).build();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			final Future<String> strictResult = startCreateHTML(executor, strictBrightMarkdown, INPUT);
+			assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+			//: the call without limits does not wait for the call with the node limit, which would fail it
+			Future<String> unlimitedResult = startCreateHTML(executor, unlimitedBrightMarkdown, INPUT);
+			assertEquals(new BrightMarkdown().createHTML(INPUT), unlimitedResult.get(10, TimeUnit.SECONDS));
+			assertEquals(0, unlimitedBrightMarkdown.getCoalescedRenderCount());
+			listener.release.countDown();
+			ExecutionException e = assertThrows(ExecutionException.class, new Executable() {
+				@Override
+				public void execute() throws Throwable {
+					strictResult.get();
+				}
+			});
+			assertEquals(Limit.NODES, ((BMRenderLimitExceededException)e.getCause()).getLimit());
+		} finally {
+			listener.release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void createHTML_coalescedCallWaitsAtMostMaxDuration() throws Exception {
+		BMRenderCache renderCache = new BMRenderCache(1024 * 1024);
+		BMRenderLimits limits = BMRenderLimits.builder().setMaxDurationInMillis(200).build();
+		BlockingListener listener = new BlockingListener();
+		BrightMarkdown blockedBrightMarkdown = BrightMarkdown.builder().setRenderCache(renderCache).setPhaseListener(listener).setRenderLimits(limits).build();
+		final BrightMarkdown waitingBrightMarkdown = BrightMarkdown.builder().setRenderCache(renderCache).setRenderLimits(limits).build();
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		try {
+			startCreateHTML(executor, blockedBrightMarkdown, INPUT);
+			assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+			assertLimitExceeded(Limit.DURATION_IN_MILLIS, new Executable() {
+				@Override
+				public void execute() throws Throwable {
+					waitingBrightMarkdown.createHTML(INPUT);
+				}
+			});
+			assertEquals(1, waitingBrightMarkdown.getCoalescedRenderCount());
+		} finally {
+			listener.release.countDown();
+			executor.shutdown();
+		}
+	}
+
+}
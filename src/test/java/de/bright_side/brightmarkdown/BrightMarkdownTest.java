@@ -1,6 +1,21 @@
 package de.bright_side.brightmarkdown;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.jupiter.api.Test;
 
@@ -12,6 +27,8 @@ import de.bright_side.brightmarkdown.base.TestingConstants;
 import de.bright_side.brightmarkdown.base.TestingUtil;
 import de.bright_side.brightmarkdown.logic.BMHtmlCreator;
 import de.bright_side.brightmarkdown.logic.BMSectionParserLogic;
+import de.bright_side.brightmarkdown.model.BMCodeFormat;
+import de.bright_side.brightmarkdown.model.BMHtmlResult;
 import de.bright_side.brightmarkdown.model.BMSection;
 
 /**
@@ -547,6 +564,41 @@ public class BrightMarkdownTest {
 		assertEquals(expected, result);
 	}
 
+	@Test
+	public void createHTML_reservedNoncharactersKept() throws Exception{
+		String input = "x \uFDD0 y \uFDD1 \uFDD2 z \uFDD5 text\uFDD5";
+		String result = removeFormatting(new BrightMarkdown().createHTML(input));
+		String expected = "<html><body><p>" + input + "</p></body></html>";
+		assertEquals(expected, result);
+		StringBuilder out = new StringBuilder();
+		new BrightMarkdown().streamHTML(new StringReader(input), OutputType.FULL_HTML_DOCUMENT, out);
+		assertTrue(out.toString().contains(input));
+	}
+
+	@Test
+	public void createHTML_codeBlockWithoutCode() throws Exception{
+		List<String> inputs = Arrays.asList("`````", "``````", "x\n`````\ny", " - `````", "{TOC}\n# a `x`\n\\```\nno code\n```js\nvar a = \"s\";\n```");
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<BrightMarkdown> brightMarkdowns = Arrays.asList(new BrightMarkdown()
+					, BrightMarkdown.builder().setFragmentCache(new BMFragmentCache(1024 * 1024)).build()
+					, BrightMarkdown.builder().setParseExecutor(executor).build());
+			for (String input: inputs) {
+				String expected = brightMarkdowns.get(0).createHTML(input);
+				for (BrightMarkdown i: brightMarkdowns) {
+					assertEquals(expected, i.createHTML(input));
+				}
+				StringBuilder out = new StringBuilder();
+				brightMarkdowns.get(0).streamHTML(new StringReader(input), OutputType.FULL_HTML_DOCUMENT, out);
+				assertTrue(out.length() > 0);
+			}
+		} finally {
+			executor.shutdown();
+		}
+		String result = removeFormatting(new BrightMarkdown().createHTML("`````"));
+		assertEquals("<html><body><pre style=\"" + BMHtmlCreator.CODE_BOX_STYLE + "\"><code><span><br/></span></code></pre></body></html>", result);
+	}
+
 	
 	@Test
 	public void createHTML_aboutText() throws Exception{
@@ -836,9 +888,7 @@ public class BrightMarkdownTest {
 	@Test
 	public void createHTML_fontSizes() throws Exception{
 		String input = "# Title\n## Title 2\nText";
-		BrightMarkdown markdown = new BrightMarkdown();
-		markdown.setFontSizeInMM(FormattingItem.H1, 40);
-		markdown.setFontSizeInMM(FormattingItem.H2, 8);
+		BrightMarkdown markdown = BrightMarkdown.builder().setFontSizeInMM(FormattingItem.H1, 40).setFontSizeInMM(FormattingItem.H2, 8).build();
 		String result = removeFormatting(markdown.createHTML(input));
 		String expected = "<html><head><META http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\"><style>H1{font-size:40mm;}H2{font-size:8mm;}</style></head><body><h1>Title</h1><h2>Title 2</h2><p>Text</p></body></html>";
 		log("input:\n" + input);
@@ -2953,8 +3003,7 @@ public class BrightMarkdownTest {
 		log("==========================");
 		log("parseAll sections:\n" + BMUtil.toString(sections));
 		log("==========================");
-		BrightMarkdown brightMarkdown = new BrightMarkdown();
-		brightMarkdown.addImageNameToPathMapping("test", "test.jpg");
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().addImageNameToPathMapping("test", "test.jpg").build();
 		String resultRaw = brightMarkdown.createHTML(input);
 		String result = removeFormatting(resultRaw);
 		String expected = "<html><body><p><span>Title</span><br><span><img align=\"top\" border=\"1mm\" src=\"test.jpg\" width=\"75%\">"
@@ -2971,7 +3020,7 @@ public class BrightMarkdownTest {
 
 	@Test
 	public void createHTML_typicalCaseFullDocument() throws Exception {
-		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().addImageNameToPathMapping("test-img", "test.jpg").build();
 		
 		StringBuilder sb = new StringBuilder();
 		sb.append("# Bullet Points\n");
@@ -3010,7 +3059,6 @@ public class BrightMarkdownTest {
 		log("parseAll sections:\n" + BMUtil.toString(sections));
 		log("==========================");
 		
-		brightMarkdown.addImageNameToPathMapping("test-img", "test.jpg");
 		String resultRaw = brightMarkdown.createHTML(input);
 		String result = removeFormatting(resultRaw);
 		
@@ -3038,7 +3086,7 @@ public class BrightMarkdownTest {
 	
 	@Test
 	public void createHTML_typicalEmbeddableHtmlCode() throws Exception {
-		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().addImageNameToPathMapping("test-img", "test.jpg").build();
 		
 		StringBuilder sb = new StringBuilder();
 		sb.append("# Bullet Points\n");
@@ -3078,7 +3126,6 @@ public class BrightMarkdownTest {
 		log("parseAll sections:\n" + BMUtil.toString(sections));
 		log("==========================");
 		
-		brightMarkdown.addImageNameToPathMapping("test-img", "test.jpg");
 		String resultRaw = brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
 		String result = removeFormatting(resultRaw);
 		
@@ -3426,6 +3473,159 @@ public class BrightMarkdownTest {
 		assertEquals(expected, result);
 	}
 	
+	@Test
+	public void createHTML_toAppendable() throws Exception{
+		String input = "# Title\n - item *bold* ö\n";
+		StringBuilder result = new StringBuilder();
+		new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE, result);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE), result.toString());
+	}
+	
+	@Test
+	public void createHTML_toOutputStream() throws Exception{
+		String input = "# Title\n - item *bold* ö\n";
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		new BrightMarkdown().createHTML(input, OutputType.FULL_HTML_DOCUMENT, result);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.FULL_HTML_DOCUMENT), new String(result.toByteArray(), StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void createHTML_fromReaderAndPath() throws Exception{
+		String input = "# Title\n - item *bold* \u00f6\n\n```\ncode\n```\n";
+		String expected = new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+		assertEquals(expected, new BrightMarkdown().createHTML(new StringReader(input), OutputType.EMBEDDABLE_HTML_CODE));
+		Path path = Files.createTempFile("BrightMarkdownTest", ".md");
+		try {
+			Files.write(path, input.getBytes(StandardCharsets.UTF_8));
+			assertEquals(expected, new BrightMarkdown().createHTML(path, OutputType.EMBEDDABLE_HTML_CODE));
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void createHTML_carriageReturnsIgnored() throws Exception{
+		String input = "# Title\n - item *bold*\n\n```\ncode\n```\n";
+		String expected = new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+		String inputWithCR = input.replace("\n", "\r\n").replace("item", "it\rem");
+		assertEquals(expected, new BrightMarkdown().createHTML(inputWithCR, OutputType.EMBEDDABLE_HTML_CODE));
+		StringBuilder streamed = new StringBuilder();
+		new BrightMarkdown().streamHTML(new StringReader(inputWithCR), OutputType.EMBEDDABLE_HTML_CODE, streamed);
+		assertEquals(expected, streamed.toString());
+		Path path = Files.createTempFile("BrightMarkdownTest", ".md");
+		try {
+			Files.write(path, inputWithCR.getBytes(StandardCharsets.UTF_8));
+			assertEquals(expected, new BrightMarkdown().createHTML(path, OutputType.EMBEDDABLE_HTML_CODE));
+		} finally {
+			Files.delete(path);
+		}
+	}
+	
+	@Test
+	public void streamHTML_sameAsCreateHTML() throws Exception{
+		String input = "{TOC}\n# Title\n - item *bold*\n     - sub item\n\ntext\nmore text\n```\ncode\n\n```\n## Chapter\n|a|b|\n---\n|1|2|\n";
+		StringBuilder result = new StringBuilder();
+		new BrightMarkdown().streamHTML(new StringReader(input), OutputType.EMBEDDABLE_HTML_CODE, result);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE), result.toString());
+		
+		result = new StringBuilder();
+		new BrightMarkdown().streamHTML(new StringReader(input), OutputType.FULL_HTML_DOCUMENT, result);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.FULL_HTML_DOCUMENT), result.toString());
+	}
+	
+	@Test
+	public void streamHTML_emptyContentSameAsCreateHTML() throws Exception{
+		for (String input: Arrays.asList("", "{TOC}", "{TOC}\n\n{TOC}\n", "{TOC}\ntext", "text\n{TOC}")) {
+			StringBuilder result = new StringBuilder();
+			new BrightMarkdown().streamHTML(new StringReader(input), OutputType.EMBEDDABLE_HTML_CODE, result);
+			assertEquals(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE), result.toString(), "input: " + input);
+		}
+	}
+	
+	@Test
+	public void streamHTML_noMarkdown() throws Exception{
+		String input = "  " + BMConstants.NO_MARKDOWN_MARK + "  # *no* heading  \n";
+		StringBuilder result = new StringBuilder();
+		new BrightMarkdown().streamHTML(new StringReader(input), OutputType.EMBEDDABLE_HTML_CODE, result);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE), result.toString());
+	}
+	
+	@Test
+	public void builder_laterChangesNotApplied() throws Exception{
+		String input = "# Title\n!(img)";
+		BrightMarkdown.Builder builder = BrightMarkdown.builder().addImageNameToPathMapping("img", "a.jpg");
+		BrightMarkdown brightMarkdown = builder.build();
+		String expected = brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+		builder.addImageNameToPathMapping("img", "b.jpg").setFontSizeInMM(FormattingItem.H1, 20);
+		assertEquals(expected, brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE));
+		assertEquals(expected.replace("a.jpg", "b.jpg"), builder.build().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE));
+	}
+	
+	@SuppressWarnings("deprecation")
+	@Test
+	public void deprecatedSetters_sameAsBuilder() throws Exception{
+		String input = "# Title\n!(img)";
+		BrightMarkdown brightMarkdown = new BrightMarkdown();
+		brightMarkdown.addImageNameToPathMapping("img", "a.jpg");
+		brightMarkdown.setFontSizeInMM(FormattingItem.H1, 20);
+		BrightMarkdown expected = BrightMarkdown.builder().addImageNameToPathMapping("img", "a.jpg").setFontSizeInMM(FormattingItem.H1, 20).build();
+		assertEquals(expected.createHTML(input), brightMarkdown.createHTML(input));
+	}
+	
+	@Test
+	public void builder_codeFormat() throws Exception{
+		BMCodeFormat format = new BMCodeFormat();
+		format.setKeywords(new TreeSet<String>(Arrays.asList("hello")));
+		format.setStringIndicators(new TreeSet<String>());
+		format.setTagStarts(new TreeSet<String>());
+		format.setTagEnds(new TreeSet<String>());
+		BrightMarkdown brightMarkdown = BrightMarkdown.builder().addCodeFormat("MyFormat", format).build();
+		String input = "```myformat\nhello world\n```";
+		String result = brightMarkdown.createHTML(input, OutputType.EMBEDDABLE_HTML_CODE);
+		String expected = "<span><pre style=\"background:lightgrey\"><code><span><br/></span><span style=\"color:purple;font-weight:bold\">hello</span>"
+				+ "<span> world</span></code></pre></span>";
+		assertEquals(expected, result);
+	}
+	
+	@Test
+	public void createHTML_sharedInstanceInSeveralThreads() throws Exception{
+		final BrightMarkdown brightMarkdown = BrightMarkdown.builder().addImageNameToPathMapping("img", "a.jpg").build();
+		final List<String> inputs = new ArrayList<String>();
+		final List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 20; i++) {
+			String input = "# Title " + i + "\n{TOC}\n - item *" + i + "*\n     - sub\n!(img)\n```java\nint x = " + i + ";\n```\n|a|b|\n|" + i + "|c|";
+			inputs.add(input);
+			expected.add(brightMarkdown.createHTML(input, OutputType.FULL_HTML_DOCUMENT));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 400; i++) {
+				final String input = inputs.get(i % inputs.size());
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return brightMarkdown.createHTML(input, OutputType.FULL_HTML_DOCUMENT);
+					}
+				}));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				assertEquals(expected.get(i % inputs.size()), results.get(i).get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void createHTMLResult_noWarnings() throws Exception{
+		String input = "# Title\ntext ``code`` text\n - item";
+		BMHtmlResult result = new BrightMarkdown().createHTMLResult(input, OutputType.EMBEDDABLE_HTML_CODE);
+		assertEquals(new BrightMarkdown().createHTML(input, OutputType.EMBEDDABLE_HTML_CODE), result.getHtml());
+		assertEquals(0, result.getDiagnostics().getWarningCount());
+		assertEquals(0, result.getDiagnostics().getWarnings().size());
+	}
+	
 
 
-}
\ No newline at end of file
+}
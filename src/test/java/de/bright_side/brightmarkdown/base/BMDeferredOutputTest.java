@@ -0,0 +1,45 @@
+package de.bright_side.brightmarkdown.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+public class BMDeferredOutputTest {
+
+	@Test
+	public void writeDeferred_placeholdersReplaced() throws Exception {
+		StringBuilder result = new StringBuilder();
+		try (final BMDeferredOutput output = new BMDeferredOutput(result)) {
+			output.append("a");
+			output.startPlaceholder();
+			output.append("discarded");
+			output.endPlaceholder();
+			output.append("b\uD800").append('c');
+			assertEquals("a", result.toString());
+			output.startPlaceholder();
+			output.endPlaceholder();
+			output.append("xd", 1, 2);
+			output.writeDeferred(new BMDeferredOutput.PlaceholderWriter() {
+				@Override
+				public void writePlaceholder(int index) throws IOException {
+					output.append("[" + index + "]");
+				}
+			});
+			output.append("e");
+		}
+		assertEquals("a[0]b\uD800c[1]de", result.toString());
+	}
+
+	@Test
+	public void writeDeferred_noPlaceholder() throws Exception {
+		StringBuilder result = new StringBuilder();
+		try (BMDeferredOutput output = new BMDeferredOutput(result)) {
+			output.append("abc");
+			output.writeDeferred(null);
+		}
+		assertEquals("abc", result.toString());
+	}
+
+}
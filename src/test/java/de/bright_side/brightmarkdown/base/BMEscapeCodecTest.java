@@ -0,0 +1,57 @@
+package de.bright_side.brightmarkdown.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class BMEscapeCodecTest {
+
+	private String escaped(char c) {
+		for (int i = 0; i < BMConstants.ESCAPE_CHARACTERS.length; i += 2) {
+			if (BMConstants.ESCAPE_CHARACTERS[i].charAt(0) == c) {
+				return "" + (char)(BMConstants.ESCAPED_CHARACTER_BASE + i / 2);
+			}
+		}
+		throw new IllegalArgumentException("not an escape character: " + c);
+	}
+
+	@Test
+	public void escape_normal() {
+		String expected = escaped('*') + "bold" + escaped('*') + " " + escaped('\\') + "\\x " + escaped('{');
+		assertEquals(expected, BMEscapeCodec.escape("\\*bold\\* \\\\\\x \\{"));
+	}
+
+	@Test
+	public void escape_nothingToEscape() {
+		String text = "abc \\x %%a%%";
+		assertEquals(text, BMEscapeCodec.escape(text));
+	}
+
+	@Test
+	public void unescape_normal() {
+		String text = escaped('*') + "bold" + escaped('*') + " " + escaped('\\') + " " + escaped('{') + "%%a%%%%N%%";
+		assertEquals("*bold* \\ {%%a%%%%N%%", BMEscapeCodec.unescape(text));
+	}
+
+	@Test
+	public void escape_textLengthNotIncreased() {
+		String text = "\\*\\_\\#\\o";
+		String escaped = BMEscapeCodec.escape(text);
+		assertEquals(4, escaped.length());
+		assertEquals("*_#o", BMEscapeCodec.unescape(escaped));
+	}
+
+	@Test
+	public void escape_reservedNoncharactersKept() {
+		String text = "x \uFDD0 y \uFDD1\uFDD2 z \\\uFDD5 \uFDE3\uFDE4\uFDE5 text\uFDD5";
+		String escaped = BMEscapeCodec.escape(text);
+		assertEquals(text, BMEscapeCodec.unescape(escaped));
+		assertEquals("*" + text, BMEscapeCodec.unescape(BMEscapeCodec.escape("\\*" + text)));
+	}
+
+	@Test
+	public void escapeSpecialCharacters_normal() {
+		assertEquals("\\*x\\\\ \\\\{\\o", BMEscapeCodec.escapeSpecialCharacters("*x\\ {o"));
+	}
+
+}
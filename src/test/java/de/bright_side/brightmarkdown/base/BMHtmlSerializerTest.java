@@ -0,0 +1,97 @@
+package de.bright_side.brightmarkdown.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class BMHtmlSerializerTest {
+	private static final String NL = System.getProperty("line.separator");
+
+	@Test
+	public void toString_xmlMethod() {
+		BrightXmlNode root = new BrightXmlNode("span");
+		root.appendNode("p", "a<b & \"c\" ö", "title", "x\"y<");
+		root.appendNode("br");
+		String expected = "<span><p title=\"x&quot;y&lt;\">a&lt;b &amp; \"c\" ö</p><br/></span>";
+		assertEquals(expected, new BMHtmlSerializer(true).toString(root));
+	}
+
+	@Test
+	public void toString_htmlMethod() {
+		BrightXmlNode root = new BrightXmlNode("html");
+		BrightXmlNode body = root.appendNode("body");
+		BrightXmlNode paragraph = body.appendNode("p", "text ö");
+		paragraph.appendNode("b", "bold");
+		body.appendNode("br");
+		body.appendNode("a", "link", "href", "x y&ä");
+		String expected = "<html>" + NL
+				+ "    <body>" + NL
+				+ "        <p>" + NL
+				+ "            text &ouml;<b>bold</b>" + NL
+				+ "        </p>" + NL
+				+ "        <br>" + NL
+				+ "        <a href=\"x y&amp;%C3%A4\">link</a>" + NL
+				+ "    </body>" + NL
+				+ "</html>" + NL;
+		assertEquals(expected, new BMHtmlSerializer(true).toString(root));
+	}
+
+	@Test
+	public void toString_htmlMethodHeadWithStyle() {
+		BrightXmlNode root = new BrightXmlNode("html");
+		root.appendNode("head").appendNode("style", "a > b {}");
+		root.appendNode("body");
+		String expected = "<html>" + NL
+				+ "    <head>" + NL
+				+ "        <META http-equiv=\"Content-Type\" content=\"text/html; charset=UTF-8\">" + NL
+				+ "        <style>a > b {}</style>" + NL
+				+ "    </head>" + NL
+				+ "    <body></body>" + NL
+				+ "</html>" + NL;
+		assertEquals(expected, new BMHtmlSerializer(true).toString(root));
+	}
+
+	@Test
+	public void toString_skipEmptySpanAndParagraphNodes() {
+		BrightXmlNode root = new BrightXmlNode("html");
+		BrightXmlNode body = root.appendNode("body");
+		body.appendNode("span");
+		body.appendNode("span", "", "class", "x");
+		String expected = "<html>" + NL
+				+ "    <body>" + NL
+				+ "        <span class=\"x\"></span>" + NL
+				+ "    </body>" + NL
+				+ "</html>" + NL;
+		assertEquals(expected, new BMHtmlSerializer(true).toString(root));
+		assertEquals(expected.replace("<span class", "<span></span><span class"), new BMHtmlSerializer(false).toString(root));
+	}
+
+	@Test
+	public void toString_escapedCharactersAndCodeBlockNewLines() {
+		BrightXmlNode root = new BrightXmlNode("span");
+		root.appendNode("code", BMEscapeCodec.escape("\\*a\\*") + BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK + "b");
+		assertEquals("<span><code>*a*<br/>b</code></span>", new BMHtmlSerializer(true).toString(root));
+	}
+
+	@Test
+	public void writeContentNode_sameAsWrite() throws Exception {
+		BrightXmlNode root = new BrightXmlNode("html");
+		root.appendNode("head").appendNode("style", "a {}");
+		BrightXmlNode body = root.appendNode("body");
+		StringBuilder result = new StringBuilder();
+		BMHtmlSerializer serializer = new BMHtmlSerializer(true);
+		serializer.writeStart(root, body, result);
+		BrightXmlNode paragraph = new BrightXmlNode("p");
+		paragraph.appendNode("b", "bold");
+		serializer.writeContentNode(paragraph);
+		serializer.writeContentNode(new BrightXmlNode("span"));
+		serializer.writeContentNode(new BrightXmlNode("hr"));
+		serializer.writeEnd();
+
+		body.appendNode("p").appendNode("b", "bold");
+		body.appendNode("span");
+		body.appendNode("hr");
+		assertEquals(new BMHtmlSerializer(true).toString(root), result.toString());
+	}
+
+}
@@ -0,0 +1,155 @@
+package de.bright_side.brightmarkdown.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+public class BMSingleFlightTest {
+	private static final int CALLS = 10;
+
+	private void waitForCoalescedCount(BMSingleFlight<?, ?> singleFlight, long count) throws InterruptedException {
+		long end = System.currentTimeMillis() + 10000;
+		while ((singleFlight.getCoalescedCount() < count) && (System.currentTimeMillis() < end)) {
+			Thread.sleep(1);
+		}
+	}
+
+	@Test
+	public void execute_concurrentCallsShareComputation() throws Exception {
+		final BMSingleFlight<String, String> singleFlight = new BMSingleFlight<String, String>();
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger computations = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(CALLS);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < CALLS; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return singleFlight.execute("key", new Callable<String>() {
+							@Override
+							public String call() throws Exception {
+								computations.incrementAndGet();
+								release.await(10, TimeUnit.SECONDS);
+								return "result";
+							}
+						});
+					}
+				}));
+			}
+			waitForCoalescedCount(singleFlight, CALLS - 1);
+			release.countDown();
+			for (Future<String> i: results) {
+				assertEquals("result", i.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, computations.get());
+		assertEquals(CALLS - 1, singleFlight.getCoalescedCount());
+
+		//: the computation has finished, so the next call computes again
+		assertEquals("next", singleFlight.execute("key", new Callable<String>() {
+			@Override
+			public String call() throws Exception {
+				return "next";
+			}
+		}));
+		assertEquals(CALLS - 1, singleFlight.getCoalescedCount());
+	}
+
+	@Test
+	public void execute_exceptionPassedToWaitingCalls() throws Exception {
+		final BMSingleFlight<String, String> singleFlight = new BMSingleFlight<String, String>();
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			List<Future<String>> results = new ArrayList<Future<String>>();
+			for (int i = 0; i < 2; i++) {
+				results.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return singleFlight.execute("key", new Callable<String>() {
+							@Override
+							public String call() throws Exception {
+								release.await(10, TimeUnit.SECONDS);
+								throw new IOException("failed");
+							}
+						});
+					}
+				}));
+			}
+			waitForCoalescedCount(singleFlight, 1);
+			release.countDown();
+			for (final Future<String> i: results) {
+				ExecutionException exception = assertThrows(ExecutionException.class, new Executable() {
+					@Override
+					public void execute() throws Throwable {
+						i.get();
+					}
+				});
+				assertEquals(IOException.class, exception.getCause().getClass());
+				assertEquals("failed", exception.getCause().getMessage());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void execute_waitingCallTimesOut() throws Exception {
+		final BMSingleFlight<String, String> singleFlight = new BMSingleFlight<String, String>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(1);
+		try {
+			Future<String> result = executor.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return singleFlight.execute("key", new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							started.countDown();
+							release.await(10, TimeUnit.SECONDS);
+							return "result";
+						}
+					});
+				}
+			});
+			started.await(10, TimeUnit.SECONDS);
+			assertThrows(TimeoutException.class, new Executable() {
+				@Override
+				public void execute() throws Throwable {
+					singleFlight.execute("key", new Callable<String>() {
+						@Override
+						public String call() throws Exception {
+							return "own result";
+						}
+					}, TimeUnit.MILLISECONDS.toNanos(50));
+				}
+			});
+			assertEquals(1, singleFlight.getCoalescedCount());
+			//: the first call is not affected by the timeout of the waiting call
+			release.countDown();
+			assertEquals("result", result.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}
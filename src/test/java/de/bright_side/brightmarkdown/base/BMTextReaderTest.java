@@ -0,0 +1,77 @@
+package de.bright_side.brightmarkdown.base;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException;
+import de.bright_side.brightmarkdown.BMRenderLimitExceededException.Limit;
+
+public class BMTextReaderTest {
+
+	private String createText(int length) {
+		StringBuilder result = new StringBuilder();
+		while (result.length() < length) {
+			result.append("line ").append(result.length()).append(" äöü € 😀\n");
+		}
+		return result.toString();
+	}
+
+	@Test
+	public void read_reader() throws Exception {
+		String text = createText(20000);
+		assertEquals(text, BMTextReader.read(new StringReader(text)).toString());
+	}
+
+	@Test
+	public void read_pathWithMultiByteCharacters() throws Exception {
+		String text = createText(20000);
+		Path path = Files.createTempFile("BMTextReaderTest", ".md");
+		try {
+			Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+			assertEquals(text, BMTextReader.read(path, StandardCharsets.UTF_8).toString());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void read_pathLongerThanMaxChars() throws Exception {
+		final String text = createText(20000);
+		final Path path = Files.createTempFile("BMTextReaderTest", ".md");
+		try {
+			Files.write(path, text.getBytes(StandardCharsets.UTF_8));
+			assertEquals(text, BMTextReader.read(path, StandardCharsets.UTF_8, text.length()).toString());
+			for (int i = 1; i <= 3; i++) {
+				final int maxChars = text.length() - i;
+				BMRenderLimitExceededException e = assertThrows(BMRenderLimitExceededException.class, new Executable() {
+					@Override
+					public void execute() throws Throwable {
+						BMTextReader.read(path, StandardCharsets.UTF_8, maxChars);
+					}
+				});
+				assertEquals(Limit.INPUT_CHARS, e.getLimit());
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void read_emptyFile() throws Exception {
+		Path path = Files.createTempFile("BMTextReaderTest", ".md");
+		try {
+			assertEquals("", BMTextReader.read(path, StandardCharsets.UTF_8).toString());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+}
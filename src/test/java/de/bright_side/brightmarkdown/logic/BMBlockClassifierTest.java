@@ -0,0 +1,113 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.base.BMUtil;
+import de.bright_side.brightmarkdown.model.BMSection;
+import de.bright_side.brightmarkdown.model.BMSection.MDType;
+
+public class BMBlockClassifierTest {
+	@Test
+	public void findMatchingLevel_normal() throws Exception{
+		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
+		levelToIndentMap.put(1, 0);
+		levelToIndentMap.put(2, 3);
+		levelToIndentMap.put(3, 7);
+		levelToIndentMap.put(4, 10);
+		Integer result = new BMBlockClassifier().findMatchingLevel(levelToIndentMap, 8);
+		assertEquals(3, result.intValue());
+	}
+
+	@Test
+	public void findMatchingLevel_lessIndentThanLevel1() throws Exception{
+		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
+		levelToIndentMap.put(1, 2);
+		levelToIndentMap.put(2, 5);
+		levelToIndentMap.put(3, 8);
+		levelToIndentMap.put(4, 12);
+		Integer result = new BMBlockClassifier().findMatchingLevel(levelToIndentMap, 1);
+		assertEquals(1, result.intValue());
+	}
+	
+	@Test
+	public void findMatchingLevel_directMatch() throws Exception{
+		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
+		levelToIndentMap.put(1, 2);
+		levelToIndentMap.put(2, 5);
+		levelToIndentMap.put(3, 8);
+		levelToIndentMap.put(4, 12);
+		Integer result = new BMBlockClassifier().findMatchingLevel(levelToIndentMap, 8);
+		assertEquals(3, result.intValue());
+	}
+
+	@Test
+	public void readListItemIndet_multipleCases() throws Exception{
+		List<String> icl = BMConstants.BULLET_POINT_INDICATORS_CHARS_LIST;
+		BMBlockClassifier logic = new BMBlockClassifier();
+		assertEquals(0, logic.readListItemIndet("*", icl).intValue());
+		assertEquals(0, logic.readListItemIndet("* ", icl).intValue());
+		assertEquals(0, logic.readListItemIndet("* text", icl).intValue());
+		assertEquals(1, logic.readListItemIndet(" * text", icl).intValue());
+		assertEquals(1, logic.readListItemIndet(" *   text", icl).intValue());
+		assertEquals(2, logic.readListItemIndet("  *   text", icl).intValue());
+		assertEquals(1, logic.readListItemIndet(" *   ", icl).intValue());
+		assertEquals(null, logic.readListItemIndet("**", icl));
+		assertEquals(null, logic.readListItemIndet("** text", icl));
+		assertEquals(null, logic.readListItemIndet(" ** text", icl));
+		assertEquals(null, logic.readListItemIndet("x", icl));
+		assertEquals(null, logic.readListItemIndet(" x", icl));
+		assertEquals(4, logic.readListItemIndet("    - item 2.1", icl).intValue());
+		assertEquals(null, logic.readListItemIndet("*Only Bold*", icl));
+	}
+	
+	@Test
+	public void classifyBlocks_headingWithCodeBlockKeepsTextInRawLineChild() throws Exception{
+		BMSection topSection = new BMSectionParserLogic().toMDSection("## title ``code`` more");
+		new BMSectionParserLogic().parseCodeSections(topSection);
+		new BMBlockClassifier().classifyBlocks(topSection);
+		BMSection heading = topSection.getChildren().get(0);
+		assertEquals(MDType.HEADING, heading.getType());
+		assertEquals(2, heading.getLevel().intValue());
+		assertEquals(null, heading.getRawText());
+		assertEquals(MDType.RAW_LINE, heading.getChildren().get(0).getType());
+		assertEquals("title", heading.getChildren().get(0).getRawText());
+	}
+
+	@Test
+	public void classifyBlocks_mixedLines() throws Exception{
+		BMSection topSection = new BMSectionParserLogic().toMDSection("---\n{TOC}\n### h3\n[x] done\n- [ ] todo\n* a\n   * b\n*** c\n12. d\na | b\ntext");
+		new BMBlockClassifier().classifyBlocks(topSection);
+		List<BMSection> children = topSection.getChildren();
+		assertEquals(MDType.HORIZONTAL_RULE, children.get(0).getType());
+		assertEquals(MDType.TABLE_OF_CONTENTS, children.get(1).getType());
+		assertEquals(MDType.HEADING, children.get(2).getType());
+		assertEquals(3, children.get(2).getLevel().intValue());
+		assertEquals(MDType.CHECKED_ITEM, children.get(3).getType());
+		assertEquals("done", children.get(3).getRawText());
+		assertEquals(MDType.UNCHECKED_ITEM, children.get(4).getType());
+		assertEquals(MDType.BULLET_POINT, children.get(5).getType());
+		assertEquals(1, children.get(5).getLevel().intValue());
+		assertEquals(2, children.get(6).getLevel().intValue());
+		assertEquals(3, children.get(7).getLevel().intValue());
+		assertEquals(MDType.NUMBERED_ITEM, children.get(8).getType());
+		assertEquals(MDType.TABLE_ROW, children.get(9).getType());
+		assertEquals(2, BMUtil.countChildren(children.get(9)));
+		assertEquals(MDType.RAW_LINE, children.get(10).getType());
+	}
+
+	@Test
+	public void classifyBlocks_tooManyIndicatorChars() throws Exception{
+		BMSection topSection = new BMSectionParserLogic().toMDSection("####### no heading\n****** no bullet point\n101. no numbered item");
+		new BMBlockClassifier().classifyBlocks(topSection);
+		for (BMSection i: topSection.getChildren()) {
+			assertEquals(MDType.RAW_LINE, i.getType());
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.model.BMSection;
+
+public class BMBlockStreamParserTest {
+
+	private List<String> readBlockTypes(String markdownText, int readSize) throws Exception {
+		BMBlockStreamParser parser = new BMBlockStreamParser(new StringReader(markdownText), new BMSectionParserLogic(), new TreeMap<String, String>(), readSize);
+		List<String> result = new ArrayList<String>();
+		BMSection block = parser.nextBlock();
+		while (block != null) {
+			StringBuilder types = new StringBuilder();
+			for (BMSection i: block.getChildren()) {
+				if (types.length() > 0) {
+					types.append(",");
+				}
+				types.append(i.getType());
+			}
+			result.add(types.toString());
+			block = parser.nextBlock();
+		}
+		return result;
+	}
+
+	@Test
+	public void nextBlock_blocksOfDifferentTypes() throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append("# title\n");
+		sb.append("line a\n");
+		sb.append("line b\n");
+		sb.append(" - item 1\n");
+		sb.append("     - item 1.1\n");
+		sb.append("|a|b|\n");
+		sb.append("---\n");
+		sb.append("|c|d|\n");
+		sb.append("---\n");
+		sb.append("{TOC}\n");
+		sb.append("```\ncode\n\n```\n");
+		sb.append("end");
+		List<String> expected = new ArrayList<String>();
+		expected.add("HEADING");
+		expected.add("PARAGRAPH");
+		expected.add("BULLET_POINT,BULLET_POINT");
+		expected.add("TABLE_ROW,HORIZONTAL_RULE,TABLE_ROW");
+		expected.add("HORIZONTAL_RULE");
+		expected.add("TABLE_OF_CONTENTS");
+		expected.add("CODE_BLOCK");
+		expected.add("PARAGRAPH");
+		assertEquals(expected, readBlockTypes(sb.toString(), 64 * 1024));
+		assertEquals(expected, readBlockTypes(sb.toString(), 1));
+	}
+
+	@Test
+	public void nextBlock_codeBlockLongerThanReadSize() throws Exception {
+		String input = "text ``inline`` text\n```java\nint a = 1;\n\nint b = 2;\n```\n - item";
+		List<String> result = readBlockTypes(input, 3);
+		assertEquals("[PARAGRAPH, CODE_BLOCK, BULLET_POINT]", result.toString());
+	}
+
+	@Test
+	public void nextBlock_emptyText() throws Exception {
+		assertEquals(0, readBlockTypes("", 1).size());
+	}
+
+}
@@ -0,0 +1,50 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.base.BMConstants;
+import de.bright_side.brightmarkdown.model.BMPosAndTag;
+
+public class BMCodeLexerTest {
+
+	private String toString(BMPosAndTag posAndTag) {
+		if (posAndTag == null) {
+			return null;
+		}
+		return posAndTag.getPos() + ": " + posAndTag.getTag();
+	}
+
+	@Test
+	public void getLexer_cached() {
+		assertSame(BMCodeLexer.getLexer(BMConstants.CODE_FORMATS.get("java")), BMCodeLexer.getLexer(BMConstants.CODE_FORMATS.get("java")));
+	}
+
+	@Test
+	public void findNextTag_keywordsAndSymbols() {
+		BMCodeLexer lexer = BMCodeLexer.getLexer(BMConstants.CODE_FORMATS.get("java"));
+		String text = "print(x); int y; // c";
+		assertEquals("10: int", toString(lexer.findNextTag(text, 0)));
+		assertEquals("17: //", toString(lexer.findNextTag(text, 13)));
+		assertNull(lexer.findNextTag(text, 19));
+	}
+
+	@Test
+	public void findNextTag_longestSymbol() {
+		BMCodeLexer lexer = BMCodeLexer.getLexer(BMConstants.CODE_FORMATS.get("xml"));
+		String text = "x</a>";
+		assertEquals("1: </", toString(lexer.findNextTag(text, 0)));
+		assertEquals("4: >", toString(lexer.findNextTag(text, 2)));
+	}
+
+	@Test
+	public void findNextTag_ignoreCase() {
+		BMCodeLexer lexer = BMCodeLexer.getLexer(BMConstants.CODE_FORMATS.get("sql"));
+		assertEquals("4: From", toString(lexer.findNextTag("abc From x", 0)));
+		assertNull(lexer.findNextTag("abc Fromx", 0));
+	}
+
+}
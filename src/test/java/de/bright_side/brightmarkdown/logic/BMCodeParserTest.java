@@ -92,6 +92,37 @@ public class BMCodeParserTest {
 		
 	}
 
+	@Test
+	public void createSections_javaStringWithEscapedQuote() {
+		String text = "x = \"a\\\"b\"; int y;";
+		List<BMSection> result = createJavaSections(text);
+
+		int index = 0;
+		assertEquals(5, result.size());
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + "x = ", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_STRING + ": " + "\"a\\\"b\"", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + "; ", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_KEYWORD + ": " + "int", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + " y;", toString(result, index ++));
+	}
+
+	@Test
+	public void createSections_sqlKeywordsIgnoreCase() {
+		BMSection parentSection = BMUtil.createSection(null, MDType.RAW_LINE, "");
+		String text = "select x_from From t";
+		List<BMSection> result = new BMCodeParser().createSections(parentSection, text, new BMDefaultCodeFormatCreator().createCodeFormats().get("sql")
+				, BMConstants.ESCAPE_NEW_LINE_IN_CODE_BLOCK);
+
+		int index = 0;
+		assertEquals(6, result.size());
+		assertEquals(MDType.CODE_BLOCK_KEYWORD + ": " + "select", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + " x_", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_KEYWORD + ": " + "from", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + " ", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_KEYWORD + ": " + "From", toString(result, index ++));
+		assertEquals(MDType.CODE_BLOCK_COMMAND + ": " + " t", toString(result, index ++));
+	}
+
 	@Test
 	public void createSections_javaEmptyString() {
 		String text = "x = \"\";";
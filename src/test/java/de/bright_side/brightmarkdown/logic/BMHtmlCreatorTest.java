@@ -0,0 +1,49 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.FormattingItem;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.model.BMSection;
+
+/**
+ * counts the visited sections instead of measuring the time (see BMComplexityTest), so that the checks do not depend on the machine
+ */
+public class BMHtmlCreatorTest {
+
+	private String repeat(String text, int times) {
+		StringBuilder result = new StringBuilder();
+		for (int i = 0; i < times; i++) {
+			result.append(text);
+		}
+		return result.toString();
+	}
+
+	private long countVisitedSections(String markdownText) throws Exception {
+		BMSection section = new BMSectionParserLogic().parseAll(markdownText);
+		BMHtmlCreator htmlCreator = new BMHtmlCreator(new TreeMap<FormattingItem, Integer>());
+		htmlCreator.toHTML(section, OutputType.EMBEDDABLE_HTML_CODE);
+		return htmlCreator.getVisitedSectionCount();
+	}
+
+	private void assertVisitedSectionsGrowLinearly(String text) throws Exception {
+		long visitedSections = countVisitedSections(repeat(text, 200));
+		long visitedSectionsOfDoubleLength = countVisitedSections(repeat(text, 400));
+		assertTrue(visitedSectionsOfDoubleLength <= 2 * visitedSections, "visited sections: " + visitedSections + ", of double length: " + visitedSectionsOfDoubleLength);
+	}
+
+	@Test
+	public void toHTML_tablesOfContents() throws Exception {
+		assertVisitedSectionsGrowLinearly("{TOC}\n");
+	}
+
+	@Test
+	public void toHTML_headingsEachWithTableOfContents() throws Exception {
+		assertVisitedSectionsGrowLinearly("# a\n{TOC}\n");
+	}
+
+}
@@ -0,0 +1,56 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import de.bright_side.brightmarkdown.model.BMPosAndTag;
+
+public class BMLineScannerTest {
+	private String toString(BMPosAndTag posAndTag) {
+		if (posAndTag == null) {
+			return "null";
+		}
+		return posAndTag.toString();
+	}
+
+	@Test
+	public void findNext_lineBreaksAndMarks() {
+		String text = "ab\n```java\ncode\n```\n";
+		BMLineScanner scanner = new BMLineScanner(text);
+		assertEquals(toString(new BMPosAndTag(2, "\n")), toString(scanner.findNext(0)));
+		assertEquals(toString(new BMPosAndTag(3, "```")), toString(scanner.findNext(3)));
+		assertEquals(toString(new BMPosAndTag(16, "```")), toString(scanner.findNextCodeBlockMark(6)));
+		assertEquals(toString(new BMPosAndTag(19, "\n")), toString(scanner.findNext(19)));
+		assertEquals("null", toString(scanner.findNext(20)));
+	}
+
+	@Test
+	public void findNext_longestMarkWins() {
+		BMLineScanner scanner = new BMLineScanner("x`````y");
+		assertEquals(toString(new BMPosAndTag(1, "```")), toString(scanner.findNext(0)));
+		assertEquals(toString(new BMPosAndTag(4, "``")), toString(scanner.findNext(4)));
+		assertEquals("null", toString(scanner.findNext(6)));
+	}
+
+	@Test
+	public void findNextCodeBlockMark_noMark() {
+		BMLineScanner scanner = new BMLineScanner("a\nb\nc");
+		assertEquals("null", toString(scanner.findNextCodeBlockMark(0)));
+	}
+
+	@Test
+	public void getText_carriageReturnsSkipped() {
+		BMLineScanner scanner = new BMLineScanner(new StringBuilder("a\r\nb\r\n```"));
+		assertEquals(toString(new BMPosAndTag(2, "\n")), toString(scanner.findNext(0)));
+		assertEquals(toString(new BMPosAndTag(6, "```")), toString(scanner.findNext(6)));
+		assertEquals("a", scanner.getText(0, 2));
+		assertEquals("b\n", scanner.getText(3, 6));
+		assertEquals(toString(new BMPosAndTag(5, "\n")), toString(scanner.findNextSkipSpaces(4)));
+	}
+
+	@Test
+	public void findNext_emptyText() {
+		assertEquals("null", toString(new BMLineScanner("").findNext(0)));
+	}
+}
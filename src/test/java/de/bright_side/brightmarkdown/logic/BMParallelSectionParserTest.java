@@ -0,0 +1,121 @@
+package de.bright_side.brightmarkdown.logic;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.function.Executable;
+
+import de.bright_side.brightmarkdown.BrightMarkdown.FormattingItem;
+import de.bright_side.brightmarkdown.BrightMarkdown.OutputType;
+import de.bright_side.brightmarkdown.base.BMParallelTasks;
+import de.bright_side.brightmarkdown.model.BMSection;
+
+public class BMParallelSectionParserTest {
+
+	private String createLargeText() {
+		StringBuilder sb = new StringBuilder("{TOC}\n");
+		for (int i = 0; i < 40; i++) {
+			sb.append("# Title " + i + "\n");
+			sb.append("first line of *paragraph* " + i + "\n");
+			sb.append("second line with [link](http://example.com/" + i + ")\n\n");
+			sb.append(" - item 1\n");
+			sb.append(" - item 2\n");
+			sb.append("    - sub item _italic_\n");
+			sb.append(" - item 3\n");
+			sb.append("```java\nint x = " + i + ";\n\n```\n");
+			sb.append("|a|b|\n|-|-|\n|c|d|\n");
+			sb.append(" 1. numbered\n 1. numbered 2\n\n");
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * list items whose levels depend on the indent of list items in other regions, also after a paragraph between the lists
+	 */
+	private String createIndentedListsText() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 30; i++) {
+			sb.append("- item\n");
+			sb.append("      - item " + i + "\n");
+			sb.append("         - item\n");
+			sb.append("   - item\n");
+			if (i % 3 == 0) {
+				sb.append("paragraph\n");
+			}
+			sb.append(" 1. numbered\n");
+			sb.append("       1. numbered\n");
+		}
+		return sb.toString();
+	}
+
+	private String toHTML(BMSection section) throws Exception {
+		return new BMHtmlCreator(new EnumMap<FormattingItem, Integer>(FormattingItem.class)).toHTML(section, OutputType.FULL_HTML_DOCUMENT);
+	}
+
+	private void assertSameAsSequential(String text, Executor executor, int parallelism) throws Exception {
+		String expected = toHTML(new BMSectionParserLogic().parseAll(text));
+		BMSection section = new BMParallelSectionParser(new BMRenderContext(), executor, parallelism, 4).parseAll(text);
+		assertEquals(expected, toHTML(section));
+	}
+
+	@Test
+	public void parseAll_sameAsSequential() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			assertSameAsSequential(createLargeText(), executor, 4);
+			assertSameAsSequential(createIndentedListsText(), executor, 4);
+			assertSameAsSequential("short text\n - item", executor, 4);
+			assertSameAsSequential("", executor, 4);
+		} finally {
+			executor.shutdown();
+		}
+		assertSameAsSequential(createLargeText(), ForkJoinPool.commonPool(), 8);
+	}
+
+	@Test
+	public void parseAll_executorRejectsTasks() throws Exception {
+		Executor rejectingExecutor = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				throw new RejectedExecutionException();
+			}
+		};
+		assertSameAsSequential(createLargeText(), rejectingExecutor, 4);
+	}
+
+	@Test
+	public void runAll_exceptionOfTaskThrown() throws Exception {
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int i = 0; i < 10; i++) {
+			final int index = i;
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					if (index == 5) {
+						throw new IllegalStateException("task failed");
+					}
+					return null;
+				}
+			});
+		}
+		IllegalStateException e = assertThrows(IllegalStateException.class, new Executable() {
+			@Override
+			public void execute() throws Throwable {
+				BMParallelTasks.runAll(tasks, ForkJoinPool.commonPool(), 4);
+			}
+		});
+		assertEquals("task failed", e.getMessage());
+	}
+
+}
@@ -4,12 +4,11 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import de.bright_side.brightmarkdown.base.BMConstants;
 import de.bright_side.brightmarkdown.base.BMUtil;
 import de.bright_side.brightmarkdown.base.TestingConstants;
+import de.bright_side.brightmarkdown.model.BMDiagnostics;
 import de.bright_side.brightmarkdown.model.BMLevelAndTitle;
 import de.bright_side.brightmarkdown.model.BMSection;
 import de.bright_side.brightmarkdown.model.BMSection.MDType;
@@ -25,59 +24,6 @@ public class BMSectionParserLogicTest {
 		return BMUtil.toString(section);
 	}
 	
-	@Test
-	public void findMatchingLevel_normal() throws Exception{
-		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
-		levelToIndentMap.put(1, 0);
-		levelToIndentMap.put(2, 3);
-		levelToIndentMap.put(3, 7);
-		levelToIndentMap.put(4, 10);
-		Integer result = new BMSectionParserLogic().findMatchingLevel(levelToIndentMap, 8);
-		assertEquals(3, result.intValue());
-	}
-
-	@Test
-	public void findMatchingLevel_lessIndentThanLevel1() throws Exception{
-		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
-		levelToIndentMap.put(1, 2);
-		levelToIndentMap.put(2, 5);
-		levelToIndentMap.put(3, 8);
-		levelToIndentMap.put(4, 12);
-		Integer result = new BMSectionParserLogic().findMatchingLevel(levelToIndentMap, 1);
-		assertEquals(1, result.intValue());
-	}
-	
-	@Test
-	public void findMatchingLevel_directMatch() throws Exception{
-		Map<Integer, Integer> levelToIndentMap = new TreeMap<Integer, Integer>();
-		levelToIndentMap.put(1, 2);
-		levelToIndentMap.put(2, 5);
-		levelToIndentMap.put(3, 8);
-		levelToIndentMap.put(4, 12);
-		Integer result = new BMSectionParserLogic().findMatchingLevel(levelToIndentMap, 8);
-		assertEquals(3, result.intValue());
-	}
-
-	@Test
-	public void readListItemIndet_multipleCases() throws Exception{
-		List<String> icl = BMConstants.BULLET_POINT_INDICATORS_CHARS_LIST;
-		BMSectionParserLogic logic = new BMSectionParserLogic();
-		assertEquals(0, logic.readListItemIndet("*", icl).intValue());
-		assertEquals(0, logic.readListItemIndet("* ", icl).intValue());
-		assertEquals(0, logic.readListItemIndet("* text", icl).intValue());
-		assertEquals(1, logic.readListItemIndet(" * text", icl).intValue());
-		assertEquals(1, logic.readListItemIndet(" *   text", icl).intValue());
-		assertEquals(2, logic.readListItemIndet("  *   text", icl).intValue());
-		assertEquals(1, logic.readListItemIndet(" *   ", icl).intValue());
-		assertEquals(null, logic.readListItemIndet("**", icl));
-		assertEquals(null, logic.readListItemIndet("** text", icl));
-		assertEquals(null, logic.readListItemIndet(" ** text", icl));
-		assertEquals(null, logic.readListItemIndet("x", icl));
-		assertEquals(null, logic.readListItemIndet(" x", icl));
-		assertEquals(4, logic.readListItemIndet("    - item 2.1", icl).intValue());
-		assertEquals(null, logic.readListItemIndet("*Only Bold*", icl));
-	}
-	
 	@Test
 	public void getHeadingItems_normal() throws Exception{
 		StringBuilder sb = new StringBuilder();
@@ -554,4 +500,23 @@ public class BMSectionParserLogicTest {
 		assertEquals(toString(expected), toString(result));
 	}
 
+	@Test
+	public void parseClassifiedSections_warningsLimited() throws Exception{
+		BMSection topSection = BMUtil.createSection(null, MDType.ROOT, null);
+		for (int i = 0; i < 5; i++) {
+			BMSection line = BMUtil.addSection(topSection, MDType.RAW_LINE, "line " + i);
+			BMUtil.addSection(line, MDType.HEADING, "unexpected");
+			BMUtil.addSection(topSection, MDType.HORIZONTAL_RULE, null);
+		}
+		BMRenderContext context = new BMRenderContext(BMConstants.CODE_FORMATS, 3);
+		new BMSectionParserLogic(context).parseClassifiedSections(topSection);
+		BMDiagnostics result = context.getDiagnostics();
+		
+		assertEquals(5, result.getWarningCount());
+		assertEquals(3, result.getWarnings().size());
+		assertEquals(true, result.isWarningLimitReached());
+		assertEquals("Unexpected section child type: HEADING", result.getWarnings().get(0).getMessage());
+		assertEquals(false, new BMRenderContext().getDiagnostics().hasWarnings());
+	}
+
 }
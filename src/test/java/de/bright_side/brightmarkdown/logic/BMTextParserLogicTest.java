@@ -73,6 +73,22 @@ public class BMTextParserLogicTest {
 		assertEquals("taglong", result.getTag());
 	}
 	
+	@Test
+	public void findNext_overlappingTags() {
+		List<String>tags = Arrays.asList("abcd", "bc", "c");
+		BMTextParserLogic logic = new BMTextParserLogic();
+		assertEquals(new BMPosAndTag(1, "bc").toString(), toString(logic.findNext("abce", 0, tags)));
+		assertEquals(new BMPosAndTag(0, "abcd").toString(), toString(logic.findNext("abcd", 0, tags)));
+		assertEquals(new BMPosAndTag(2, "c").toString(), toString(logic.findNext("abcd", 2, tags)));
+	}
+	
+	@Test
+	public void findNext_emptyTag() {
+		List<String>tags = Arrays.asList("x", "");
+		assertEquals(new BMPosAndTag(1, "").toString(), toString(new BMTextParserLogic().findNext("abx", 1, tags)));
+		assertEquals(new BMPosAndTag(2, "x").toString(), toString(new BMTextParserLogic().findNext("abx", 2, tags)));
+	}
+	
 	@Test
 	public void findPosAfterLeadindSpaces_multipleCases() throws Exception{
 		BMTextParserLogic locic = new BMTextParserLogic();